@@ -44,6 +44,14 @@ import java.lang.annotation.Target;
  * </code>
  *<br>
  * Note that the custom Loader must implement the {@link Loader} interface and should have a no arg constructor.
+ * The loaders can also be registered by file extension using a {@link org.easetech.easytest.loader.LoaderProvider}, 
+ * in which case the loader attribute can be omitted : <br>
+ *<code>
+ *   @Theory
+ *   @DataLoader(filePaths={testData.yaml}, loaderType=LoaderType.CUSTOM)<br>
+ *    public void testGetItems(........<br>
+ * </code>
+ *<br>
  * 
  *  @author Anuj Kumar
  */
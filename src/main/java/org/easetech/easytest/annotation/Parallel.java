@@ -0,0 +1,51 @@
+package org.easetech.easytest.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ *
+ * A method or class level annotation that runs the rows of test data of a test method in parallel, instead of one
+ * after the other. This is useful when the test method spends most of its time waiting, for eg. on a remote service.
+ * When specified at the class level, it applies to all the test methods of the class, unless they override it.<br>
+ *
+ * For eg. this is how you can use it :
+ * <code>
+ *   @Test
+ *   @DataLoader(filePaths={testData.csv}, loaderType=LoaderType.CSV)<br>
+ *   @Parallel(threads=8)<br>
+ *    public void testGetItems(........<br>
+ * </code>
+ *<br>
+ * The rows of all the test methods can also be run in parallel using the system property
+ * <B>easytest.parallel.rows</B>, whose value is the number of threads.<br>
+ * On JDK 21 and later, each row can instead run on a virtual thread of its own, using the virtual attribute or the
+ * system property <B>easytest.parallel.virtual</B>. This suits the test methods that mostly wait, for eg. on HTTP or
+ * database calls, as thousands of rows can then wait at the same time. The threads attribute is then the maximum
+ * number of rows running at the same time. On older JVMs, the rows run on that number of platform threads.<br>
+ * The rows running at the same time never share an instance of the test class : there are at most as many instances
+ * as threads, each used by one row at a time and then reused by the next rows. A row may thus see the fields set by an
+ * earlier row. All the rows of a test method are run before the next test method starts, unless the test methods
+ * themselves are run concurrently using the system property <B>easytest.parallel.methods</B>. The rows of all the test
+ * methods of the class are then run on the threads of that property, and this annotation is ignored. Each row is
+ * still reported as a test of its own.
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD , ElementType.TYPE})
+public @interface Parallel {
+
+    /**
+     * The number of rows that run at the same time. By default, the number of available processors, or 1000 if the
+     * rows run on virtual threads. A value of 1 runs the rows one after the other.
+     */
+    int threads() default 0;
+
+    /**
+     * Whether each row runs on a virtual thread of its own, on JDK 21 and later.
+     */
+    boolean virtual() default false;
+
+}
@@ -5,6 +5,7 @@ import java.lang.annotation.Target;
 
 import org.easetech.easytest.converter.Converter;
 import org.easetech.easytest.converter.ConverterManager;
+import org.easetech.easytest.loader.CompactRow;
 import org.easetech.easytest.util.DataContext;
 
 
@@ -124,6 +125,10 @@ public @interface Param {
         private List<PotentialAssignment> convert(List<Map<String, Object>> convertFrom) {
             List<PotentialAssignment> finalData = new ArrayList<PotentialAssignment>();
             for (Map<String, Object> map : convertFrom) {
+                // The rows shared by the DataSetCache are frozen. Give the test method its own copy.
+                if (map instanceof CompactRow && ((CompactRow) map).isFrozen()) {
+                    map = ((CompactRow) map).copy();
+                }
                 finalData.add(PotentialAssignment.forValue("", map));
             }
             return finalData;
@@ -0,0 +1,389 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled binary format of the test data loaded by a {@link Loader}, as used by the {@link CachingLoader}. The
+ * format is:
+ * <ul>
+ * <li>a magic number and the version of the format</li>
+ * <li>the number of methods</li>
+ * <li>for each method, its name, the length in bytes of its block and the block itself. The block holds the keys of
+ * the rows of the method, followed by the rows. Each row is a list of key positions and typed values.</li>
+ * </ul>
+ * The length of the blocks allows reading the data of a single method without decoding the data of the other
+ * methods. The values of the common types, as produced by the built in loaders, are written in a compact form. Any
+ * other value is written using Java serialization and thus must be {@link Serializable}.
+ *
+ */
+final class BinaryDataFormat {
+
+    /**
+     * Identifies a file written in this format
+     */
+    private static final int MAGIC = 0xEA5E7E57;
+
+    /**
+     * The version of the format. Changed whenever the format changes, so that the older files are ignored.
+     */
+    private static final int VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte DATE = 4;
+    private static final byte INTEGER = 5;
+    private static final byte LONG = 6;
+    private static final byte BIG_DECIMAL = 7;
+    private static final byte SERIALIZED = 8;
+
+    private BinaryDataFormat() {
+        // utility class
+    }
+
+    /**
+     * Write the given test data
+     *
+     * @param data the test data as returned by a {@link Loader}
+     * @param out the stream to write the data to
+     * @throws IOException if an I/O exception occurs or a value can not be serialized
+     */
+    static void write(Map<String, List<Map<String, Object>>> data, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(data.size());
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        for (Map.Entry<String, List<Map<String, Object>>> method : data.entrySet()) {
+            block.reset();
+            writeMethod(method.getValue(), new DataOutputStream(block));
+            writeString(method.getKey(), out);
+            out.writeInt(block.size());
+            block.writeTo(out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Read all the test data
+     *
+     * @param in the stream to read the data from
+     * @return the test data
+     * @throws IOException if an I/O exception occurs or the data is not in this format
+     */
+    static Map<String, List<Map<String, Object>>> read(DataInputStream in) throws IOException {
+        int methods = readHeader(in);
+        Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+        for (int i = 0; i < methods; i++) {
+            String methodName = readString(in);
+            in.readInt();
+            data.put(methodName, readMethod(in));
+        }
+        return data;
+    }
+
+    /**
+     * Stream the test data of a single method, skipping the blocks of the other methods. The rows are read one at a
+     * time, as they are iterated, and the stream is closed once they are exhausted.
+     *
+     * @param in the stream to read the data from
+     * @param methodName the name of the method
+     * @return an iterator over the rows of the method or null if the method is not present
+     * @throws IOException if an I/O exception occurs or the data is not in this format
+     */
+    static RowIterator streamMethod(final DataInputStream in, String methodName) throws IOException {
+        if (!skipTo(in, methodName)) {
+            return null;
+        }
+        final String[] keys = readKeys(in);
+        final RowSchema schema = new RowSchema(Arrays.asList(keys));
+        final int rowCount = in.readInt();
+        return new RowIterator() {
+
+            /**
+             * The number of rows read so far
+             */
+            private int rowsRead;
+
+            @Override
+            protected Map<String, Object> computeNext() throws IOException {
+                if (rowsRead == rowCount) {
+                    return null;
+                }
+                rowsRead++;
+                return readRow(in, keys, schema);
+            }
+
+            @Override
+            protected void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    /**
+     * Position the stream at the rows of the given method, skipping the blocks of the other methods
+     *
+     * @param in the stream to read the data from
+     * @param methodName the name of the method
+     * @return true if the method is present
+     * @throws IOException if an I/O exception occurs or the data is not in this format
+     */
+    private static boolean skipTo(DataInputStream in, String methodName) throws IOException {
+        int methods = readHeader(in);
+        for (int i = 0; i < methods; i++) {
+            String name = readString(in);
+            int length = in.readInt();
+            if (methodName.equals(name)) {
+                return true;
+            }
+            while (length > 0) {
+                int skipped = in.skipBytes(length);
+                if (skipped <= 0) {
+                    throw new EOFException();
+                }
+                length -= skipped;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check the header of the data
+     *
+     * @param in the stream to read the data from
+     * @return the number of methods
+     * @throws IOException if the data is not in this format
+     */
+    private static int readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("The data is not in the expected binary format");
+        }
+        return in.readInt();
+    }
+
+    /**
+     * Write the rows of a method
+     *
+     * @param rows the rows of the method
+     * @param out the stream to write the rows to
+     * @throws IOException if an I/O exception occurs or a value can not be serialized
+     */
+    private static void writeMethod(List<Map<String, Object>> rows, DataOutputStream out) throws IOException {
+        // The keys in the order of their first appearance, so that the rows are iterated in the same order once read
+        Map<String, Integer> keys = new LinkedHashMap<String, Integer>();
+        for (Map<String, Object> row : rows) {
+            for (String key : row.keySet()) {
+                if (!keys.containsKey(key)) {
+                    keys.put(key, keys.size());
+                }
+            }
+        }
+        out.writeInt(keys.size());
+        for (String key : keys.keySet()) {
+            writeString(key, out);
+        }
+        out.writeInt(rows.size());
+        for (Map<String, Object> row : rows) {
+            out.writeInt(row.size());
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                out.writeInt(keys.get(entry.getKey()));
+                writeValue(entry.getValue(), out);
+            }
+        }
+    }
+
+    /**
+     * Read the rows of a method. The rows share a single {@link RowSchema}.
+     *
+     * @param in the stream to read the rows from
+     * @return the rows of the method
+     * @throws IOException if an I/O exception occurs
+     */
+    private static List<Map<String, Object>> readMethod(DataInputStream in) throws IOException {
+        String[] keys = readKeys(in);
+        RowSchema schema = new RowSchema(Arrays.asList(keys));
+        int rowCount = in.readInt();
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            rows.add(readRow(in, keys, schema));
+        }
+        return rows;
+    }
+
+    /**
+     * Read the keys of the rows of a method
+     *
+     * @param in the stream to read the keys from
+     * @return the keys, in the order of their first appearance in the rows
+     * @throws IOException if an I/O exception occurs
+     */
+    private static String[] readKeys(DataInputStream in) throws IOException {
+        String[] keys = new String[in.readInt()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = readString(in);
+        }
+        return keys;
+    }
+
+    /**
+     * Read a single row of a method
+     *
+     * @param in the stream to read the row from
+     * @param keys the keys of the rows of the method
+     * @param schema the schema shared by the rows of the method
+     * @return the row
+     * @throws IOException if an I/O exception occurs
+     */
+    private static CompactRow readRow(DataInputStream in, String[] keys, RowSchema schema) throws IOException {
+        CompactRow row = new CompactRow(schema);
+        int entries = in.readInt();
+        for (int j = 0; j < entries; j++) {
+            String key = keys[in.readInt()];
+            row.put(key, readValue(in));
+        }
+        return row;
+    }
+
+    /**
+     * Write a single typed value
+     *
+     * @param value the value to write
+     * @param out the stream to write the value to
+     * @throws IOException if an I/O exception occurs or the value can not be serialized
+     */
+    private static void writeValue(Object value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString((String) value, out);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value.getClass() == Date.class) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            writeString(value.toString(), out);
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+            objectOut.writeObject(value);
+            objectOut.close();
+            out.writeByte(SERIALIZED);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    /**
+     * Read a single typed value
+     *
+     * @param in the stream to read the value from
+     * @return the value
+     * @throws IOException if an I/O exception occurs
+     */
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DATE:
+                return new Date(in.readLong());
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case BIG_DECIMAL:
+                return new BigDecimal(readString(in));
+            case SERIALIZED:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+                    @Override
+                    protected Class<?> resolveClass(java.io.ObjectStreamClass desc) throws IOException,
+                        ClassNotFoundException {
+                        return Class.forName(desc.getName(), false, Thread.currentThread().getContextClassLoader());
+                    }
+                };
+                try {
+                    return objectIn.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("The class of a cached value could not be found", e);
+                } finally {
+                    objectIn.close();
+                }
+            default:
+                throw new IOException("Unknown type of value : " + type);
+        }
+    }
+
+    /**
+     * Write a String of any length, or null
+     *
+     * @param value the String to write
+     * @param out the stream to write the String to
+     * @throws IOException if an I/O exception occurs
+     */
+    static void writeString(String value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a String written by {@link #writeString(String, DataOutputStream)}
+     *
+     * @param in the stream to read the String from
+     * @return the String
+     * @throws IOException if an I/O exception occurs
+     */
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+}
@@ -0,0 +1,25 @@
+
+package org.easetech.easytest.loader;
+
+/**
+ * Registers the loaders of the {@link LoaderType}s supported by the framework. All of them are stateless and thread
+ * safe, hence shared.
+ *
+ */
+final class BuiltInLoaderProvider implements LoaderProvider {
+
+    /**
+     * Register the loaders of the framework
+     *
+     * @param registry the registry to register the loaders with
+     */
+    @Override
+    public void registerLoaders(LoaderRegistry registry) {
+        registry.register(LoaderType.CSV.name(), CSVDataLoader.class, true, "csv");
+        registry.register(LoaderType.EXCEL.name(), ExcelDataLoader.class, true, "xls", "xlsx");
+        registry.register(LoaderType.XML.name(), XMLDataLoader.class, true, "xml");
+        registry.register(LoaderType.JSON.name(), JSONDataLoader.class, true, "json", "jsonl");
+        registry.register(LoaderType.JDBC.name(), JDBCDataLoader.class, true);
+    }
+
+}
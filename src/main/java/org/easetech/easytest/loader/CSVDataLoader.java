@@ -2,15 +2,30 @@
 package org.easetech.easytest.loader;
 
 import com.csvreader.CsvReader;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import org.easetech.easytest.util.ResourceLoader;
 import org.junit.Assert;
 import org.slf4j.Logger;
@@ -36,12 +51,32 @@ import org.slf4j.LoggerFactory;
  * 
  * A CSV cannot have a blank line in between test data whether it is for a single test or for multiple tests.
  * The framework is capable of handling multiple test datas for multiple test methods in a single CSV file. 
- * Although a user can choose to define the test data in multiple files as well.
+ * Although a user can choose to define the test data in multiple files as well.<br>
+ * 
+ * The values returned by the test methods are written back to the CSV file, in the additional columns
+ * {@link Loader#ACTUAL_RESULT} and {@link Loader#TEST_STATUS} of the method blocks.<br>
+ * 
+ * The files can be parsed in two modes. By default, they are read using a {@link CsvReader}. Alternatively, they can
+ * be memory mapped and tokenized in place using a {@link MappedCSVReader}, which only decodes the values that are
+ * actually read. This mode is useful for very large files and can be chosen either using the
+ * {@link #CSVDataLoader(boolean, Charset)} constructor or by setting the system property {@value #MAPPED_PROPERTY}
+ * to true. The charset of the files can be specified using the system property {@value #CHARSET_PROPERTY} and
+ * defaults to the platform charset.
  * 
  * @author Anuj Kumar
  * 
  */
-public class CSVDataLoader implements Loader {
+public class CSVDataLoader implements StreamingLoader, ConfigurableLoader {
+
+    /**
+     * The system property that selects the memory mapped mode of parsing the CSV files.
+     */
+    public static final String MAPPED_PROPERTY = "easytest.csv.mapped";
+
+    /**
+     * The system property that specifies the charset of the CSV files.
+     */
+    public static final String CHARSET_PROPERTY = "easytest.csv.charset";
 
     /**
      * An instance of logger associated with the test framework.
@@ -51,12 +86,44 @@ public class CSVDataLoader implements Loader {
     /** Separator between columns in a CSV file */
     private static final char COMMA_SEPARATOR = ',';
 
+    /** Size of the buffer used to write a CSV file */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Whether the files should be memory mapped and tokenized in place
+     */
+    private final boolean memoryMapped;
+
+    /**
+     * The charset of the CSV files
+     */
+    private final Charset charset;
+
     /**
      * 
-     * Construct a new CSVDataLoader
+     * Construct a new CSVDataLoader using the mode and the charset specified by the system properties
+     * {@value #MAPPED_PROPERTY} and {@value #CHARSET_PROPERTY}
      */
     public CSVDataLoader() {
+        this(Boolean.getBoolean(MAPPED_PROPERTY), System.getProperty(CHARSET_PROPERTY) == null ? Charset
+            .defaultCharset() : Charset.forName(System.getProperty(CHARSET_PROPERTY)));
+    }
+
+    /**
+     * 
+     * Construct a new CSVDataLoader
+     * 
+     * @param memoryMapped whether the files should be memory mapped and tokenized in place
+     * @param charset the charset of the CSV files
+     */
+    public CSVDataLoader(boolean memoryMapped, Charset charset) {
         super();
+        this.memoryMapped = memoryMapped;
+        this.charset = charset;
+        if (memoryMapped && !MappedCSVReader.isSupported(charset)) {
+            Assert.fail("The CSV files with charset " + charset + " can not be memory mapped. "
+                + "Please use the default mode of reading the CSV files.");
+        }
     }
 
     /**
@@ -66,10 +133,11 @@ public class CSVDataLoader implements Loader {
      * @throws IOException if an IO Exception occurs
      */
     public CSVDataLoader(final List<InputStream> csvInputStreams) throws IOException {
+        this(false, Charset.defaultCharset());
         Map<String, List<Map<String, Object>>> data = null;
         Map<String, List<Map<String, Object>>> finalData = new HashMap<String, List<Map<String, Object>>>();
         for (InputStream stream : csvInputStreams) {
-            data = loadFromSpreadsheet(stream);
+            data = loadFromSpreadsheet(new StreamCSVReader(stream, charset));
             finalData.putAll(data);
         }
 
@@ -83,72 +151,91 @@ public class CSVDataLoader implements Loader {
      * @throws IOException if an IO Exception occurs
      */
     private Map<String, List<Map<String, Object>>> loadCSVData(final List<String> dataFiles) throws IOException {
-        Map<String, List<Map<String, Object>>> data = null;
-        Map<String, List<Map<String, Object>>> finalData = new HashMap<String, List<Map<String, Object>>>();
-        for (String filePath : dataFiles) {
+        return MultiFileLoader.loadAll(dataFiles, new MultiFileLoader.FileLoader() {
+            @Override
+            public Map<String, List<Map<String, Object>>> load(String filePath) throws IOException {
+                return loadFromSpreadsheet(openReader(filePath));
+            }
+        });
+
+    }
+
+    /**
+     * Open a {@link CSVRecordReader} for the given file, depending upon the mode of this loader. A compressed file, or
+     * a file within a jar, can not be memory mapped and is always read as a stream.
+     * 
+     * @param filePath the path to the CSV file
+     * @return a reader positioned at the start of the file
+     * @throws IOException if an IO exception occurs
+     */
+    private CSVRecordReader openReader(String filePath) throws IOException {
+        ResourceLoader resource = new ResourceLoader(filePath);
+        if (memoryMapped && resource.isFile()) {
+            FileChannel channel = resource.getFileChannel();
             try {
-                ResourceLoader resource = new ResourceLoader(filePath);
-                data = loadFromSpreadsheet(resource.getInputStream());
-            } catch (FileNotFoundException e) {
-                LOG.error("The specified file was not found. The path is : {}", filePath);
-                LOG.error("Continuing with the loading of next file.");
-                continue;
+                return new MappedCSVReader(channel, charset);
             } catch (IOException e) {
-                LOG.error("IO Exception occured while trying to read the data from the file : {}", filePath);
-                LOG.error("Continuing with the loading of next file.");
-                continue;
+                channel.close();
+                throw e;
             }
-            finalData.putAll(data);
         }
-        return finalData;
-
+        return new StreamCSVReader(resource.getInputStream(), charset);
     }
 
     /**
      * Load data from SpreadSheet
      * 
-     * @param csvFile the csv file to load the data from
+     * @param csvReader the reader of the csv file to load the data from
      * @return a map of data
      * @throws IOException if an IO exception occurs
      */
-    private static Map<String, List<Map<String, Object>>> loadFromSpreadsheet(final InputStream csvFile)
+    private static Map<String, List<Map<String, Object>>> loadFromSpreadsheet(final CSVRecordReader csvReader)
         throws IOException {
         Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
-        CsvReader csvReader = new CsvReader(new InputStreamReader(csvFile), COMMA_SEPARATOR);
         Boolean isKeyRow = true;
         List<Map<String, Object>> dataValues = null;
         Map<Integer, String> tempData = new HashMap<Integer, String>();
-        data = new HashMap<String, List<Map<String, Object>>>();
-        while (csvReader.readRecord()) {
-            Map<String, Object> actualData = new HashMap<String, Object>();
-            String[] splitValues = csvReader.getValues();
-            if (splitValues.length > 0 && "".equals(splitValues[0])) {
-                isKeyRow = false;
-            } else {
-                isKeyRow = true;
-            }
-            if (isKeyRow) {
-                dataValues = new ArrayList<Map<String, Object>>();
-                for (int i = 0; i < splitValues.length; i++) {
-                    tempData.put(i, splitValues[i]);
+        RowSchema schema = null;
+        try {
+            while (csvReader.readRecord()) {
+                Map<String, Object> actualData = null;
+                int columnCount = csvReader.getColumnCount();
+                if (columnCount > 0 && "".equals(csvReader.get(0))) {
+                    isKeyRow = false;
+                } else {
+                    isKeyRow = true;
                 }
-
-                data.put(tempData.get(0), dataValues);
-            } else {
-                for (int i = 1; i < splitValues.length; i++) {
-                    actualData.put(tempData.get(i), splitValues[i]);
+                if (isKeyRow) {
+                    dataValues = new ArrayList<Map<String, Object>>();
+                    List<String> keys = new ArrayList<String>(columnCount);
+                    for (int i = 0; i < columnCount; i++) {
+                        tempData.put(i, csvReader.get(i));
+                        if (i > 0) {
+                            keys.add(tempData.get(i));
+                        }
+                    }
+                    schema = new RowSchema(keys);
+                    data.put(tempData.get(0), dataValues);
+                } else {
+                    actualData = new CompactRow(schema);
+                    for (int i = 1; i < columnCount; i++) {
+                        actualData.put(tempData.get(i), csvReader.get(i));
+                    }
+                }
+                if (!isKeyRow) {
+                    dataValues.add(actualData);
                 }
             }
-            if (!isKeyRow) {
-                dataValues.add(actualData);
-            }
+        } finally {
+            csvReader.close();
         }
         return data;
 
     }
 
     /**
-     * Load the data from the specified list of filePaths
+     * Load the data from the specified list of filePaths. The files are loaded in parallel and a file path can be a
+     * glob pattern, as explained in {@link ResourceLoader#resolvePaths(String...)}.
      * 
      * @param filePaths the list of File paths
      * @return the data
@@ -157,17 +244,598 @@ public class CSVDataLoader implements Loader {
     public Map<String, List<Map<String, Object>>> loadData(String[] filePaths) {
         Map<String, List<Map<String, Object>>> result = new HashMap<String, List<Map<String, Object>>>();
         try {
-            result = loadCSVData(Arrays.asList(filePaths));
+            result = loadCSVData(ResourceLoader.resolvePaths(filePaths));
         } catch (IOException e) {
             Assert.fail("An I/O exception occured while reading the files from the path :" + filePaths.toString());
         }
         return result;
     }
 
+    /**
+     * The mode and the charset of this loader, which change the data read from the CSV files
+     * 
+     * @return the configuration of this loader
+     */
+    @Override
+    public String getConfiguration() {
+        return "mapped=" + memoryMapped + ",charset=" + charset.name();
+    }
+
+    /**
+     * Stream the data of the given method from the specified list of filePaths
+     * 
+     * @param filePaths the list of File paths
+     * @param methodName the name of the method whose data needs to be streamed
+     * @return an iterator over the data of the given method
+     */
+    @Override
+    public Iterator<Map<String, Object>> streamData(String[] filePaths, String methodName) {
+        return new CSVRowIterator(ResourceLoader.resolvePaths(filePaths), methodName);
+    }
+
+    /**
+     * Write the actual results, and the test status if any, of the test methods into the given CSV file. The columns
+     * {@link Loader#ACTUAL_RESULT} and {@link Loader#TEST_STATUS} are added to the key row of each method block that
+     * has results, unless the key row already has them, and the results are written in these columns of the data
+     * rows. Only the records that receive a value are changed, the other records and the line separators being copied
+     * as they are, so that the rest of the file is left byte for byte unchanged. When a method has more than one block
+     * in the file, the results go into its last block, which is the one that is loaded. The file is rewritten in a
+     * single sequential pass into a temporary file, through a buffered {@link FileChannel}, which then replaces the
+     * file atomically. Only when a method with results turns out to have more than one block is the file copied a
+     * second time, knowing which block is the last one. A file that can not be decoded using the charset of this
+     * loader is left unchanged.
+     * 
+     * @param filePath the path to the file to which the data needs to be written
+     * @param actualData the data structure that contains the output data that needs to be written to the file. The
+     *            output data is identified by the key {@link Loader#ACTUAL_RESULT}
+     */
     @Override
     public void writeData(String filePath, Map<String, List<Map<String, Object>>> actualData) {
-        // TODO Auto-generated method stub
+        boolean hasResults = false;
+        for (List<Map<String, Object>> methodData : actualData.values()) {
+            hasResults = hasResults || hasKey(methodData, ACTUAL_RESULT);
+        }
+        if (!hasResults) {
+            return;
+        }
+        File tempFile = null;
+        try {
+            ResourceLoader resource = new ResourceLoader(filePath);
+            File file = resource.getFile();
+            tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            // A file may have more than one block for a method, of which only the last one is loaded. Every block is
+            // first taken to be the last one of its method, which is right unless a method with results is repeated.
+            Map<String, Integer> blockCounts = copy(resource, tempFile, actualData, null);
+            for (Map.Entry<String, Integer> blockCount : blockCounts.entrySet()) {
+                List<Map<String, Object>> methodData = actualData.get(blockCount.getKey());
+                if (blockCount.getValue() > 1 && methodData != null && hasKey(methodData, ACTUAL_RESULT)) {
+                    copy(resource, tempFile, actualData, blockCounts);
+                    break;
+                }
+            }
+            resource.replaceWith(tempFile);
+        } catch (IOException e) {
+            LOG.error("Ignoring the write operation as IOException occured while writing the file : " + filePath, e);
+        } finally {
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Copy the CSV file into the given file, adding the results to the method blocks that have some
+     * 
+     * @param resource the CSV file
+     * @param target the file into which the CSV file is copied, whose previous content is replaced
+     * @param actualData the data structure that contains the output data
+     * @param blockCounts the number of blocks of each method in the file, or null to add the results to every block
+     * @return the number of blocks of each method that has one
+     * @throws IOException if an I/O exception occurs
+     */
+    private Map<String, Integer> copy(ResourceLoader resource, File target,
+        Map<String, List<Map<String, Object>>> actualData, Map<String, Integer> blockCounts) throws IOException {
+        Reader in = null;
+        Writer out = null;
+        try {
+            // The decoder reports the malformed input, so that the records copied are encoded back to the same bytes
+            in = new BufferedReader(new InputStreamReader(resource.getInputStream(), charset.newDecoder()),
+                WRITE_BUFFER_SIZE);
+            FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            CharsetEncoder encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            out = new BufferedWriter(Channels.newWriter(channel, encoder, -1), WRITE_BUFFER_SIZE);
+            Map<String, Integer> blocksSeen = copyWithResults(new RawRecordReader(in), out, actualData, blockCounts);
+            out.flush();
+            channel.force(false);
+            out.close();
+            out = null;
+            return blocksSeen;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the records of the CSV file, adding the results to the method blocks that have some. Only the last block of
+     * a method receives its results, as it is the one whose data was loaded, unless the blocks are not counted yet, in
+     * which case every block of the method receives them. The records are only parsed when needed,
+     * that is the key rows and the data rows that receive a result. A record whose first value is empty is known to be
+     * a data row without being parsed.
+     * 
+     * @param records the reader of the records of the existing CSV file
+     * @param out the writer of the new CSV file
+     * @param actualData the data structure that contains the output data
+     * @param blockCounts the number of blocks of each method in the file, or null if they are not counted yet
+     * @return the number of blocks of each method that has one
+     * @throws IOException if an I/O exception occurs
+     */
+    private static Map<String, Integer> copyWithResults(RawRecordReader records, Writer out,
+        Map<String, List<Map<String, Object>>> actualData, Map<String, Integer> blockCounts) throws IOException {
+        Map<String, Integer> blocksSeen = new HashMap<String, Integer>();
+        List<Map<String, Object>> methodData = null;
+        int actualResultColumn = -1;
+        int testStatusColumn = -1;
+        int rowNum = 0;
+        String record;
+        while ((record = records.readRecord()) != null) {
+            String[] values = isDataRow(record) ? null : parse(record);
+            Map<Integer, String> columns = new TreeMap<Integer, String>();
+            // An empty line is skipped when the data is loaded, and is copied as it is
+            boolean isEmptyLine = values != null && values.length == 0;
+            if (!isEmptyLine && values != null && !"".equals(values[0])) {
+                // Key row of a method block
+                Integer seen = blocksSeen.get(values[0]);
+                int block = seen == null ? 1 : seen + 1;
+                blocksSeen.put(values[0], block);
+                methodData = blockCounts == null || block == blockCounts.get(values[0]) ? actualData.get(values[0])
+                    : null;
+                rowNum = 0;
+                if (methodData != null && hasKey(methodData, ACTUAL_RESULT)) {
+                    actualResultColumn = Arrays.asList(values).indexOf(ACTUAL_RESULT);
+                    if (actualResultColumn < 0) {
+                        actualResultColumn = values.length;
+                        columns.put(actualResultColumn, ACTUAL_RESULT);
+                    }
+                    testStatusColumn = Arrays.asList(values).indexOf(TEST_STATUS);
+                    if (testStatusColumn < 0 && hasKey(methodData, TEST_STATUS)) {
+                        testStatusColumn = values.length + columns.size();
+                        columns.put(testStatusColumn, TEST_STATUS);
+                    }
+                } else {
+                    methodData = null;
+                }
+            } else if (!isEmptyLine && methodData != null) {
+                Map<String, Object> rowData = rowNum < methodData.size() ? methodData.get(rowNum) : null;
+                rowNum++;
+                Object actualResult = rowData == null ? null : rowData.get(ACTUAL_RESULT);
+                if (actualResult != null) {
+                    columns.put(actualResultColumn, actualResult.toString());
+                    Object testStatus = rowData.get(TEST_STATUS);
+                    if (testStatus != null && testStatusColumn >= 0) {
+                        columns.put(testStatusColumn, testStatus.toString());
+                    }
+                }
+            }
+            writeRecord(record, values, columns, out);
+        }
+        return blocksSeen;
+    }
+
+    /**
+     * Check whether a record is a data row, without parsing it, that is whether its first value is empty and
+     * unquoted
+     * 
+     * @param record the record as written in the file
+     * @return true if the record is known to be a data row, false if it needs to be parsed to tell
+     */
+    private static boolean isDataRow(String record) {
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (c != ' ' && c != '\t') {
+                return c == COMMA_SEPARATOR;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a record the same way as it is parsed when the data is loaded
+     * 
+     * @param record the record as written in the file
+     * @return the values of the record, or an empty array if the record is an empty line
+     * @throws IOException if an I/O exception occurs
+     */
+    private static String[] parse(String record) throws IOException {
+        CsvReader csvReader = CsvReader.parse(record);
+        try {
+            return csvReader.readRecord() ? csvReader.getValues() : new String[0];
+        } finally {
+            csvReader.close();
+        }
+    }
+
+    /**
+     * Write a record, setting the values of the given columns. The record is copied as it is when no column is set.
+     * The columns that follow the last column of the record are appended to it, and the record is only written again
+     * from its values when one of its existing columns is set. The line separator of the record is always kept.
+     * 
+     * @param record the record as written in the file
+     * @param values the values of the record, or null if it was not parsed yet
+     * @param columns the values to set, by column
+     * @param out the writer of the CSV file
+     * @throws IOException if an I/O exception occurs
+     */
+    private static void writeRecord(String record, String[] values, Map<Integer, String> columns, Writer out)
+        throws IOException {
+        if (columns.isEmpty()) {
+            out.write(record);
+            return;
+        }
+        String[] recordValues = values == null ? parse(record) : values;
+        int lastColumn = Collections.max(columns.keySet());
+        int end = record.length();
+        while (end > 0 && (record.charAt(end - 1) == '\n' || record.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        if (Collections.min(columns.keySet()) >= recordValues.length) {
+            out.write(record, 0, end);
+            for (int column = recordValues.length; column <= lastColumn; column++) {
+                out.write(COMMA_SEPARATOR);
+                writeValue(columns.containsKey(column) ? columns.get(column) : "", out);
+            }
+        } else {
+            for (int column = 0; column <= Math.max(lastColumn, recordValues.length - 1); column++) {
+                if (column > 0) {
+                    out.write(COMMA_SEPARATOR);
+                }
+                String value = column < recordValues.length ? recordValues[column] : "";
+                writeValue(columns.containsKey(column) ? columns.get(column) : value, out);
+            }
+        }
+        out.write(record, end, record.length() - end);
+    }
+
+    /**
+     * Write a value, quoting it if it contains a separator, a quote, a line break or leading or trailing spaces
+     * 
+     * @param value the value
+     * @param out the writer of the CSV file
+     * @throws IOException if an I/O exception occurs
+     */
+    private static void writeValue(String value, Writer out) throws IOException {
+        boolean quoted = value.length() > 0
+            && (value.indexOf(COMMA_SEPARATOR) >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+                || value.indexOf('\r') >= 0 || value.charAt(0) == ' ' || value.charAt(value.length() - 1) == ' ');
+        if (quoted) {
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        } else {
+            out.write(value);
+        }
+    }
+
+    /**
+     * @param rows the rows of a method
+     * @param key the key to look for
+     * @return true if any of the rows has a value for the given key
+     */
+    private static boolean hasKey(List<Map<String, Object>> rows, String key) {
+        for (Map<String, Object> row : rows) {
+            if (row.get(key) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A {@link RowIterator} that reads the data rows of a single method block from the CSV files. The files are
+     * searched from the last to the first one and the last block of the first file that contains the method is read,
+     * which is the block that {@link CSVDataLoader#loadData(String[])} keeps.
+     */
+    private class CSVRowIterator extends RowIterator {
+
+        /**
+         * The files that are yet to be searched for the method block
+         */
+        private final List<String> dataFiles;
+
+        /**
+         * The name of the method whose data is being read
+         */
+        private final String methodName;
+
+        /**
+         * Index of the next file to search for the method block
+         */
+        private int fileIndex;
+
+        /**
+         * The reader positioned within the method block or null if the block is not yet found.
+         */
+        private CSVRecordReader csvReader;
+
+        /**
+         * The key row of the method block
+         */
+        private String[] keys;
+
+        /**
+         * The schema shared by the rows of the method block
+         */
+        private RowSchema schema;
+
+        /**
+         * 
+         * Construct a new CSVRowIterator
+         * 
+         * @param dataFiles the files to read the data from
+         * @param methodName the name of the method whose data is read
+         */
+        CSVRowIterator(List<String> dataFiles, String methodName) {
+            this.dataFiles = dataFiles;
+            this.methodName = methodName;
+            this.fileIndex = dataFiles.size() - 1;
+        }
+
+        @Override
+        protected Map<String, Object> computeNext() throws IOException {
+            if (csvReader == null && !findMethodBlock()) {
+                return null;
+            }
+            if (!csvReader.readRecord()) {
+                return null;
+            }
+            int columnCount = csvReader.getColumnCount();
+            if (columnCount == 0 || !"".equals(csvReader.get(0))) {
+                // Start of the next method block
+                return null;
+            }
+            Map<String, Object> actualData = new CompactRow(schema);
+            for (int i = 1; i < columnCount && i < keys.length; i++) {
+                actualData.put(keys[i], csvReader.get(i));
+            }
+            return actualData;
+        }
 
+        /**
+         * Position the reader at the first data row of the method block
+         * 
+         * @return true if the method block was found in any of the files
+         * @throws IOException if an I/O exception occurs
+         */
+        private boolean findMethodBlock() throws IOException {
+            while (fileIndex >= 0) {
+                String filePath = dataFiles.get(fileIndex--);
+                // A file may have more than one block for the method, of which the last one is read
+                int blocks = 0;
+                try {
+                    csvReader = openReader(filePath);
+                    while (csvReader.readRecord()) {
+                        if (isMethodKeyRow()) {
+                            blocks++;
+                        }
+                    }
+                    close();
+                    if (blocks == 0) {
+                        continue;
+                    }
+                    csvReader = openReader(filePath);
+                } catch (FileNotFoundException e) {
+                    LOG.error("The specified file was not found. The path is : {}", filePath);
+                    LOG.error("Continuing with the loading of next file.");
+                    continue;
+                }
+                for (int block = 0; csvReader.readRecord();) {
+                    if (isMethodKeyRow() && ++block == blocks) {
+                        keys = new String[csvReader.getColumnCount()];
+                        for (int i = 0; i < keys.length; i++) {
+                            keys[i] = csvReader.get(i);
+                        }
+                        schema = new RowSchema(Arrays.asList(keys).subList(1, keys.length));
+                        return true;
+                    }
+                }
+                close();
+            }
+            return false;
+        }
+
+        /**
+         * @return true if the current record is the key row of a block of the method
+         * @throws IOException if an I/O exception occurs
+         */
+        private boolean isMethodKeyRow() throws IOException {
+            return csvReader.getColumnCount() > 0 && methodName.equals(csvReader.get(0));
+        }
+
+        @Override
+        protected void close() {
+            if (csvReader != null) {
+                csvReader.close();
+                csvReader = null;
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a CSV file as they are written in the file, each one along with its line separator, if
+     * any. A line separator within a quoted value does not end a record.
+     */
+    private static final class RawRecordReader {
+
+        /**
+         * Marks that no character was read ahead
+         */
+        private static final int NONE = -2;
+
+        /**
+         * The reader of the CSV file
+         */
+        private final Reader in;
+
+        /**
+         * The record being read
+         */
+        private final StringBuilder record = new StringBuilder();
+
+        /**
+         * The character read ahead, or {@link #NONE}
+         */
+        private int readAhead = NONE;
+
+        /**
+         * 
+         * Construct a new RawRecordReader
+         * 
+         * @param in the reader of the CSV file
+         */
+        RawRecordReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * Read the next record
+         * 
+         * @return the record, including its line separator, or null at the end of the file
+         * @throws IOException if an I/O exception occurs
+         */
+        String readRecord() throws IOException {
+            record.setLength(0);
+            boolean valueStart = true;
+            boolean quoted = false;
+            int c;
+            while ((c = read()) != -1) {
+                record.append((char) c);
+                if (quoted) {
+                    if (c == '"') {
+                        // Either the end of the quoted value or an escaped quote
+                        int next = read();
+                        if (next == '"') {
+                            record.append('"');
+                        } else {
+                            quoted = false;
+                            readAhead = next;
+                        }
+                    }
+                } else if (c == '\n') {
+                    break;
+                } else if (c == '\r') {
+                    int next = read();
+                    if (next == '\n') {
+                        record.append('\n');
+                    } else {
+                        readAhead = next;
+                    }
+                    break;
+                } else if (c == COMMA_SEPARATOR) {
+                    valueStart = true;
+                } else if (c == '"' && valueStart) {
+                    quoted = true;
+                    valueStart = false;
+                } else if (c != ' ' && c != '\t') {
+                    valueStart = false;
+                }
+            }
+            return record.length() == 0 ? null : record.toString();
+        }
+
+        /**
+         * @return the next character
+         * @throws IOException if an I/O exception occurs
+         */
+        private int read() throws IOException {
+            if (readAhead != NONE) {
+                int c = readAhead;
+                readAhead = NONE;
+                return c;
+            }
+            return in.read();
+        }
+    }
+
+    /**
+     * A {@link CSVRecordReader} that reads the records from a stream using a {@link CsvReader}
+     */
+    private static class StreamCSVReader implements CSVRecordReader {
+
+        /**
+         * The underlying reader
+         */
+        private final CsvReader csvReader;
+
+        /**
+         * 
+         * Construct a new StreamCSVReader
+         * 
+         * @param csvFile the stream of the CSV file
+         * @param charset the charset of the CSV file
+         * @throws IOException if the start of the file can not be read
+         */
+        StreamCSVReader(InputStream csvFile, Charset charset) throws IOException {
+            this.csvReader = new CsvReader(new InputStreamReader(skipBOM(csvFile, charset), charset), COMMA_SEPARATOR);
+        }
+
+        /**
+         * Skip the byte order mark at the start of the given stream, as the {@link MappedCSVReader} does
+         * 
+         * @param csvFile the stream of the CSV file
+         * @param charset the charset of the CSV file
+         * @return a stream positioned after the byte order mark, if any
+         * @throws IOException if the start of the file can not be read
+         */
+        private static InputStream skipBOM(InputStream csvFile, Charset charset) throws IOException {
+            if (!MappedCSVReader.skipsBOM(charset)) {
+                return csvFile;
+            }
+            byte[] start = new byte[MappedCSVReader.UTF8_BOM.length];
+            PushbackInputStream in = new PushbackInputStream(csvFile, start.length);
+            int count = 0;
+            int read;
+            while (count < start.length && (read = in.read(start, count, start.length - count)) != -1) {
+                count += read;
+            }
+            if (!Arrays.equals(start, MappedCSVReader.UTF8_BOM)) {
+                in.unread(start, 0, count);
+            }
+            return in;
+        }
+
+        @Override
+        public boolean readRecord() throws IOException {
+            return csvReader.readRecord();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return csvReader.getColumnCount();
+        }
+
+        @Override
+        public String get(int column) throws IOException {
+            return csvReader.get(column);
+        }
+
+        @Override
+        public void close() {
+            csvReader.close();
+        }
     }
 
 }
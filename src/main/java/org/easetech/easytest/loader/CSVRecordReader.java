@@ -0,0 +1,40 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.IOException;
+
+/**
+ * A reader of the records of a CSV file, as used by the {@link CSVDataLoader}. The implementations are free to
+ * decode the values of a record lazily, when they are asked for using {@link #get(int)}.
+ *
+ */
+interface CSVRecordReader {
+
+    /**
+     * Read the next record of the file.
+     *
+     * @return true if a record was read, false if the end of the file has been reached
+     * @throws IOException if an I/O exception occurs
+     */
+    boolean readRecord() throws IOException;
+
+    /**
+     * @return the number of values in the current record
+     */
+    int getColumnCount();
+
+    /**
+     * Get the value of the given column in the current record.
+     *
+     * @param column the index of the column
+     * @return the value of the column or an empty String if the column does not exist
+     * @throws IOException if an I/O exception occurs while decoding the value
+     */
+    String get(int column) throws IOException;
+
+    /**
+     * Release the file held by this reader
+     */
+    void close();
+
+}
@@ -0,0 +1,435 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.easetech.easytest.util.ResourceLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Loader} that sits in front of another {@link Loader} and caches the test data it loads in the compiled
+ * {@link BinaryDataFormat}, in a cache directory that defaults to {@value #DEFAULT_CACHE_DIRECTORY}. The cache file is
+ * identified by the type of the loader, its configuration if it is a {@link ConfigurableLoader}, and the content hash
+ * of the data files, so a cache file is used as long as none of the files has changed, across JVMs. The test data is
+ * then read straight from the cache file instead of being parsed again by the loader.<br>
+ * The cache is disabled by default. It is enabled by setting the system property {@value #CACHE_PROPERTY} to true and
+ * its directory can be changed using the system property {@value #CACHE_DIRECTORY_PROPERTY}. The cache is used only
+ * when the data is loaded from at least one file. If the data contains a value that can not be written in the binary
+ * format, the data is simply not cached.<br>
+ * The data of a single method of a {@link StreamingLoader} is streamed from the cache file, one row at a time. When
+ * there is no cache file yet, all the data of the files is loaded once to write it, so that the next test methods and
+ * the next JVMs stream their data from the cache file instead of parsing the files again.<br>
+ * The content hash of a set of files is computed once per JVM, and computed again only once the modification time or
+ * the length of one of the files has changed.
+ *
+ */
+public class CachingLoader implements Loader {
+
+    /**
+     * The system property that enables the cache. The cache is disabled by default.
+     */
+    public static final String CACHE_PROPERTY = "easytest.cache";
+
+    /**
+     * The system property that specifies the directory of the cache files.
+     */
+    public static final String CACHE_DIRECTORY_PROPERTY = "easytest.cache.dir";
+
+    /**
+     * The default directory of the cache files.
+     */
+    public static final String DEFAULT_CACHE_DIRECTORY = "target/easytest-cache";
+
+    /**
+     * An instance of logger associated with the test framework.
+     */
+    protected static final Logger LOG = LoggerFactory.getLogger(CachingLoader.class);
+
+    /**
+     * The extension of the cache files
+     */
+    private static final String CACHE_FILE_EXTENSION = ".etd";
+
+    /**
+     * The cache files already identified, by loader and list of file paths
+     */
+    private static final ConcurrentMap<String, HashedFiles> CACHE_FILES = new ConcurrentHashMap<String, HashedFiles>();
+
+    /**
+     * The loader that actually loads the data
+     */
+    protected final Loader delegate;
+
+    /**
+     * Identifies the type of the loader within the cache key
+     */
+    private final String loaderKey;
+
+    /**
+     *
+     * Construct a new CachingLoader
+     *
+     * @param delegate the loader that actually loads the data
+     * @param loaderKey identifies the type of the loader within the cache key
+     */
+    protected CachingLoader(Loader delegate, String loaderKey) {
+        this.delegate = delegate;
+        this.loaderKey = loaderKey;
+    }
+
+    /**
+     * Put a cache in front of the given loader, unless the cache is disabled.
+     *
+     * @param loader the loader that actually loads the data
+     * @param loaderKey identifies the type of the loader within the cache key, for eg. the name of the
+     *            {@link LoaderType}
+     * @return a caching loader, that also is a {@link StreamingLoader} if the given loader is one, or the given
+     *         loader if the cache is disabled
+     */
+    public static Loader wrap(Loader loader, String loaderKey) {
+        if (loader == null || loader instanceof CachingLoader || !isEnabled()) {
+            return loader;
+        }
+        if (loader instanceof StreamingLoader) {
+            return new StreamingCachingLoader((StreamingLoader) loader, loaderKey);
+        }
+        return new CachingLoader(loader, loaderKey);
+    }
+
+    /**
+     * @return true if the cache is enabled
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(CACHE_PROPERTY);
+    }
+
+    /**
+     * @return the loader that actually loads the data
+     */
+    public Loader getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Load the data from the cache file of the specified files, if present. Else load the data using the delegate
+     * loader and write the cache file.
+     *
+     * @param filePaths the list of File paths
+     * @return the data
+     */
+    @Override
+    public Map<String, List<Map<String, Object>>> loadData(String[] filePaths) {
+        File cacheFile = cacheFile(filePaths);
+        if (cacheFile == null) {
+            return delegate.loadData(filePaths);
+        }
+        if (cacheFile.isFile()) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+                Map<String, List<Map<String, Object>>> data = BinaryDataFormat.read(in);
+                LOG.debug("Loaded the test data from the cache file {}", cacheFile);
+                return data;
+            } catch (IOException e) {
+                LOG.warn("Could not read the cache file " + cacheFile + ". Loading the data from the files.", e);
+            } finally {
+                closeQuietly(in);
+            }
+        }
+        Map<String, List<Map<String, Object>>> data = delegate.loadData(filePaths);
+        store(data, cacheFile);
+        return data;
+    }
+
+    /**
+     * Write the data using the delegate loader. The cache file of the data file is invalidated by the change of its
+     * content.
+     */
+    @Override
+    public void writeData(String filePath, Map<String, List<Map<String, Object>>> actualData) {
+        delegate.writeData(filePath, actualData);
+    }
+
+    /**
+     * @param loader a loader
+     * @return the configuration of the loader if it is a {@link ConfigurableLoader}, else an empty String
+     */
+    static String configurationOf(Loader loader) {
+        return loader instanceof ConfigurableLoader ? ((ConfigurableLoader) loader).getConfiguration() : "";
+    }
+
+    /**
+     * Identify the cache file of the given data files, using the type and the configuration of the loader and the
+     * content of the files. The content of the files is hashed only if it was not hashed yet, or if one of the files
+     * has changed since.
+     *
+     * @param filePaths the list of File paths
+     * @return the cache file or null if the data of the given files can not be cached
+     */
+    protected File cacheFile(String[] filePaths) {
+        if (filePaths == null || filePaths.length == 0) {
+            return null;
+        }
+        List<String> dataFiles = ResourceLoader.resolvePaths(filePaths);
+        String key = loaderKey + '\0' + configurationOf(delegate) + '\0' + dataFiles;
+        long[] stamps;
+        try {
+            stamps = stampsOf(dataFiles);
+        } catch (FileNotFoundException e) {
+            // Let the delegate loader report the missing file
+            return null;
+        } catch (IOException e) {
+            LOG.warn("IO Exception occured while reading the attributes of the files. The cache is not used.", e);
+            return null;
+        }
+        HashedFiles hashedFiles = CACHE_FILES.get(key);
+        if (hashedFiles != null && Arrays.equals(hashedFiles.stamps, stamps)) {
+            return new File(cacheDirectory(), hashedFiles.cacheFileName);
+        }
+        File cacheFile = hash(dataFiles);
+        if (cacheFile != null) {
+            CACHE_FILES.put(key, new HashedFiles(stamps, cacheFile.getName()));
+        }
+        return cacheFile;
+    }
+
+    /**
+     * @param dataFiles the list of resolved file paths
+     * @return the modification time and the length of each file, that change when the content of the file changes
+     * @throws IOException if the attributes of a file can not be read
+     */
+    private static long[] stampsOf(List<String> dataFiles) throws IOException {
+        long[] stamps = new long[dataFiles.size() * 2];
+        for (int i = 0; i < dataFiles.size(); i++) {
+            ResourceLoader resource = new ResourceLoader(dataFiles.get(i));
+            stamps[2 * i] = resource.lastModified();
+            stamps[2 * i + 1] = resource.length();
+        }
+        return stamps;
+    }
+
+    /**
+     * Compute the cache file of the given data files from the type and the configuration of the loader and the
+     * content hash of the files
+     *
+     * @param dataFiles the list of resolved file paths
+     * @return the cache file or null if the content of the files can not be hashed
+     */
+    private File hash(List<String> dataFiles) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(loaderKey.getBytes("UTF-8"));
+            digest.update((byte) 0);
+            digest.update(configurationOf(delegate).getBytes("UTF-8"));
+            byte[] buffer = new byte[8192];
+            for (String filePath : dataFiles) {
+                digest.update((byte) 0);
+                digest.update(filePath.getBytes("UTF-8"));
+                digest.update((byte) 0);
+                InputStream in = new ResourceLoader(filePath).getInputStream();
+                try {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, read);
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+            return new File(cacheDirectory(), toHex(digest.digest()) + CACHE_FILE_EXTENSION);
+        } catch (FileNotFoundException e) {
+            // Let the delegate loader report the missing file
+            return null;
+        } catch (IOException e) {
+            LOG.warn("IO Exception occured while computing the content hash of the files. The cache is not used.", e);
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            LOG.warn("The content hash of the files can not be computed. The cache is not used.", e);
+            return null;
+        }
+    }
+
+    /**
+     * The name of the cache file of a list of files, along with the modification time and the length of each file when
+     * their content was hashed
+     */
+    private static final class HashedFiles {
+
+        /**
+         * The modification time and the length of each file
+         */
+        final long[] stamps;
+
+        /**
+         * The name of the cache file of the files
+         */
+        final String cacheFileName;
+
+        /**
+         * Construct a new HashedFiles
+         *
+         * @param stamps the modification time and the length of each file
+         * @param cacheFileName the name of the cache file of the files
+         */
+        HashedFiles(long[] stamps, String cacheFileName) {
+            this.stamps = stamps;
+            this.cacheFileName = cacheFileName;
+        }
+    }
+
+    /**
+     * Write the data to the cache file. The data is first written to a temporary file, which is then moved to the
+     * cache file, so that a concurrently running JVM never reads a partially written cache file.
+     *
+     * @param data the data to store
+     * @param cacheFile the cache file
+     */
+    protected void store(Map<String, List<Map<String, Object>>> data, File cacheFile) {
+        if (data == null) {
+            return;
+        }
+        File directory = cacheFile.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOG.warn("Could not create the cache directory {}. The data is not cached.", directory);
+            return;
+        }
+        File tempFile = null;
+        DataOutputStream out = null;
+        try {
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            BinaryDataFormat.write(data, out);
+            out.close();
+            out = null;
+            try {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            LOG.debug("Stored the test data in the cache file {}", cacheFile);
+        } catch (IOException e) {
+            LOG.info("The test data could not be cached : {}", e.toString());
+        } finally {
+            closeQuietly(out);
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * @return the directory of the cache files
+     */
+    private static File cacheDirectory() {
+        return new File(System.getProperty(CACHE_DIRECTORY_PROPERTY, DEFAULT_CACHE_DIRECTORY));
+    }
+
+    /**
+     * @param bytes the bytes to convert
+     * @return the hexadecimal representation of the bytes
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @param closeable the stream to close, may be null
+     */
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * A {@link CachingLoader} in front of a {@link StreamingLoader}. The data of a single method is streamed from the
+     * cache file by skipping the data of the other methods. When there is no cache file yet, the data is streamed by
+     * the delegate loader.
+     */
+    static class StreamingCachingLoader extends CachingLoader implements StreamingLoader {
+
+        /**
+         *
+         * Construct a new StreamingCachingLoader
+         *
+         * @param delegate the loader that actually loads the data
+         * @param loaderKey identifies the type of the loader within the cache key
+         */
+        StreamingCachingLoader(StreamingLoader delegate, String loaderKey) {
+            super(delegate, loaderKey);
+        }
+
+        /**
+         * Stream the data of the given method from the cache file of the specified list of filePaths. If there is no
+         * cache file yet, all the data of the files is loaded to write it. The data of the method is then streamed
+         * from the cache file, or taken from the loaded data if it could not be cached.
+         *
+         * @param filePaths the list of File paths
+         * @param methodName the name of the method whose data needs to be streamed
+         * @return an iterator over the data of the given method
+         */
+        @Override
+        public Iterator<Map<String, Object>> streamData(String[] filePaths, String methodName) {
+            File cacheFile = cacheFile(filePaths);
+            if (cacheFile == null) {
+                return ((StreamingLoader) delegate).streamData(filePaths, methodName);
+            }
+            if (!cacheFile.isFile()) {
+                Map<String, List<Map<String, Object>>> data = delegate.loadData(filePaths);
+                store(data, cacheFile);
+                if (!cacheFile.isFile()) {
+                    List<Map<String, Object>> rows = data == null ? null : data.get(methodName);
+                    return rows == null ? Collections.<Map<String, Object>> emptyList().iterator() : rows.iterator();
+                }
+            }
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+                Iterator<Map<String, Object>> rows = BinaryDataFormat.streamMethod(in, methodName);
+                if (rows == null) {
+                    return Collections.<Map<String, Object>> emptyList().iterator();
+                }
+                // The stream is now closed by the iterator
+                in = null;
+                LOG.debug("Streaming the test data of {} from the cache file {}", methodName, cacheFile);
+                return rows;
+            } catch (IOException e) {
+                LOG.warn("Could not read the cache file " + cacheFile + ". Loading the data from the files.", e);
+            } finally {
+                closeQuietly(in);
+            }
+            return ((StreamingLoader) delegate).streamData(filePaths, methodName);
+        }
+    }
+
+}
@@ -0,0 +1,346 @@
+
+package org.easetech.easytest.loader;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A compact representation of a single row of test data. The values of the row are held in an array and the keys are
+ * held by a {@link RowSchema} that is shared by all the rows of a method block. Thus a row costs an array of values
+ * instead of a {@link HashMap} with an entry per value.<br>
+ * A CompactRow is a fully functional {@link Map}. Keys that are not part of its schema, for example the
+ * {@link Loader#ACTUAL_RESULT} that the framework puts into the row, are held in a small overflow map. The entries
+ * are iterated in the order of the schema, followed by the overflow entries. The String representation of a row is
+ * however the one of a {@link HashMap} holding the same entries, as the names of the tests are built from it.<br>
+ * A row can be frozen using {@link #freeze()}, for eg. when it is shared by a cache, after which any attempt to modify
+ * it fails with an {@link UnsupportedOperationException}. A modifiable copy can be obtained using {@link #copy()}.
+ *
+ */
+public class CompactRow extends AbstractMap<String, Object> {
+
+    /**
+     * Marker for the positions of the schema that do not have a value in this row
+     */
+    private static final Object ABSENT = new Object();
+
+    /**
+     * The schema shared by the rows of the method block
+     */
+    private final RowSchema schema;
+
+    /**
+     * The values of the row, by position within the schema
+     */
+    private final Object[] values;
+
+    /**
+     * The entries whose keys are not part of the schema. Created on demand.
+     */
+    private Map<String, Object> overflow;
+
+    /**
+     * Whether this row can no longer be modified
+     */
+    private boolean frozen;
+
+    /**
+     *
+     * Construct a new empty CompactRow
+     *
+     * @param schema the schema shared by the rows of the method block
+     */
+    public CompactRow(RowSchema schema) {
+        this.schema = schema;
+        this.values = new Object[schema.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ABSENT;
+        }
+    }
+
+    /**
+     * Make this row unmodifiable
+     *
+     * @return this row
+     */
+    public CompactRow freeze() {
+        if (!frozen) {
+            frozen = true;
+            if (overflow != null) {
+                overflow = Collections.unmodifiableMap(overflow);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return true if this row can no longer be modified
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Create a modifiable copy of this row, that shares the schema of this row
+     *
+     * @return a modifiable copy of this row
+     */
+    public CompactRow copy() {
+        CompactRow copy = new CompactRow(schema);
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        if (overflow != null) {
+            copy.overflow = new LinkedHashMap<String, Object>(overflow);
+        }
+        return copy;
+    }
+
+    /**
+     * @return the schema of this row
+     */
+    public RowSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int position = schema.indexOf(key);
+        if (position >= 0) {
+            return values[position] == ABSENT ? null : values[position];
+        }
+        return overflow == null ? null : overflow.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int position = schema.indexOf(key);
+        if (position >= 0) {
+            return values[position] != ABSENT;
+        }
+        return overflow != null && overflow.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        checkNotFrozen();
+        int position = schema.indexOf(key);
+        if (position >= 0) {
+            Object previous = values[position];
+            values[position] = value;
+            return previous == ABSENT ? null : previous;
+        }
+        if (overflow == null) {
+            overflow = new LinkedHashMap<String, Object>(4);
+        }
+        return overflow.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        checkNotFrozen();
+        int position = schema.indexOf(key);
+        if (position >= 0) {
+            Object previous = values[position];
+            values[position] = ABSENT;
+            return previous == ABSENT ? null : previous;
+        }
+        return overflow == null ? null : overflow.remove(key);
+    }
+
+    @Override
+    public int size() {
+        int size = overflow == null ? 0 : overflow.size();
+        for (Object value : values) {
+            if (value != ABSENT) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the String representation of a {@link HashMap} into which the entries of this row are put in order, as
+     * the rows used to be loaded into such maps. The framework names the tests after their row of test data, so the
+     * names of the tests are the same whether the rows are compact or not.
+     *
+     * @return the String representation of this row
+     */
+    @Override
+    public String toString() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        for (Map.Entry<String, Object> entry : entrySet()) {
+            map.put(entry.getKey(), entry.getValue());
+        }
+        return map.toString();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return CompactRow.this.size();
+            }
+        };
+    }
+
+    /**
+     * Fail if this row can no longer be modified
+     */
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("The row of test data is shared and can not be modified. "
+                + "Use a copy of the row instead.");
+        }
+    }
+
+    /**
+     * Iterator over the entries of the schema that have a value, followed by the overflow entries
+     */
+    private class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+        /**
+         * The position of the next entry within the schema
+         */
+        private int position = nextPosition(0);
+
+        /**
+         * The position of the last returned entry within the schema, or -1
+         */
+        private int lastPosition = -1;
+
+        /**
+         * Iterator over the overflow entries, once the schema entries are exhausted
+         */
+        private Iterator<Map.Entry<String, Object>> overflowIterator;
+
+        @Override
+        public boolean hasNext() {
+            if (position < values.length) {
+                return true;
+            }
+            return overflowIterator().hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (position < values.length) {
+                lastPosition = position;
+                position = nextPosition(position + 1);
+                return new PositionEntry(lastPosition);
+            }
+            lastPosition = -1;
+            return overflowIterator().next();
+        }
+
+        @Override
+        public void remove() {
+            checkNotFrozen();
+            if (lastPosition >= 0) {
+                values[lastPosition] = ABSENT;
+                lastPosition = -1;
+            } else if (overflowIterator != null) {
+                overflowIterator.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+
+        /**
+         * @param from the position to start searching from
+         * @return the next position that has a value or the length of the values if there is none
+         */
+        private int nextPosition(int from) {
+            int next = from;
+            while (next < values.length && values[next] == ABSENT) {
+                next++;
+            }
+            return next;
+        }
+
+        /**
+         * @return the iterator over the overflow entries
+         */
+        private Iterator<Map.Entry<String, Object>> overflowIterator() {
+            if (overflowIterator == null) {
+                overflowIterator = overflow == null ? new HashMap<String, Object>().entrySet().iterator() : overflow
+                    .entrySet().iterator();
+            }
+            return overflowIterator;
+        }
+    }
+
+    /**
+     * An entry backed by a position of the values of the row
+     */
+    private class PositionEntry implements Map.Entry<String, Object> {
+
+        /**
+         * The position of the entry
+         */
+        private final int position;
+
+        /**
+         * Construct a new PositionEntry
+         *
+         * @param position the position of the entry
+         */
+        PositionEntry(int position) {
+            this.position = position;
+        }
+
+        @Override
+        public String getKey() {
+            return schema.getKey(position);
+        }
+
+        @Override
+        public Object getValue() {
+            Object value = values[position];
+            if (value == ABSENT) {
+                throw new NoSuchElementException("The entry has been removed");
+            }
+            return value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            checkNotFrozen();
+            Object previous = getValue();
+            values[position] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object value = getValue();
+            return getKey().equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+}
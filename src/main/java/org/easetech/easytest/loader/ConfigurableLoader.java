@@ -0,0 +1,21 @@
+
+package org.easetech.easytest.loader;
+
+/**
+ * A {@link Loader} whose test data depends upon its configuration, and not only upon the files it reads. For eg. the
+ * charset of the {@link CSVDataLoader} changes the values of the rows it reads from the same file.<br>
+ * The configuration is part of the keys of the loaded data cached by the {@link CachingLoader} and the
+ * {@link DataSetCache}, so that two loaders of the same class configured differently never share their data. A custom
+ * loader that has any configuration should thus implement this interface.
+ *
+ */
+public interface ConfigurableLoader extends Loader {
+
+    /**
+     * @return a String that identifies the configuration of this loader, for eg. <B>charset=UTF-8,mapped=false</B>.
+     *         Two loaders of the same class return the same String if and only if they load the same data from the
+     *         same files.
+     */
+    String getConfiguration();
+
+}
@@ -3,6 +3,7 @@ package org.easetech.easytest.loader;
 
 import org.easetech.easytest.runner.DataDrivenTestRunner;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -39,6 +40,37 @@ public class DataConverter {
         return result;
     }
 
+    /**
+     * Converts the input test data, as loaded by any {@link Loader}, such that each row is a {@link CompactRow}. The
+     * rows of a method share a single {@link RowSchema}, created from the keys of the first row of the method. Rows
+     * that already are {@link CompactRow}s are kept as they are.
+     * 
+     * @param from the original input test data
+     * @return the input test data with compact rows
+     */
+    public static Map<String, List<Map<String, Object>>> compact(Map<String, List<Map<String, Object>>> from) {
+        Map<String, List<Map<String, Object>>> result = new HashMap<String, List<Map<String, Object>>>();
+        for (String method : from.keySet()) {
+            List<Map<String, Object>> value = from.get(method);
+            List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(value.size());
+            RowSchema schema = null;
+            for (Map<String, Object> singleTestMethod : value) {
+                if (singleTestMethod instanceof CompactRow) {
+                    rows.add(singleTestMethod);
+                    continue;
+                }
+                if (schema == null) {
+                    schema = new RowSchema(singleTestMethod.keySet());
+                }
+                CompactRow row = new CompactRow(schema);
+                row.putAll(singleTestMethod);
+                rows.add(row);
+            }
+            result.put(method, rows);
+        }
+        return result;
+    }
+
     /**
      * Returns the fully qualified name of the test method such that: <li>if the input testClass is null, return the
      * test method name, else <li>prepend the test method name with the name of the class and return.
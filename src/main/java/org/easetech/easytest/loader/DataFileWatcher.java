@@ -0,0 +1,190 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the data files using a {@link WatchService}, so that the {@link DataSetCache} can tell whether a data file
+ * changed without looking at the file. Each watched file has a generation, that is incremented every time the file is
+ * created, modified or deleted. The directories of the files are registered with the watch service as the files are
+ * first asked for, and the events are processed by a daemon thread, which also evicts the data sets of the changed
+ * files from the {@link DataSetCache}. When a directory can no longer be watched, for eg. because it was deleted or
+ * renamed, it is registered again the next time one of its files is asked for, and the generations of its files are
+ * incremented, as the files may have changed in the meantime.<br>
+ * Note that some platforms deliver the events with a delay of a few seconds.
+ *
+ */
+final class DataFileWatcher {
+
+    /**
+     * An instance of logger associated with the test framework.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(DataFileWatcher.class);
+
+    /**
+     * The watcher shared by the whole JVM, created on first use
+     */
+    private static DataFileWatcher instance;
+
+    /**
+     * The watch service of the default file system
+     */
+    private final WatchService watchService;
+
+    /**
+     * The registered directories
+     */
+    private final Map<Path, WatchKey> directories = new HashMap<Path, WatchKey>();
+
+    /**
+     * The generation of the watched files
+     */
+    private final Map<Path, Long> generations = new HashMap<Path, Long>();
+
+    /**
+     *
+     * Construct a new DataFileWatcher
+     *
+     * @param watchService the watch service of the default file system
+     */
+    private DataFileWatcher(WatchService watchService) {
+        this.watchService = watchService;
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                processEvents();
+            }
+        }, "easytest-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the watcher shared by the whole JVM, or null if the file system can not be watched
+     */
+    static synchronized DataFileWatcher getInstance() {
+        if (instance == null) {
+            try {
+                instance = new DataFileWatcher(FileSystems.getDefault().newWatchService());
+            } catch (IOException e) {
+                LOG.warn("The data files can not be watched. Their modification time is checked instead.", e);
+                return null;
+            } catch (UnsupportedOperationException e) {
+                LOG.warn("The data files can not be watched. Their modification time is checked instead.", e);
+                return null;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get the generation of the given file, starting to watch it if it is not watched yet
+     *
+     * @param file the absolute path of the file
+     * @return the generation of the file, or -1 if the file can not be watched
+     */
+    synchronized long generation(Path file) {
+        Path directory = file.getParent();
+        if (!directories.containsKey(directory)) {
+            try {
+                directories.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+                LOG.debug("Watching the data files of the directory {}", directory);
+            } catch (IOException e) {
+                LOG.debug("The directory {} can not be watched : {}", directory, e.toString());
+                return -1;
+            }
+            // The files of a directory that was watched before may have changed while it was not watched
+            for (Map.Entry<Path, Long> watched : generations.entrySet()) {
+                if (directory.equals(watched.getKey().getParent())) {
+                    watched.setValue(watched.getValue() + 1);
+                }
+            }
+        }
+        Long generation = generations.get(file);
+        if (generation == null) {
+            generation = 0L;
+            generations.put(file, generation);
+        }
+        return generation;
+    }
+
+    /**
+     * Process the events of the watch service until it is closed
+     */
+    private void processEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    changedDirectory(directory);
+                } else {
+                    changed(directory.resolve((Path) event.context()));
+                }
+            }
+            if (!key.reset()) {
+                // The directory is no longer accessible, it is registered again when one of its files is asked for
+                synchronized (this) {
+                    if (directories.get(directory) == key) {
+                        directories.remove(directory);
+                    }
+                }
+                changedDirectory(directory);
+            }
+        }
+    }
+
+    /**
+     * Increment the generation of the given file, if it is watched, and evict its data sets from the cache
+     *
+     * @param file the file that changed
+     */
+    private void changed(Path file) {
+        synchronized (this) {
+            Long generation = generations.get(file);
+            if (generation == null) {
+                return;
+            }
+            generations.put(file, generation + 1);
+        }
+        LOG.debug("The data file {} changed", file);
+        DataSetCache.evict(file);
+    }
+
+    /**
+     * Increment the generation of all the watched files of the given directory, when the events of the directory
+     * were lost
+     *
+     * @param directory the directory
+     */
+    private void changedDirectory(Path directory) {
+        Path[] files;
+        synchronized (this) {
+            files = generations.keySet().toArray(new Path[generations.size()]);
+        }
+        for (Path file : files) {
+            if (directory.equals(file.getParent())) {
+                changed(file);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,401 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.util.ResourceLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of the test data loaded within the JVM, shared by all the test classes. The same data files are often used
+ * by many test classes, or at the class level and the method level of the same test class. This cache makes sure
+ * that such files are loaded only once.<br>
+ * A data set is identified by the class of the {@link Loader} that loaded it, its configuration if it is a
+ * {@link ConfigurableLoader}, and by the path, the modification time and the length of each of its files, so a data
+ * set is loaded again as soon as any of its files changes, and loaders configured differently never share it. The cached
+ * data sets are shared and thus immutable: the maps and lists are unmodifiable and the rows are frozen
+ * {@link CompactRow}s, of which a modifiable copy can be obtained using {@link CompactRow#copy()}.<br>
+ * The cache is bounded by an estimate of the heap used by the data sets. The budget, in bytes, is specified by the
+ * system property {@value #HEAP_BUDGET_PROPERTY}, that also accepts the suffixes k, m and g, and defaults to 64m. A
+ * budget of 0 disables the cache. The least recently used data sets are evicted when the budget is exceeded, and the
+ * data sets are held through {@link SoftReference}s so that the garbage collector can reclaim them under memory
+ * pressure.<br>
+ * In a JVM that stays up between the runs of the tests, the data files can also be watched for changes using a
+ * {@link DataFileWatcher}, by setting the system property {@value #WATCH_PROPERTY} to true. A data set is then
+ * identified by the generation of its files instead of their modification time, so that the unchanged data sets are
+ * served from memory without even looking at their files, while the data sets of a file that changed are evicted as
+ * soon as the change is notified, and loaded again when next asked for.
+ *
+ */
+public final class DataSetCache {
+
+    /**
+     * The system property that specifies the heap budget of the cache
+     */
+    public static final String HEAP_BUDGET_PROPERTY = "easytest.cache.heap";
+
+    /**
+     * The system property that enables the watching of the data files
+     */
+    public static final String WATCH_PROPERTY = "easytest.watch";
+
+    /**
+     * The default heap budget of the cache
+     */
+    private static final long DEFAULT_HEAP_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * An instance of logger associated with the test framework.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(DataSetCache.class);
+
+    /**
+     * The heap budget of the cache, in bytes
+     */
+    private static long heapBudget = parseSize(System.getProperty(HEAP_BUDGET_PROPERTY));
+
+    /**
+     * The cached data sets, in the order of their last access
+     */
+    private static final LinkedHashMap<String, CachedDataSet> DATA_SETS = new LinkedHashMap<String, CachedDataSet>(16,
+        0.75f, true);
+
+    /**
+     * The estimated heap used by the cached data sets
+     */
+    private static long usedHeap;
+
+    private DataSetCache() {
+        // utility class
+    }
+
+    /**
+     * Identify the data set loaded by the given loader from the given files
+     *
+     * @param loader the loader of the data
+     * @param filePaths the list of file paths, possibly containing glob patterns
+     * @return the key of the data set or null if the data set can not be cached, for eg. if it is not loaded from
+     *         files or if the files can not be found
+     */
+    public static String keyOf(Loader loader, String[] filePaths) {
+        if (heapBudget() <= 0 || loader == null || filePaths == null || filePaths.length == 0) {
+            return null;
+        }
+        Loader actualLoader = loader instanceof CachingLoader ? ((CachingLoader) loader).getDelegate() : loader;
+        if (actualLoader instanceof JDBCDataLoader) {
+            // The files only describe the database, whose content can change at any time
+            return null;
+        }
+        StringBuilder key = new StringBuilder(actualLoader.getClass().getName());
+        String configuration = CachingLoader.configurationOf(actualLoader);
+        if (configuration.length() > 0) {
+            key.append('(').append(configuration).append(')');
+        }
+        DataFileWatcher watcher = Boolean.getBoolean(WATCH_PROPERTY) ? DataFileWatcher.getInstance() : null;
+        try {
+            for (String filePath : ResourceLoader.resolvePaths(filePaths)) {
+                ResourceLoader resource = new ResourceLoader(filePath);
+                if (watcher != null && appendGeneration(key, watcher, resource)) {
+                    continue;
+                }
+                long lastModified = resource.lastModified();
+                if (lastModified == 0) {
+                    return null;
+                }
+                key.append('|').append(filePath).append('@').append(lastModified).append(':')
+                    .append(resource.length());
+            }
+        } catch (IOException e) {
+            // Let the loader report the missing file
+            return null;
+        }
+        return key.toString();
+    }
+
+    /**
+     * Identify a file by its absolute path and its generation, if the file can be watched
+     *
+     * @param key the key of the data set
+     * @param watcher the watcher of the data files
+     * @param resource the file
+     * @return true if the file was identified, false if it can not be watched
+     */
+    private static boolean appendGeneration(StringBuilder key, DataFileWatcher watcher, ResourceLoader resource) {
+        Path file;
+        try {
+            file = resource.getFile().toPath().toAbsolutePath();
+        } catch (IOException e) {
+            // For eg. a file within a jar
+            return false;
+        }
+        long generation = watcher.generation(file);
+        if (generation < 0) {
+            return false;
+        }
+        key.append('|').append(file).append('#').append(generation);
+        return true;
+    }
+
+    /**
+     * Get the cached data set
+     *
+     * @param key the key of the data set as returned by {@link #keyOf(Loader, String[])}, may be null
+     * @return the unmodifiable data set or null if it is not cached
+     */
+    public static synchronized Map<String, List<Map<String, Object>>> get(String key) {
+        if (key == null) {
+            return null;
+        }
+        CachedDataSet cached = DATA_SETS.get(key);
+        if (cached == null) {
+            return null;
+        }
+        Map<String, List<Map<String, Object>>> data = cached.data.get();
+        if (data == null) {
+            LOG.debug("The data set {} was reclaimed by the garbage collector", key);
+            DATA_SETS.remove(key);
+            usedHeap -= cached.size;
+        }
+        return data;
+    }
+
+    /**
+     * Cache the given data set, unless it alone exceeds the heap budget
+     *
+     * @param key the key of the data set as returned by {@link #keyOf(Loader, String[])}, may be null in which case
+     *            the data set is not cached
+     * @param data the data set
+     * @return the unmodifiable data set, to be used instead of the given data set, or the given data set if the key is
+     *         null
+     */
+    public static Map<String, List<Map<String, Object>>> put(String key, Map<String, List<Map<String, Object>>> data) {
+        if (key == null || data == null) {
+            return data;
+        }
+        Map<String, List<Map<String, Object>>> immutableData = freeze(data);
+        long size = estimateSize(immutableData);
+        synchronized (DataSetCache.class) {
+            if (size > heapBudget) {
+                LOG.debug("The data set {} exceeds the heap budget of the cache", key);
+                return immutableData;
+            }
+            CachedDataSet previous = DATA_SETS.put(key, new CachedDataSet(immutableData, size));
+            if (previous != null) {
+                usedHeap -= previous.size;
+            }
+            usedHeap += size;
+            evictToBudget();
+        }
+        return immutableData;
+    }
+
+    /**
+     * Evict the least recently used data sets until the cache fits in its heap budget
+     */
+    private static void evictToBudget() {
+        Iterator<CachedDataSet> eldest = DATA_SETS.values().iterator();
+        while (usedHeap > heapBudget && eldest.hasNext()) {
+            CachedDataSet evicted = eldest.next();
+            eldest.remove();
+            usedHeap -= evicted.size;
+        }
+    }
+
+    /**
+     * @return the heap budget of the cache, in bytes
+     */
+    static synchronized long heapBudget() {
+        return heapBudget;
+    }
+
+    /**
+     * Change the heap budget of the cache, evicting the data sets that no longer fit in it. Used by the tests, the
+     * budget being otherwise specified by the system property {@value #HEAP_BUDGET_PROPERTY}.
+     *
+     * @param budget the heap budget of the cache, in bytes
+     * @return the previous heap budget
+     */
+    static synchronized long setHeapBudget(long budget) {
+        long previous = heapBudget;
+        heapBudget = budget;
+        evictToBudget();
+        return previous;
+    }
+
+    /**
+     * @return the estimated heap used by the cached data sets, in bytes
+     */
+    static synchronized long usedHeap() {
+        return usedHeap;
+    }
+
+    /**
+     * Clear the soft reference to the given data set, the way the garbage collector does under memory pressure. Used
+     * by the tests.
+     *
+     * @param key the key of the data set
+     */
+    static synchronized void reclaim(String key) {
+        CachedDataSet cached = DATA_SETS.get(key);
+        if (cached != null) {
+            cached.data.clear();
+        }
+    }
+
+    /**
+     * Remove the cached data sets that were loaded from the given watched file
+     *
+     * @param file the absolute path of the file that changed
+     */
+    static synchronized void evict(Path file) {
+        String part = "|" + file + "#";
+        Iterator<Map.Entry<String, CachedDataSet>> dataSets = DATA_SETS.entrySet().iterator();
+        while (dataSets.hasNext()) {
+            Map.Entry<String, CachedDataSet> dataSet = dataSets.next();
+            if (dataSet.getKey().contains(part)) {
+                dataSets.remove();
+                usedHeap -= dataSet.getValue().size;
+                LOG.debug("Evicted the data set {}", dataSet.getKey());
+            }
+        }
+    }
+
+    /**
+     * Remove all the cached data sets
+     */
+    public static synchronized void clear() {
+        DATA_SETS.clear();
+        usedHeap = 0;
+    }
+
+    /**
+     * Make the given data set immutable
+     *
+     * @param data the data set
+     * @return an unmodifiable data set, of which the rows are frozen {@link CompactRow}s
+     */
+    private static Map<String, List<Map<String, Object>>> freeze(Map<String, List<Map<String, Object>>> data) {
+        Map<String, List<Map<String, Object>>> compactData = DataConverter.compact(data);
+        Map<String, List<Map<String, Object>>> result = new HashMap<String, List<Map<String, Object>>>(
+            compactData.size() * 2);
+        for (Map.Entry<String, List<Map<String, Object>>> method : compactData.entrySet()) {
+            List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(method.getValue().size());
+            for (Map<String, Object> row : method.getValue()) {
+                rows.add(((CompactRow) row).freeze());
+            }
+            result.put(method.getKey(), Collections.unmodifiableList(rows));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Roughly estimate the heap used by the given data set
+     *
+     * @param data the data set
+     * @return the estimated size in bytes
+     */
+    static long estimateSize(Map<String, List<Map<String, Object>>> data) {
+        long size = 64;
+        for (Map.Entry<String, List<Map<String, Object>>> method : data.entrySet()) {
+            size += 96 + sizeOf(method.getKey());
+            RowSchema schema = null;
+            for (Map<String, Object> row : method.getValue()) {
+                CompactRow compactRow = (CompactRow) row;
+                if (compactRow.getSchema() != schema) {
+                    schema = compactRow.getSchema();
+                    size += 64;
+                    for (int i = 0; i < schema.size(); i++) {
+                        size += 48 + sizeOf(schema.getKey(i));
+                    }
+                }
+                size += 48 + 8L * schema.size();
+                for (Object value : row.values()) {
+                    size += sizeOf(value);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @param value the value
+     * @return the estimated size in bytes of the value
+     */
+    private static long sizeOf(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        return 24;
+    }
+
+    /**
+     * Parse a size such as 512k, 64m or 1g
+     *
+     * @param size the size to parse, may be null
+     * @return the size in bytes
+     */
+    private static long parseSize(String size) {
+        if (size == null || size.trim().length() == 0) {
+            return DEFAULT_HEAP_BUDGET;
+        }
+        String value = size.trim().toLowerCase();
+        long multiplier = 1;
+        char unit = value.charAt(value.length() - 1);
+        if (unit == 'k') {
+            multiplier = 1024;
+        } else if (unit == 'm') {
+            multiplier = 1024 * 1024;
+        } else if (unit == 'g') {
+            multiplier = 1024 * 1024 * 1024;
+        }
+        if (multiplier > 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+        try {
+            return Long.parseLong(value.trim()) * multiplier;
+        } catch (NumberFormatException e) {
+            LOG.error("Invalid value {} of the property " + HEAP_BUDGET_PROPERTY + ". Using the default budget.", size);
+            return DEFAULT_HEAP_BUDGET;
+        }
+    }
+
+    /**
+     * A cached data set and its estimated size
+     */
+    private static class CachedDataSet {
+
+        /**
+         * The data set, that the garbage collector can reclaim
+         */
+        final SoftReference<Map<String, List<Map<String, Object>>>> data;
+
+        /**
+         * The estimated size of the data set
+         */
+        final long size;
+
+        /**
+         * Construct a new CachedDataSet
+         *
+         * @param data the data set
+         * @param size the estimated size of the data set
+         */
+        CachedDataSet(Map<String, List<Map<String, Object>>> data, long size) {
+            this.data = new SoftReference<Map<String, List<Map<String, Object>>>>(data);
+            this.size = size;
+        }
+    }
+
+}
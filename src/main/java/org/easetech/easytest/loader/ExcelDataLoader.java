@@ -1,25 +1,37 @@
 
 package org.easetech.easytest.loader;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellValue;
 import org.apache.poi.ss.usermodel.DateUtil;
-import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellReference;
 import org.easetech.easytest.util.ResourceLoader;
 import org.junit.Assert;
 import org.slf4j.Logger;
@@ -45,29 +57,111 @@ import org.slf4j.LoggerFactory;
  * 
  * An Excel cannot have a blank line in between test data whether it is for a single test or for multiple tests.
  * The framework is capable of handling multiple test data for multiple test methods in a single Excel file. 
- * Although a user can choose to define the test data in multiple files as well.
+ * Although a user can choose to define the test data in multiple files as well.<br>
+ * 
+ * By default only the first sheet of the workbook is read, so that the other sheets can hold lookup tables or notes.
+ * When the system property {@value #ALL_SHEETS_PROPERTY} is set to true, the test data can also be split across the
+ * sheets of the workbook, for eg. one method block per sheet. Every sheet is then read the same way, the number of
+ * columns of a sheet being given by its first row. When the same method is defined in more than one sheet, the data of
+ * the last sheet is used. The sheets of an .xlsx workbook are parsed concurrently, each by its own parser, on the pool
+ * used to load the files in parallel. The sheets of a legacy .xls workbook are read one after the other, as they are
+ * stored in a single stream of records.
  * 
  * @author Anuj Kumar
  * 
  */
-public class ExcelDataLoader implements Loader {
+public class ExcelDataLoader implements StreamingLoader, ConfigurableLoader {
 
     /**
      * An instance of logger associated with the test framework.
      */
     protected static final Logger LOG = LoggerFactory.getLogger(ExcelDataLoader.class);
 
+    /**
+     * The system property that selects the streaming mode of reading the legacy .xls files.
+     */
+    public static final String STREAMING_PROPERTY = "easytest.excel.streaming";
+
+    /**
+     * The system property that selects whether the results of the formulas, as cached in the Excel files, are used
+     * instead of evaluating the formulas.
+     */
+    public static final String CACHED_FORMULA_RESULTS_PROPERTY = "easytest.excel.cachedFormulaResults";
+
+    /**
+     * The system property that selects whether the test data is read from all the sheets of the workbooks instead of
+     * the first one only.
+     */
+    public static final String ALL_SHEETS_PROPERTY = "easytest.excel.allSheets";
+
     /**
      * The data structure that will ultimately contain the data provided by the Excel sheet.
      */
     private transient Map<String, List<Map<String, Object>>> data = null;
 
     /**
-     * Default no arg constructor
+     * Whether the legacy .xls files are read using the event API of POI instead of building the workbook in memory
+     */
+    private final boolean streaming;
+
+    /**
+     * Whether the results of the formulas cached in the files are used instead of evaluating the formulas
+     */
+    private final boolean useCachedFormulaResults;
+
+    /**
+     * Whether the test data is read from all the sheets of the workbooks instead of the first one only
+     */
+    private final boolean allSheets;
+
+    /**
+     * Default no arg constructor. The streaming mode is specified by the system property {@value #STREAMING_PROPERTY},
+     * the use of the cached formula results by the system property {@value #CACHED_FORMULA_RESULTS_PROPERTY} and the
+     * reading of all the sheets by the system property {@value #ALL_SHEETS_PROPERTY}
      */
     public ExcelDataLoader() {
-        super();
+        this(Boolean.getBoolean(STREAMING_PROPERTY));
+
+    }
 
+    /**
+     * 
+     * Construct a new ExcelDataLoader
+     * 
+     * @param streaming whether the legacy .xls files are read in the streaming mode
+     */
+    public ExcelDataLoader(boolean streaming) {
+        this(streaming, Boolean.getBoolean(CACHED_FORMULA_RESULTS_PROPERTY));
+    }
+
+    /**
+     * 
+     * Construct a new ExcelDataLoader
+     * 
+     * @param streaming whether the legacy .xls files are read in the streaming mode
+     * @param useCachedFormulaResults whether the results of the formulas, as cached in the files by the application
+     *            that last saved them, are used instead of evaluating the formulas. The formulas are never evaluated
+     *            when the files are read using the event API of POI.
+     */
+    public ExcelDataLoader(boolean streaming, boolean useCachedFormulaResults) {
+        this(streaming, useCachedFormulaResults, Boolean.getBoolean(ALL_SHEETS_PROPERTY));
+    }
+
+    /**
+     * 
+     * Construct a new ExcelDataLoader
+     * 
+     * @param streaming whether the legacy .xls files are read in the streaming mode
+     * @param useCachedFormulaResults whether the results of the formulas cached in the files are used instead of
+     *            evaluating the formulas
+     * @param allSheets whether the test data is read from all the sheets of the workbooks instead of the first one
+     *            only
+     */
+    public ExcelDataLoader(boolean streaming, boolean useCachedFormulaResults, boolean allSheets) {
+        super();
+        this.streaming = streaming;
+        this.useCachedFormulaResults = useCachedFormulaResults;
+        this.allSheets = allSheets;
     }
 
     /**
@@ -77,6 +171,7 @@ public class ExcelDataLoader implements Loader {
      * @throws IOException if an IO Exception occurs
      */
     public ExcelDataLoader(final InputStream excelInputStream) throws IOException {
+        this();
         this.data = loadFromSpreadsheet(excelInputStream);
 
     }
@@ -91,56 +186,124 @@ public class ExcelDataLoader implements Loader {
     }
 
     /**
-     * Load the Data from Excel spreadsheet.It uses Apache POI classes to load the data.
+     * Load the Data from Excel spreadsheet.It uses Apache POI classes to load the data. The .xlsx files, as well as
+     * the .xls files in the streaming mode, are read using the event API of POI through an {@link ExcelEventReader}.
      * 
      * @param excelFile the excel file input stream to load the data from
      * @return the loaded data.
      * @throws IOException if an exception occurs while loading the data
      */
     private Map<String, List<Map<String, Object>>> loadFromSpreadsheet(final InputStream excelFile) throws IOException {
-        HSSFWorkbook workbook = new HSSFWorkbook(excelFile);
+        return loadFromSpreadsheet(excelFile, null, null);
+    }
 
-        data = new HashMap<String, List<Map<String, Object>>>();
-        Sheet sheet = workbook.getSheetAt(0);
-        int numberOfColumns = countNonEmptyColumns(sheet);
+    /**
+     * Get the file of the given workbook, from which an .xlsx workbook can be read without being unpacked in memory
+     * 
+     * @param resource the workbook
+     * @return the file of the workbook, or null if the workbook is in a jar or compressed and can only be streamed
+     * @throws IOException if the workbook can not be located
+     */
+    private static File workbookFile(ResourceLoader resource) throws IOException {
+        return resource.isFile() ? resource.getFile() : null;
+    }
 
+    /**
+     * Load the Data of the given method, or of all the methods, from Excel spreadsheet.
+     * 
+     * @param excelFile the excel file input stream to load the data from
+     * @param workbookFile the excel file itself, or null if it is not a plain file. An .xlsx file is then read from
+     *            its path rather than unpacked in memory from the stream.
+     * @param methodName the name of the method whose data is loaded, or null to load the data of all the methods
+     * @return the loaded data.
+     * @throws IOException if an exception occurs while loading the data
+     */
+    private Map<String, List<Map<String, Object>>> loadFromSpreadsheet(final InputStream excelFile,
+        final File workbookFile, final String methodName) throws IOException {
+        InputStream workbookStream = ExcelEventReader.markable(excelFile);
         Map<String, List<Map<String, Object>>> finalData = new HashMap<String, List<Map<String, Object>>>();
-
-        Map<Integer, Object> tempData = new HashMap<Integer, Object>();
-        List<Map<String, Object>> dataValues = null;
-        for (Row row : sheet) {
-            boolean isFirstColumn = true;
-            boolean keyRow = false;
-
-            Map<String, Object> actualData = new HashMap<String, Object>();
-            for (int column = 0; column < numberOfColumns; column++) {
-
-                Cell cell = row.getCell(column);
-                Object cellData = objectFrom(workbook, cell);
-                if (isFirstColumn && cellData != null) {
-                    // Indicates that this is a new set of test data.
-                    dataValues = new ArrayList<Map<String, Object>>();
-                    // Indicates that this row consists of Keys
-                    keyRow = true;
-                    finalData.put(cellData.toString().trim(), dataValues);
-                } else if (cellData == null) {
-                    // dont do anything. May be can be used in future.
-                } else {
-                    if (keyRow) {
-                        tempData.put(column, objectFrom(workbook, cell));
-                    } else {
-                        actualData.put(tempData.get(column).toString(), objectFrom(workbook, cell));
+        if (streaming || ExcelEventReader.isOOXML(workbookStream)) {
+            // Each sheet has its own builder, as the sheets of an .xlsx workbook are read concurrently
+            List<MethodBlockBuilder> sheets = ExcelEventReader.readSheets(workbookStream, workbookFile,
+                new ExcelEventReader.SheetHandlerFactory<MethodBlockBuilder>() {
+                    @Override
+                    public MethodBlockBuilder newHandler(int sheetIndex, String sheetName) {
+                        return allSheets || sheetIndex == 0 ? new MethodBlockBuilder(methodName) : null;
                     }
+                });
+            for (MethodBlockBuilder sheet : sheets) {
+                finalData.putAll(sheet.getData());
+            }
+            return finalData;
+        }
+        // The workbook is not thread safe, so its sheets are read one after the other
+        FormulaEngine engine = new FormulaEngine(new HSSFWorkbook(workbookStream), useCachedFormulaResults);
+        for (int sheetIndex = 0; sheetIndex < numberOfSheetsToRead(engine.getWorkbook()); sheetIndex++) {
+            finalData.putAll(loadFromSheet(engine, sheetIndex, methodName));
+        }
+        return finalData;
+    }
 
-                }
-                isFirstColumn = false;
+    /**
+     * @param workbook the workbook
+     * @return the number of sheets of the workbook the test data is read from
+     */
+    private int numberOfSheetsToRead(Workbook workbook) {
+        return allSheets ? workbook.getNumberOfSheets() : Math.min(1, workbook.getNumberOfSheets());
+    }
 
+    /**
+     * Load the Data of the given method, or of all the methods, from a single sheet of a workbook.
+     * 
+     * @param engine the formula engine of the workbook
+     * @param sheetIndex the index of the sheet within the workbook
+     * @param methodName the name of the method whose data is loaded, or null to load the data of all the methods
+     * @return the data loaded from the sheet.
+     */
+    private Map<String, List<Map<String, Object>>> loadFromSheet(final FormulaEngine engine, final int sheetIndex,
+        final String methodName) {
+        MethodBlockBuilder builder = new MethodBlockBuilder(methodName);
+        Sheet sheet = engine.getWorkbook().getSheetAt(sheetIndex);
+        if (sheet.getRow(0) == null) {
+            return builder.getData();
+        }
+        int numberOfColumns = countNonEmptyColumns(sheet);
+        builder.startSheet(sheetIndex, sheet.getSheetName());
+        builder.setNumberOfColumns(numberOfColumns);
+        for (Row row : sheet) {
+            List<Object> cells = new ArrayList<Object>(numberOfColumns);
+            for (int column = 0; column < numberOfColumns; column++) {
+                cells.add(objectFrom(engine, row.getCell(column)));
             }
-            if (!keyRow) {
-                dataValues.add(actualData);
-            }
+            builder.row(row.getRowNum(), cells);
         }
-        return finalData;
+        builder.endSheet();
+        return builder.getData();
+    }
+
+    /**
+     * Create the schema of the rows of a method block
+     * 
+     * @param keys the keys of the method block identified by their column
+     * @param numberOfColumns the number of columns in the sheet
+     * @return the schema of the rows of the method block
+     */
+    private static RowSchema schemaOf(Map<Integer, Object> keys, int numberOfColumns) {
+        List<Object> orderedKeys = new ArrayList<Object>(numberOfColumns);
+        for (int column = 1; column < numberOfColumns; column++) {
+            orderedKeys.add(keys.get(column));
+        }
+        return new RowSchema(orderedKeys);
+    }
+
+    /**
+     * Create a new empty row of test data
+     * 
+     * @param schema the schema of the rows of the method block
+     * @return an empty row
+     */
+    private static Map<String, Object> newRow(RowSchema schema) {
+        return new CompactRow(schema);
     }
 
     /**
@@ -174,11 +337,11 @@ public class ExcelDataLoader implements Loader {
     /**
      * Get the cell value from the workbook and the specified cell within the workbook.
      * 
-     * @param workbook the workbook containing the cells
+     * @param engine the formula engine of the workbook containing the cells
      * @param cell the cell containing the data
      * @return the object representation of the data
      */
-    private Object objectFrom(final HSSFWorkbook workbook, final Cell cell) {
+    private Object objectFrom(final FormulaEngine engine, final Cell cell) {
         Object cellValue = null;
 
         if (cell == null || cell.getCellType() == Cell.CELL_TYPE_BLANK) {
@@ -190,7 +353,7 @@ public class ExcelDataLoader implements Loader {
         } else if (cell.getCellType() == Cell.CELL_TYPE_BOOLEAN) {
             cellValue = cell.getBooleanCellValue();
         } else if (cell.getCellType() == Cell.CELL_TYPE_FORMULA) {
-            cellValue = evaluateCellFormula(workbook, cell);
+            cellValue = engine.evaluate(cell);
         }
 
         return cellValue;
@@ -208,36 +371,24 @@ public class ExcelDataLoader implements Loader {
         if (DateUtil.isCellDateFormatted(cell)) {
             cellValue = new Date(cell.getDateCellValue().getTime());
         } else {
-            cellValue = cell.getNumericCellValue();
-            // below is the work around to remove suffix .0 from numeric fields
-            if (cellValue != null && cellValue.toString().endsWith(".0")) {
-                cellValue = cellValue.toString().replace(".0", "");
-            }
+            cellValue = numericValue(cell.getNumericCellValue());
         }
         return cellValue;
     }
 
     /**
-     * Evaluate if the cell contains the formula
+     * Get the object representation of a numeric cell value that is not a date
      * 
-     * @param workbook the workbook that contains the cell
-     * @param cell the cell that contains the formula
-     * @return the object representation of formula cell value.
+     * @param value the numeric value of the cell
+     * @return the value, or its String representation without the suffix .0 for the whole numbers
      */
-    private Object evaluateCellFormula(final HSSFWorkbook workbook, final Cell cell) {
-        FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
-        CellValue cellValue = evaluator.evaluate(cell);
-        Object result = null;
-
-        if (cellValue.getCellType() == Cell.CELL_TYPE_BOOLEAN) {
-            result = cellValue.getBooleanValue();
-        } else if (cellValue.getCellType() == Cell.CELL_TYPE_NUMERIC) {
-            result = cellValue.getNumberValue();
-        } else if (cellValue.getCellType() == Cell.CELL_TYPE_STRING) {
-            result = cellValue.getStringValue();
+    static Object numericValue(double value) {
+        Object cellValue = value;
+        // below is the work around to remove suffix .0 from numeric fields
+        if (cellValue.toString().endsWith(".0")) {
+            cellValue = cellValue.toString().replace(".0", "");
         }
-
-        return result;
+        return cellValue;
     }
 
     /**
@@ -249,37 +400,34 @@ public class ExcelDataLoader implements Loader {
      */
     private Map<String, List<Map<String, Object>>> loadExcelData(final List<String> dataFiles) throws IOException {
         LOG.debug("loadExcelData started", dataFiles);
-        Map<String, List<Map<String, Object>>> data = null;
-        Map<String, List<Map<String, Object>>> finalData = new HashMap<String, List<Map<String, Object>>>();
-        for (String filePath : dataFiles) {
-            try {
-                ResourceLoader resource = new ResourceLoader(filePath);
-                data = loadFromSpreadsheet(resource.getInputStream());
-            } catch (FileNotFoundException e) {
-                LOG.error("The specified file was not found. The path is : {}", filePath);
-                LOG.error("Continuing with the loading of next file.");
-                continue;
-            } catch (IOException e) {
-                LOG.error("IO Exception occured while trying to read the data from the file : {}", filePath);
-                LOG.error("Continuing with the loading of next file.");
-                continue;
-            }
-            finalData.putAll(data);
-        }
+        Map<String, List<Map<String, Object>>> finalData = MultiFileLoader.loadAll(dataFiles,
+            new MultiFileLoader.FileLoader() {
+                @Override
+                public Map<String, List<Map<String, Object>>> load(String filePath) throws IOException {
+                    ResourceLoader resource = new ResourceLoader(filePath);
+                    InputStream excelFile = resource.getInputStream();
+                    try {
+                        return loadFromSpreadsheet(excelFile, workbookFile(resource), null);
+                    } finally {
+                        excelFile.close();
+                    }
+                }
+            });
         LOG.debug("loadExcelData finisihed", finalData);
         return finalData;
 
     }
 
     /**
-     * Main entry point for the Loader
+     * Main entry point for the Loader. The files are loaded in parallel and a file path can be a glob pattern, as
+     * explained in {@link ResourceLoader#resolvePaths(String...)}.
      */
     @Override
     public Map<String, List<Map<String, Object>>> loadData(String[] filePaths) {
         LOG.info("loadData started" + filePaths);
         Map<String, List<Map<String, Object>>> result = new HashMap<String, List<Map<String, Object>>>();
         try {
-            result = loadExcelData(Arrays.asList(filePaths));
+            result = loadExcelData(ResourceLoader.resolvePaths(filePaths));
         } catch (IOException e) {
             Assert.fail("An I/O exception occured while reading the files from the path :" + filePaths.toString());
         }
@@ -288,6 +436,31 @@ public class ExcelDataLoader implements Loader {
         return result;
     }
 
+    /**
+     * The modes of this loader. The streaming mode can change the type of the values read from the cells, the
+     * cached formula results differ from the evaluated ones when the workbook was not recalculated, and the sheets
+     * read decide which method blocks are found.
+     * 
+     * @return the configuration of this loader
+     */
+    @Override
+    public String getConfiguration() {
+        return "streaming=" + streaming + ",cachedFormulaResults=" + useCachedFormulaResults + ",allSheets="
+            + allSheets;
+    }
+
+    /**
+     * Stream the data of the given method from the specified list of filePaths
+     * 
+     * @param filePaths the list of File paths
+     * @param methodName the name of the method whose data needs to be streamed
+     * @return an iterator over the data of the given method
+     */
+    @Override
+    public Iterator<Map<String, Object>> streamData(String[] filePaths, String methodName) {
+        return new ExcelRowIterator(ResourceLoader.resolvePaths(filePaths), methodName);
+    }
+
     /**
      * Write the data back to the Excel file. The data is written to the same Excel File as it was read from.
      * 
@@ -329,90 +502,771 @@ public class ExcelDataLoader implements Loader {
         LOG.debug("writeExcelData finished" + filePath + data.size());
     }
 
+    /**
+     * Write the actual results and the test status of the methods to the workbook. The method blocks are first indexed
+     * in a single pass over the workbook, then only the result cells are written. The workbook is written to a
+     * temporary file, which then replaces the file.<br>
+     * An .xlsx workbook is written by streaming its content: the XML of the sheets that contain result cells is
+     * rewritten row by row and the other entries are copied as they are, so the memory used does not depend on the
+     * size of the workbook. A legacy .xls workbook is updated in memory.
+     * 
+     * @param resource the file to write the data to
+     * @param data a Map of method name and the list of associated test input and output data with that method name
+     * @throws IOException if an IO Exception occurs
+     */
     private void writeDataToSpreadsheet(ResourceLoader resource, Map<String, List<Map<String, Object>>> data)
         throws IOException {
         LOG.debug("writeDataToSpreadsheet started" + resource.toString() + data);
-        Workbook workbook;
+        ResultIndex index = new ResultIndex(data, allSheets);
+        HSSFWorkbook workbook = null;
+        InputStream workbookStream = ExcelEventReader.markable(resource.getInputStream());
+        try {
+            if (ExcelEventReader.isOOXML(workbookStream)) {
+                ExcelEventReader.read(workbookStream, workbookFile(resource), index);
+            } else {
+                workbook = new HSSFWorkbook(workbookStream);
+                indexWorkbook(workbook, index);
+            }
+        } finally {
+            workbookStream.close();
+        }
+        Map<Integer, Map<Integer, Map<Integer, String>>> resultCells = index.getResultCells();
+        if (resultCells.isEmpty()) {
+            LOG.debug("writeDataToSpreadsheet finished, no result to write");
+            return;
+        }
+        File file = resource.getFile();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
         try {
+            if (workbook == null) {
+                writeResultCells(file, resultCells, tempFile);
+            } else {
+                writeResultCells(workbook, resultCells, tempFile);
+            }
+            resource.replaceWith(tempFile);
+        } finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+        LOG.debug("writeDataToSpreadsheet finished");
 
-            workbook = WorkbookFactory.create(new POIFSFileSystem(resource.getInputStream()));
+    }
+
+    /**
+     * Index the method blocks of a workbook read in memory, the same way as they are read by
+     * {@link #loadFromSheet(FormulaEngine, int, String)}
+     * 
+     * @param workbook the workbook
+     * @param index the index of the method blocks
+     */
+    private void indexWorkbook(Workbook workbook, ResultIndex index) {
+        // Only the first cell of the rows is read, that never is a formula
+        FormulaEngine engine = new FormulaEngine(workbook, true);
+        for (int sheetIndex = 0; sheetIndex < numberOfSheetsToRead(workbook); sheetIndex++) {
+            Sheet sheet = workbook.getSheetAt(sheetIndex);
+            if (sheet.getRow(0) == null) {
+                continue;
+            }
+            index.startSheet(sheetIndex, sheet.getSheetName());
+            for (Row row : sheet) {
+                index.row(row.getRowNum(), Collections.singletonList(objectFrom(engine, row.getCell(0))));
+            }
+            index.endSheet();
+        }
+    }
+
+    /**
+     * Write the result cells to a workbook read in memory
+     * 
+     * @param workbook the workbook
+     * @param resultCells the values of the result cells by sheet, row and column
+     * @param outputFile the file to write the workbook to
+     * @throws IOException if an IO Exception occurs
+     */
+    private void writeResultCells(Workbook workbook, Map<Integer, Map<Integer, Map<Integer, String>>> resultCells,
+        File outputFile) throws IOException {
+        for (Map.Entry<Integer, Map<Integer, Map<Integer, String>>> sheetCells : resultCells.entrySet()) {
+            Sheet sheet = workbook.getSheetAt(sheetCells.getKey());
+            for (Map.Entry<Integer, Map<Integer, String>> rowCells : sheetCells.getValue().entrySet()) {
+                for (Map.Entry<Integer, String> cell : rowCells.getValue().entrySet()) {
+                    writeDataToCell(sheet, rowCells.getKey(), cell.getKey(), cell.getValue());
+                }
+            }
+        }
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile));
+        try {
+            workbook.write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write the result cells to an .xlsx workbook, by copying the entries of the file to the output file. The entries
+     * of the sheets that contain result cells are rewritten using a {@link SheetResultWriter}.
+     * 
+     * @param file the .xlsx file
+     * @param resultCells the values of the result cells by sheet, row and column
+     * @param outputFile the file to write the workbook to
+     * @throws IOException if an IO Exception occurs
+     */
+    private void writeResultCells(File file, Map<Integer, Map<Integer, Map<Integer, String>>> resultCells,
+        File outputFile) throws IOException {
+        List<String> sheetEntries = ExcelEventReader.sheetEntryNames(file);
+        Map<String, Map<Integer, Map<Integer, String>>> cellsByEntry = new HashMap<String, Map<Integer, Map<Integer, String>>>();
+        for (Map.Entry<Integer, Map<Integer, Map<Integer, String>>> sheetCells : resultCells.entrySet()) {
+            cellsByEntry.put(sheetEntries.get(sheetCells.getKey()), sheetCells.getValue());
+        }
+        ZipFile zipFile = new ZipFile(file);
+        ZipOutputStream out = null;
+        try {
+            out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)));
+            byte[] buffer = new byte[8192];
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                InputStream in = zipFile.getInputStream(entry);
+                try {
+                    Map<Integer, Map<Integer, String>> sheetCells = cellsByEntry.get(entry.getName());
+                    if (sheetCells != null) {
+                        new SheetResultWriter(sheetCells).write(in, out);
+                    } else {
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+                out.closeEntry();
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+            zipFile.close();
+        }
+    }
 
-        } catch (Exception e) {
-            throw new IOException(e.getMessage());
+    private void writeDataToCell(Sheet sheet, int rowNum, int columnNum, String value) {
+        Row row = sheet.getRow(rowNum);
+        Cell cell = row.getCell(columnNum);
+        if (cell == null) {
+            cell = row.createCell(columnNum);
         }
+        cell.setCellType(Cell.CELL_TYPE_STRING);
+        cell.setCellValue(value);
+    }
 
-        Sheet sheet = workbook.getSheetAt(0);
-        // Sheet sheet = workbook.createSheet();
+    /**
+     * A {@link RowIterator} that reads the data rows of a single method block from the Excel files. The files, and the
+     * sheets of each file that are read, are searched from the last to the first one and the block of the first sheet
+     * that contains the method is read. When the sheet has more than one block for the method, its last block is read,
+     * as {@link ExcelDataLoader#loadData(String[])} does. The cells of a row are only converted when the row is
+     * requested.
+     */
+    private class ExcelRowIterator extends RowIterator {
 
-        for (String methodName : data.keySet()) {
-            int rowNum = 0;
+        /**
+         * The files that are yet to be searched for the method block
+         */
+        private final List<String> dataFiles;
 
-            boolean isActualResultHeaderWritten = false;
-            for (Map<String, Object> methodData : data.get(methodName)) {
-                // rowNum increment by one to proceed with next record of the method.
-                rowNum++;
+        /**
+         * The name of the method whose data is being read
+         */
+        private final String methodName;
 
-                Object actualResult = methodData.get(ACTUAL_RESULT);
-                if (actualResult != null) {
-                    // getting no.of columns in the record
-                    int columnNum = methodData.size();
-                    if (!isActualResultHeaderWritten) {
-                        Integer recordNum = getMethodRowNumFromExcel(sheet, methodName);
-                        if (recordNum != null) {
-                            // Write the actual result and test status headers.
-                            writeDataToCell(sheet, recordNum, columnNum, ACTUAL_RESULT);
-                            //writeDataToCell(sheet, recordNum, columnNum + 1, TEST_STATUS);
-                            rowNum = rowNum + recordNum;
-                            isActualResultHeaderWritten = true;
+        /**
+         * Index of the next file to search for the method block
+         */
+        private int fileIndex;
+
+        /**
+         * The formula engine of the workbook being searched for the method block
+         */
+        private FormulaEngine engine;
+
+        /**
+         * Index of the next sheet of the workbook to search for the method block
+         */
+        private int sheetIndex;
+
+        /**
+         * The rows of the sheet, positioned within the method block
+         */
+        private Iterator<Row> rows;
+
+        /**
+         * The rows of the method block, when it was read using the {@link ExcelEventReader}
+         */
+        private Iterator<Map<String, Object>> loadedRows;
+
+        /**
+         * The number of columns in the sheet
+         */
+        private int numberOfColumns;
+
+        /**
+         * The keys of the method block identified by their column
+         */
+        private Map<Integer, Object> keys;
+
+        /**
+         * The schema shared by the rows of the method block
+         */
+        private RowSchema schema;
+
+        /**
+         * 
+         * Construct a new ExcelRowIterator
+         * 
+         * @param dataFiles the files to read the data from
+         * @param methodName the name of the method whose data is read
+         */
+        ExcelRowIterator(List<String> dataFiles, String methodName) {
+            this.dataFiles = dataFiles;
+            this.methodName = methodName;
+            this.fileIndex = dataFiles.size() - 1;
+        }
+
+        @Override
+        protected Map<String, Object> computeNext() throws IOException {
+            if (rows == null && loadedRows == null && !findMethodBlock()) {
+                return null;
+            }
+            if (loadedRows != null) {
+                return loadedRows.hasNext() ? loadedRows.next() : null;
+            }
+            if (!rows.hasNext()) {
+                return null;
+            }
+            Row row = rows.next();
+            if (objectFrom(engine, row.getCell(0)) != null) {
+                // Start of the next method block
+                return null;
+            }
+            Map<String, Object> actualData = newRow(schema);
+            for (int column = 1; column < numberOfColumns; column++) {
+                Object cellData = objectFrom(engine, row.getCell(column));
+                if (cellData != null && keys.get(column) != null) {
+                    actualData.put(keys.get(column).toString(), cellData);
+                }
+            }
+            return actualData;
+        }
+
+        /**
+         * Position the row iterator at the first data row of the last method block of the sheet
+         * 
+         * @return true if the method block was found in any of the files
+         * @throws IOException if an I/O exception occurs
+         */
+        private boolean findMethodBlock() throws IOException {
+            while (engine != null || openNextWorkbook()) {
+                while (sheetIndex >= 0) {
+                    Sheet sheet = engine.getWorkbook().getSheetAt(sheetIndex--);
+                    if (sheet.getRow(0) == null) {
+                        continue;
+                    }
+                    Row header = null;
+                    for (Row row : sheet) {
+                        Object cellData = objectFrom(engine, row.getCell(0));
+                        if (cellData != null && methodName.equals(cellData.toString().trim())) {
+                            header = row;
                         }
                     }
-                    LOG.info("rowNum:" + rowNum);
-
-                    // Write the actual result and test status values.
-                    if (isActualResultHeaderWritten) {
-                        LOG.debug("actualResult:" + actualResult.toString());
-                        writeDataToCell(sheet, rowNum, columnNum, actualResult.toString());
-                        Object testStatus = methodData.get(TEST_STATUS);
-                        if (testStatus != null) {
-                            LOG.debug("testStatus:" + testStatus.toString());
-                            writeDataToCell(sheet, rowNum, columnNum + 1, testStatus.toString());
+                    if (header != null) {
+                        numberOfColumns = countNonEmptyColumns(sheet);
+                        keys = new HashMap<Integer, Object>();
+                        for (int column = 1; column < numberOfColumns; column++) {
+                            keys.put(column, objectFrom(engine, header.getCell(column)));
                         }
+                        schema = schemaOf(keys, numberOfColumns);
+                        rows = sheet.rowIterator();
+                        while (rows.next() != header) {
+                            // Skip the rows before the method block
+                        }
+                        return true;
                     }
+                }
+                close();
+            }
+            return loadedRows != null;
+        }
 
+        /**
+         * Open the next file to search for the method block. A file read using the {@link ExcelEventReader} is
+         * searched right away.
+         * 
+         * @return true if a workbook was opened, false if there is no more file to search or the method block was
+         *         found while reading a file using the {@link ExcelEventReader}
+         * @throws IOException if an I/O exception occurs
+         */
+        private boolean openNextWorkbook() throws IOException {
+            while (fileIndex >= 0) {
+                String filePath = dataFiles.get(fileIndex--);
+                InputStream workbookStream = null;
+                try {
+                    ResourceLoader resource = new ResourceLoader(filePath);
+                    workbookStream = ExcelEventReader.markable(resource.getInputStream());
+                    if (streaming || ExcelEventReader.isOOXML(workbookStream)) {
+                        // Only the rows of the method block are kept
+                        List<Map<String, Object>> methodData = loadFromSpreadsheet(workbookStream,
+                            workbookFile(resource), methodName).get(methodName);
+                        if (methodData != null) {
+                            loadedRows = methodData.iterator();
+                            return false;
+                        }
+                        continue;
+                    }
+                    engine = new FormulaEngine(new HSSFWorkbook(workbookStream), useCachedFormulaResults);
+                    sheetIndex = numberOfSheetsToRead(engine.getWorkbook()) - 1;
+                    return true;
+                } catch (FileNotFoundException e) {
+                    LOG.error("The specified file was not found. The path is : {}", filePath);
+                    LOG.error("Continuing with the loading of next file.");
+                } finally {
+                    if (workbookStream != null) {
+                        workbookStream.close();
+                    }
                 }
             }
+            return false;
         }
-        // Write the output to a file
-        workbook.write(resource.getFileOutputStream());
-        LOG.debug("writeDataToSpreadsheet finished");
 
+        @Override
+        protected void close() {
+            engine = null;
+            rows = null;
+            loadedRows = null;
+        }
     }
 
-    private Integer getMethodRowNumFromExcel(Sheet sheet, String methodName) {
-        Integer rowNum = null;
-        for (Row row : sheet) {
-            // getting first cell value as method name is available in first column
-            Cell cell = row.getCell(0);
-            if (cell != null) {
-                String cellData = cell.getStringCellValue();
-                if (cellData != null && methodName.equals(cellData.trim())) {
-                    rowNum = cell.getRow().getRowNum();
-                    System.out.println("methodName matched at rowNum:" + rowNum);
-                    break;
+    /**
+     * Builds the method blocks from the rows of a sheet of a workbook. The first cell of a row that starts a
+     * method block contains the name of the method and the other cells contain the keys. The first cell of a data row
+     * is empty and the other cells contain the values.
+     */
+    private static class MethodBlockBuilder implements ExcelEventReader.RowHandler {
+
+        /**
+         * The name of the method whose block is kept, or null to keep all the blocks
+         */
+        private final String methodName;
+
+        /**
+         * The method blocks
+         */
+        private final Map<String, List<Map<String, Object>>> finalData = new HashMap<String, List<Map<String, Object>>>();
+
+        /**
+         * The keys of the current method block identified by their column
+         */
+        private final Map<Integer, Object> tempData = new HashMap<Integer, Object>();
+
+        /**
+         * The rows of the current method block, or null if the block is not kept
+         */
+        private List<Map<String, Object>> dataValues;
+
+        /**
+         * The schema shared by the rows of the current method block
+         */
+        private RowSchema schema;
+
+        /**
+         * The number of columns in the sheet, or -1 if not known yet
+         */
+        private int numberOfColumns = -1;
+
+        /**
+         * 
+         * Construct a new MethodBlockBuilder
+         * 
+         * @param methodName the name of the method whose block is kept, or null to keep all the blocks
+         */
+        MethodBlockBuilder(String methodName) {
+            this.methodName = methodName;
+        }
+
+        /**
+         * @param numberOfColumns the number of columns in the sheet
+         */
+        void setNumberOfColumns(int numberOfColumns) {
+            this.numberOfColumns = numberOfColumns;
+        }
+
+        /**
+         * @return the method blocks
+         */
+        Map<String, List<Map<String, Object>>> getData() {
+            return finalData;
+        }
+
+        @Override
+        public boolean startSheet(int sheetIndex, String sheetName) {
+            return true;
+        }
+
+        @Override
+        public void row(int rowIndex, List<Object> cells) {
+            if (numberOfColumns < 0) {
+                // The number of non-empty cells in the first row
+                numberOfColumns = 0;
+                while (numberOfColumns < cells.size() && cells.get(numberOfColumns) != null) {
+                    numberOfColumns++;
                 }
             }
+            Object firstCellData = cells.isEmpty() ? null : cells.get(0);
+            if (firstCellData != null) {
+                // Indicates that this is a new set of test data.
+                String name = firstCellData.toString().trim();
+                dataValues = null;
+                if (methodName == null || methodName.equals(name)) {
+                    dataValues = new ArrayList<Map<String, Object>>();
+                    finalData.put(name, dataValues);
+                }
+                // Indicates that this row consists of Keys
+                for (int column = 1; column < numberOfColumns; column++) {
+                    Object cellData = column < cells.size() ? cells.get(column) : null;
+                    if (cellData != null) {
+                        tempData.put(column, cellData);
+                    }
+                }
+                schema = schemaOf(tempData, numberOfColumns);
+            } else if (dataValues != null) {
+                Map<String, Object> actualData = newRow(schema);
+                for (int column = 1; column < numberOfColumns && column < cells.size(); column++) {
+                    Object cellData = cells.get(column);
+                    if (cellData != null) {
+                        actualData.put(tempData.get(column).toString(), cellData);
+                    }
+                }
+                dataValues.add(actualData);
+            }
+        }
+
+        @Override
+        public void endSheet() {
+            // Each sheet has its own columns and method blocks
+            numberOfColumns = -1;
+            tempData.clear();
+            dataValues = null;
         }
-        LOG.debug("getMethodRowNumFromExcel finished:" + methodName + rowNum);
-        return rowNum;
     }
 
-    private void writeDataToCell(Sheet sheet, int rowNum, int columnNum, String value) {
-        Row row = sheet.getRow(rowNum);
-        Cell cell = row.getCell(columnNum);
-        if (cell == null) {
-            cell = row.createCell(columnNum);
+    /**
+     * Indexes the method blocks of a workbook whose actual results are written, and locates the result cells. The
+     * rows of a block are located the same way as they are read by the {@link MethodBlockBuilder}. When a method is
+     * defined by more than one block, the results are written to the last block, from which the data was loaded.
+     */
+    private static class ResultIndex implements ExcelEventReader.RowHandler {
+
+        /**
+         * The data to write
+         */
+        private final Map<String, List<Map<String, Object>>> data;
+
+        /**
+         * Whether the method blocks of all the sheets are indexed, instead of the ones of the first sheet only
+         */
+        private final boolean allSheets;
+
+        /**
+         * The block of each method, by method name
+         */
+        private final Map<String, MethodBlock> blocks = new HashMap<String, MethodBlock>();
+
+        /**
+         * The block of the current method, or null if the current method has no data to write
+         */
+        private MethodBlock currentBlock;
+
+        /**
+         * The index of the current sheet
+         */
+        private int sheetIndex;
+
+        /**
+         * 
+         * Construct a new ResultIndex
+         * 
+         * @param data the data to write
+         * @param allSheets whether the method blocks of all the sheets are indexed, instead of the ones of the first
+         *            sheet only
+         */
+        ResultIndex(Map<String, List<Map<String, Object>>> data, boolean allSheets) {
+            this.data = data;
+            this.allSheets = allSheets;
+        }
+
+        @Override
+        public boolean startSheet(int sheetIndex, String sheetName) {
+            this.sheetIndex = sheetIndex;
+            currentBlock = null;
+            return allSheets || sheetIndex == 0;
+        }
+
+        @Override
+        public void row(int rowIndex, List<Object> cells) {
+            Object firstCellData = cells.isEmpty() ? null : cells.get(0);
+            if (firstCellData != null) {
+                String methodName = firstCellData.toString().trim();
+                currentBlock = null;
+                if (data.containsKey(methodName)) {
+                    currentBlock = new MethodBlock(sheetIndex, rowIndex);
+                    blocks.put(methodName, currentBlock);
+                }
+            } else if (currentBlock != null) {
+                currentBlock.dataRows.add(rowIndex);
+            }
+        }
+
+        @Override
+        public void endSheet() {
+            currentBlock = null;
+        }
+
+        /**
+         * Locate the cells of the actual results and of the test status, and their headers, of each method
+         * 
+         * @return the values of the result cells by sheet, row and column
+         */
+        Map<Integer, Map<Integer, Map<Integer, String>>> getResultCells() {
+            Map<Integer, Map<Integer, Map<Integer, String>>> resultCells = new TreeMap<Integer, Map<Integer, Map<Integer, String>>>();
+            for (Map.Entry<String, MethodBlock> method : blocks.entrySet()) {
+                MethodBlock block = method.getValue();
+                boolean isActualResultHeaderWritten = false;
+                boolean isTestStatusHeaderWritten = false;
+                List<Map<String, Object>> methodData = data.get(method.getKey());
+                for (int row = 0; row < methodData.size() && row < block.dataRows.size(); row++) {
+                    Map<String, Object> rowData = methodData.get(row);
+                    Object actualResult = rowData.get(ACTUAL_RESULT);
+                    if (actualResult == null) {
+                        continue;
+                    }
+                    Object testStatus = rowData.get(TEST_STATUS);
+                    // The actual result follows the input columns, and the test status follows the actual result
+                    int columnNum = testStatus == null ? rowData.size() : rowData.size() - 1;
+                    if (!isActualResultHeaderWritten) {
+                        put(resultCells, block.sheetIndex, block.headerRow, columnNum, ACTUAL_RESULT);
+                        isActualResultHeaderWritten = true;
+                    }
+                    int rowNum = block.dataRows.get(row);
+                    put(resultCells, block.sheetIndex, rowNum, columnNum, actualResult.toString());
+                    if (testStatus != null) {
+                        if (!isTestStatusHeaderWritten) {
+                            put(resultCells, block.sheetIndex, block.headerRow, columnNum + 1, TEST_STATUS);
+                            isTestStatusHeaderWritten = true;
+                        }
+                        put(resultCells, block.sheetIndex, rowNum, columnNum + 1, testStatus.toString());
+                    }
+                }
+            }
+            return resultCells;
+        }
+
+        /**
+         * Set the value of a result cell
+         * 
+         * @param resultCells the values of the result cells by sheet, row and column
+         * @param sheet the index of the sheet
+         * @param row the index of the row
+         * @param column the index of the column
+         * @param value the value of the cell
+         */
+        private static void put(Map<Integer, Map<Integer, Map<Integer, String>>> resultCells, int sheet, int row,
+            int column, String value) {
+            Map<Integer, Map<Integer, String>> sheetCells = resultCells.get(sheet);
+            if (sheetCells == null) {
+                sheetCells = new TreeMap<Integer, Map<Integer, String>>();
+                resultCells.put(sheet, sheetCells);
+            }
+            Map<Integer, String> rowCells = sheetCells.get(row);
+            if (rowCells == null) {
+                rowCells = new TreeMap<Integer, String>();
+                sheetCells.put(row, rowCells);
+            }
+            rowCells.put(column, value);
+        }
+
+        /**
+         * The location of the rows of a method block
+         */
+        private static class MethodBlock {
+
+            /**
+             * The index of the sheet containing the block
+             */
+            final int sheetIndex;
+
+            /**
+             * The index of the row containing the name of the method and the keys
+             */
+            final int headerRow;
+
+            /**
+             * The indexes of the data rows
+             */
+            final List<Integer> dataRows = new ArrayList<Integer>();
+
+            /**
+             * 
+             * Construct a new MethodBlock
+             * 
+             * @param sheetIndex the index of the sheet containing the block
+             * @param headerRow the index of the row containing the name of the method and the keys
+             */
+            MethodBlock(int sheetIndex, int headerRow) {
+                this.sheetIndex = sheetIndex;
+                this.headerRow = headerRow;
+            }
+        }
+    }
+
+    /**
+     * Rewrites the XML of a sheet of an .xlsx workbook, row by row, setting the value of the result cells. The cells
+     * are written as inline strings, in the order of their columns, replacing any existing cell. The other elements
+     * are copied as they are.
+     */
+    private static class SheetResultWriter {
+
+        private static final String ROW = "row";
+        private static final String CELL = "c";
+        private static final String REFERENCE = "r";
+
+        /**
+         * The values of the result cells, by row and column
+         */
+        private final Map<Integer, Map<Integer, String>> resultCells;
+
+        /**
+         * The result cells of the current row that are not written yet, by column, or null if the row has none
+         */
+        private TreeMap<Integer, String> pendingCells;
+
+        /**
+         * The index of the current row
+         */
+        private int rowIndex = -1;
+
+        /**
+         * 
+         * Construct a new SheetResultWriter
+         * 
+         * @param resultCells the values of the result cells, by row and column
+         */
+        SheetResultWriter(Map<Integer, Map<Integer, String>> resultCells) {
+            this.resultCells = resultCells;
+        }
+
+        /**
+         * Copy the XML of the sheet, setting the value of the result cells
+         * 
+         * @param in the XML of the sheet
+         * @param out the stream to write the XML to. The stream is not closed.
+         * @throws IOException if an IO Exception occurs or the XML is not valid
+         */
+        void write(InputStream in, OutputStream out) throws IOException {
+            XMLStreamReader reader = null;
+            XMLStreamWriter writer = null;
+            try {
+                reader = XmlStreams.createReader(in);
+                writer = XmlStreams.createWriter(out, "UTF-8");
+                writer.writeStartDocument("UTF-8", "1.0");
+                writer.writeCharacters("\n");
+                int column = -1;
+                int event = reader.next();
+                while (event != XMLStreamConstants.END_DOCUMENT) {
+                    if (event == XMLStreamConstants.START_ELEMENT && ROW.equals(reader.getLocalName())) {
+                        String reference = reader.getAttributeValue(null, REFERENCE);
+                        rowIndex = reference == null ? rowIndex + 1 : Integer.parseInt(reference) - 1;
+                        Map<Integer, String> rowCells = resultCells.get(rowIndex);
+                        pendingCells = rowCells == null ? null : new TreeMap<Integer, String>(rowCells);
+                        column = -1;
+                    } else if (event == XMLStreamConstants.START_ELEMENT && pendingCells != null
+                        && CELL.equals(reader.getLocalName())) {
+                        String reference = reader.getAttributeValue(null, REFERENCE);
+                        column = reference == null ? column + 1 : new CellReference(reference).getCol();
+                        writePendingCells(reader, writer, column);
+                        if (pendingCells.containsKey(column)) {
+                            // The existing cell is replaced by the result cell
+                            writeCell(reader, writer, column, pendingCells.remove(column));
+                            XmlStreams.skipElement(reader);
+                            event = reader.next();
+                            continue;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT && pendingCells != null
+                        && ROW.equals(reader.getLocalName())) {
+                        writePendingCells(reader, writer, Integer.MAX_VALUE);
+                        pendingCells = null;
+                    }
+                    event = XmlStreams.copyEvent(reader, writer);
+                }
+                writer.writeEndDocument();
+                writer.flush();
+            } catch (XMLStreamException e) {
+                throw new IOException("The XML of the sheet is not valid", e);
+            } finally {
+                try {
+                    if (reader != null) {
+                        reader.close();
+                    }
+                    if (writer != null) {
+                        writer.close();
+                    }
+                } catch (XMLStreamException e) {
+                    // ignore
+                }
+            }
+        }
+
+        /**
+         * Write the pending result cells of the current row that precede the given column
+         * 
+         * @param reader the reader, positioned within the row
+         * @param writer the writer
+         * @param column the column before which the cells are written
+         * @throws XMLStreamException if an exception occurs while writing
+         */
+        private void writePendingCells(XMLStreamReader reader, XMLStreamWriter writer, int column)
+            throws XMLStreamException {
+            while (!pendingCells.isEmpty() && pendingCells.firstKey() < column) {
+                Map.Entry<Integer, String> cell = pendingCells.pollFirstEntry();
+                writeCell(reader, writer, cell.getKey(), cell.getValue());
+            }
+        }
+
+        /**
+         * Write a cell of the current row as an inline string
+         * 
+         * @param reader the reader, positioned within the row, whose namespace is used
+         * @param writer the writer
+         * @param column the column of the cell
+         * @param value the value of the cell
+         * @throws XMLStreamException if an exception occurs while writing
+         */
+        private void writeCell(XMLStreamReader reader, XMLStreamWriter writer, int column, String value)
+            throws XMLStreamException {
+            String prefix = reader.getPrefix() == null ? "" : reader.getPrefix();
+            String namespace = reader.getNamespaceURI() == null ? "" : reader.getNamespaceURI();
+            writer.writeStartElement(prefix, CELL, namespace);
+            writer.writeAttribute(REFERENCE, new CellReference(rowIndex, column).formatAsString());
+            writer.writeAttribute("t", "inlineStr");
+            writer.writeStartElement(prefix, "is", namespace);
+            writer.writeStartElement(prefix, "t", namespace);
+            if (value.length() > 0
+                && (Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(value.length() - 1)))) {
+                writer.writeAttribute("xml", XMLConstants.XML_NS_URI, "space", "preserve");
+            }
+            writer.writeCharacters(value);
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndElement();
         }
-        cell.setCellType(Cell.CELL_TYPE_STRING);
-        cell.setCellValue(value);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,875 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import org.apache.poi.POIXMLDocument;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads the rows of an Excel workbook using the event APIs of POI, without building the workbook in memory. The
+ * legacy .xls format is read using the {@link HSSFEventFactory} and the .xlsx format is read by parsing the XML of the
+ * sheets with SAX, over the {@link ReadOnlySharedStringsTable} of the workbook. The format is detected from the
+ * content of the stream.<br>
+ * The values of the cells are converted the same way as the {@link ExcelDataLoader} converts them, except for the
+ * formula cells, whose result as cached in the file is used instead of evaluating the formula.<br>
+ * The sheets of an .xlsx workbook are independent parts of the package, read against the shared strings and the
+ * styles of the workbook that are never modified. They can thus be parsed concurrently, each by its own parser and
+ * handler, using {@link #readSheets(InputStream, SheetHandlerFactory)}. The sheets of a legacy .xls workbook are
+ * stored in a single stream of records, so they are always read one after the other.
+ *
+ */
+final class ExcelEventReader {
+
+    /**
+     * Receives the rows of the sheets of a workbook, in the order of the sheets and of the rows.
+     */
+    interface RowHandler {
+
+        /**
+         * Called at the start of each sheet
+         *
+         * @param sheetIndex the index of the sheet within the workbook
+         * @param sheetName the name of the sheet
+         * @return true if the rows of the sheet should be read, false to skip the sheet
+         */
+        boolean startSheet(int sheetIndex, String sheetName);
+
+        /**
+         * Called for each row of the sheet that contains at least one cell
+         *
+         * @param rowIndex the index of the row within the sheet
+         * @param cells the values of the cells of the row, by column. Empty cells have a null value.
+         */
+        void row(int rowIndex, List<Object> cells);
+
+        /**
+         * Called at the end of each sheet that was read
+         */
+        void endSheet();
+    }
+
+    /**
+     * Creates the handler of each sheet of a workbook whose sheets are read by separate handlers
+     *
+     * @param <T> the type of the handlers
+     */
+    interface SheetHandlerFactory<T extends RowHandler> {
+
+        /**
+         * Create the handler of the rows of a sheet. The handlers of the sheets of an .xlsx workbook are used
+         * concurrently, so they should not share any state.
+         *
+         * @param sheetIndex the index of the sheet within the workbook
+         * @param sheetName the name of the sheet
+         * @return the handler of the rows of the sheet, or null to skip the sheet
+         */
+        T newHandler(int sheetIndex, String sheetName);
+    }
+
+    private ExcelEventReader() {
+        // utility class
+    }
+
+    /**
+     * Prepare the given stream for {@link #isOOXML(InputStream)}
+     *
+     * @param in the stream of the workbook
+     * @return a stream that supports looking ahead
+     */
+    static InputStream markable(InputStream in) {
+        if (in.markSupported() || in instanceof PushbackInputStream) {
+            return in;
+        }
+        return new PushbackInputStream(in, 8);
+    }
+
+    /**
+     * Check whether the given workbook is in the .xlsx format
+     *
+     * @param in the stream of the workbook, as returned by {@link #markable(InputStream)}
+     * @return true if the workbook is in the .xlsx format, false if it is in the legacy .xls format
+     * @throws IOException if an I/O exception occurs
+     */
+    static boolean isOOXML(InputStream in) throws IOException {
+        return POIXMLDocument.hasOOXMLHeader(in);
+    }
+
+    /**
+     * Read the rows of the given workbook
+     *
+     * @param in the stream of the workbook. The stream is consumed but not closed.
+     * @param handler the handler of the rows
+     * @throws IOException if an I/O exception occurs or the workbook is not valid
+     */
+    static void read(InputStream in, RowHandler handler) throws IOException {
+        read(in, null, handler);
+    }
+
+    /**
+     * Read the rows of the given workbook
+     *
+     * @param in the stream of the workbook. The stream is consumed but not closed.
+     * @param workbookFile the file of the workbook, or null if the workbook is not a plain file, for eg. a resource of
+     *            a jar. An .xlsx workbook is opened from its file rather than unpacked in memory from the stream.
+     * @param handler the handler of the rows
+     * @throws IOException if an I/O exception occurs or the workbook is not valid
+     */
+    static void read(InputStream in, File workbookFile, final RowHandler handler) throws IOException {
+        InputStream workbook = markable(in);
+        if (isOOXML(workbook)) {
+            readXSSF(workbook, workbookFile, new SheetHandlerFactory<RowHandler>() {
+                @Override
+                public RowHandler newHandler(int sheetIndex, String sheetName) {
+                    return handler;
+                }
+            }, false);
+        } else {
+            readHSSF(workbook, handler);
+        }
+    }
+
+    /**
+     * Read the rows of the given workbook, each sheet being read by its own handler. The sheets of an .xlsx workbook
+     * are parsed concurrently on the pool of the loaders, the sheets of a legacy .xls workbook one after the other.
+     *
+     * @param <T> the type of the handlers
+     * @param in the stream of the workbook. The stream is consumed but not closed.
+     * @param factory the factory of the handlers of the sheets
+     * @return the handlers of the sheets that were read, in the order of the sheets
+     * @throws IOException if an I/O exception occurs or the workbook is not valid
+     */
+    static <T extends RowHandler> List<T> readSheets(InputStream in, SheetHandlerFactory<T> factory)
+        throws IOException {
+        return readSheets(in, null, factory);
+    }
+
+    /**
+     * Read the rows of the given workbook, each sheet being read by its own handler, as
+     * {@link #readSheets(InputStream, SheetHandlerFactory)} does
+     *
+     * @param <T> the type of the handlers
+     * @param in the stream of the workbook. The stream is consumed but not closed.
+     * @param workbookFile the file of the workbook, or null if the workbook is not a plain file, for eg. a resource of
+     *            a jar. An .xlsx workbook is opened from its file rather than unpacked in memory from the stream.
+     * @param factory the factory of the handlers of the sheets
+     * @return the handlers of the sheets that were read, in the order of the sheets
+     * @throws IOException if an I/O exception occurs or the workbook is not valid
+     */
+    static <T extends RowHandler> List<T> readSheets(InputStream in, File workbookFile,
+        SheetHandlerFactory<T> factory) throws IOException {
+        InputStream workbook = markable(in);
+        if (isOOXML(workbook)) {
+            return readXSSF(workbook, workbookFile, factory, true);
+        }
+        SheetDispatcher<T> dispatcher = new SheetDispatcher<T>(factory);
+        readHSSF(workbook, dispatcher);
+        return dispatcher.handlers;
+    }
+
+    /**
+     * Read the rows of a workbook in the legacy .xls format
+     *
+     * @param in the stream of the workbook
+     * @param handler the handler of the rows
+     * @throws IOException if an I/O exception occurs
+     */
+    private static void readHSSF(InputStream in, RowHandler handler) throws IOException {
+        HSSFRecordListener listener = new HSSFRecordListener(handler);
+        FormatTrackingHSSFListener formatListener = new FormatTrackingHSSFListener(listener);
+        listener.formatListener = formatListener;
+        HSSFRequest request = new HSSFRequest();
+        request.addListenerForAllRecords(formatListener);
+        new HSSFEventFactory().processWorkbookEvents(request, new POIFSFileSystem(in));
+    }
+
+    /**
+     * Read the rows of a workbook in the .xlsx format. The streams of the sheets are opened one after the other, then
+     * each sheet is parsed by its own parser. The package is opened from the file of the workbook when there is one,
+     * as opening it from a stream unpacks every entry of the workbook in memory.
+     *
+     * @param <T> the type of the handlers
+     * @param in the stream of the workbook, only read when there is no file
+     * @param workbookFile the file of the workbook, or null if the workbook can only be read from the stream
+     * @param factory the factory of the handlers of the sheets
+     * @param concurrently whether the sheets are parsed concurrently, or one after the other
+     * @return the handlers of the sheets that were read, in the order of the sheets
+     * @throws IOException if an I/O exception occurs or the workbook is not valid
+     */
+    private static <T extends RowHandler> List<T> readXSSF(InputStream in, File workbookFile,
+        SheetHandlerFactory<T> factory, boolean concurrently) throws IOException {
+        OPCPackage workbookPackage;
+        try {
+            if (workbookFile != null) {
+                workbookPackage = OPCPackage.open(workbookFile.getPath(), PackageAccess.READ);
+            } else {
+                workbookPackage = OPCPackage.open(in);
+            }
+        } catch (InvalidFormatException e) {
+            throw new IOException("The workbook is not a valid .xlsx file", e);
+        }
+        try {
+            XSSFReader reader = new XSSFReader(workbookPackage);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(workbookPackage);
+            StylesTable styles = reader.getStylesTable();
+            WorkbookPropertiesHandler workbookProperties = new WorkbookPropertiesHandler();
+            InputStream workbookData = reader.getWorkbookData();
+            try {
+                newParser().parse(workbookData, workbookProperties);
+            } finally {
+                workbookData.close();
+            }
+            List<SheetTask<T>> tasks = new ArrayList<SheetTask<T>>();
+            try {
+                XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+                int sheetIndex = 0;
+                while (sheets.hasNext()) {
+                    InputStream sheet = sheets.next();
+                    String sheetName = sheets.getSheetName();
+                    T handler = factory.newHandler(sheetIndex, sheetName);
+                    if (handler == null) {
+                        sheet.close();
+                    } else {
+                        tasks.add(new SheetTask<T>(sheetIndex, sheetName, sheet, handler, strings, styles,
+                            workbookProperties.date1904));
+                    }
+                    sheetIndex++;
+                }
+                List<T> handlers;
+                if (concurrently) {
+                    handlers = MultiFileLoader.invokeAll(tasks);
+                } else {
+                    handlers = new ArrayList<T>(tasks.size());
+                    for (SheetTask<T> task : tasks) {
+                        handlers.add(task.call());
+                    }
+                }
+                // Only the handlers of the sheets that were actually read
+                List<T> readHandlers = new ArrayList<T>(handlers.size());
+                for (T handler : handlers) {
+                    if (handler != null) {
+                        readHandlers.add(handler);
+                    }
+                }
+                return readHandlers;
+            } finally {
+                for (SheetTask<T> task : tasks) {
+                    task.sheet.close();
+                }
+            }
+        } catch (OpenXML4JException e) {
+            throw new IOException("The workbook is not a valid .xlsx file", e);
+        } catch (SAXException e) {
+            throw new IOException("The workbook is not a valid .xlsx file", e);
+        } finally {
+            // The package was opened for reading only. Do not save it back.
+            workbookPackage.revert();
+        }
+    }
+
+    /**
+     * Get the names of the entries of an .xlsx file that hold the sheets of the workbook
+     *
+     * @param workbook the .xlsx file
+     * @return the names of the zip entries of the sheets, in the order of the sheets
+     * @throws IOException if an I/O exception occurs or the workbook is not valid
+     */
+    static List<String> sheetEntryNames(File workbook) throws IOException {
+        OPCPackage workbookPackage;
+        try {
+            workbookPackage = OPCPackage.open(workbook.getPath(), PackageAccess.READ);
+        } catch (InvalidFormatException e) {
+            throw new IOException("The workbook is not a valid .xlsx file", e);
+        }
+        try {
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) new XSSFReader(workbookPackage)
+                .getSheetsData();
+            List<String> entryNames = new ArrayList<String>();
+            while (sheets.hasNext()) {
+                sheets.next().close();
+                // The name of a part is absolute within the package
+                entryNames.add(sheets.getSheetPart().getPartName().getName().substring(1));
+            }
+            return entryNames;
+        } catch (OpenXML4JException e) {
+            throw new IOException("The workbook is not a valid .xlsx file", e);
+        } finally {
+            workbookPackage.revert();
+        }
+    }
+
+    /**
+     * @return a new SAX parser
+     * @throws IOException if no parser can be created
+     */
+    private static SAXParser newParser() throws IOException {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(false);
+            return factory.newSAXParser();
+        } catch (ParserConfigurationException e) {
+            throw new IOException("Could not create an XML parser", e);
+        } catch (SAXException e) {
+            throw new IOException("Could not create an XML parser", e);
+        }
+    }
+
+    /**
+     * Convert a numeric cell value the same way as {@link ExcelDataLoader} does
+     *
+     * @param value the numeric value of the cell
+     * @param formatIndex the index of the data format of the cell
+     * @param formatString the data format of the cell
+     * @param date1904 whether the workbook uses the 1904 date system
+     * @return a {@link java.util.Date} if the cell is formatted as a date, else the value
+     */
+    static Object numericValue(double value, int formatIndex, String formatString, boolean date1904) {
+        if (formatString != null && DateUtil.isADateFormat(formatIndex, formatString)
+            && DateUtil.isValidExcelDate(value)) {
+            return DateUtil.getJavaDate(value, date1904);
+        }
+        return ExcelDataLoader.numericValue(value);
+    }
+
+    /**
+     * Set the value of a cell of a row
+     *
+     * @param cells the cells of the row
+     * @param column the column of the cell
+     * @param value the value of the cell
+     */
+    private static void setCell(List<Object> cells, int column, Object value) {
+        while (cells.size() <= column) {
+            cells.add(null);
+        }
+        cells.set(column, value);
+    }
+
+    /**
+     * Parses a sheet of an .xlsx workbook with its own parser
+     *
+     * @param <T> the type of the handler
+     */
+    private static final class SheetTask<T extends RowHandler> implements Callable<T> {
+
+        /**
+         * The index of the sheet within the workbook
+         */
+        private final int sheetIndex;
+
+        /**
+         * The name of the sheet
+         */
+        private final String sheetName;
+
+        /**
+         * The XML of the sheet
+         */
+        final InputStream sheet;
+
+        /**
+         * The handler of the rows of the sheet
+         */
+        private final T handler;
+
+        /**
+         * The shared strings of the workbook
+         */
+        private final ReadOnlySharedStringsTable strings;
+
+        /**
+         * The styles of the workbook
+         */
+        private final StylesTable styles;
+
+        /**
+         * Whether the workbook uses the 1904 date system
+         */
+        private final boolean date1904;
+
+        /**
+         * Construct a new SheetTask
+         *
+         * @param sheetIndex the index of the sheet within the workbook
+         * @param sheetName the name of the sheet
+         * @param sheet the XML of the sheet
+         * @param handler the handler of the rows of the sheet
+         * @param strings the shared strings of the workbook
+         * @param styles the styles of the workbook
+         * @param date1904 whether the workbook uses the 1904 date system
+         */
+        SheetTask(int sheetIndex, String sheetName, InputStream sheet, T handler, ReadOnlySharedStringsTable strings,
+            StylesTable styles, boolean date1904) {
+            this.sheetIndex = sheetIndex;
+            this.sheetName = sheetName;
+            this.sheet = sheet;
+            this.handler = handler;
+            this.strings = strings;
+            this.styles = styles;
+            this.date1904 = date1904;
+        }
+
+        /**
+         * @return the handler, or null if the handler skipped the sheet
+         * @throws IOException if the XML of the sheet is not valid
+         */
+        @Override
+        public T call() throws IOException {
+            if (!handler.startSheet(sheetIndex, sheetName)) {
+                return null;
+            }
+            try {
+                newParser().parse(sheet, new XSSFSheetHandler(handler, strings, styles, date1904));
+            } catch (SAXException e) {
+                throw new IOException("The workbook is not a valid .xlsx file", e);
+            }
+            handler.endSheet();
+            return handler;
+        }
+    }
+
+    /**
+     * Gives the rows of each sheet of a legacy .xls workbook to the handler created for the sheet
+     *
+     * @param <T> the type of the handlers
+     */
+    private static final class SheetDispatcher<T extends RowHandler> implements RowHandler {
+
+        /**
+         * The factory of the handlers of the sheets
+         */
+        private final SheetHandlerFactory<T> factory;
+
+        /**
+         * The handlers of the sheets that were read
+         */
+        final List<T> handlers = new ArrayList<T>();
+
+        /**
+         * The handler of the current sheet
+         */
+        private T handler;
+
+        /**
+         * Construct a new SheetDispatcher
+         *
+         * @param factory the factory of the handlers of the sheets
+         */
+        SheetDispatcher(SheetHandlerFactory<T> factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public boolean startSheet(int sheetIndex, String sheetName) {
+            handler = factory.newHandler(sheetIndex, sheetName);
+            if (handler == null || !handler.startSheet(sheetIndex, sheetName)) {
+                handler = null;
+                return false;
+            }
+            handlers.add(handler);
+            return true;
+        }
+
+        @Override
+        public void row(int rowIndex, List<Object> cells) {
+            handler.row(rowIndex, cells);
+        }
+
+        @Override
+        public void endSheet() {
+            handler.endSheet();
+            handler = null;
+        }
+    }
+
+    /**
+     * Listens to the records of a workbook in the legacy .xls format and collects the cells of each row.
+     */
+    private static class HSSFRecordListener implements HSSFListener {
+
+        /**
+         * The handler of the rows
+         */
+        private final RowHandler handler;
+
+        /**
+         * The listener tracking the formats of the cells
+         */
+        FormatTrackingHSSFListener formatListener;
+
+        /**
+         * The names of the sheets
+         */
+        private final List<String> sheetNames = new ArrayList<String>();
+
+        /**
+         * The shared strings of the workbook
+         */
+        private SSTRecord sharedStrings;
+
+        /**
+         * Whether the workbook uses the 1904 date system
+         */
+        private boolean date1904;
+
+        /**
+         * The index of the current sheet, -1 while reading the workbook globals
+         */
+        private int sheetIndex = -1;
+
+        /**
+         * Whether the rows of the current sheet are read
+         */
+        private boolean readingSheet;
+
+        /**
+         * The index of the row being collected, -1 if none
+         */
+        private int rowIndex = -1;
+
+        /**
+         * The cells of the row being collected
+         */
+        private List<Object> cells = new ArrayList<Object>();
+
+        /**
+         * The formula cell waiting for its string result, which follows in a {@link StringRecord}
+         */
+        private FormulaRecord pendingFormula;
+
+        /**
+         * Construct a new HSSFRecordListener
+         *
+         * @param handler the handler of the rows
+         */
+        HSSFRecordListener(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void processRecord(Record record) {
+            switch (record.getSid()) {
+                case BoundSheetRecord.sid:
+                    sheetNames.add(((BoundSheetRecord) record).getSheetname());
+                    break;
+                case DateWindow1904Record.sid:
+                    date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+                    break;
+                case SSTRecord.sid:
+                    sharedStrings = (SSTRecord) record;
+                    break;
+                case BOFRecord.sid:
+                    if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+                        sheetIndex++;
+                        String sheetName = sheetIndex < sheetNames.size() ? sheetNames.get(sheetIndex) : null;
+                        readingSheet = handler.startSheet(sheetIndex, sheetName);
+                    }
+                    break;
+                case EOFRecord.sid:
+                    if (readingSheet) {
+                        flushRow();
+                        handler.endSheet();
+                        readingSheet = false;
+                    }
+                    break;
+                case StringRecord.sid:
+                    if (readingSheet && pendingFormula != null) {
+                        cell(pendingFormula, ((StringRecord) record).getString());
+                        pendingFormula = null;
+                    }
+                    break;
+                default:
+                    if (readingSheet && record instanceof CellValueRecordInterface) {
+                        cellRecord(record);
+                    }
+            }
+        }
+
+        /**
+         * Convert the value of a cell record
+         *
+         * @param record the cell record
+         */
+        private void cellRecord(Record record) {
+            CellValueRecordInterface cellRecord = (CellValueRecordInterface) record;
+            switch (record.getSid()) {
+                case LabelSSTRecord.sid:
+                    cell(cellRecord, sharedStrings.getString(((LabelSSTRecord) record).getSSTIndex()).getString());
+                    break;
+                case LabelRecord.sid:
+                    cell(cellRecord, ((LabelRecord) record).getValue());
+                    break;
+                case NumberRecord.sid:
+                    cell(cellRecord, numericValue(((NumberRecord) record).getValue(), formatListener
+                        .getFormatIndex(cellRecord), formatListener.getFormatString(cellRecord), date1904));
+                    break;
+                case BoolErrRecord.sid:
+                    BoolErrRecord boolErr = (BoolErrRecord) record;
+                    cell(cellRecord, boolErr.isBoolean() ? Boolean.valueOf(boolErr.getBooleanValue()) : null);
+                    break;
+                case FormulaRecord.sid:
+                    FormulaRecord formula = (FormulaRecord) record;
+                    if (formula.hasCachedResultString()) {
+                        pendingFormula = formula;
+                    } else if (formula.getCachedResultType() == Cell.CELL_TYPE_BOOLEAN) {
+                        cell(cellRecord, formula.getCachedBooleanValue());
+                    } else if (formula.getCachedResultType() == Cell.CELL_TYPE_NUMERIC) {
+                        cell(cellRecord, formula.getValue());
+                    } else {
+                        cell(cellRecord, null);
+                    }
+                    break;
+                default:
+                    // Blank cells and the like
+                    cell(cellRecord, null);
+            }
+        }
+
+        /**
+         * Add a cell to the row being collected, starting a new row if needed
+         *
+         * @param cellRecord the record of the cell
+         * @param value the value of the cell
+         */
+        private void cell(CellValueRecordInterface cellRecord, Object value) {
+            if (cellRecord.getRow() != rowIndex) {
+                flushRow();
+                rowIndex = cellRecord.getRow();
+            }
+            setCell(cells, cellRecord.getColumn(), value);
+        }
+
+        /**
+         * Pass the row being collected to the handler
+         */
+        private void flushRow() {
+            if (rowIndex >= 0) {
+                handler.row(rowIndex, cells);
+                cells = new ArrayList<Object>();
+                rowIndex = -1;
+            }
+        }
+    }
+
+    /**
+     * Reads the properties of a workbook in the .xlsx format that are needed to convert the cells.
+     */
+    private static class WorkbookPropertiesHandler extends DefaultHandler {
+
+        /**
+         * Whether the workbook uses the 1904 date system
+         */
+        boolean date1904;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("workbookPr".equals(localName(qName))) {
+                String value = attributes.getValue("date1904");
+                date1904 = "1".equals(value) || "true".equalsIgnoreCase(value);
+            }
+        }
+    }
+
+    /**
+     * Parses the XML of a sheet of a workbook in the .xlsx format and collects the cells of each row.
+     */
+    private static class XSSFSheetHandler extends DefaultHandler {
+
+        /**
+         * The handler of the rows
+         */
+        private final RowHandler handler;
+
+        /**
+         * The shared strings of the workbook
+         */
+        private final ReadOnlySharedStringsTable strings;
+
+        /**
+         * The styles of the workbook
+         */
+        private final StylesTable styles;
+
+        /**
+         * Whether the workbook uses the 1904 date system
+         */
+        private final boolean date1904;
+
+        /**
+         * The index of the current row
+         */
+        private int rowIndex = -1;
+
+        /**
+         * The cells of the current row
+         */
+        private List<Object> cells;
+
+        /**
+         * The column of the current cell
+         */
+        private int column;
+
+        /**
+         * The type of the current cell
+         */
+        private String type;
+
+        /**
+         * The style of the current cell
+         */
+        private String style;
+
+        /**
+         * Whether the current cell contains a formula
+         */
+        private boolean formula;
+
+        /**
+         * Whether the characters being read are the value of the cell
+         */
+        private boolean inValue;
+
+        /**
+         * The value of the current cell
+         */
+        private final StringBuilder value = new StringBuilder();
+
+        /**
+         * Construct a new XSSFSheetHandler
+         *
+         * @param handler the handler of the rows
+         * @param strings the shared strings of the workbook
+         * @param styles the styles of the workbook
+         * @param date1904 whether the workbook uses the 1904 date system
+         */
+        XSSFSheetHandler(RowHandler handler, ReadOnlySharedStringsTable strings, StylesTable styles,
+            boolean date1904) {
+            this.handler = handler;
+            this.strings = strings;
+            this.styles = styles;
+            this.date1904 = date1904;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            String name = localName(qName);
+            if ("row".equals(name)) {
+                String reference = attributes.getValue("r");
+                rowIndex = reference == null ? rowIndex + 1 : Integer.parseInt(reference) - 1;
+                cells = new ArrayList<Object>();
+                column = -1;
+            } else if ("c".equals(name)) {
+                String reference = attributes.getValue("r");
+                column = reference == null ? column + 1 : new CellReference(reference).getCol();
+                type = attributes.getValue("t");
+                style = attributes.getValue("s");
+                formula = false;
+                value.setLength(0);
+            } else if ("f".equals(name)) {
+                formula = true;
+            } else if ("v".equals(name) || ("t".equals(name) && "inlineStr".equals(type))) {
+                inValue = true;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) {
+                value.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            String name = localName(qName);
+            if ("v".equals(name) || "t".equals(name)) {
+                inValue = false;
+            } else if ("c".equals(name)) {
+                setCell(cells, column, cellValue());
+            } else if ("row".equals(name)) {
+                handler.row(rowIndex, cells);
+            }
+        }
+
+        /**
+         * @return the converted value of the current cell
+         */
+        private Object cellValue() {
+            String text = value.toString();
+            if (text.length() == 0 && !"inlineStr".equals(type)) {
+                return null;
+            }
+            if ("s".equals(type)) {
+                return strings.getEntryAt(Integer.parseInt(text));
+            } else if ("inlineStr".equals(type) || "str".equals(type)) {
+                return text;
+            } else if ("b".equals(type)) {
+                return "1".equals(text);
+            } else if ("e".equals(type)) {
+                return null;
+            }
+            double number = Double.parseDouble(text);
+            if (formula) {
+                return number;
+            }
+            if (style != null) {
+                XSSFCellStyle cellStyle = styles.getStyleAt(Integer.parseInt(style));
+                if (cellStyle != null) {
+                    return numericValue(number, cellStyle.getDataFormat(), cellStyle.getDataFormatString(),
+                        date1904);
+                }
+            }
+            return ExcelDataLoader.numericValue(number);
+        }
+    }
+
+    /**
+     * @param qName the qualified name of an XML element
+     * @return the name of the element without its prefix
+     */
+    private static String localName(String qName) {
+        int colon = qName.indexOf(':');
+        return colon < 0 ? qName : qName.substring(colon + 1);
+    }
+
+}
@@ -0,0 +1,138 @@
+
+package org.easetech.easytest.loader;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * Computes the value of the formula cells of a single workbook. A single {@link FormulaEvaluator} is created for the
+ * workbook, on first use, so that the intermediate results it caches are shared by all the formulas of the workbook,
+ * and the value of each formula cell is only computed once, however many times it is asked for.<br>
+ * Alternatively, the engine can trust the result of the formulas as cached in the file by the application that last
+ * saved it, in which case no formula is evaluated at all.<br>
+ * An engine is not thread safe. Each thread reading a workbook must use its own engine.
+ *
+ */
+final class FormulaEngine {
+
+    /**
+     * The workbook containing the formulas
+     */
+    private final Workbook workbook;
+
+    /**
+     * Whether the results cached in the file are used instead of evaluating the formulas
+     */
+    private final boolean useCachedResults;
+
+    /**
+     * The evaluator of the workbook, created on demand
+     */
+    private FormulaEvaluator evaluator;
+
+    /**
+     * The value of the formula cells already computed, by sheet, row and column
+     */
+    private final Map<Long, Object> values = new HashMap<Long, Object>();
+
+    /**
+     *
+     * Construct a new FormulaEngine
+     *
+     * @param workbook the workbook containing the formulas
+     * @param useCachedResults whether the results cached in the file are used instead of evaluating the formulas
+     */
+    FormulaEngine(Workbook workbook, boolean useCachedResults) {
+        this(workbook, useCachedResults, null);
+    }
+
+    /**
+     *
+     * Construct a new FormulaEngine that evaluates the formulas with the given evaluator
+     *
+     * @param workbook the workbook containing the formulas
+     * @param useCachedResults whether the results cached in the file are used instead of evaluating the formulas
+     * @param evaluator the evaluator of the workbook, or null to create it on first use
+     */
+    FormulaEngine(Workbook workbook, boolean useCachedResults, FormulaEvaluator evaluator) {
+        this.workbook = workbook;
+        this.useCachedResults = useCachedResults;
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * @return the workbook containing the formulas
+     */
+    Workbook getWorkbook() {
+        return workbook;
+    }
+
+    /**
+     * Compute the value of the given formula cell
+     *
+     * @param cell the cell containing the formula
+     * @return the object representation of formula cell value.
+     */
+    Object evaluate(Cell cell) {
+        Long position = position(cell);
+        if (values.containsKey(position)) {
+            return values.get(position);
+        }
+        Object result = useCachedResults ? cachedResult(cell) : evaluatedResult(cell);
+        values.put(position, result);
+        return result;
+    }
+
+    /**
+     * @param cell the cell containing the formula
+     * @return the result of the formula as cached in the file
+     */
+    private Object cachedResult(Cell cell) {
+        Object result = null;
+        int resultType = cell.getCachedFormulaResultType();
+        if (resultType == Cell.CELL_TYPE_BOOLEAN) {
+            result = cell.getBooleanCellValue();
+        } else if (resultType == Cell.CELL_TYPE_NUMERIC) {
+            result = cell.getNumericCellValue();
+        } else if (resultType == Cell.CELL_TYPE_STRING) {
+            result = cell.getRichStringCellValue().getString();
+        }
+        return result;
+    }
+
+    /**
+     * @param cell the cell containing the formula
+     * @return the result of evaluating the formula
+     */
+    private Object evaluatedResult(Cell cell) {
+        if (evaluator == null) {
+            evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+        }
+        CellValue cellValue = evaluator.evaluate(cell);
+        Object result = null;
+
+        if (cellValue.getCellType() == Cell.CELL_TYPE_BOOLEAN) {
+            result = cellValue.getBooleanValue();
+        } else if (cellValue.getCellType() == Cell.CELL_TYPE_NUMERIC) {
+            result = cellValue.getNumberValue();
+        } else if (cellValue.getCellType() == Cell.CELL_TYPE_STRING) {
+            result = cellValue.getStringValue();
+        }
+
+        return result;
+    }
+
+    /**
+     * @param cell the cell
+     * @return a key identifying the position of the cell within the workbook
+     */
+    private Long position(Cell cell) {
+        long sheet = workbook.getSheetIndex(cell.getSheet());
+        return (sheet << 40) | ((long) cell.getRowIndex() << 16) | cell.getColumnIndex();
+    }
+
+}
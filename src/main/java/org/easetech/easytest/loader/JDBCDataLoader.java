@@ -0,0 +1,386 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.easetech.easytest.annotation.DataLoader;
+import org.easetech.easytest.util.ResourceLoader;
+import org.junit.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An implementation of {@link Loader} that reads the test data from a database using JDBC. Each file specified in the
+ * {@link DataLoader} annotation is a properties file describing the connection to the database and the query of each
+ * test method :<br>
+ * <code>
+ * <B>jdbc.url</B>=jdbc:h2:mem:library<br>
+ * <B>jdbc.user</B>=sa<br>
+ * <B>jdbc.password</B>=<br>
+ * <B>jdbc.fetchSize</B>=500<br>
+ * <B>getItems</B>=SELECT LIBRARY_ID AS "libraryId", ITEM_TYPE AS "itemType" FROM ITEMS<br>
+ * </code>
+ * The properties starting with {@value #PROPERTY_PREFIX} describe the connection. The JDBC driver is found by the
+ * {@link DriverManager}, unless its class is specified using the property {@value #DRIVER}. Any other property
+ * associates the name of a test method with the query that selects its test data. Each row of the result of the query
+ * is a set of test data, whose keys are the labels of the columns.<br>
+ * The rows are fetched from the database {@value #FETCH_SIZE} at a time, {@value #DEFAULT_FETCH_SIZE} by default, so
+ * that the data of a method can be streamed without ever holding the whole result of the query.<br>
+ * As the content of the database can change at any time, the data loaded by this loader is never cached, and the
+ * actual results are not written back to the database.
+ *
+ */
+public class JDBCDataLoader implements StreamingLoader {
+
+    /**
+     * The prefix of the properties describing the connection
+     */
+    public static final String PROPERTY_PREFIX = "jdbc.";
+
+    /**
+     * The property specifying the JDBC URL of the database
+     */
+    public static final String URL = "jdbc.url";
+
+    /**
+     * The property specifying the user of the database
+     */
+    public static final String USER = "jdbc.user";
+
+    /**
+     * The property specifying the password of the user
+     */
+    public static final String PASSWORD = "jdbc.password";
+
+    /**
+     * The property specifying the class of the JDBC driver, for the drivers that do not register themselves
+     */
+    public static final String DRIVER = "jdbc.driver";
+
+    /**
+     * The property specifying the number of rows fetched from the database at a time
+     */
+    public static final String FETCH_SIZE = "jdbc.fetchSize";
+
+    /**
+     * The default number of rows fetched from the database at a time
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    /**
+     * An instance of logger associated with the test framework.
+     */
+    protected static final Logger LOG = LoggerFactory.getLogger(JDBCDataLoader.class);
+
+    /**
+     * Load the data of all the test methods from the databases described by the specified list of filePaths. The
+     * files are loaded in parallel and a file path can be a glob pattern, as explained in
+     * {@link ResourceLoader#resolvePaths(String...)}.
+     *
+     * @param filePaths the list of File paths
+     * @return the data
+     */
+    @Override
+    public Map<String, List<Map<String, Object>>> loadData(String[] filePaths) {
+        return MultiFileLoader.loadAll(ResourceLoader.resolvePaths(filePaths), new MultiFileLoader.FileLoader() {
+            @Override
+            public Map<String, List<Map<String, Object>>> load(String filePath) throws IOException {
+                return loadFromDatabase(filePath);
+            }
+        });
+    }
+
+    /**
+     * Stream the data of the given method from the database described by the last of the specified files that has a
+     * query for the method. The rows are fetched as the iterator is consumed and the connection is closed as soon as
+     * the iterator is exhausted.
+     *
+     * @param filePaths the list of File paths
+     * @param methodName the name of the method whose data needs to be streamed
+     * @return an iterator over the data of the given method
+     */
+    @Override
+    public Iterator<Map<String, Object>> streamData(String[] filePaths, String methodName) {
+        List<String> dataFiles = ResourceLoader.resolvePaths(filePaths);
+        for (int i = dataFiles.size() - 1; i >= 0; i--) {
+            String filePath = dataFiles.get(i);
+            try {
+                Properties configuration = readConfiguration(filePath);
+                String query = configuration.getProperty(methodName);
+                if (query != null) {
+                    return new ResultSetIterator(configuration, query);
+                }
+            } catch (FileNotFoundException e) {
+                LOG.error("The specified file was not found. The path is : {}", filePath);
+                LOG.error("Continuing with the loading of next file.");
+            } catch (IOException e) {
+                Assert.fail("An I/O exception occured while reading the files from the path :" + filePath);
+            } catch (SQLException e) {
+                LOG.error("SQL Exception occured while trying to read the data of the method " + methodName
+                    + " described by the file : " + filePath, e);
+                Assert.fail("The data of the method " + methodName + " could not be read from the database : "
+                    + e.getMessage());
+            }
+        }
+        return Collections.<Map<String, Object>> emptyList().iterator();
+    }
+
+    /**
+     * The actual results are not written back to the database
+     *
+     * @param filePath the path of the file describing the database
+     * @param actualData the data structure that contains the output data
+     */
+    @Override
+    public void writeData(String filePath, Map<String, List<Map<String, Object>>> actualData) {
+        LOG.debug("The actual results are not written back to the database described by the file : {}", filePath);
+    }
+
+    /**
+     * Load the data of all the test methods from the database described by the given file, using a single connection
+     *
+     * @param filePath the path of the file describing the database
+     * @return a Map of method name and the list of associated test data with that method name
+     * @throws IOException if the file can not be read
+     * @throws RuntimeException if the data can not be read from the database
+     */
+    private Map<String, List<Map<String, Object>>> loadFromDatabase(String filePath) throws IOException {
+        Properties configuration = readConfiguration(filePath);
+        Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+        Connection connection = null;
+        String methodName = null;
+        try {
+            connection = openConnection(configuration);
+            for (String name : configuration.stringPropertyNames()) {
+                if (name.startsWith(PROPERTY_PREFIX)) {
+                    continue;
+                }
+                methodName = name;
+                List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+                Statement statement = createStatement(connection, configuration);
+                try {
+                    ResultSet resultSet = statement.executeQuery(configuration.getProperty(name));
+                    RowSchema schema = schemaOf(resultSet.getMetaData());
+                    while (resultSet.next()) {
+                        rows.add(rowOf(resultSet, schema));
+                    }
+                } finally {
+                    statement.close();
+                }
+                data.put(name, rows);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("SQL Exception occured while trying to read the data of the method "
+                + methodName + " described by the file : " + filePath, e);
+        } finally {
+            closeQuietly(connection);
+        }
+        return data;
+    }
+
+    /**
+     * Read the properties file describing a database
+     *
+     * @param filePath the path of the file
+     * @return the properties
+     * @throws IOException if the file can not be read
+     */
+    private static Properties readConfiguration(String filePath) throws IOException {
+        Properties configuration = new Properties();
+        InputStream in = new ResourceLoader(filePath).getInputStream();
+        try {
+            configuration.load(in);
+        } finally {
+            in.close();
+        }
+        if (configuration.getProperty(URL) == null) {
+            throw new IOException("The property " + URL + " is missing in the file : " + filePath);
+        }
+        return configuration;
+    }
+
+    /**
+     * Open a connection to the database
+     *
+     * @param configuration the properties describing the database
+     * @return the connection
+     * @throws SQLException if the connection can not be opened
+     */
+    private static Connection openConnection(Properties configuration) throws SQLException {
+        String driver = configuration.getProperty(DRIVER);
+        if (driver != null) {
+            try {
+                Class.forName(driver, true, Thread.currentThread().getContextClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new SQLException("The JDBC driver " + driver + " was not found", e);
+            }
+        }
+        Connection connection = DriverManager.getConnection(configuration.getProperty(URL),
+            configuration.getProperty(USER), configuration.getProperty(PASSWORD));
+        try {
+            connection.setReadOnly(true);
+        } catch (SQLException e) {
+            LOG.debug("The connection can not be made read only : {}", e.toString());
+        }
+        try {
+            // Some drivers, for eg. the PostgreSQL one, only honour the fetch size within a transaction
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            LOG.debug("The auto commit of the connection can not be disabled : {}", e.toString());
+        }
+        return connection;
+    }
+
+    /**
+     * Create a forward only statement that fetches the number of rows specified by the configuration at a time
+     *
+     * @param connection the connection to the database
+     * @param configuration the properties describing the database
+     * @return the statement
+     * @throws SQLException if the statement can not be created
+     */
+    private static Statement createStatement(Connection connection, Properties configuration) throws SQLException {
+        Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        String fetchSize = configuration.getProperty(FETCH_SIZE);
+        try {
+            statement.setFetchSize(fetchSize == null ? DEFAULT_FETCH_SIZE : Integer.parseInt(fetchSize.trim()));
+        } catch (NumberFormatException e) {
+            LOG.error("Invalid value {} of the property " + FETCH_SIZE + ". Using the default fetch size.", fetchSize);
+            statement.setFetchSize(DEFAULT_FETCH_SIZE);
+        }
+        return statement;
+    }
+
+    /**
+     * @param metaData the description of the columns of a result set
+     * @return the schema of the rows, whose keys are the labels of the columns
+     * @throws SQLException if the description can not be read
+     */
+    private static RowSchema schemaOf(ResultSetMetaData metaData) throws SQLException {
+        List<String> keys = new ArrayList<String>(metaData.getColumnCount());
+        for (int column = 1; column <= metaData.getColumnCount(); column++) {
+            keys.add(metaData.getColumnLabel(column));
+        }
+        return new RowSchema(keys);
+    }
+
+    /**
+     * Convert the current row of a result set. The large objects are read right away, as they can not be read once
+     * the result set is closed.
+     *
+     * @param resultSet the result set
+     * @param schema the schema of the rows
+     * @return the row of test data
+     * @throws SQLException if the row can not be read
+     */
+    private static Map<String, Object> rowOf(ResultSet resultSet, RowSchema schema) throws SQLException {
+        CompactRow row = new CompactRow(schema);
+        for (int i = 0; i < schema.size(); i++) {
+            Object value = resultSet.getObject(i + 1);
+            if (value instanceof Clob) {
+                Clob clob = (Clob) value;
+                value = clob.getSubString(1, (int) clob.length());
+            } else if (value instanceof Blob) {
+                Blob blob = (Blob) value;
+                value = blob.getBytes(1, (int) blob.length());
+            }
+            row.put(schema.getKey(i), value);
+        }
+        return row;
+    }
+
+    /**
+     * Close a connection, first rolling back the transaction opened by the queries if auto commit is disabled, as
+     * some drivers refuse to close a connection whose transaction is still open.
+     *
+     * @param connection the connection to close, may be null
+     */
+    private static void closeQuietly(Connection connection) {
+        if (connection != null) {
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+            } catch (SQLException e) {
+                // ignore, the connection is closed anyways
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * A {@link RowIterator} over the result of the query of a test method. The rows are fetched as they are read and
+     * the connection is held until the iterator is exhausted.
+     */
+    private static class ResultSetIterator extends RowIterator {
+
+        /**
+         * The connection to the database
+         */
+        private final Connection connection;
+
+        /**
+         * The result of the query
+         */
+        private final ResultSet resultSet;
+
+        /**
+         * The schema shared by the rows
+         */
+        private final RowSchema schema;
+
+        /**
+         *
+         * Construct a new ResultSetIterator
+         *
+         * @param configuration the properties describing the database
+         * @param query the query selecting the test data
+         * @throws SQLException if the query can not be executed
+         */
+        ResultSetIterator(Properties configuration, String query) throws SQLException {
+            connection = openConnection(configuration);
+            try {
+                resultSet = createStatement(connection, configuration).executeQuery(query);
+                schema = schemaOf(resultSet.getMetaData());
+            } catch (SQLException e) {
+                closeQuietly(connection);
+                throw e;
+            }
+        }
+
+        @Override
+        protected Map<String, Object> computeNext() throws IOException {
+            try {
+                return resultSet.next() ? rowOf(resultSet, schema) : null;
+            } catch (SQLException e) {
+                throw new IOException("SQL Exception occured while fetching the test data", e);
+            }
+        }
+
+        @Override
+        protected void close() {
+            closeQuietly(connection);
+        }
+    }
+
+}
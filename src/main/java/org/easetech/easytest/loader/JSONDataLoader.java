@@ -0,0 +1,624 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.easetech.easytest.util.ResourceLoader;
+import org.junit.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An implementation of {@link Loader} for the JSON based files. The test data can be provided either as a JSON
+ * document, whose members associate the name of each test method with the array of its rows :<br>
+ * <br>
+ * <code>
+ * {<br>
+ * &nbsp;&nbsp;<B>"getItems"</B> : [<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;{ "libraryId" : "91475", "itemId" : 12, "itemType" : "book" },<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;{ "libraryId" : "234", "itemId" : 1452, "itemType" : "journal" }<br>
+ * &nbsp;&nbsp;],<br>
+ * &nbsp;&nbsp;<B>"getPictures"</B> : [<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;{ "picId" : "1111", "picFormat" : "jpeg" }<br>
+ * &nbsp;&nbsp;]<br>
+ * }<br>
+ * </code> <br>
+ * or as a JSON Lines file, each line of which is a small document holding a single row of a method :<br>
+ * <br>
+ * <code>
+ * {"getItems" : { "libraryId" : "91475", "itemId" : 12, "itemType" : "book" }}<br>
+ * {"getItems" : { "libraryId" : "234", "itemId" : 1452, "itemType" : "journal" }}<br>
+ * {"getPictures" : { "picId" : "1111", "picFormat" : "jpeg" }}<br>
+ * </code> <br>
+ * Both forms can be mixed : a file is a sequence of documents and the value of a method is either a row or an array
+ * of rows. The rows of a method are appended in the order of the file, and as with the other loaders the data of a
+ * method is taken from the last file that has it.<br>
+ * The scalar values of a row are kept as text, exactly like the values of a CSV file, so that they are converted to
+ * the type of the parameters by the {@link java.beans.PropertyEditor}s. The nested objects and arrays are converted to
+ * {@link Map}s and {@link List}s.<br>
+ * The files are read in UTF-8 by a {@link JsonTokenizer}, which reads the tokens one at a time. When the test data of
+ * a method is streamed, only the current row is held in memory, however large the file. The actual results are
+ * written back the same way, as the {@link Loader#ACTUAL_RESULT} and {@link Loader#TEST_STATUS} members of the rows,
+ * the rest of the file being copied unchanged.
+ *
+ */
+public class JSONDataLoader implements StreamingLoader {
+
+    /**
+     * An instance of logger associated with the test framework.
+     */
+    protected static final Logger LOG = LoggerFactory.getLogger(JSONDataLoader.class);
+
+    /**
+     * The charset of the JSON files
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The size of the buffer of the writer used to write the results back
+     */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Load the data from the specified list of filePaths. The files are loaded in parallel and a file path can be a
+     * glob pattern, as explained in {@link ResourceLoader#resolvePaths(String...)}.
+     *
+     * @param filePaths the list of File paths
+     * @return the data
+     */
+    @Override
+    public Map<String, List<Map<String, Object>>> loadData(String[] filePaths) {
+        return MultiFileLoader.loadAll(ResourceLoader.resolvePaths(filePaths), new MultiFileLoader.FileLoader() {
+            @Override
+            public Map<String, List<Map<String, Object>>> load(String filePath) throws IOException {
+                return loadFile(filePath);
+            }
+        });
+    }
+
+    /**
+     * Stream the data of the given method from the specified list of filePaths. The files are searched from the last
+     * to the first one and the rows of the first file that contains the method, even with no rows, are read one at a
+     * time, as the iterator is consumed. As with {@link #loadData(String[])}, the last file holding the method wins.
+     *
+     * @param filePaths the list of File paths
+     * @param methodName the name of the method whose data needs to be streamed
+     * @return an iterator over the data of the given method
+     */
+    @Override
+    public Iterator<Map<String, Object>> streamData(String[] filePaths, String methodName) {
+        List<String> dataFiles = ResourceLoader.resolvePaths(filePaths);
+        for (int i = dataFiles.size() - 1; i >= 0; i--) {
+            String filePath = dataFiles.get(i);
+            try {
+                JSONRowIterator rows = new JSONRowIterator(filePath, methodName);
+                if (rows.holdsMethod()) {
+                    return rows;
+                }
+            } catch (FileNotFoundException e) {
+                LOG.error("The specified file was not found. The path is : {}", filePath);
+                LOG.error("Continuing with the loading of next file.");
+            } catch (IOException e) {
+                Assert.fail("An I/O exception occured while reading the files from the path :" + filePath);
+            }
+        }
+        return Collections.<Map<String, Object>> emptyList().iterator();
+    }
+
+    /**
+     * Write the actual results, and the test status if any, of the test methods into the given JSON file. The rows
+     * are matched to the results by their position among the rows of their method. The {@link Loader#ACTUAL_RESULT}
+     * and {@link Loader#TEST_STATUS} members of a row are replaced if they exist, or else added after its last member.
+     * The file is rewritten in a single sequential pass into a temporary file, which then replaces the file.
+     *
+     * @param filePath the path to the file to which the data needs to be written
+     * @param actualData the data structure that contains the output data that needs to be written to the file. The
+     *            output data is identified by the key {@link Loader#ACTUAL_RESULT}
+     */
+    @Override
+    public void writeData(String filePath, Map<String, List<Map<String, Object>>> actualData) {
+        boolean hasResults = false;
+        for (List<Map<String, Object>> methodData : actualData.values()) {
+            for (Map<String, Object> row : methodData) {
+                hasResults = hasResults || row.containsKey(ACTUAL_RESULT);
+            }
+        }
+        if (!hasResults) {
+            return;
+        }
+        File tempFile = null;
+        Reader in = null;
+        Writer out = null;
+        try {
+            ResourceLoader resource = new ResourceLoader(filePath);
+            File file = resource.getFile();
+            tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            in = new InputStreamReader(resource.getInputStream(), UTF_8);
+            FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE);
+            CharsetEncoder encoder = UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            out = new BufferedWriter(Channels.newWriter(channel, encoder, -1), WRITE_BUFFER_SIZE);
+            copyWithResults(new JsonTokenizer(in, out), out, actualData);
+            out.flush();
+            channel.force(false);
+            out.close();
+            out = null;
+            resource.replaceWith(tempFile);
+        } catch (IOException e) {
+            LOG.error("Ignoring the write operation as IOException occured while writing the file : " + filePath, e);
+        } finally {
+            closeQuietly(in);
+            closeQuietly(out);
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Load the data of all the methods of the given file
+     *
+     * @param filePath the path of the file
+     * @return a Map of method name and the list of associated test data with that method name
+     * @throws IOException if an I/O exception occurs or if the file is not well formed
+     */
+    private static Map<String, List<Map<String, Object>>> loadFile(String filePath) throws IOException {
+        Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+        Map<String, RowSchema> schemas = new HashMap<String, RowSchema>();
+        Reader in = new InputStreamReader(new ResourceLoader(filePath).getInputStream(), UTF_8);
+        try {
+            JsonRows rows = new JsonRows(new JsonTokenizer(in), null);
+            while (rows.nextRow()) {
+                String methodName = rows.getMethodName();
+                List<Map<String, Object>> methodData = data.get(methodName);
+                if (methodData == null) {
+                    methodData = new ArrayList<Map<String, Object>>();
+                    data.put(methodName, methodData);
+                }
+                Map<String, Object> row = rows.readRow(schemas.get(methodName));
+                schemas.put(methodName, ((CompactRow) row).getSchema());
+                methodData.add(row);
+            }
+            for (String methodName : rows.getMethodNames()) {
+                if (!data.containsKey(methodName)) {
+                    data.put(methodName, new ArrayList<Map<String, Object>>());
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    /**
+     * Copy the JSON text, writing the results into the rows that have one
+     *
+     * @param tokenizer the tokenizer of the existing text, echoing it to the writer
+     * @param out the writer of the new text
+     * @param actualData the data structure that contains the output data
+     * @throws IOException if an I/O exception occurs or if the text is not well formed
+     */
+    private static void copyWithResults(JsonTokenizer tokenizer, Writer out,
+        Map<String, List<Map<String, Object>>> actualData) throws IOException {
+        JsonRows rows = new JsonRows(tokenizer, null);
+        Map<String, Integer> positions = new HashMap<String, Integer>();
+        while (rows.nextRow()) {
+            String methodName = rows.getMethodName();
+            Integer position = positions.get(methodName);
+            position = position == null ? 0 : position + 1;
+            positions.put(methodName, position);
+            List<Map<String, Object>> methodData = actualData.get(methodName);
+            Map<String, Object> result = methodData != null && position < methodData.size() ? methodData
+                .get(position) : null;
+            if (result != null && result.containsKey(ACTUAL_RESULT)) {
+                copyRowWithResult(tokenizer, out, result);
+            } else {
+                copyValue(tokenizer, JsonTokenizer.START_OBJECT);
+            }
+        }
+        tokenizer.echoTo(tokenizer.tokenEnd());
+    }
+
+    /**
+     * Copy a row, replacing or adding its {@link Loader#ACTUAL_RESULT} and {@link Loader#TEST_STATUS} members
+     *
+     * @param tokenizer the tokenizer, positioned on the start of the row
+     * @param out the writer of the new text
+     * @param result the row holding the result
+     * @throws IOException if an I/O exception occurs or if the text is not well formed
+     */
+    private static void copyRowWithResult(JsonTokenizer tokenizer, Writer out, Map<String, Object> result)
+        throws IOException {
+        Map<String, Object> members = new LinkedHashMap<String, Object>();
+        members.put(ACTUAL_RESULT, result.get(ACTUAL_RESULT));
+        if (result.containsKey(TEST_STATUS)) {
+            members.put(TEST_STATUS, result.get(TEST_STATUS));
+        }
+        tokenizer.echoTo(tokenizer.tokenEnd());
+        // The whitespace before the first member, used to indent the added members alike
+        String indent = null;
+        int token = tokenizer.next();
+        while (token != JsonTokenizer.END_OBJECT) {
+            if (indent == null) {
+                indent = tokenizer.textBetween(tokenizer.previousEnd(), tokenizer.tokenStart());
+            }
+            String name = tokenizer.getText();
+            tokenizer.echoTo(tokenizer.tokenEnd());
+            token = tokenizer.next();
+            if (members.containsKey(name)) {
+                tokenizer.echoTo(tokenizer.tokenStart());
+                out.write(quote(members.remove(name)));
+                tokenizer.skipValue(token);
+                tokenizer.skipTo(tokenizer.tokenEnd());
+            } else {
+                copyValue(tokenizer, token);
+            }
+            token = tokenizer.next();
+        }
+        tokenizer.echoTo(tokenizer.previousEnd());
+        for (Map.Entry<String, Object> member : members.entrySet()) {
+            if (indent != null) {
+                out.write(',');
+                out.write(indent.length() == 0 ? " " : indent);
+            }
+            out.write(quote(member.getKey()));
+            out.write(": ");
+            out.write(quote(member.getValue()));
+            indent = indent == null ? " " : indent;
+        }
+        tokenizer.echoTo(tokenizer.tokenEnd());
+    }
+
+    /**
+     * Copy the value starting with the given token, one token at a time
+     *
+     * @param tokenizer the tokenizer, positioned on the first token of the value
+     * @param token the first token of the value
+     * @throws IOException if an I/O exception occurs or if the text is not well formed
+     */
+    private static void copyValue(JsonTokenizer tokenizer, int token) throws IOException {
+        tokenizer.echoTo(tokenizer.tokenEnd());
+        int depth = token == JsonTokenizer.START_OBJECT || token == JsonTokenizer.START_ARRAY ? 1 : 0;
+        while (depth > 0) {
+            token = tokenizer.next();
+            if (token == JsonTokenizer.START_OBJECT || token == JsonTokenizer.START_ARRAY) {
+                depth++;
+            } else if (token == JsonTokenizer.END_OBJECT || token == JsonTokenizer.END_ARRAY) {
+                depth--;
+            }
+            tokenizer.echoTo(tokenizer.tokenEnd());
+        }
+    }
+
+    /**
+     * @param value the value of a member
+     * @return the value as a JSON string, or null
+     */
+    private static String quote(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        String text = value.toString();
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c == '\n') {
+                quoted.append("\\n");
+            } else if (c == '\r') {
+                quoted.append("\\r");
+            } else if (c == '\t') {
+                quoted.append("\\t");
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * @param closeable the stream to close, may be null
+     */
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Walks the documents of a JSON file from row to row, skipping the methods that are not asked for. When the
+     * tokenizer echoes the text, everything that is walked through is echoed.
+     */
+    private static final class JsonRows {
+
+        /**
+         * The tokenizer of the file
+         */
+        private final JsonTokenizer tokenizer;
+
+        /**
+         * The name of the method whose rows are walked, or null for all the methods
+         */
+        private final String methodName;
+
+        /**
+         * Whether the tokenizer is within a document
+         */
+        private boolean inDocument;
+
+        /**
+         * Whether the tokenizer is within the array of rows of a method
+         */
+        private boolean inRows;
+
+        /**
+         * The name of the method of the current row
+         */
+        private String currentMethod;
+
+        /**
+         * The names of the methods walked through so far, including the ones with no rows
+         */
+        private final Set<String> methodNames = new HashSet<String>();
+
+        /**
+         *
+         * Construct a new JsonRows
+         *
+         * @param tokenizer the tokenizer of the file
+         * @param methodName the name of the method whose rows are walked, or null for all the methods
+         */
+        JsonRows(JsonTokenizer tokenizer, String methodName) {
+            this.tokenizer = tokenizer;
+            this.methodName = methodName;
+        }
+
+        /**
+         * Move to the start of the next row
+         *
+         * @return false if there are no more rows
+         * @throws IOException if an I/O exception occurs or if the file is not well formed
+         */
+        boolean nextRow() throws IOException {
+            while (true) {
+                int token = next();
+                if (inRows) {
+                    if (token == JsonTokenizer.START_OBJECT) {
+                        return true;
+                    } else if (token != JsonTokenizer.END_ARRAY) {
+                        throw new IOException("The rows of the method " + currentMethod + " must be JSON objects");
+                    }
+                    inRows = false;
+                } else if (inDocument) {
+                    if (token == JsonTokenizer.END_OBJECT) {
+                        inDocument = false;
+                        continue;
+                    }
+                    String name = tokenizer.getText();
+                    token = next();
+                    if (methodName == null || methodName.equals(name)) {
+                        currentMethod = name;
+                        methodNames.add(name);
+                        if (token == JsonTokenizer.START_OBJECT) {
+                            return true;
+                        } else if (token == JsonTokenizer.START_ARRAY) {
+                            inRows = true;
+                            continue;
+                        }
+                        throw new IOException("The data of the method " + name
+                            + " must be a JSON object or an array of JSON objects");
+                    }
+                    skipValue(token);
+                } else if (token == JsonTokenizer.START_OBJECT) {
+                    inDocument = true;
+                } else if (token == JsonTokenizer.END_DOCUMENT) {
+                    return false;
+                } else {
+                    throw new IOException("The JSON documents holding the test data must be JSON objects");
+                }
+            }
+        }
+
+        /**
+         * @return the name of the method of the current row
+         */
+        String getMethodName() {
+            return currentMethod;
+        }
+
+        /**
+         * @return the names of the methods walked through so far, including the ones with no rows
+         */
+        Set<String> getMethodNames() {
+            return methodNames;
+        }
+
+        /**
+         * Read the current row
+         *
+         * @param schema the schema of the previous row of the method, reused if the row has the same keys, or null
+         * @return the row
+         * @throws IOException if an I/O exception occurs or if the file is not well formed
+         */
+        Map<String, Object> readRow(RowSchema schema) throws IOException {
+            List<String> keys = new ArrayList<String>();
+            List<Object> values = new ArrayList<Object>();
+            int token = tokenizer.next();
+            while (token != JsonTokenizer.END_OBJECT) {
+                keys.add(tokenizer.getText());
+                values.add(readValue(tokenizer.next()));
+                token = tokenizer.next();
+            }
+            if (schema == null || !sameKeys(schema, keys)) {
+                schema = new RowSchema(keys);
+            }
+            CompactRow row = new CompactRow(schema);
+            for (int i = 0; i < keys.size(); i++) {
+                row.put(keys.get(i), values.get(i));
+            }
+            return row;
+        }
+
+        /**
+         * Read the value starting with the given token
+         *
+         * @param token the first token of the value
+         * @return the text of a scalar value, or a {@link Map} or a {@link List} for the objects and the arrays
+         * @throws IOException if an I/O exception occurs or if the file is not well formed
+         */
+        private Object readValue(int token) throws IOException {
+            if (token == JsonTokenizer.START_OBJECT) {
+                Map<String, Object> object = new LinkedHashMap<String, Object>();
+                token = tokenizer.next();
+                while (token != JsonTokenizer.END_OBJECT) {
+                    String name = tokenizer.getText();
+                    object.put(name, readValue(tokenizer.next()));
+                    token = tokenizer.next();
+                }
+                return object;
+            } else if (token == JsonTokenizer.START_ARRAY) {
+                List<Object> array = new ArrayList<Object>();
+                token = tokenizer.next();
+                while (token != JsonTokenizer.END_ARRAY) {
+                    array.add(readValue(token));
+                    token = tokenizer.next();
+                }
+                return array;
+            }
+            return token == JsonTokenizer.NULL ? null : tokenizer.getText();
+        }
+
+        /**
+         * Read the next token, echoing the previous one
+         *
+         * @return the token
+         * @throws IOException if an I/O exception occurs or if the file is not well formed
+         */
+        private int next() throws IOException {
+            if (tokenizer.isEchoing()) {
+                tokenizer.echoTo(tokenizer.tokenEnd());
+            }
+            return tokenizer.next();
+        }
+
+        /**
+         * Skip the value starting with the given token, echoing it if needed
+         *
+         * @param token the first token of the value
+         * @throws IOException if an I/O exception occurs or if the file is not well formed
+         */
+        private void skipValue(int token) throws IOException {
+            if (tokenizer.isEchoing()) {
+                copyValue(tokenizer, token);
+            } else {
+                tokenizer.skipValue(token);
+            }
+        }
+
+        /**
+         * @param schema a schema
+         * @param keys the keys of a row
+         * @return true if the schema has exactly the given keys, in the same order
+         */
+        private static boolean sameKeys(RowSchema schema, List<String> keys) {
+            if (schema.size() != keys.size()) {
+                return false;
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                if (!keys.get(i).equals(schema.getKey(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A {@link RowIterator} over the rows of a method in a JSON file. The file is held open until the iterator is
+     * exhausted.
+     */
+    private static final class JSONRowIterator extends RowIterator {
+
+        /**
+         * The reader of the file
+         */
+        private final Reader in;
+
+        /**
+         * The rows of the method
+         */
+        private final JsonRows rows;
+
+        /**
+         * The schema of the previous row
+         */
+        private RowSchema schema;
+
+        /**
+         *
+         * Construct a new JSONRowIterator
+         *
+         * @param filePath the path of the file
+         * @param methodName the name of the method
+         * @throws IOException if the file can not be opened
+         */
+        JSONRowIterator(String filePath, String methodName) throws IOException {
+            in = new InputStreamReader(new ResourceLoader(filePath).getInputStream(), UTF_8);
+            rows = new JsonRows(new JsonTokenizer(in), methodName);
+        }
+
+        /**
+         * Check whether the file holds the method, even with no rows. The file is read up to the first row of the
+         * method, or to its end if it has none.
+         *
+         * @return true if the file holds the method
+         */
+        boolean holdsMethod() {
+            return hasNext() || !rows.getMethodNames().isEmpty();
+        }
+
+        @Override
+        protected Map<String, Object> computeNext() throws IOException {
+            if (!rows.nextRow()) {
+                return null;
+            }
+            Map<String, Object> row = rows.readRow(schema);
+            schema = ((CompactRow) row).getSchema();
+            return row;
+        }
+
+        @Override
+        protected void close() throws IOException {
+            in.close();
+        }
+    }
+
+}
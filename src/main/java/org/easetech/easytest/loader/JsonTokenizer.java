@@ -0,0 +1,514 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * A pull tokenizer of JSON text, as used by the {@link JSONDataLoader}. The text is read through a small buffer and
+ * the tokens are handed out one at a time, so that the memory used does not depend on the size of the text. The text
+ * can hold any number of top level values separated by whitespace, which covers both the JSON documents and the JSON
+ * Lines files.<br>
+ * The tokenizer checks the structure of the text : the commas and colons are consumed along with the tokens they
+ * separate and a misplaced token fails with an {@link IOException} that gives its line.<br>
+ * The tokenizer can also echo the text it reads to a {@link Writer}, with {@link #echoTo(int)} and
+ * {@link #skipTo(int)} controlling which parts of the text are copied, so that a loader can insert or replace values
+ * while copying the rest of the text unchanged.<br>
+ * A tokenizer is not thread safe and does not close its reader.
+ *
+ */
+final class JsonTokenizer {
+
+    /** The start of an object */
+    static final int START_OBJECT = 1;
+
+    /** The end of an object */
+    static final int END_OBJECT = 2;
+
+    /** The start of an array */
+    static final int START_ARRAY = 3;
+
+    /** The end of an array */
+    static final int END_ARRAY = 4;
+
+    /** The name of a member of an object. The colon following the name is part of the token. */
+    static final int NAME = 5;
+
+    /** A string value */
+    static final int STRING = 6;
+
+    /** A number value, whose text is kept as is */
+    static final int NUMBER = 7;
+
+    /** The true or false value */
+    static final int BOOLEAN = 8;
+
+    /** The null value */
+    static final int NULL = 9;
+
+    /** The end of the text */
+    static final int END_DOCUMENT = 10;
+
+    /**
+     * The initial size of the buffer
+     */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * The maximum depth of the nested objects and arrays
+     */
+    private static final int MAX_DEPTH = 256;
+
+    /** Expecting a value or the end of the enclosing array */
+    private static final byte VALUE_OR_END = 0;
+
+    /** Expecting a value */
+    private static final byte VALUE = 1;
+
+    /** Expecting a name or the end of the enclosing object */
+    private static final byte NAME_OR_END = 2;
+
+    /** Expecting a name */
+    private static final byte NAME_ONLY = 3;
+
+    /** Expecting a comma or the end of the enclosing container */
+    private static final byte COMMA_OR_END = 4;
+
+    /**
+     * The reader of the text
+     */
+    private final Reader in;
+
+    /**
+     * The characters read from the reader and not discarded yet
+     */
+    private char[] buffer = new char[BUFFER_SIZE];
+
+    /**
+     * The position of the next character to read within the buffer
+     */
+    private int pos;
+
+    /**
+     * The number of characters in the buffer
+     */
+    private int limit;
+
+    /**
+     * The line of the next character to read, for the error messages
+     */
+    private int line = 1;
+
+    /**
+     * The containers enclosing the current position, true for an object
+     */
+    private final boolean[] containers = new boolean[MAX_DEPTH];
+
+    /**
+     * The number of containers enclosing the current position
+     */
+    private int depth;
+
+    /**
+     * What is expected next within the current container, or at the top level
+     */
+    private byte expected = VALUE;
+
+    /**
+     * The text of the current token, for the names, strings, numbers and booleans
+     */
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * The position of the start of the current token within the buffer
+     */
+    private int tokenStart;
+
+    /**
+     * The position just after the end of the current token within the buffer
+     */
+    private int tokenEnd;
+
+    /**
+     * The position just after the end of the previous token within the buffer
+     */
+    private int previousEnd;
+
+    /**
+     * The writer to echo the text to, or null
+     */
+    private final Writer echo;
+
+    /**
+     * The position within the buffer of the first character that is neither echoed nor skipped yet
+     */
+    private int echoMark;
+
+    /**
+     *
+     * Construct a new JsonTokenizer
+     *
+     * @param in the reader of the text
+     */
+    JsonTokenizer(Reader in) {
+        this(in, null);
+    }
+
+    /**
+     *
+     * Construct a new JsonTokenizer that echoes the text it reads
+     *
+     * @param in the reader of the text
+     * @param echo the writer to echo the text to, as instructed by {@link #echoTo(int)}, or null
+     */
+    JsonTokenizer(Reader in, Writer echo) {
+        this.in = in;
+        this.echo = echo;
+    }
+
+    /**
+     * Read the next token
+     *
+     * @return the type of the token
+     * @throws IOException if an I/O exception occurs or if the text is not well formed
+     */
+    int next() throws IOException {
+        previousEnd = tokenEnd;
+        text.setLength(0);
+        int c = skipWhitespace();
+        if (expected == COMMA_OR_END && c == ',') {
+            pos++;
+            expected = containers[depth - 1] ? NAME_ONLY : VALUE;
+            c = skipWhitespace();
+        }
+        tokenStart = pos;
+        int token;
+        if (c == -1) {
+            if (depth > 0) {
+                throw error("Unexpected end of the text");
+            }
+            token = END_DOCUMENT;
+        } else if ((c == '}' || c == ']') && (expected == COMMA_OR_END || expected == NAME_OR_END
+            || expected == VALUE_OR_END)) {
+            if (containers[depth - 1] != (c == '}')) {
+                throw error("Unexpected '" + (char) c + "'");
+            }
+            pos++;
+            depth--;
+            token = c == '}' ? END_OBJECT : END_ARRAY;
+            expected = depth == 0 ? VALUE : COMMA_OR_END;
+        } else if (expected == NAME_OR_END || expected == NAME_ONLY) {
+            if (c != '"') {
+                throw error("Expected the name of a member but found '" + (char) c + "'");
+            }
+            readString();
+            if (skipWhitespace() != ':') {
+                throw error("Expected ':' after the name \"" + text + "\"");
+            }
+            pos++;
+            token = NAME;
+            expected = VALUE;
+        } else if (expected == COMMA_OR_END) {
+            throw error("Expected ',' but found '" + (char) c + "'");
+        } else {
+            token = readValue(c);
+        }
+        tokenEnd = pos;
+        return token;
+    }
+
+    /**
+     * @return the text of the current name, string, number or boolean token
+     */
+    String getText() {
+        return text.toString();
+    }
+
+    /**
+     * Skip the value starting with the given token, along with its content
+     *
+     * @param token the first token of the value, as returned by {@link #next()}
+     * @throws IOException if an I/O exception occurs or if the text is not well formed
+     */
+    void skipValue(int token) throws IOException {
+        if (token == START_OBJECT || token == START_ARRAY) {
+            int valueDepth = depth - 1;
+            while (depth > valueDepth) {
+                next();
+            }
+        }
+    }
+
+    /**
+     * @return true if the tokenizer echoes the text it reads
+     */
+    boolean isEchoing() {
+        return echo != null;
+    }
+
+    /**
+     * @return the position within the buffer of the start of the current token
+     */
+    int tokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * @return the position within the buffer just after the end of the current token
+     */
+    int tokenEnd() {
+        return tokenEnd;
+    }
+
+    /**
+     * @return the position within the buffer just after the end of the previous token
+     */
+    int previousEnd() {
+        return previousEnd;
+    }
+
+    /**
+     * Get the text between two positions of the buffer that are not echoed yet, for eg. the whitespace between the
+     * previous and the current token
+     *
+     * @param start the position of the first character
+     * @param end the position after the last character
+     * @return the text
+     */
+    String textBetween(int start, int end) {
+        return new String(buffer, start, end - start);
+    }
+
+    /**
+     * Echo the text that is not echoed yet up to the given position of the buffer
+     *
+     * @param position the position of the buffer, between the last echoed position and the end of the current token
+     * @throws IOException if an I/O exception occurs while writing the text
+     */
+    void echoTo(int position) throws IOException {
+        echo.write(buffer, echoMark, position - echoMark);
+        echoMark = position;
+    }
+
+    /**
+     * Skip the text that is not echoed yet up to the given position of the buffer, so that it is not echoed
+     *
+     * @param position the position of the buffer, between the last echoed position and the end of the current token
+     */
+    void skipTo(int position) {
+        echoMark = position;
+    }
+
+    /**
+     * Read the value starting with the given character
+     *
+     * @param c the first character of the value
+     * @return the type of the first token of the value
+     * @throws IOException if an I/O exception occurs or if the text is not well formed
+     */
+    private int readValue(int c) throws IOException {
+        int token;
+        if (c == '{' || c == '[') {
+            if (depth == MAX_DEPTH) {
+                throw error("The values are nested more than " + MAX_DEPTH + " levels deep");
+            }
+            pos++;
+            containers[depth++] = c == '{';
+            expected = c == '{' ? NAME_OR_END : VALUE_OR_END;
+            return c == '{' ? START_OBJECT : START_ARRAY;
+        } else if (c == '"') {
+            readString();
+            token = STRING;
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            readNumber();
+            token = NUMBER;
+        } else if (c >= 'a' && c <= 'z') {
+            readLiteral();
+            String literal = text.toString();
+            if ("true".equals(literal) || "false".equals(literal)) {
+                token = BOOLEAN;
+            } else if ("null".equals(literal)) {
+                token = NULL;
+            } else {
+                throw error("Unexpected value " + literal);
+            }
+        } else {
+            throw error("Unexpected '" + (char) c + "'");
+        }
+        expected = depth == 0 ? VALUE : COMMA_OR_END;
+        return token;
+    }
+
+    /**
+     * Read a string into {@link #text}, the current character being its opening quote
+     *
+     * @throws IOException if an I/O exception occurs or if the string is not well formed
+     */
+    private void readString() throws IOException {
+        pos++;
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw error("Unterminated string");
+            }
+            int start = pos;
+            while (pos < limit && buffer[pos] != '"' && buffer[pos] != '\\') {
+                if (buffer[pos] == '\n') {
+                    throw error("Unterminated string");
+                }
+                pos++;
+            }
+            text.append(buffer, start, pos - start);
+            if (pos < limit) {
+                if (buffer[pos++] == '"') {
+                    return;
+                }
+                readEscape();
+            }
+        }
+    }
+
+    /**
+     * Read an escape sequence of a string, the backslash being already read
+     *
+     * @throws IOException if an I/O exception occurs or if the escape sequence is not well formed
+     */
+    private void readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                text.append((char) c);
+                break;
+            case 'b':
+                text.append('\b');
+                break;
+            case 'f':
+                text.append('\f');
+                break;
+            case 'n':
+                text.append('\n');
+                break;
+            case 'r':
+                text.append('\r');
+                break;
+            case 't':
+                text.append('\t');
+                break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw error("Invalid unicode escape sequence");
+                    }
+                    value = (value << 4) | digit;
+                }
+                text.append((char) value);
+                break;
+            default:
+                throw error("Invalid escape sequence");
+        }
+    }
+
+    /**
+     * Read a number into {@link #text}. The number is checked by the {@link java.beans.PropertyEditor} converting it.
+     *
+     * @throws IOException if an I/O exception occurs
+     */
+    private void readNumber() throws IOException {
+        while (pos < limit || fill()) {
+            char c = buffer[pos];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                text.append(c);
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Read a literal, such as true, into {@link #text}
+     *
+     * @throws IOException if an I/O exception occurs
+     */
+    private void readLiteral() throws IOException {
+        while ((pos < limit || fill()) && buffer[pos] >= 'a' && buffer[pos] <= 'z') {
+            text.append(buffer[pos++]);
+        }
+    }
+
+    /**
+     * Skip the whitespace
+     *
+     * @return the next character, that is not consumed, or -1 at the end of the text
+     * @throws IOException if an I/O exception occurs
+     */
+    private int skipWhitespace() throws IOException {
+        while (pos < limit || fill()) {
+            char c = buffer[pos];
+            if (c == '\n') {
+                line++;
+            } else if (c != ' ' && c != '\t' && c != '\r' && c != '\uFEFF') {
+                return c;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    /**
+     * Read the next character
+     *
+     * @return the character
+     * @throws IOException if an I/O exception occurs or at the end of the text
+     */
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            throw error("Unexpected end of the text");
+        }
+        return buffer[pos++];
+    }
+
+    /**
+     * Read more characters into the buffer. When echoing, the characters that are not echoed yet are kept, otherwise
+     * the characters already read are discarded.
+     *
+     * @return false at the end of the text
+     * @throws IOException if an I/O exception occurs
+     */
+    private boolean fill() throws IOException {
+        int keep = echo != null ? echoMark : pos;
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+            limit -= keep;
+            pos -= keep;
+            echoMark -= Math.min(echoMark, keep);
+            tokenStart -= Math.min(tokenStart, keep);
+            tokenEnd -= Math.min(tokenEnd, keep);
+            previousEnd -= Math.min(previousEnd, keep);
+        }
+        if (limit == buffer.length) {
+            char[] larger = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, limit);
+            buffer = larger;
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read <= 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    /**
+     * @param message the description of the error
+     * @return an exception giving the line of the error
+     */
+    private IOException error(String message) {
+        return new IOException(message + " at line " + line + " of the JSON text");
+    }
+
+}
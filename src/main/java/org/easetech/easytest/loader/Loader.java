@@ -43,8 +43,14 @@ public interface Loader {
     Map<String, List<Map<String, Object>>> loadData(String[] filePaths);
     
     /**
-     * Method responsible for writing the test data and actual result back to the file
-     * @param filePath the path to the file to which data needs to be written
+     * Method responsible for writing the test data and actual result back to the file.
+     * It is called once a test class loading its data from the file has run, or once all of them have run when the
+     * results are journaled by a {@link ResultSink}, with the test data of all the methods : every row of every
+     * method is passed, in the order it was loaded, and the rows that were run contain their {@link #ACTUAL_RESULT}
+     * and optionally their {@link #TEST_STATUS}. A row without {@link #ACTUAL_RESULT} was not run and is written as it
+     * was loaded.
+     * @param filePath the path to the file to which data needs to be written. It is a single file that can be written,
+     * the first one the test data was loaded from, even when the test data was loaded using a glob pattern.
      * @param actualData a Map consisting of the methodName as key and a List of Key/value pairs as the value of the Map. 
      * This Map contains the input as well as output data 
      * This is currently not a user friendly way of exposing the test data. 
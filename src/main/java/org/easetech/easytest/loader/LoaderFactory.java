@@ -5,6 +5,7 @@ import junit.framework.Assert;
 
 /**
  * A factory class responsible for churning out Loader instances based on the type of {@link LoaderType} to load the data from.
+ * The loaders are looked up in the {@link LoaderRegistry}, so the same instance of a shared loader is returned every time.
  * @author Anuj kumar
  *
  */
@@ -12,23 +13,59 @@ public class LoaderFactory {
     
     /**
      * Return an instance of {@link Loader} based on the type of file or return null.
+     * When the cache is enabled, the returned loader caches the loaded data as explained in {@link CachingLoader},
+     * except for the {@link JDBCDataLoader}.
      * @param loaderType the type of the loader
      * @return an instance of {@link Loader} or null if no loader is found.
      */
     public static Loader getLoader(LoaderType loaderType){
-        Loader loader = null;
-        if(LoaderType.CSV.equals(loaderType)){
-            loader = new CSVDataLoader();
-        }else if(LoaderType.EXCEL.equals(loaderType)){
-        	loader = new ExcelDataLoader();
-        }else if(LoaderType.XML.equals(loaderType)){
-        	loader = new XMLDataLoader();
-        }else{
+        Loader loader = LoaderRegistry.getInstance().getLoader(loaderType.name());
+        if(loader == null){
             Assert.fail("The framework currently does not support the specified Loader type. " +
                 "You can provide the custom Loader by choosing LoaderType.CUSTOM in TestData " +
                 "annotation and providing your custom loader using DataLoader annotation." );
         }
-        return loader;
+        return cached(loader, loaderType.name());
+    }
+
+    /**
+     * Return an instance of {@link Loader} based on the extension of the given files, as registered with the
+     * {@link LoaderRegistry}. The extension of the first file is used.
+     * When the cache is enabled, the returned loader caches the loaded data as explained in {@link CachingLoader}.
+     * @param filePaths the paths of the files
+     * @return an instance of {@link Loader} or null if no loader is registered for the extension of the files.
+     */
+    public static Loader getLoaderOfFiles(String[] filePaths){
+        if(filePaths.length == 0){
+            return null;
+        }
+        LoaderRegistry registry = LoaderRegistry.getInstance();
+        Loader loader = registry.getLoaderOfFile(filePaths[0]);
+        return loader == null ? null : cached(loader, registry.getTypeOfFile(filePaths[0]));
+    }
+
+    /**
+     * Return an instance of the given custom {@link Loader} class, that caches the loaded data as explained in
+     * {@link CachingLoader} when the cache is enabled, unless it is a {@link JDBCDataLoader}. The instance is shared if the class is registered as shared with the {@link LoaderRegistry}.
+     * @param loaderClass the class of the loader
+     * @return an instance of {@link Loader}
+     */
+    public static Loader getLoader(Class<? extends Loader> loaderClass){
+        return cached(LoaderRegistry.getInstance().getLoader(loaderClass), LoaderType.CUSTOM.name() + ":"
+            + loaderClass.getName());
+    }
+
+    /**
+     * @param loader the loader
+     * @param loaderKey identifies the type of the loader within the cache key
+     * @return the loader, wrapped in a {@link CachingLoader} if its data can be cached
+     */
+    private static Loader cached(Loader loader, String loaderKey){
+        if(loader instanceof JDBCDataLoader){
+            // The content of a database can change at any time, so it is never cached
+            return loader;
+        }
+        return CachingLoader.wrap(loader, loaderKey);
     }
 
 }
@@ -0,0 +1,30 @@
+
+package org.easetech.easytest.loader;
+
+import java.util.ServiceLoader;
+
+/**
+ * A provider of {@link Loader}s, discovered using a {@link ServiceLoader}. A provider is declared by listing the name
+ * of its class in the file <B>META-INF/services/org.easetech.easytest.loader.LoaderProvider</B> of a jar, and it
+ * registers its loaders with the {@link LoaderRegistry} the first time a loader is asked for. For eg. :<br>
+ * <code>
+ * public class YamlLoaderProvider implements LoaderProvider {<br>
+ * &nbsp;&nbsp;public void registerLoaders(LoaderRegistry registry) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;registry.register("YAML", YamlDataLoader.class, true, "yaml", "yml");<br>
+ * &nbsp;&nbsp;}<br>
+ * }<br>
+ * </code>
+ * The loaders registered by the providers take precedence over the loaders of the framework, so a provider can also
+ * replace the loader of one of the {@link LoaderType}s.
+ *
+ */
+public interface LoaderProvider {
+
+    /**
+     * Register the loaders of this provider
+     *
+     * @param registry the registry to register the loaders with
+     */
+    void registerLoaders(LoaderRegistry registry);
+
+}
@@ -0,0 +1,272 @@
+
+package org.easetech.easytest.loader;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.easetech.easytest.util.ResourceLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The registry of the {@link Loader}s known to the framework, by type name and by file extension. The loaders of the
+ * {@link LoaderType}s are registered first, followed by the loaders of the {@link LoaderProvider}s discovered using a
+ * {@link ServiceLoader}, from the class loader of the framework and from the context class loader.<br>
+ * A loader that is registered as shared must be stateless and thread safe : a single instance of it is created and
+ * used by all the tests of the JVM, so that any expensive state it builds, such as parsers, JAXB contexts or schemas,
+ * is only built once. The other loaders are instantiated every time they are asked for. The shared loaders read any
+ * system property configuring them once, when they are created.
+ *
+ */
+public final class LoaderRegistry {
+
+    /**
+     * An instance of logger associated with the test framework.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(LoaderRegistry.class);
+
+    /**
+     * The extension of the compressed files, which is ignored when looking up a loader by file extension
+     */
+    private static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * The registry of the JVM, created on first use
+     */
+    private static volatile LoaderRegistry instance;
+
+    /**
+     * The registered loaders, by upper case type name
+     */
+    private final Map<String, Registration> byType = new ConcurrentHashMap<String, Registration>();
+
+    /**
+     * The registered loaders, by lower case file extension
+     */
+    private final Map<String, Registration> byExtension = new ConcurrentHashMap<String, Registration>();
+
+    /**
+     * The registered loaders, by class
+     */
+    private final Map<Class<? extends Loader>, Registration> byClass = new ConcurrentHashMap<Class<? extends Loader>, Registration>();
+
+    /**
+     * Construct a new empty LoaderRegistry
+     */
+    private LoaderRegistry() {
+        super();
+    }
+
+    /**
+     * @return the registry of the JVM, holding the loaders of the framework and of the discovered providers
+     */
+    public static LoaderRegistry getInstance() {
+        LoaderRegistry registry = instance;
+        if (registry == null) {
+            synchronized (LoaderRegistry.class) {
+                registry = instance;
+                if (registry == null) {
+                    registry = new LoaderRegistry();
+                    new BuiltInLoaderProvider().registerLoaders(registry);
+                    registry.discoverProviders();
+                    instance = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Register a loader, replacing any loader previously registered for the same type name or file extensions
+     *
+     * @param type the name of the type of data handled by the loader, for eg. the name of a {@link LoaderType}
+     * @param loaderClass the class of the loader, that must have a no arg constructor
+     * @param shared whether the loader is stateless and thread safe, so that a single instance of it is shared by all
+     *            the tests of the JVM
+     * @param fileExtensions the extensions of the files handled by the loader, without the dot, for eg. "csv"
+     */
+    public void register(String type, Class<? extends Loader> loaderClass, boolean shared, String... fileExtensions) {
+        Registration registration = new Registration(type.toUpperCase(Locale.ENGLISH), loaderClass, shared);
+        byType.put(registration.type, registration);
+        byClass.put(loaderClass, registration);
+        for (String extension : fileExtensions) {
+            byExtension.put(extension.toLowerCase(Locale.ENGLISH), registration);
+        }
+    }
+
+    /**
+     * Get the loader of the given type
+     *
+     * @param type the name of the type, case insensitive
+     * @return the loader or null if no loader is registered for the type
+     */
+    public Loader getLoader(String type) {
+        Registration registration = byType.get(type.toUpperCase(Locale.ENGLISH));
+        return registration == null ? null : registration.getLoader();
+    }
+
+    /**
+     * Get the loader of the given class. The shared instance of the class is returned if the class is registered as
+     * shared, or else a new instance.
+     *
+     * @param loaderClass the class of the loader, that must have a no arg constructor
+     * @return the loader
+     */
+    public Loader getLoader(Class<? extends Loader> loaderClass) {
+        Registration registration = byClass.get(loaderClass);
+        return registration == null ? newLoader(loaderClass) : registration.getLoader();
+    }
+
+    /**
+     * Get the name of the type of the loader registered for the extension of the given file. The extension
+     * {@value #GZIP_EXTENSION} of the compressed files is ignored, as is the path of the archive of a zip entry.
+     *
+     * @param filePath the path of the file
+     * @return the name of the type or null if no loader is registered for the extension of the file
+     */
+    public String getTypeOfFile(String filePath) {
+        Registration registration = registrationOfFile(filePath);
+        return registration == null ? null : registration.type;
+    }
+
+    /**
+     * Get the loader registered for the extension of the given file, as explained in {@link #getTypeOfFile(String)}
+     *
+     * @param filePath the path of the file
+     * @return the loader or null if no loader is registered for the extension of the file
+     */
+    public Loader getLoaderOfFile(String filePath) {
+        Registration registration = registrationOfFile(filePath);
+        return registration == null ? null : registration.getLoader();
+    }
+
+    /**
+     * @param filePath the path of a file
+     * @return the registration of the extension of the file, or null
+     */
+    private Registration registrationOfFile(String filePath) {
+        String name = filePath;
+        int archiveSeparator = name.lastIndexOf(ResourceLoader.ARCHIVE_SEPARATOR);
+        if (archiveSeparator >= 0) {
+            name = name.substring(archiveSeparator + ResourceLoader.ARCHIVE_SEPARATOR.length());
+        }
+        name = name.substring(name.lastIndexOf('/') + 1).toLowerCase(Locale.ENGLISH);
+        if (name.endsWith(GZIP_EXTENSION)) {
+            name = name.substring(0, name.length() - GZIP_EXTENSION.length());
+        }
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? null : byExtension.get(name.substring(dot + 1));
+    }
+
+    /**
+     * Register the loaders of the providers found by a {@link ServiceLoader}. A provider that fails is logged and
+     * ignored.
+     */
+    private void discoverProviders() {
+        Set<ClassLoader> classLoaders = new LinkedHashSet<ClassLoader>();
+        classLoaders.add(LoaderRegistry.class.getClassLoader());
+        if (Thread.currentThread().getContextClassLoader() != null) {
+            classLoaders.add(Thread.currentThread().getContextClassLoader());
+        }
+        Set<String> providers = new LinkedHashSet<String>();
+        for (ClassLoader classLoader : classLoaders) {
+            Iterator<LoaderProvider> iterator = ServiceLoader.load(LoaderProvider.class, classLoader).iterator();
+            while (true) {
+                try {
+                    if (!iterator.hasNext()) {
+                        break;
+                    }
+                    LoaderProvider provider = iterator.next();
+                    if (providers.add(provider.getClass().getName())) {
+                        LOG.info("Registering the loaders of the provider {}", provider.getClass().getName());
+                        provider.registerLoaders(this);
+                    }
+                } catch (ServiceConfigurationError e) {
+                    LOG.error("Ignoring a loader provider that could not be loaded.", e);
+                } catch (RuntimeException e) {
+                    LOG.error("Ignoring a loader provider that failed to register its loaders.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Instantiate the given class of loader
+     *
+     * @param loaderClass the class of the loader
+     * @return a new instance of the class
+     */
+    private static Loader newLoader(Class<? extends Loader> loaderClass) {
+        try {
+            return loaderClass.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Exception occured while trying to instantiate a class of type :"
+                + loaderClass, e);
+        }
+    }
+
+    /**
+     * A registered loader
+     */
+    private static final class Registration {
+
+        /**
+         * The upper case name of the type of the loader
+         */
+        final String type;
+
+        /**
+         * The class of the loader
+         */
+        final Class<? extends Loader> loaderClass;
+
+        /**
+         * Whether a single instance of the loader is shared
+         */
+        final boolean shared;
+
+        /**
+         * The shared instance, created on first use
+         */
+        private volatile Loader sharedLoader;
+
+        /**
+         * Construct a new Registration
+         *
+         * @param type the upper case name of the type of the loader
+         * @param loaderClass the class of the loader
+         * @param shared whether a single instance of the loader is shared
+         */
+        Registration(String type, Class<? extends Loader> loaderClass, boolean shared) {
+            this.type = type;
+            this.loaderClass = loaderClass;
+            this.shared = shared;
+        }
+
+        /**
+         * @return the shared instance of the loader, or a new instance if the loader is not shared
+         */
+        Loader getLoader() {
+            if (!shared) {
+                return newLoader(loaderClass);
+            }
+            Loader loader = sharedLoader;
+            if (loader == null) {
+                synchronized (this) {
+                    loader = sharedLoader;
+                    if (loader == null) {
+                        loader = newLoader(loaderClass);
+                        sharedLoader = loader;
+                    }
+                }
+            }
+            return loader;
+        }
+    }
+
+}
@@ -29,6 +29,16 @@ public enum LoaderType {
      * This is currently just a place holder and will be supported in future.
      */
     EXCEL,
+    /**
+     * Identifies that the test data is read from a database using JDBC.
+     * The file should describe the database and the queries as identified in {@link JDBCDataLoader}
+     */
+    JDBC,
+    /**
+     * Identifies that the type of file is a JSON document or a JSON Lines file.
+     * This file should support the structure as identified in {@link JSONDataLoader}
+     */
+    JSON,
     /**
      * Identifies that the type of file is a user defined custom type. 
      * This option is used in conjunction with {@link DataLoader} annotation.
@@ -0,0 +1,329 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A {@link CSVRecordReader} that memory maps the CSV file using {@link FileChannel#map(FileChannel.MapMode, long, long)}
+ * and tokenizes the records directly on the mapped bytes. Reading a record only records the boundaries of its
+ * values, a value is decoded to a String only when it is asked for using {@link #get(int)}. Thus the values of the
+ * records that the framework skips are never decoded.<br>
+ * The reader follows the same conventions as the default reader used by the {@link CSVDataLoader}:
+ * <ul>
+ * <li>values are separated by a comma and records by CR, LF or CRLF</li>
+ * <li>empty lines are skipped</li>
+ * <li>the whitespace around a value is trimmed</li>
+ * <li>a value can be enclosed in double quotes, in which case it can contain commas, line breaks and double quotes
+ * written twice</li>
+ * </ul>
+ * The tokenizer works on bytes, so the charset of the file must encode the comma, the double quote and the line
+ * breaks as single ASCII bytes, which is the case for UTF-8, the ISO-8859 family and the windows code pages. The file
+ * can not be larger than {@link Integer#MAX_VALUE} bytes.<br>
+ * The mapping is released when the reader is closed, rather than when the buffer is garbage collected, so that the
+ * file can be written again while the tests run. On Windows, a file can not be replaced as long as it is mapped.
+ *
+ */
+class MappedCSVReader implements CSVRecordReader {
+
+    /** Separator between columns in a CSV file */
+    private static final byte COMMA = ',';
+
+    /** The text qualifier */
+    private static final byte QUOTE = '"';
+
+    /** Carriage return */
+    private static final byte CR = '\r';
+
+    /** Line feed */
+    private static final byte LF = '\n';
+
+    /** The UTF-8 byte order mark, skipped at the start of a UTF-8 file whatever the reader */
+    static final byte[] UTF8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    /**
+     * The channel of the mapped file
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapped content of the file, or null once the reader is closed
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The charset used to decode the values
+     */
+    private final Charset charset;
+
+    /**
+     * The position of the next byte to tokenize
+     */
+    private int position;
+
+    /**
+     * The number of values in the current record
+     */
+    private int columnCount;
+
+    /**
+     * The start offsets of the values in the current record
+     */
+    private int[] starts = new int[16];
+
+    /**
+     * The end offsets(exclusive) of the values in the current record
+     */
+    private int[] ends = new int[16];
+
+    /**
+     * Whether the value contains double quotes written twice, that need to be unescaped while decoding.
+     */
+    private boolean[] escaped = new boolean[16];
+
+    /**
+     * Scratch buffer used for decoding the values
+     */
+    private byte[] scratch = new byte[256];
+
+    /**
+     *
+     * Construct a new MappedCSVReader
+     *
+     * @param channel the channel of the file to read. The channel is closed by {@link #close()}
+     * @param charset the charset of the file
+     * @throws IOException if the file can not be mapped
+     */
+    MappedCSVReader(FileChannel channel, Charset charset) throws IOException {
+        if (!isSupported(charset)) {
+            throw new IllegalArgumentException("Charset " + charset
+                + " can not be tokenized in place. Use the default CSV reader for this charset.");
+        }
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File of size " + size + " is too large to be memory mapped.");
+        }
+        this.channel = channel;
+        this.charset = charset;
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (skipsBOM(charset) && size >= UTF8_BOM.length && buffer.get(0) == UTF8_BOM[0] && buffer.get(1) == UTF8_BOM[1]
+            && buffer.get(2) == UTF8_BOM[2]) {
+            position = UTF8_BOM.length;
+        }
+    }
+
+    /**
+     * Check whether a byte order mark at the start of a file of the given charset is skipped. In any other charset,
+     * the bytes of the UTF-8 byte order mark are regular characters and are kept.
+     *
+     * @param charset the charset of the file
+     * @return true if the charset is UTF-8
+     */
+    static boolean skipsBOM(Charset charset) {
+        return "UTF-8".equals(charset.name());
+    }
+
+    /**
+     * Check whether the given charset can be tokenized in place.
+     *
+     * @param charset the charset to check
+     * @return true if the separators are encoded as single ASCII bytes in the given charset
+     */
+    static boolean isSupported(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        try {
+            ByteBuffer separators = charset.newEncoder().encode(CharBuffer.wrap(",\"\r\n"));
+            byte[] expected = { COMMA, QUOTE, CR, LF };
+            byte[] actual = new byte[separators.remaining()];
+            separators.get(actual);
+            return Arrays.equals(expected, actual);
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean readRecord() {
+        int limit = buffer.limit();
+        // skip empty lines
+        while (position < limit && (buffer.get(position) == CR || buffer.get(position) == LF)) {
+            position++;
+        }
+        if (position >= limit) {
+            columnCount = 0;
+            return false;
+        }
+        columnCount = 0;
+        while (true) {
+            while (position < limit && isWhitespace(buffer.get(position))) {
+                position++;
+            }
+            if (position < limit && buffer.get(position) == QUOTE) {
+                readQuotedValue(limit);
+            } else {
+                int start = position;
+                while (position < limit && !isDelimiter(buffer.get(position))) {
+                    position++;
+                }
+                int end = position;
+                while (end > start && isWhitespace(buffer.get(end - 1))) {
+                    end--;
+                }
+                addValue(start, end, false);
+            }
+            if (position >= limit) {
+                return true;
+            }
+            byte delimiter = buffer.get(position++);
+            if (delimiter != COMMA) {
+                if (delimiter == CR && position < limit && buffer.get(position) == LF) {
+                    position++;
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Read a value enclosed in double quotes. Anything between the closing quote and the next delimiter is ignored.
+     *
+     * @param limit the limit of the buffer
+     */
+    private void readQuotedValue(int limit) {
+        int start = ++position;
+        int end = limit;
+        boolean hasEscapes = false;
+        while (position < limit) {
+            if (buffer.get(position) == QUOTE) {
+                if (position + 1 < limit && buffer.get(position + 1) == QUOTE) {
+                    hasEscapes = true;
+                    position += 2;
+                    continue;
+                }
+                end = position++;
+                break;
+            }
+            position++;
+        }
+        while (position < limit && !isDelimiter(buffer.get(position))) {
+            position++;
+        }
+        addValue(start, end, hasEscapes);
+    }
+
+    /**
+     * Record the boundaries of a value of the current record
+     *
+     * @param start the start offset of the value
+     * @param end the end offset of the value
+     * @param hasEscapes whether the value contains escaped double quotes
+     */
+    private void addValue(int start, int end, boolean hasEscapes) {
+        if (columnCount == starts.length) {
+            starts = Arrays.copyOf(starts, columnCount * 2);
+            ends = Arrays.copyOf(ends, columnCount * 2);
+            escaped = Arrays.copyOf(escaped, columnCount * 2);
+        }
+        starts[columnCount] = start;
+        ends[columnCount] = end;
+        escaped[columnCount] = hasEscapes;
+        columnCount++;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public String get(int column) {
+        if (column >= columnCount || starts[column] == ends[column]) {
+            return "";
+        }
+        int length = ends[column] - starts[column];
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        int count = 0;
+        for (int i = starts[column]; i < ends[column]; i++) {
+            byte b = buffer.get(i);
+            scratch[count++] = b;
+            if (b == QUOTE && escaped[column]) {
+                // skip the second of the two double quotes
+                i++;
+            }
+        }
+        return new String(scratch, 0, count, charset);
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing more can be read anyways
+        }
+        if (buffer != null) {
+            unmap(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Release the mapping of the given buffer, using <B>sun.misc.Unsafe.invokeCleaner(buffer)</B> on JDK 9 and later,
+     * or else <B>((sun.nio.ch.DirectBuffer) buffer).cleaner().clean()</B>. The methods are called using reflection, as
+     * they are not part of the API of the JDK. If neither is available, the mapping is released when the buffer is
+     * garbage collected. The buffer must not be used afterwards.
+     *
+     * @param buffer the mapped buffer
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (Exception e) {
+            // Before JDK 9
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // The mapping is released once the buffer is garbage collected
+        }
+    }
+
+    /**
+     * @param b the byte to check
+     * @return true if the byte ends a value
+     */
+    private static boolean isDelimiter(byte b) {
+        return b == COMMA || b == CR || b == LF;
+    }
+
+    /**
+     * @param b the byte to check
+     * @return true if the byte is whitespace that is trimmed around the values
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+}
@@ -0,0 +1,242 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the test data from a list of files in parallel, using a bounded {@link ForkJoinPool} that is shared by all
+ * the built in loaders. Each file is read by a separate task, but the results are merged in the order of the files, so
+ * that the data of a method defined in a later file overrides the data of the same method defined in an earlier file,
+ * exactly as if the files were read one after the other.<br>
+ * The number of threads of the pool can be specified using the system property {@value #PARALLELISM_PROPERTY} and
+ * defaults to the number of available processors, up to 8. A parallelism of 1 loads the files on the calling thread.<br>
+ * The same pool can also run finer grained tasks of the loaders through {@link #invokeAll(List)}.
+ *
+ */
+final class MultiFileLoader {
+
+    /**
+     * The system property that specifies the number of threads used to load the files
+     */
+    static final String PARALLELISM_PROPERTY = "easytest.loader.parallelism";
+
+    /**
+     * An instance of logger associated with the test framework.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(MultiFileLoader.class);
+
+    /**
+     * The parallelism of the pool
+     */
+    static final int PARALLELISM = Integer.getInteger(PARALLELISM_PROPERTY,
+        Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
+    /**
+     * The pool shared by all the loaders. Created on first use.
+     */
+    private static ForkJoinPool pool;
+
+    /**
+     * Reads the data of a single file
+     */
+    interface FileLoader {
+
+        /**
+         * Load the data of the given file
+         *
+         * @param filePath the path of the file
+         * @return a Map of method name and the list of associated test data with that method name
+         * @throws IOException if an IO Exception occurs
+         */
+        Map<String, List<Map<String, Object>>> load(String filePath) throws IOException;
+    }
+
+    private MultiFileLoader() {
+        // utility class
+    }
+
+    /**
+     * Load the data of all the given files and merge them in the order of the files.
+     * Files that can not be read are logged and skipped.
+     *
+     * @param dataFiles the list of files, already resolved using {@link org.easetech.easytest.util.ResourceLoader#resolvePaths(String...)}
+     * @param fileLoader the loader of a single file
+     * @return a Map of method name and the list of associated test data with that method name
+     */
+    static Map<String, List<Map<String, Object>>> loadAll(final List<String> dataFiles, final FileLoader fileLoader) {
+        Map<String, List<Map<String, Object>>> finalData = new HashMap<String, List<Map<String, Object>>>();
+        if (dataFiles.size() <= 1 || PARALLELISM <= 1) {
+            for (String filePath : dataFiles) {
+                Map<String, List<Map<String, Object>>> data = loadFile(filePath, fileLoader);
+                if (data != null) {
+                    finalData.putAll(data);
+                }
+            }
+            return finalData;
+        }
+        List<Callable<Map<String, List<Map<String, Object>>>>> tasks = new ArrayList<Callable<Map<String, List<Map<String, Object>>>>>(
+            dataFiles.size());
+        for (final String filePath : dataFiles) {
+            tasks.add(new Callable<Map<String, List<Map<String, Object>>>>() {
+                @Override
+                public Map<String, List<Map<String, Object>>> call() {
+                    return loadFile(filePath, fileLoader);
+                }
+            });
+        }
+        List<Map<String, List<Map<String, Object>>>> results;
+        try {
+            results = invokeAll(tasks);
+        } catch (IOException e) {
+            // loadFile already handles the I/O exceptions
+            throw new IllegalStateException(e);
+        }
+        for (Map<String, List<Map<String, Object>>> data : results) {
+            if (data != null) {
+                finalData.putAll(data);
+            }
+        }
+        return finalData;
+    }
+
+    /**
+     * Run the given tasks on the pool shared by the loaders and wait for their results. The tasks are run on the
+     * calling thread when there is a single task or when the parallelism is 1. When called from a task that already
+     * runs on the pool, the tasks are forked within the pool, so that nested tasks never wait for a free thread.
+     *
+     * @param <T> the type of the results
+     * @param tasks the tasks to run
+     * @return the results of the tasks, in the order of the tasks
+     * @throws IOException if a task failed with an I/O exception
+     */
+    static <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (tasks.size() <= 1 || PARALLELISM <= 1) {
+            for (Callable<T> task : tasks) {
+                results.add(call(task));
+            }
+            return results;
+        }
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        List<ForkJoinTask<T>> forkJoinTasks = new ArrayList<ForkJoinTask<T>>(tasks.size());
+        for (final Callable<T> task : tasks) {
+            forkJoinTasks.add(new RecursiveTask<T>() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected T compute() {
+                    Thread worker = Thread.currentThread();
+                    ClassLoader previous = worker.getContextClassLoader();
+                    worker.setContextClassLoader(classLoader);
+                    try {
+                        return call(task);
+                    } catch (IOException e) {
+                        throw new TaskFailure(e);
+                    } finally {
+                        worker.setContextClassLoader(previous);
+                    }
+                }
+            });
+        }
+        boolean withinPool = ForkJoinTask.getPool() == getPool();
+        for (ForkJoinTask<T> task : forkJoinTasks) {
+            if (withinPool) {
+                task.fork();
+            } else {
+                getPool().execute(task);
+            }
+        }
+        try {
+            for (ForkJoinTask<T> task : forkJoinTasks) {
+                results.add(task.join());
+            }
+        } catch (TaskFailure e) {
+            throw e.getCause();
+        }
+        return results;
+    }
+
+    /**
+     * Run a single task on the calling thread
+     *
+     * @param <T> the type of the result
+     * @param task the task to run
+     * @return the result of the task
+     * @throws IOException if the task failed with an I/O exception
+     */
+    private static <T> T call(Callable<T> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Load the data of a single file, logging the failures
+     *
+     * @param filePath the path of the file
+     * @param fileLoader the loader of a single file
+     * @return the data of the file or null if the file could not be read
+     */
+    private static Map<String, List<Map<String, Object>>> loadFile(String filePath, FileLoader fileLoader) {
+        try {
+            return fileLoader.load(filePath);
+        } catch (FileNotFoundException e) {
+            LOG.error("The specified file was not found. The path is : {}", filePath);
+            LOG.error("Continuing with the loading of next file.");
+        } catch (IOException e) {
+            LOG.error("IO Exception occured while trying to read the data from the file : {}", filePath);
+            LOG.error("Continuing with the loading of next file.");
+        }
+        return null;
+    }
+
+    /**
+     * @return the pool shared by all the loaders
+     */
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(PARALLELISM);
+        }
+        return pool;
+    }
+
+    /**
+     * Carries the I/O exception of a task out of the pool
+     */
+    private static class TaskFailure extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Construct a new TaskFailure
+         *
+         * @param cause the I/O exception of the task
+         */
+        TaskFailure(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append only file holding the results of the test methods that are not yet written to the data file, so that
+ * they survive a crash of the JVM. Each result is written as a record made of its length, its checksum and its
+ * content : the name of the method, the position of the row within the data of the method and the entries of the row.
+ * The values of the row are written as Strings, which is all the {@link Loader}s need to write the results.<br>
+ * A record that was only partially written when the JVM crashed is detected by its length or its checksum and is
+ * ignored, along with anything that follows it. Such a record is truncated before any new result is appended.<br>
+ * A journal is not thread safe.
+ *
+ */
+final class ResultJournal {
+
+    /**
+     * The journal file
+     */
+    private final File file;
+
+    /**
+     * The stream appending to the journal file, opened on demand
+     */
+    private FileOutputStream fileOut;
+
+    /**
+     * The buffered stream over {@link #fileOut}
+     */
+    private DataOutputStream out;
+
+    /**
+     * The buffer in which a record is encoded before being written
+     */
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+    /**
+     * The checksum of the records
+     */
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * The length of the valid records of the journal file, as found by the last call to {@link #read(Map)}
+     */
+    private long validLength;
+
+    /**
+     *
+     * Construct a new ResultJournal
+     *
+     * @param file the journal file
+     */
+    ResultJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the journal file
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Read the results recorded in the journal file, if it exists
+     *
+     * @param results the data structure to add the results to, by method and row position. The missing rows are
+     *            filled with empty rows.
+     * @return the number of results read
+     * @throws IOException if an I/O exception occurs
+     */
+    int read(Map<String, List<Map<String, Object>>> results) throws IOException {
+        validLength = 0;
+        if (!file.isFile()) {
+            return 0;
+        }
+        int count = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            byte[] buffer = new byte[256];
+            while (true) {
+                int length;
+                long expectedChecksum;
+                try {
+                    length = in.readInt();
+                    expectedChecksum = in.readLong();
+                    if (length < 0) {
+                        break;
+                    }
+                    if (buffer.length < length) {
+                        buffer = new byte[length];
+                    }
+                    in.readFully(buffer, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                checksum.reset();
+                checksum.update(buffer, 0, length);
+                if (checksum.getValue() != expectedChecksum) {
+                    break;
+                }
+                DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(buffer, 0, length));
+                String methodName = BinaryDataFormat.readString(recordIn);
+                int rowNum = recordIn.readInt();
+                int entries = recordIn.readInt();
+                Map<String, Object> row = new LinkedHashMap<String, Object>(entries * 2);
+                for (int i = 0; i < entries; i++) {
+                    row.put(BinaryDataFormat.readString(recordIn), BinaryDataFormat.readString(recordIn));
+                }
+                ResultSink.putResult(results, methodName, rowNum, row);
+                count++;
+                // The length and the checksum precede the content
+                validLength += 12 + length;
+            }
+        } finally {
+            in.close();
+        }
+        return count;
+    }
+
+    /**
+     * Append a result to the journal. The result is buffered until the next call to {@link #flush()}.
+     *
+     * @param methodName the name of the method
+     * @param rowNum the position of the row within the data of the method
+     * @param row the row, containing the result
+     * @throws IOException if an I/O exception occurs
+     */
+    void append(String methodName, int rowNum, Map<String, Object> row) throws IOException {
+        if (out == null) {
+            File directory = file.getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create the directory " + directory);
+            }
+            if (file.isFile()) {
+                read(new HashMap<String, List<Map<String, Object>>>());
+            }
+            fileOut = new FileOutputStream(file, true);
+            // A record partially written by a crash would hide the records appended after it
+            fileOut.getChannel().truncate(validLength);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        }
+        record.reset();
+        DataOutputStream recordOut = new DataOutputStream(record);
+        BinaryDataFormat.writeString(methodName, recordOut);
+        recordOut.writeInt(rowNum);
+        recordOut.writeInt(row.size());
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            BinaryDataFormat.writeString(entry.getKey(), recordOut);
+            BinaryDataFormat.writeString(entry.getValue() == null ? null : entry.getValue().toString(), recordOut);
+        }
+        recordOut.flush();
+        checksum.reset();
+        checksum.update(record.toByteArray(), 0, record.size());
+        out.writeInt(record.size());
+        out.writeLong(checksum.getValue());
+        record.writeTo(out);
+    }
+
+    /**
+     * Hand the buffered results over to the operating system, so that they survive a crash of the JVM
+     *
+     * @throws IOException if an I/O exception occurs
+     */
+    void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Force the results to the disk, so that they also survive a crash of the operating system
+     *
+     * @throws IOException if an I/O exception occurs
+     */
+    void sync() throws IOException {
+        if (out != null) {
+            out.flush();
+            fileOut.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Close the journal
+     *
+     * @param delete whether the journal file is deleted
+     * @throws IOException if an I/O exception occurs
+     */
+    void close(boolean delete) throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            fileOut = null;
+        }
+        if (delete && file.isFile() && !file.delete()) {
+            throw new IOException("Could not delete the journal file " + file);
+        }
+    }
+
+}
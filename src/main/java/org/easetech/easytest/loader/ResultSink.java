@@ -0,0 +1,509 @@
+package org.easetech.easytest.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Journals the results of the test methods in the background, while the tests are still running, and merges them into
+ * the data file. Each result submitted by a runner is appended to a {@link ResultJournal} by a thread dedicated to the
+ * data file, so that the results survive a crash of the JVM, and put into the test data that the thread keeps. The
+ * thread holds the rows of each runner that opened the sink, so it always has all the rows of the data file. The rows
+ * themselves are shared with the runners and never modified : a runner puts the result of a row into a copy of it,
+ * which it submits, so only the rows that receive a result are ever copied.<br>
+ * Once the thread has caught up with the submitted results, it merges them in a batch by passing its test data to
+ * {@link Loader#writeData(String, Map)}, so that the data file is written while the tests still run. As each write
+ * rewrites the whole file, the thread waits between two writes at least the number of milliseconds specified by the
+ * system property {@value #MERGE_INTERVAL_PROPERTY}, that defaults to {@value #DEFAULT_MERGE_INTERVAL}, and at least
+ * as long as the previous write took, so that a large file is not rewritten over and over. The results submitted
+ * while the data file is written are merged together in the next rewrite, so that at most one rewrite is ever
+ * pending. When the last runner closes the sink, only the results that were not written yet remain to be written.
+ * A negative interval disables the merging while the tests run, the data file then being written once, when the last
+ * runner closes the sink.<br>
+ * If the JVM crashes, the results are still in the journal, in the directory specified by the system property
+ * {@value #JOURNAL_DIRECTORY_PROPERTY} that defaults to {@value #DEFAULT_JOURNAL_DIRECTORY}. They are written to the
+ * data file, along with the new results, the next time a sink of the same file writes it. The rows that were not run
+ * again keep the results of the previous run.<br>
+ * The runners sharing a data file share the same sink. The sink can be disabled by setting the system property
+ * {@value #ASYNC_PROPERTY} to false, in which case the results are written by each runner once its test class has
+ * run.
+ *
+ */
+public final class ResultSink {
+
+    /**
+     * The system property that enables or disables the sink. The sink is enabled by default.
+     */
+    public static final String ASYNC_PROPERTY = "easytest.results.async";
+
+    /**
+     * The system property that specifies the directory of the journal files
+     */
+    public static final String JOURNAL_DIRECTORY_PROPERTY = "easytest.results.journal.dir";
+
+    /**
+     * The default directory of the journal files
+     */
+    public static final String DEFAULT_JOURNAL_DIRECTORY = "target/easytest-journal";
+
+    /**
+     * The system property that specifies the minimum number of milliseconds between two rewrites of the data file
+     * while the tests run. A negative value means that the data file is only written once the sink is closed.
+     */
+    public static final String MERGE_INTERVAL_PROPERTY = "easytest.results.merge.interval";
+
+    /**
+     * The default minimum number of milliseconds between two rewrites of the data file while the tests run
+     */
+    public static final long DEFAULT_MERGE_INTERVAL = 1000;
+
+    /**
+     * An instance of logger associated with the test framework.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ResultSink.class);
+
+    /**
+     * The sinks currently open, by data file
+     */
+    private static final Map<String, ResultSink> OPEN_SINKS = new HashMap<String, ResultSink>();
+
+    /**
+     * Marks the end of the results in the queue
+     */
+    private static final Result END = new Result(null, -1, null, null);
+
+    /**
+     * The loader writing the results to the data file
+     */
+    private final Loader loader;
+
+    /**
+     * The path of the data file
+     */
+    private final String filePath;
+
+    /**
+     * The journal of the results that are not written to the data file yet
+     */
+    private final ResultJournal journal;
+
+    /**
+     * The minimum number of milliseconds between two rewrites of the data file, or -1 if the data file is only written
+     * once the sink is closed
+     */
+    private final long mergeInterval;
+
+    /**
+     * The test data of the runners and the results waiting to be journaled and merged
+     */
+    private final BlockingQueue<Result> queue = new LinkedBlockingQueue<Result>();
+
+    /**
+     * The test data of all the runners, containing the results merged so far, by method name. The lists are only used
+     * by the {@link #thread}, and the rows are shared with the runners.
+     */
+    private final Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+
+    /**
+     * The results left in the journal by a previous run, by method and row position. It is only used by the
+     * {@link #thread}.
+     */
+    private final Map<String, List<Map<String, Object>>> previousResults = new HashMap<String, List<Map<String, Object>>>();
+
+    /**
+     * The thread journaling the results and merging them into the data file
+     */
+    private final Thread thread;
+
+    /**
+     * The number of times the data file was written, for the tests
+     */
+    private volatile int writes;
+
+    /**
+     * The number of runners using the sink
+     */
+    private int users;
+
+    /**
+     * Whether the sink is closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * The exception thrown by the last attempt to write the data file, if it failed, rethrown when the sink is closed
+     */
+    private volatile Throwable failure;
+
+    /**
+     *
+     * Construct a new ResultSink
+     *
+     * @param loader the loader writing the results to the data file
+     * @param filePath the path of the data file
+     */
+    private ResultSink(Loader loader, String filePath) {
+        this.loader = loader;
+        this.filePath = filePath;
+        this.journal = new ResultJournal(journalFile(filePath));
+        long interval = Long.getLong(MERGE_INTERVAL_PROPERTY, DEFAULT_MERGE_INTERVAL).longValue();
+        this.mergeInterval = interval < 0 ? -1 : interval;
+        this.thread = new Thread(new Runnable() {
+            public void run() {
+                mergeResults();
+            }
+        }, "easytest-results-" + new File(filePath).getName());
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * @return true if the sink is enabled
+     */
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty(ASYNC_PROPERTY));
+    }
+
+    /**
+     * Open the sink of the given data file for a runner. The lists of rows of the runner are copied, so that the
+     * runner can replace the rows that receive a result, but the rows themselves are shared with the sink and must no
+     * longer be modified.
+     *
+     * @param loader the loader writing the results to the data file
+     * @param filePath the path of the data file, that must be a single file that can be written, as returned by
+     *            {@link org.easetech.easytest.util.ResourceLoader#writablePath(String...)}
+     * @param writableData the test data of the runner, by method name
+     * @return the sink of the data file, that must be closed once the results are all submitted
+     */
+    public static ResultSink open(Loader loader, String filePath, Map<String, List<Map<String, Object>>> writableData) {
+        Map<String, List<Map<String, Object>>> snapshot = new HashMap<String, List<Map<String, Object>>>();
+        for (Map.Entry<String, List<Map<String, Object>>> method : writableData.entrySet()) {
+            snapshot.put(method.getKey(), new ArrayList<Map<String, Object>>(method.getValue()));
+        }
+        synchronized (OPEN_SINKS) {
+            ResultSink sink = OPEN_SINKS.get(filePath);
+            if (sink == null) {
+                sink = new ResultSink(loader, filePath);
+                OPEN_SINKS.put(filePath, sink);
+                sink.thread.start();
+            }
+            sink.users++;
+            sink.queue.add(new Result(null, -1, null, snapshot));
+            return sink;
+        }
+    }
+
+    /**
+     * Submit the result of a test method. The row is shared with the sink, so the caller must not modify it afterwards.
+     *
+     * @param methodName the name of the method
+     * @param rowNum the position of the row within the data of the method
+     * @param row a copy of the row of test data of the method, containing the {@link Loader#ACTUAL_RESULT} and
+     *            optionally the {@link Loader#TEST_STATUS}
+     */
+    public void submit(String methodName, int rowNum, Map<String, Object> row) {
+        if (closed) {
+            LOG.warn("Ignoring the result of the method {} as the sink of the file {} is closed", methodName, filePath);
+            return;
+        }
+        queue.add(new Result(methodName, rowNum, row, null));
+    }
+
+    /**
+     * Close the sink for a runner. Once all the runners using the sink have closed it, the results that were not
+     * written to the data file yet are written, and the journal is deleted. If they can not be written, the journal is
+     * kept and the exception thrown while writing them is rethrown to the runner that closed the sink last, so that
+     * its test class fails.
+     */
+    public void close() {
+        synchronized (OPEN_SINKS) {
+            if (--users > 0) {
+                return;
+            }
+            OPEN_SINKS.remove(filePath);
+            closed = true;
+        }
+        queue.add(END);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while waiting for the results to be written to the file {}", filePath);
+            Thread.currentThread().interrupt();
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new IllegalStateException("The results could not be written to the file " + filePath, failure);
+        }
+    }
+
+    /**
+     * @return the number of times the data file was written
+     */
+    int getWrites() {
+        return writes;
+    }
+
+    /**
+     * Journal the results as they arrive and merge them into the data file, until the sink is closed
+     */
+    private void mergeResults() {
+        try {
+            journal.read(previousResults);
+        } catch (IOException e) {
+            LOG.error("Ignoring the journal file " + journal.getFile() + " as IOException occured while reading it", e);
+        }
+        // Whether the data holds results or rows that were not written yet
+        boolean pending = false;
+        // Whether the data file can be written while the tests run
+        boolean merging = mergeInterval >= 0;
+        // The minimum number of milliseconds until the next write, that grows with the time a write takes
+        long delay = mergeInterval;
+        long lastWrite = System.currentTimeMillis();
+        while (true) {
+            Result result;
+            try {
+                long wait = lastWrite + delay - System.currentTimeMillis();
+                result = pending && merging ? queue.poll(Math.max(wait, 1), TimeUnit.MILLISECONDS) : queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (result == END) {
+                break;
+            }
+            if (result != null) {
+                if (result.data != null) {
+                    collect(data, result.data);
+                    // The rows of a runner only need to be written along with results
+                    pending |= !previousResults.isEmpty();
+                } else {
+                    journal(result);
+                    putRow(data, result);
+                    pending = true;
+                }
+                if (!pending || !merging) {
+                    continue;
+                }
+                if (!queue.isEmpty() || System.currentTimeMillis() - lastWrite < delay) {
+                    continue;
+                }
+            }
+            // Caught up with the submitted results, and the data file was not written for a while. If it can not be
+            // written, it is only tried again once the sink is closed.
+            long start = System.currentTimeMillis();
+            merging = write();
+            pending = !merging;
+            lastWrite = System.currentTimeMillis();
+            delay = Math.max(mergeInterval, lastWrite - start);
+        }
+        boolean written = !pending || write();
+        try {
+            journal.close(written);
+        } catch (IOException e) {
+            LOG.warn("Could not close the journal file " + journal.getFile(), e);
+        }
+    }
+
+    /**
+     * Append a result to the journal, handing it over to the operating system if no other result is waiting
+     *
+     * @param result the result
+     */
+    private void journal(Result result) {
+        try {
+            journal.append(result.methodName, result.rowNum, result.row);
+            if (queue.isEmpty()) {
+                // Hand the journaled results over to the operating system
+                journal.flush();
+            }
+        } catch (IOException e) {
+            LOG.warn("Could not append the result to the journal file " + journal.getFile(), e);
+        }
+    }
+
+    /**
+     * Write the test data to the data file, once the results left in the journal by a previous run are put into the
+     * rows that were not run again.
+     *
+     * @return true if the data was written, false if the journal must be kept for the next run
+     */
+    private boolean write() {
+        recover(data, previousResults);
+        if (data.isEmpty()) {
+            return true;
+        }
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            LOG.warn("Could not force the journal file " + journal.getFile() + " to the disk", e);
+        }
+        try {
+            loader.writeData(filePath, data);
+            writes++;
+            failure = null;
+            return true;
+        } catch (Throwable e) {
+            LOG.error("Exception occured while writing the results to the file " + filePath
+                + ". The results are kept in the journal file " + journal.getFile(), e);
+            failure = e;
+            return false;
+        }
+    }
+
+    /**
+     * Put the row of a submitted result into the test data, in place of the row it was run with. The results of a
+     * method or a row that no longer exists are ignored.
+     *
+     * @param data the test data, by method name
+     * @param result the result
+     */
+    private static void putRow(Map<String, List<Map<String, Object>>> data, Result result) {
+        List<Map<String, Object>> rows = data.get(result.methodName);
+        if (rows != null && result.rowNum < rows.size()) {
+            rows.set(result.rowNum, result.row);
+        }
+    }
+
+    /**
+     * Collect the test data of a runner. The rows of a method already collected from another runner are only replaced
+     * by the ones that contain a result, so that the results of all the runners are kept.
+     *
+     * @param data the test data collected so far, by method name
+     * @param writableData the test data of the runner, by method name, whose lists are then owned by the sink
+     */
+    static void collect(Map<String, List<Map<String, Object>>> data,
+        Map<String, List<Map<String, Object>>> writableData) {
+        for (Map.Entry<String, List<Map<String, Object>>> method : writableData.entrySet()) {
+            List<Map<String, Object>> rows = data.get(method.getKey());
+            if (rows == null) {
+                data.put(method.getKey(), method.getValue());
+                continue;
+            }
+            List<Map<String, Object>> runnerRows = method.getValue();
+            for (int rowNum = 0; rowNum < rows.size() && rowNum < runnerRows.size(); rowNum++) {
+                if (runnerRows.get(rowNum).get(Loader.ACTUAL_RESULT) != null) {
+                    rows.set(rowNum, runnerRows.get(rowNum));
+                }
+            }
+        }
+    }
+
+    /**
+     * Put the journaled results into the rows of the test data that have no result, for eg. the ones of a run that
+     * crashed. The results of a method or a row that no longer exists are ignored.
+     *
+     * @param data the test data, by method name
+     * @param journaled the journaled results, by method and row position
+     */
+    static void recover(Map<String, List<Map<String, Object>>> data, Map<String, List<Map<String, Object>>> journaled) {
+        int recovered = 0;
+        for (Map.Entry<String, List<Map<String, Object>>> method : journaled.entrySet()) {
+            List<Map<String, Object>> rows = data.get(method.getKey());
+            if (rows == null) {
+                continue;
+            }
+            List<Map<String, Object>> results = method.getValue();
+            for (int rowNum = 0; rowNum < rows.size() && rowNum < results.size(); rowNum++) {
+                Map<String, Object> result = results.get(rowNum);
+                if (result.get(Loader.ACTUAL_RESULT) == null || rows.get(rowNum).get(Loader.ACTUAL_RESULT) != null) {
+                    continue;
+                }
+                Map<String, Object> row = new LinkedHashMap<String, Object>(rows.get(rowNum));
+                row.put(Loader.ACTUAL_RESULT, result.get(Loader.ACTUAL_RESULT));
+                if (result.get(Loader.TEST_STATUS) != null) {
+                    row.put(Loader.TEST_STATUS, result.get(Loader.TEST_STATUS));
+                }
+                rows.set(rowNum, row);
+                recovered++;
+            }
+        }
+        if (recovered > 0) {
+            LOG.info("Recovered {} results of a previous run from the journal", recovered);
+        }
+    }
+
+    /**
+     * Put a journaled result in the given data structure, at the position of its row. The missing rows before it are
+     * filled with empty rows. The data structure is only used to {@link #recover(Map, Map)} the results, and is never
+     * passed to a {@link Loader}.
+     *
+     * @param results the results by method and row position
+     * @param methodName the name of the method
+     * @param rowNum the position of the row within the data of the method
+     * @param row the row containing the result
+     */
+    static void putResult(Map<String, List<Map<String, Object>>> results, String methodName, int rowNum,
+        Map<String, Object> row) {
+        List<Map<String, Object>> rows = results.get(methodName);
+        if (rows == null) {
+            rows = new ArrayList<Map<String, Object>>();
+            results.put(methodName, rows);
+        }
+        while (rows.size() <= rowNum) {
+            rows.add(Collections.<String, Object> emptyMap());
+        }
+        rows.set(rowNum, row);
+    }
+
+    /**
+     * @param filePath the path of the data file
+     * @return the journal file of the data file
+     */
+    static File journalFile(String filePath) {
+        String name = new File(filePath).getName() + "-" + Integer.toHexString(filePath.hashCode()) + ".journal";
+        return new File(System.getProperty(JOURNAL_DIRECTORY_PROPERTY, DEFAULT_JOURNAL_DIRECTORY), name);
+    }
+
+    /**
+     * The result of a single row of a test method
+     */
+    private static final class Result {
+
+        /**
+         * The name of the method
+         */
+        final String methodName;
+
+        /**
+         * The position of the row within the data of the method
+         */
+        final int rowNum;
+
+        /**
+         * The row containing the result
+         */
+        final Map<String, Object> row;
+
+        /**
+         * The test data of a runner that opened the sink, in place of a result
+         */
+        final Map<String, List<Map<String, Object>>> data;
+
+        /**
+         * Construct a new Result
+         *
+         * @param methodName the name of the method
+         * @param rowNum the position of the row within the data of the method
+         * @param row the row containing the result
+         * @param data the test data of a runner, in place of a result
+         */
+        Result(String methodName, int rowNum, Map<String, Object> row, Map<String, List<Map<String, Object>>> data) {
+            this.methodName = methodName;
+            this.rowNum = rowNum;
+            this.row = row;
+            this.data = data;
+        }
+    }
+
+}
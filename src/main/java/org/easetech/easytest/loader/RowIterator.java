@@ -0,0 +1,98 @@
+
+package org.easetech.easytest.loader;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A base class for the {@link Iterator}s returned by {@link StreamingLoader#streamData(String[], String)}. The
+ * subclasses only need to provide the next row, if any, and release their resources in {@link #close()}.
+ * {@link #close()} is called exactly once, as soon as the iterator is exhausted or an error occurs.
+ *
+ */
+public abstract class RowIterator implements Iterator<Map<String, Object>> {
+
+    /**
+     * The next row to be returned, if already computed
+     */
+    private Map<String, Object> nextRow;
+
+    /**
+     * Whether the iterator is exhausted
+     */
+    private boolean finished;
+
+    /**
+     * Compute the next row of test data.
+     *
+     * @return the next row or null if there are no more rows.
+     * @throws IOException if an I/O exception occurs
+     */
+    protected abstract Map<String, Object> computeNext() throws IOException;
+
+    /**
+     * Release any resource held by this iterator. Default implementation does nothing.
+     *
+     * @throws IOException if an I/O exception occurs
+     */
+    protected void close() throws IOException {
+        // do nothing
+    }
+
+    /**
+     * @return true if there is one more row of test data
+     */
+    @Override
+    public boolean hasNext() {
+        if (nextRow == null && !finished) {
+            try {
+                nextRow = computeNext();
+            } catch (IOException e) {
+                finish();
+                throw new RuntimeException("IO Exception occured while streaming the test data.", e);
+            }
+            if (nextRow == null) {
+                finish();
+            }
+        }
+        return nextRow != null;
+    }
+
+    /**
+     * @return the next row of test data
+     */
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map<String, Object> result = nextRow;
+        nextRow = null;
+        return result;
+    }
+
+    /**
+     * Not supported
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Test data can not be removed while it is being streamed");
+    }
+
+    /**
+     * Mark the iterator as exhausted and close it.
+     */
+    private void finish() {
+        if (!finished) {
+            finished = true;
+            try {
+                close();
+            } catch (IOException e) {
+                // Nothing more can be read anyways
+            }
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+
+package org.easetech.easytest.loader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The schema of the rows of test data of a single method block, i.e. the ordered list of the keys of the rows. A
+ * single instance is shared by all the {@link CompactRow}s of a method block, so that the keys are held only once
+ * instead of once per row.
+ *
+ */
+public class RowSchema {
+
+    /**
+     * The keys of the rows in the order they were defined
+     */
+    private final String[] keys;
+
+    /**
+     * The position of each key
+     */
+    private final Map<String, Integer> positions;
+
+    /**
+     *
+     * Construct a new RowSchema. Null keys are ignored and a key that is repeated keeps its first position.
+     *
+     * @param keys the keys of the rows in the order they were defined
+     */
+    public RowSchema(Collection<?> keys) {
+        List<String> uniqueKeys = new ArrayList<String>(keys.size());
+        positions = new HashMap<String, Integer>();
+        for (Object key : keys) {
+            if (key != null && !positions.containsKey(key.toString())) {
+                positions.put(key.toString(), uniqueKeys.size());
+                uniqueKeys.add(key.toString());
+            }
+        }
+        this.keys = uniqueKeys.toArray(new String[uniqueKeys.size()]);
+    }
+
+    /**
+     * @return the number of keys in this schema
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Get the key at the given position
+     *
+     * @param position the position of the key
+     * @return the key
+     */
+    public String getKey(int position) {
+        return keys[position];
+    }
+
+    /**
+     * Get the position of the given key
+     *
+     * @param key the key
+     * @return the position of the key or -1 if the key is not part of this schema
+     */
+    public int indexOf(Object key) {
+        Integer position = positions.get(key);
+        return position == null ? -1 : position;
+    }
+
+}
@@ -0,0 +1,29 @@
+
+package org.easetech.easytest.loader;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * An extension of {@link Loader} for loaders that are capable of handing out the test data of a single test method
+ * one row at a time, instead of building the complete data structure of all the files up front.<br>
+ * The framework prefers this contract whenever the {@link Loader} associated with a test method implements it. The
+ * rows are pulled from the returned iterator while the test methods are being computed, so only the rows of the
+ * method being computed are ever held by the framework, and a single copy of each row is kept.
+ *
+ */
+public interface StreamingLoader extends Loader {
+
+    /**
+     * Stream the test data of the given method from the list of files passed as parameter. In case more than one file
+     * contains the data for the given method, the data is taken from the last of them, exactly like
+     * {@link #loadData(String[])} lets later files override the earlier ones.
+     *
+     * @param filePaths the list of files from which to load the data
+     * @param methodName the name of the test method whose data should be streamed
+     * @return an {@link Iterator} over the Key/value pairs of the given method. The iterator releases any underlying
+     *         resource once it is exhausted. An empty iterator is returned if there is no data for the method.
+     */
+    Iterator<Map<String, Object>> streamData(String[] filePaths, String methodName);
+
+}
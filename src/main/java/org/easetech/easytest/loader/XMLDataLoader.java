@@ -3,30 +3,26 @@ package org.easetech.easytest.loader;
 
 import org.easetech.easytest._1.InputData;
 
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import javax.xml.bind.Binder;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import org.easetech.easytest._1.Entry;
 import org.easetech.easytest._1.InputTestData;
-import org.easetech.easytest._1.ObjectFactory;
 import org.easetech.easytest._1.OutputData;
 import org.easetech.easytest._1.TestMethod;
 import org.easetech.easytest._1.TestRecord;
@@ -34,9 +30,6 @@ import org.easetech.easytest.util.ResourceLoader;
 import org.junit.Assert;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.xml.sax.SAXException;
 
 /**
  * An implementation of {@link Loader} for the XML based files. This Loader is responsible for reading a list of XML
@@ -87,12 +80,16 @@ import org.xml.sax.SAXException;
  * Each {@link TestMethod} can have many TestRecords. Each Record identifies data for a single test execution.<br>
  * {@link TestRecord} contains {@link InputData} element as well as {@link OutputData} element. A user never specifies an {@link OutputData} element.
  * If it is specified, it will be ignored by the {@link Loader}. {@link OutputData} is used internally by the {@link XMLDataLoader} to write output data back to the file. 
- * Each Entry element identifies a method parameter.
+ * Each Entry element identifies a method parameter.<br>
+ * 
+ * The files are read using a StAX parser, that directly creates the test data of the {@link TestRecord}s from the
+ * {@link Entry} elements, without building the JAXB object tree. The output data is written back the same way, by
+ * streaming the file through StAX.
  * 
  * @author Anuj Kumar
  * 
  */
-public class XMLDataLoader implements Loader {
+public class XMLDataLoader implements StreamingLoader {
 
     /**
      * An instance of logger associated with the test framework.
@@ -106,9 +103,20 @@ public class XMLDataLoader implements Loader {
      */
     private static final String RECORD_POSITION = "recordPosition";
 
+    private static final String TEST_METHOD = "TestMethod";
+    private static final String TEST_RECORD = "TestRecord";
+    private static final String INPUT_DATA = "InputData";
+    private static final String OUTPUT_DATA = "OutputData";
+    private static final String ENTRY = "Entry";
+    private static final String NAME = "name";
+    private static final String ID = "id";
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+
 
     /**
-     * Load the data from the specified list of filePaths
+     * Load the data from the specified list of filePaths. The files are loaded in parallel and a file path can be a
+     * glob pattern, as explained in {@link ResourceLoader#resolvePaths(String...)}.
      * 
      * @param filePaths the list of File paths
      * @return the data
@@ -117,7 +125,7 @@ public class XMLDataLoader implements Loader {
     public Map<String, List<Map<String, Object>>> loadData(String[] filePaths) {
         Map<String, List<Map<String, Object>>> result = new HashMap<String, List<Map<String, Object>>>();
         try {
-            result = loadXMLData(Arrays.asList(filePaths));
+            result = loadXMLData(ResourceLoader.resolvePaths(filePaths));
         } catch (IOException e) {
             Assert.fail("An I/O exception occured while reading the files from the path :" + filePaths.toString());
         }
@@ -125,200 +133,345 @@ public class XMLDataLoader implements Loader {
     }
 
     /**
-     * Load the XML data.
+     * Stream the data of the given method from the specified list of filePaths. The files are searched from the last
+     * to the first one and the data of the first file that contains the method is returned. Only the test records of
+     * the given method are converted.
      * 
-     * @param dataFiles the list of input stream string files to load the data from
-     * @return a Map of method name and the list of associated test data with that method name
-     * @throws IOException if an IO Exception occurs
+     * @param filePaths the list of File paths
+     * @param methodName the name of the method whose data needs to be streamed
+     * @return an iterator over the data of the given method
      */
-    private Map<String, List<Map<String, Object>>> loadXMLData(final List<String> dataFiles) throws IOException {
-        Map<String, List<Map<String, Object>>> data = null;
-        Map<String, List<Map<String, Object>>> finalData = new HashMap<String, List<Map<String, Object>>>();
-        for (String filePath : dataFiles) {
+    @Override
+    public Iterator<Map<String, Object>> streamData(String[] filePaths, String methodName) {
+        List<String> dataFiles = ResourceLoader.resolvePaths(filePaths);
+        for (int i = dataFiles.size() - 1; i >= 0; i--) {
+            String filePath = dataFiles.get(i);
+            Map<String, List<Map<String, Object>>> data = Collections.emptyMap();
+            InputStream xmlFile = null;
             try {
-                ResourceLoader resource = new ResourceLoader(filePath);
-                data = load(resource.getInputStream());
+                xmlFile = new ResourceLoader(filePath).getInputStream();
+                data = load(xmlFile, methodName);
             } catch (FileNotFoundException e) {
                 LOG.error("The specified file was not found. The path is : {}", filePath);
                 LOG.error("Continuing with the loading of next file.");
-                continue;
             } catch (IOException e) {
-                LOG.error("IO Exception occured while trying to read the data from the file : {}", filePath);
-                LOG.error("Continuing with the loading of next file.");
-                continue;
+                Assert.fail("An I/O exception occured while reading the files from the path :" + filePath);
+            } finally {
+                closeQuietly(xmlFile);
+            }
+            List<Map<String, Object>> methodData = data.get(methodName);
+            if (methodData != null) {
+                return methodData.iterator();
             }
-            finalData.putAll(data);
         }
-        return finalData;
-
+        return Collections.<Map<String, Object>> emptyList().iterator();
     }
 
     /**
      * Load the XML data.
      * 
-     * @param xmlFile inputStream representation of user provided XML file.
+     * @param dataFiles the list of input stream string files to load the data from
      * @return a Map of method name and the list of associated test data with that method name
      * @throws IOException if an IO Exception occurs
      */
-    private Map<String, List<Map<String, Object>>> load(final InputStream xmlFile) throws IOException {
-        Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
-        JAXBContext context = getJAXBContext();
-        try {
-            if (context != null) {
-                Unmarshaller unmarshaller = context.createUnmarshaller();
-                InputTestData testData = (InputTestData) unmarshaller.unmarshal(xmlFile);
-                convertFromInputTestData(testData, data);
+    private Map<String, List<Map<String, Object>>> loadXMLData(final List<String> dataFiles) throws IOException {
+        return MultiFileLoader.loadAll(dataFiles, new MultiFileLoader.FileLoader() {
+            @Override
+            public Map<String, List<Map<String, Object>>> load(String filePath) throws IOException {
+                InputStream xmlFile = new ResourceLoader(filePath).getInputStream();
+                try {
+                    return XMLDataLoader.this.load(xmlFile, null);
+                } finally {
+                    closeQuietly(xmlFile);
+                }
             }
-        } catch (JAXBException e) {
-            LOG.error("JAXBException occured while trying to unmarshal the data.", e);
-            throw new RuntimeException("JAXBException occured while trying to unmarshal the data.", e);
-        }
-
-        return data;
+        });
 
     }
 
     /**
-     * Convert the data from {@link InputTestData} to a Map representation as understood by the EasyTest Framework
-     * 
-     * @param source an instance of {@link InputTestData}
-     * @param destination an instance of {@link Map}
-     */
-    private void convertFromInputTestData(InputTestData source, Map<String, List<Map<String, Object>>> destination) {
-        List<TestMethod> testMethods = source.getTestMethod();
-        for (TestMethod method : testMethods) {
-            List<Map<String, Object>> testMethodData = convertFromLIstOfTestRecords(method.getTestRecord());
-            destination.put(method.getName(), testMethodData);
-
-        }
-    }
-    /**
-     * Convert the data from List of {@link TestRecord} to a List of map representation. The LIst of map represents the
-     * list of test data for a single test method.
+     * Load the XML data, walking the {@link TestMethod}, {@link TestRecord}, {@link InputData} and {@link Entry}
+     * elements using a StAX reader.
      * 
-     * @param dataRecords an instance of List of {@link TestRecord}
-     * @return an instance of {@link List} of Map
+     * @param xmlFile inputStream representation of user provided XML file.
+     * @param methodName the name of the method whose data is loaded, or null to load the data of all the methods
+     * @return a Map of method name and the list of associated test data with that method name
+     * @throws IOException if an IO Exception occurs
      */
-    private List<Map<String, Object>> convertFromLIstOfTestRecords(List<TestRecord> dataRecords) {
-        List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
-        if (dataRecords != null) {
-            for (TestRecord record : dataRecords) {
-                Map<String, Object> singleTestData = convertFromListOfEntry(record.getInputData().getEntry());
-                result.add(singleTestData);
+    private Map<String, List<Map<String, Object>>> load(final InputStream xmlFile, final String methodName)
+        throws IOException {
+        Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+        XMLStreamReader reader = null;
+        try {
+            reader = XmlStreams.createReader(xmlFile);
+            // The test records of the current method, or null if the method is not loaded
+            List<Map<String, Object>> testMethodData = null;
+            // The schema shared by the test records of the current method, created from its first record
+            RowSchema schema = null;
+            // The keys and values of the Entry elements of the current InputData element
+            List<String> keys = null;
+            List<String> values = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String element = reader.getLocalName();
+                    if (TEST_METHOD.equals(element)) {
+                        String name = reader.getAttributeValue(null, NAME);
+                        testMethodData = null;
+                        schema = null;
+                        if (methodName == null || methodName.equals(name)) {
+                            testMethodData = new ArrayList<Map<String, Object>>();
+                            data.put(name, testMethodData);
+                        }
+                    } else if (testMethodData != null && INPUT_DATA.equals(element)) {
+                        keys = new ArrayList<String>();
+                        values = new ArrayList<String>();
+                    } else if (keys != null && ENTRY.equals(element)) {
+                        keys.add(reader.getAttributeValue(null, KEY));
+                        values.add(reader.getAttributeValue(null, VALUE));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && keys != null
+                    && INPUT_DATA.equals(reader.getLocalName())) {
+                    if (schema == null) {
+                        schema = new RowSchema(keys);
+                    }
+                    Map<String, Object> singleTestData = new CompactRow(schema);
+                    for (int i = 0; i < keys.size(); i++) {
+                        singleTestData.put(keys.get(i), values.get(i));
+                    }
+                    testMethodData.add(singleTestData);
+                    keys = null;
+                    values = null;
+                }
             }
-        }
-        return result;
-    }
-
-    /**
-     * Returns a Map representation of a Single data set for a given method. This data is used to run the test method
-     * once.
-     * 
-     * @param testEntry a list of {@link Entry} objects
-     * @return a Map
-     */
-    Map<String, Object> convertFromListOfEntry(List<Entry> testEntry) {
-        Map<String, Object> testData = new HashMap<String, Object>();
-        if (testEntry != null) {
-            for (Entry entry : testEntry) {
-                testData.put(entry.getKey(), entry.getValue());
+        } catch (XMLStreamException e) {
+            LOG.error("XMLStreamException occured while trying to read the data.", e);
+            throw new RuntimeException("XMLStreamException occured while trying to read the data.", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // ignore
+                }
             }
         }
-        return testData;
+
+        return data;
+
     }
 
     /**
-     * Get the JAXBContext
-     * 
-     * @return an instance of {@link JAXBContext}
+     * @param closeable the stream to close, may be null
      */
-    private JAXBContext getJAXBContext() {
-        JAXBContext context = null;
-        try {
-            context = JAXBContext.newInstance(ObjectFactory.class);
-        } catch (JAXBException e) {
-            LOG.error("Error occured while creating JAXB COntext.", e);
-            //throw new RuntimeException("Error occured while creating JAXB Context.", e);
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
         }
-        return context;
     }
 
     /**
-     * Write Data to the existing XML File.
+     * Write Data to the existing XML File. The actual results are first indexed by method and by test record, then
+     * the file is copied through StAX to a temporary file, an {@link OutputData} element being inserted in each test
+     * record that has an actual result, and the temporary file finally replaces the file. The time taken is thus
+     * linear in the size of the file and the memory used does not depend on it.<br>
+     * A result row is matched to its {@link TestRecord} using the id of the record, when the row holds it under the
+     * key {@value #RECORD_POSITION}, or else using the position of the row among the rows of the method.
      * 
      * @param filePath the path to the file to which the data needs to be written
      * @param actualData the actual data that needs to be written to the file.
      */
     @Override
     public void writeData(String filePath, Map<String, List<Map<String, Object>>> actualData) {
+        Map<String, MethodResults> results = indexResults(actualData);
+        if (results.isEmpty()) {
+            return;
+        }
+        File tempFile = null;
+        InputStream in = null;
+        OutputStream out = null;
         try {
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true);
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            // File xml = new File(filePath);
             ResourceLoader resource = new ResourceLoader(filePath);
-            Document document = db.parse(resource.getInputStream());
-            Binder<Node> binder = getJAXBContext().createBinder();
-            binder.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            InputTestData testData = (InputTestData) binder.unmarshal(document);
-            updateTestMethods(testData, actualData);
-            binder.updateXML(testData);
-            TransformerFactory tf = TransformerFactory.newInstance();
-            Transformer t = tf.newTransformer();
-            t.transform(new DOMSource(document), new StreamResult(resource.getFileOutputStream()));
-        } catch (ParserConfigurationException e) {
-            LOG.error("Ignoring the write operation as ParserConfigurationException occured while parsing the file : " + filePath, e);
-        } catch (SAXException e) {
-            LOG.error("Ignoring the write operation as SAXException occured while parsing the file : " + filePath, e);
+            File file = resource.getFile();
+            tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            in = resource.getInputStream();
+            out = new BufferedOutputStream(new FileOutputStream(tempFile));
+            copyWithOutputData(in, out, results);
+            out.close();
+            out = null;
+            resource.replaceWith(tempFile);
         } catch (IOException e) {
             LOG.error("Ignoring the write operation as IOException occured while parsing the file : " + filePath, e);
-        } catch (JAXBException e) {
-            LOG.error("Ignoring the write operation as JAXBException occured while parsing the file : " + filePath, e);
-        } catch (TransformerException e) {
-            LOG.error("Ignoring the write operation as TransformerException occured while parsing the file : " + filePath, e);
+        } catch (XMLStreamException e) {
+            LOG.error("Ignoring the write operation as XMLStreamException occured while parsing the file : " + filePath, e);
+        } finally {
+            closeQuietly(in);
+            closeQuietly(out);
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
         }
 
     }
 
     /**
-     * This method is responsible for adding the {@link OutputData} element to the existing file.
-     * This method determines the right position of the test record based on the id attribute 
-     * {@link TestRecord#getId()} of the {@link TestRecord}.
+     * Index the actual results by method and by test record
      * 
-     * @param inputTestData an Object representation of the XML data
      * @param actualData the data structure that contains the output data that needs to be written to the file. 
      * The output data is identified by the key {@link Loader#ACTUAL_RESULT}
+     * @return the actual results of each method that has at least one
      */
-    private void updateTestMethods(InputTestData inputTestData, Map<String, List<Map<String, Object>>> actualData) {
-        for (String methodName : actualData.keySet()) {
-            List<Map<String, Object>> testRecords = actualData.get(methodName);
-            for (Map<String, Object> testRecord : testRecords) {
-                Boolean outputDataAdded = false;
+    private Map<String, MethodResults> indexResults(Map<String, List<Map<String, Object>>> actualData) {
+        Map<String, MethodResults> results = new HashMap<String, MethodResults>();
+        for (Map.Entry<String, List<Map<String, Object>>> method : actualData.entrySet()) {
+            MethodResults methodResults = new MethodResults();
+            List<Map<String, Object>> testRecords = method.getValue();
+            for (int position = 0; position < testRecords.size(); position++) {
+                Map<String, Object> testRecord = testRecords.get(position);
                 if (testRecord.containsKey(ACTUAL_RESULT)) {
-                    // The data needs to be written to the XML file.
-                    // Find the right place to put the data.
-                    for (TestMethod testMethod : inputTestData.getTestMethod()) {
-                        List<TestRecord> originalTestRecords = testMethod.getTestRecord();
-                        for (TestRecord originalTestRecord : originalTestRecords) {
-                            if (originalTestRecord.getId().equals(testRecord.get(RECORD_POSITION))) {
-                                OutputData outputData = new OutputData();
-                                Entry outputEntry = new Entry();
-                                outputEntry.setKey(ACTUAL_RESULT);
-                                outputEntry.setValue(testRecord.get(ACTUAL_RESULT).toString());
-                                outputData.getEntry().add(outputEntry);
-                                originalTestRecord.setOutputData(outputData);
-                                outputDataAdded = true;
-                                break;
-                            }
+                    String actualResult = String.valueOf(testRecord.get(ACTUAL_RESULT));
+                    Object id = testRecord.get(RECORD_POSITION);
+                    if (id != null) {
+                        methodResults.byId.put(id.toString(), actualResult);
+                    } else {
+                        methodResults.byPosition.put(position, actualResult);
+                    }
+                }
+            }
+            if (!methodResults.byId.isEmpty() || !methodResults.byPosition.isEmpty()) {
+                results.put(method.getKey(), methodResults);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Copy the XML data, inserting an {@link OutputData} element at the end of each {@link TestRecord} that has an
+     * actual result. An existing {@link OutputData} element of such a record is replaced. The new elements are
+     * indented like the other children of the record.
+     * 
+     * @param in the existing XML data
+     * @param out the stream to write the XML data to
+     * @param results the actual results, by method
+     * @throws XMLStreamException if the XML data is not well formed
+     */
+    private void copyWithOutputData(InputStream in, OutputStream out, Map<String, MethodResults> results)
+        throws XMLStreamException {
+        XMLStreamReader reader = XmlStreams.createReader(in);
+        XMLStreamWriter writer = null;
+        try {
+            String encoding = reader.getCharacterEncodingScheme() == null ? "UTF-8" : reader
+                .getCharacterEncodingScheme();
+            writer = XmlStreams.createWriter(out, encoding);
+            writer.writeStartDocument(encoding, reader.getVersion() == null ? "1.0" : reader.getVersion());
+            writer.writeCharacters("\n");
+            // The actual results of the current method, or null if it has none
+            MethodResults methodResults = null;
+            // The position of the current test record within the current method
+            int position = -1;
+            // The actual result of the current test record, or null if it has none
+            String actualResult = null;
+            // The whitespace before the current test record and before its first child
+            String recordIndent = null;
+            String childIndent = null;
+            // The whitespace that is only written once the next event is known
+            String pendingWhitespace = null;
+            int event = reader.next();
+            while (event != XMLStreamConstants.END_DOCUMENT) {
+                if (reader.isWhiteSpace()) {
+                    pendingWhitespace = pendingWhitespace == null ? reader.getText() : pendingWhitespace
+                        + reader.getText();
+                    event = reader.next();
+                    continue;
+                }
+                String indent = pendingWhitespace == null ? "" : pendingWhitespace;
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (TEST_METHOD.equals(name)) {
+                        methodResults = results.get(reader.getAttributeValue(null, NAME));
+                        position = -1;
+                    } else if (TEST_RECORD.equals(name) && methodResults != null) {
+                        position++;
+                        actualResult = methodResults.get(reader.getAttributeValue(null, ID), position);
+                        recordIndent = indent;
+                        childIndent = null;
+                    } else if (actualResult != null) {
+                        if (childIndent == null) {
+                            childIndent = indent;
                         }
-                        if (outputDataAdded) {
-                            break;
+                        if (OUTPUT_DATA.equals(name)) {
+                            // Replaced by the new actual result
+                            XmlStreams.skipElement(reader);
+                            pendingWhitespace = null;
+                            event = reader.next();
+                            continue;
                         }
                     }
+                } else if (event == XMLStreamConstants.END_ELEMENT && actualResult != null
+                    && TEST_RECORD.equals(reader.getLocalName())) {
+                    if (childIndent == null) {
+                        childIndent = indent;
+                    }
+                    String indentUnit = childIndent.startsWith(recordIndent) ? childIndent.substring(recordIndent
+                        .length()) : "";
+                    writer.writeCharacters(childIndent);
+                    writer.writeStartElement(OUTPUT_DATA);
+                    writer.writeCharacters(childIndent + indentUnit);
+                    writer.writeEmptyElement(ENTRY);
+                    writer.writeAttribute(KEY, ACTUAL_RESULT);
+                    writer.writeAttribute(VALUE, actualResult);
+                    writer.writeCharacters(childIndent);
+                    writer.writeEndElement();
+                    actualResult = null;
+                }
+                if (pendingWhitespace != null) {
+                    writer.writeCharacters(pendingWhitespace);
+                    pendingWhitespace = null;
                 }
+                event = XmlStreams.copyEvent(reader, writer);
+            }
+            if (pendingWhitespace != null) {
+                writer.writeCharacters(pendingWhitespace);
+            }
+            writer.writeEndDocument();
+            writer.writeCharacters("\n");
+            writer.flush();
+        } finally {
+            reader.close();
+            if (writer != null) {
+                writer.close();
             }
         }
+    }
 
+    /**
+     * The actual results of the test records of a single method
+     */
+    private static class MethodResults {
+
+        /**
+         * The actual results by id of the test record
+         */
+        final Map<String, String> byId = new HashMap<String, String>();
+
+        /**
+         * The actual results by position of the test record, when the id is not known
+         */
+        final Map<Integer, String> byPosition = new HashMap<Integer, String>();
+
+        /**
+         * @param id the id of the test record, may be null
+         * @param position the position of the test record within the method
+         * @return the actual result of the test record, or null if it has none
+         */
+        String get(String id, int position) {
+            String actualResult = id == null ? null : byId.get(id);
+            return actualResult != null ? actualResult : byPosition.get(position);
+        }
     }
 
 }
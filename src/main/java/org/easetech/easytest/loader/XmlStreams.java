@@ -0,0 +1,164 @@
+package org.easetech.easytest.loader;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Creates the StAX readers and writers used by the loaders, and copies XML documents event by event from a
+ * {@link XMLStreamReader} to a {@link XMLStreamWriter}, so that the loaders can rewrite a part of a document while
+ * streaming the rest of it unchanged. The attributes are copied in the order of the document and the elements without
+ * content are written as empty elements.
+ *
+ */
+final class XmlStreams {
+
+    /**
+     * The factory of the StAX readers. A factory is thread safe once configured.
+     */
+    private static final XMLInputFactory INPUT_FACTORY = newInputFactory();
+
+    /**
+     * The factory of the StAX writers
+     */
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private XmlStreams() {
+        // utility class
+    }
+
+    /**
+     * Create a reader of the given XML document. The DTDs and the external entities of the document are not
+     * processed.
+     * 
+     * @param in the XML document
+     * @return a new reader, that does not close the stream
+     * @throws XMLStreamException if the reader can not be created
+     */
+    static XMLStreamReader createReader(InputStream in) throws XMLStreamException {
+        return INPUT_FACTORY.createXMLStreamReader(in);
+    }
+
+    /**
+     * Create a writer of an XML document
+     * 
+     * @param out the stream to write the document to
+     * @param encoding the encoding of the document
+     * @return a new writer, that does not close the stream
+     * @throws XMLStreamException if the writer can not be created
+     */
+    static XMLStreamWriter createWriter(OutputStream out, String encoding) throws XMLStreamException {
+        return OUTPUT_FACTORY.createXMLStreamWriter(out, encoding);
+    }
+
+    /**
+     * Skip the current element of the reader, along with its content
+     * 
+     * @param reader the reader, positioned on the start of the element
+     * @throws XMLStreamException if an exception occurs while reading
+     */
+    static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Copy the current event of the reader to the writer. An element without content is written as an empty element.
+     * 
+     * @param reader the reader, positioned on the event to copy
+     * @param writer the writer
+     * @return the next event of the reader
+     * @throws XMLStreamException if an exception occurs while reading or writing
+     */
+    static int copyEvent(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+        switch (reader.getEventType()) {
+            case XMLStreamConstants.START_ELEMENT:
+                String localName = reader.getLocalName();
+                String prefix = reader.getPrefix() == null ? "" : reader.getPrefix();
+                String namespace = reader.getNamespaceURI() == null ? "" : reader.getNamespaceURI();
+                int namespaceCount = reader.getNamespaceCount();
+                int attributeCount = reader.getAttributeCount();
+                String[][] attributes = new String[attributeCount][];
+                for (int i = 0; i < attributeCount; i++) {
+                    attributes[i] = new String[] {reader.getAttributePrefix(i), reader.getAttributeNamespace(i),
+                        reader.getAttributeLocalName(i), reader.getAttributeValue(i)};
+                }
+                String[][] namespaces = new String[namespaceCount][];
+                for (int i = 0; i < namespaceCount; i++) {
+                    namespaces[i] = new String[] {reader.getNamespacePrefix(i), reader.getNamespaceURI(i)};
+                }
+                int next = reader.next();
+                if (next == XMLStreamConstants.END_ELEMENT) {
+                    writer.writeEmptyElement(prefix, localName, namespace);
+                    next = reader.next();
+                } else {
+                    writer.writeStartElement(prefix, localName, namespace);
+                }
+                for (String[] namespaceDeclaration : namespaces) {
+                    if (namespaceDeclaration[0] == null || namespaceDeclaration[0].length() == 0) {
+                        writer.writeDefaultNamespace(namespaceDeclaration[1]);
+                    } else {
+                        writer.writeNamespace(namespaceDeclaration[0], namespaceDeclaration[1]);
+                    }
+                }
+                for (String[] attribute : attributes) {
+                    if (attribute[1] == null || attribute[1].length() == 0) {
+                        writer.writeAttribute(attribute[2], attribute[3]);
+                    } else {
+                        writer.writeAttribute(attribute[0], attribute[1], attribute[2], attribute[3]);
+                    }
+                }
+                return next;
+            case XMLStreamConstants.END_ELEMENT:
+                writer.writeEndElement();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                writer.writeCharacters(reader.getText());
+                break;
+            case XMLStreamConstants.CDATA:
+                writer.writeCData(reader.getText());
+                break;
+            case XMLStreamConstants.COMMENT:
+                writer.writeComment(reader.getText());
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+                break;
+            case XMLStreamConstants.ENTITY_REFERENCE:
+                writer.writeEntityRef(reader.getLocalName());
+                break;
+            case XMLStreamConstants.DTD:
+                writer.writeDTD(reader.getText());
+                break;
+            default:
+                break;
+        }
+        return reader.next();
+    }
+
+    /**
+     * Create the factory of the StAX readers
+     * 
+     * @return a new {@link XMLInputFactory}
+     */
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+}
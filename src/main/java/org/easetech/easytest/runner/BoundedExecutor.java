@@ -0,0 +1,137 @@
+
+package org.easetech.easytest.runner;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the tasks submitted by the thread of a runner on an {@link ExecutorService}, making that thread wait when too
+ * many tasks are already waiting to be run, so that the tasks are not all queued at once. It is shared by the
+ * {@link ParallelScheduler}, which runs the test methods concurrently, and the {@link ParallelRows}, which runs the rows
+ * of a test method in parallel.
+ *
+ */
+final class BoundedExecutor {
+
+    /**
+     * An instance of logger associated with the test framework.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(BoundedExecutor.class);
+
+    /**
+     * The name of what is run, used to name the threads and in the log
+     */
+    private final String name;
+
+    /**
+     * The threads running the tasks
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The tasks that can still be submitted before waiting for a task to complete
+     */
+    private final Semaphore available;
+
+    /**
+     * Construct a new BoundedExecutor running the tasks on the given executor
+     *
+     * @param name the name of what is run, used in the log
+     * @param executor the threads running the tasks
+     * @param maxTasks the maximum number of tasks submitted and not completed yet
+     */
+    BoundedExecutor(String name, ExecutorService executor, int maxTasks) {
+        this.name = name;
+        this.executor = executor;
+        this.available = new Semaphore(maxTasks);
+    }
+
+    /**
+     * Construct a new BoundedExecutor running the tasks on a fixed pool of daemon threads
+     *
+     * @param name the name of what is run, used to name the threads and in the log
+     * @param threads the number of threads
+     * @param tasksPerThread the number of tasks per thread that can wait to be run
+     */
+    BoundedExecutor(String name, int threads, int tasksPerThread) {
+        this(name, Executors.newFixedThreadPool(threads, new DaemonThreadFactory(name)), threads * tasksPerThread);
+    }
+
+    /**
+     * Submit a task to run, waiting if too many tasks are already waiting to be run
+     *
+     * @param task the task
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void execute(final Runnable task) throws InterruptedException {
+        available.acquire();
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    available.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Wait for all the submitted tasks to be run and stop the threads
+     *
+     * @throws InterruptedException if interrupted while waiting, in which case the tasks still running are interrupted
+     */
+    void await() throws InterruptedException {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.debug("Waiting for the tasks of {} to complete", name);
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the daemon threads running the tasks
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        /**
+         * The prefix of the names of the threads
+         */
+        private final String prefix;
+
+        /**
+         * The number of threads created so far
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Construct a new DaemonThreadFactory
+         *
+         * @param name the name of what is run by the threads
+         */
+        DaemonThreadFactory(String name) {
+            this.prefix = "easytest-" + name + "-";
+        }
+
+        /**
+         * @param runnable the runnable of the thread
+         * @return a new daemon thread
+         */
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,452 @@
+package org.easetech.easytest.runner;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import org.easetech.easytest.annotation.DataLoader;
+import org.easetech.easytest.loader.CompactRow;
+import org.easetech.easytest.loader.EmptyLoader;
+import org.easetech.easytest.loader.Loader;
+import org.easetech.easytest.loader.LoaderFactory;
+import org.easetech.easytest.loader.LoaderRegistry;
+import org.easetech.easytest.loader.LoaderType;
+import org.easetech.easytest.loader.ResultSink;
+import org.easetech.easytest.util.ResourceLoader;
+import org.easetech.easytest.util.RunAftersWithOutputData;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.experimental.theories.PotentialAssignment.CouldNotGenerateValueException;
+import org.junit.experimental.theories.internal.Assignments;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the rows of test data and captures their results on behalf of the {@link DataDrivenTestRunner} and the
+ * {@link SpringTestRunner}, so that both runners run the rows and write the output data the same way.<br>
+ * The statement running the rows of a test method, with its befores, afters, timeout and expected exception, is built
+ * once and run again for each row, with the arguments of the row run by the current thread. The value returned by the
+ * test method is written into the row of test data it was run with, and the rows are written back to the data file
+ * once the test class has run, or journaled by a {@link ResultSink} as soon as they are available.
+ *
+ */
+final class DataDrivenSupport {
+
+    /**
+     * An instance of logger associated with the test framework.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(DataDrivenSupport.class);
+
+    /**
+     * The list of files that are used by the {@link Loader}s {@link Loader#writeData(String, Map)} functionality to
+     * write the test data back to the file.
+     */
+    private String[] dataFiles;
+
+    /**
+     * The instance of {@link Loader} that is currently being used, which is also used to write the test data back to
+     * the file.
+     */
+    private Loader dataLoader;
+
+    /**
+     * The sink to which the results of the test methods are submitted as soon as they are available, so that they are
+     * journaled in the background while the other test methods run, and survive a crash. Null if the results are only
+     * written by the {@link RunAftersWithOutputData} once the test class has run.
+     */
+    private ResultSink resultSink;
+
+    /**
+     * An instance of {@link Map} that contains the data to be written to the File. The output data of each execution of
+     * a test method is written into the row it was run with, as identified by
+     * {@link EasyFrameworkMethod#getRowIndex()}, so that the rows can be run in any order and in parallel.
+     */
+    private final Map<String, List<Map<String, Object>>> writableData = new HashMap<String, List<Map<String, Object>>>();
+
+    /**
+     * The row run by each thread, whose arguments the statements running the rows pass to the test method. It is
+     * inherited by the thread that runs the test method when it has a timeout.
+     */
+    private final ThreadLocal<Row> currentRow = new InheritableThreadLocal<Row>();
+
+    /**
+     * The statement running the rows of each test method, built once and run again for each row.
+     */
+    private final Map<Method, Statement> rowStatements = new ConcurrentHashMap<Method, Statement>();
+
+    /**
+     * The {@link Assignments} of each test method with all the parameters unassigned, which only depend on the
+     * signature of the test method.
+     */
+    private final Map<Method, Assignments> unassigned = new ConcurrentHashMap<Method, Assignments>();
+
+    /**
+     * Builds the statements running the rows of the test methods, so that the test class is only scanned once.
+     */
+    private RowRunner rowRunner;
+
+    /**
+     * Whether the test class has rules, which are then applied again for each row, with the description of the row.
+     */
+    private boolean hasRules;
+
+    /**
+     * Prepare the statements running the rows of the test methods of the given class.
+     *
+     * @param klass the test class
+     * @param testInstances supplies the instance of the test class that the current thread runs the rows with
+     * @throws InitializationError if any error occurs
+     */
+    void prepareRows(Class<?> klass, Callable<Object> testInstances) throws InitializationError {
+        rowRunner = new RowRunner(klass, testInstances);
+        hasRules = !rowRunner.getTestClass().getAnnotatedFields(Rule.class).isEmpty();
+    }
+
+    /**
+     * @return the files the test data is loaded from, and written back to
+     */
+    String[] getDataFiles() {
+        return dataFiles;
+    }
+
+    /**
+     * @return the {@link Loader} of the test data, or null if the output data is not written
+     */
+    Loader getDataLoader() {
+        return dataLoader;
+    }
+
+    /**
+     * @return the test data to be written back to the file, by method name
+     */
+    Map<String, List<Map<String, Object>>> getWritableData() {
+        return writableData;
+    }
+
+    /**
+     * Returns the statement running a row of the given test method. The statement is built once for each test method,
+     * and passes the arguments of the row run by the current thread to the test method. It is built again for each row
+     * only when the test class has rules, as they are applied with the description of the row.
+     *
+     * @param method the row of the test method
+     * @return the statement running the row
+     */
+    Statement rowStatement(FrameworkMethod method) {
+        return rowStatement(method, rowStatements);
+    }
+
+    /**
+     * Returns the statement running a row of the given test method, built once for each test method and kept in the
+     * given map, for eg. the one of the instance of the test class the statement runs the rows with.
+     *
+     * @param method the row of the test method
+     * @param statements the statements built so far, by test method
+     * @return the statement running the row
+     */
+    Statement rowStatement(FrameworkMethod method, Map<Method, Statement> statements) {
+        if (hasRules) {
+            return rowRunner.methodBlock(method);
+        }
+        Statement statement = statements.get(method.getMethod());
+        if (statement == null) {
+            statement = rowRunner.methodBlock(method);
+            statements.put(method.getMethod(), statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Run a row of a test method, with the given arguments, using the given statement.
+     *
+     * @param method the row of the test method
+     * @param complete the {@link Assignments} containing the arguments of the row
+     * @param statement the statement running the row, as returned by {@link #rowStatement(FrameworkMethod)}
+     * @throws Throwable if the row fails
+     */
+    void runRow(FrameworkMethod method, Assignments complete, Statement statement) throws Throwable {
+        Row previous = currentRow.get();
+        currentRow.set(new Row(method, complete));
+        try {
+            statement.evaluate();
+        } finally {
+            if (previous == null) {
+                currentRow.remove();
+            } else {
+                currentRow.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @param method the test method
+     * @return the {@link Assignments} of the test method with all the parameters unassigned
+     * @throws Exception if the signature of the test method cannot be read
+     */
+    Assignments unassignedOf(Method method) throws Exception {
+        Assignments assignments = unassigned.get(method);
+        if (assignments == null) {
+            assignments = Assignments.allUnassigned(method, rowRunner.getTestClass());
+            unassigned.put(method, assignments);
+        }
+        return assignments;
+    }
+
+    /**
+     * Remove the "No runnable methods" errors reported while validating the instance methods of a runner that has no
+     * method to run, as it is allowed when none of the rows of its test data are selected by the {@link RowSelector},
+     * for eg. when they all belong to other shards.
+     *
+     * @param errors the list of errors
+     * @param errorCount the number of errors before the instance methods were validated
+     */
+    static void allowNoRunnableMethods(List<Throwable> errors, int errorCount) {
+        for (int i = errors.size() - 1; i >= errorCount; i--) {
+            if ("No runnable methods".equals(errors.get(i).getMessage())) {
+                errors.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Returns a {@link Statement} running the {@link org.junit.AfterClass} methods after the given statement, and
+     * writing the output data of the test methods to the file, in case they return a value. The data is written once
+     * after the runner has completed and not for every instance of the test method, unless the results are journaled
+     * by a {@link ResultSink}.
+     *
+     * @param statement the statement running the test methods
+     * @param afters the {@link org.junit.AfterClass} methods
+     * @param frameworkMethods the test methods run by the runner
+     * @param testClass the test class
+     * @return the {@link Statement}
+     */
+    Statement withOutputData(Statement statement, List<FrameworkMethod> afters,
+        List<FrameworkMethod> frameworkMethods, Class<?> testClass) {
+        // THere would always be atleast on method associated with the Runner, else validation would fail,
+        // unless none of the rows of test data are selected to run.
+        if (frameworkMethods.isEmpty()) {
+            return new RunAftersWithOutputData(statement, afters, null, null, dataFiles, writableData);
+        }
+        FrameworkMethod method = frameworkMethods.get(0);
+        // Only if the return type of the Method is not VOID, we try to determine the right loader and data files.
+        if (method.getMethod().getReturnType() != Void.TYPE) {
+            DataLoader loaderAnnotation = method.getAnnotation(DataLoader.class);
+            if (loaderAnnotation == null) {
+                loaderAnnotation = testClass.getAnnotation(DataLoader.class);
+            }
+            if (loaderAnnotation != null) {
+                determineLoader(loaderAnnotation);
+            }
+            if (dataLoader == null) {
+                Assert.fail("The framework currently does not support the specified Loader type. "
+                    + "You can provide the custom Loader by choosing LoaderType.CUSTOM in TestData "
+                    + "annotation and providing your custom loader using DataLoader annotation.");
+            }
+            dataFiles = loaderAnnotation.filePaths();
+        } else {
+            dataLoader = null;
+        }
+
+        String outputPath = dataLoader != null ? ResourceLoader.writablePath(dataFiles) : null;
+        if (outputPath != null && ResultSink.isEnabled()) {
+            resultSink = ResultSink.open(dataLoader, outputPath, writableData);
+            return new RunAftersWithOutputData(statement, afters, null, resultSink);
+        }
+        return new RunAftersWithOutputData(statement, afters, null, dataLoader, dataFiles, writableData);
+    }
+
+    /**
+     * This method is responsible for actually executing a row of the test method as well as capturing the test data
+     * returned by the test method. If there is a return value, it is put in the row of test data the method was run
+     * with, under the key {@link Loader#ACTUAL_RESULT}.
+     *
+     * @param test the instance of the test class
+     * @throws Throwable if the test method fails
+     */
+    private void invokeRow(Object test) throws Throwable {
+        Row row = currentRow.get();
+        try {
+            final Object[] values = row.assignments.getMethodArguments(true);
+            Object returnObj = row.method.invokeExplosively(test, values);
+            if (returnObj != null) {
+                LOG.debug("returnObj:" + returnObj);
+                captureResult(row.method, returnObj);
+            }
+        } catch (CouldNotGenerateValueException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Capture the output data of an execution of a test method, by writing it into a copy of the row of test data the
+     * method was run with, which then replaces the row. If expected result exist in user input test data, then it is
+     * compared with the output data and the status is written into the row too, under the key
+     * {@link Loader#TEST_STATUS}. The row is then submitted to the {@link #resultSink}, if any. The rows are never
+     * modified, as they may be shared with the {@link org.easetech.easytest.loader.DataSetCache} or the
+     * {@link #resultSink}, and only the rows that receive a result are copied.<br>
+     * Each execution only ever writes into its own row, so the output data of the rows that run in parallel can be
+     * captured at the same time.
+     *
+     * @param method the {@link EasyFrameworkMethod} that was run
+     * @param returnObj the output data of the method
+     */
+    void captureResult(FrameworkMethod method, Object returnObj) {
+        if (!(method instanceof EasyFrameworkMethod) || ((EasyFrameworkMethod) method).getRowIndex() < 0) {
+            return;
+        }
+        String methodName = method.getMethod().getName();
+        int rowIndex = ((EasyFrameworkMethod) method).getRowIndex();
+        List<Map<String, Object>> methodData = writableData.get(methodName);
+        if (methodData == null) {
+            return;
+        }
+        LOG.debug("methodName:" + methodName + " ,rowIndex:" + rowIndex);
+        Map<String, Object> row = methodData.get(rowIndex);
+        Map<String, Object> writableRow = row instanceof CompactRow ? ((CompactRow) row).copy()
+            : new LinkedHashMap<String, Object>(row);
+        writableRow.put(Loader.ACTUAL_RESULT, returnObj);
+        Object expectedResult = writableRow.get(Loader.EXPECTED_RESULT);
+        if (expectedResult != null) {
+            LOG.debug("Expected result exists");
+            if (expectedResult.toString().equals(returnObj.toString())) {
+                writableRow.put(Loader.TEST_STATUS, Loader.TEST_PASSED);
+            } else {
+                writableRow.put(Loader.TEST_STATUS, Loader.TEST_FAILED);
+            }
+        }
+        methodData.set(rowIndex, writableRow);
+        if (resultSink != null) {
+            resultSink.submit(methodName, rowIndex, writableRow);
+        }
+    }
+
+    /**
+     * Method that determines the right Loader and the right Data Files for the "write output data" functionality
+     * supported by the EasyTest Framework.
+     *
+     * @param testData an instance of {@link DataLoader} that helps in identifying the right {@link Loader} to write the
+     *            data back to the file.
+     */
+    void determineLoader(DataLoader testData) {
+        dataFiles = testData.filePaths();
+        LoaderType loaderType = testData.loaderType();
+        // Loader
+        dataLoader = null;
+        if (LoaderType.CUSTOM.equals(loaderType)) {
+            LOG.info("User specified to use custom Loader. Trying to get the custom loader.");
+            if (testData.loader() == null) {
+                Assert.fail("Specified the LoaderType as CUSTOM but did not specify loader"
+                    + " attribute. A loaderType of CUSTOM requires the loader " + "attribute specifying "
+                    + "the Custom Loader Class which implements Loader interface.");
+            } else if (EmptyLoader.class.equals(testData.loader()) && dataFiles.length > 0) {
+                // No loader class specified, the loader is looked up by the extension of the files
+                dataLoader = LoaderFactory.getLoaderOfFiles(dataFiles);
+                if (dataLoader == null) {
+                    Assert.fail("Specified the LoaderType as CUSTOM but did not specify loader attribute, and no "
+                        + "Loader is registered for the extension of the file " + dataFiles[0]
+                        + ". A Loader can be registered for a file extension using a LoaderProvider.");
+                }
+            } else {
+                dataLoader = LoaderFactory.getLoader(testData.loader());
+            }
+        } else if (dataFiles.length == 0) {
+            // No files specified, implies user wants to load data with
+            // custom loader
+            if (testData.loader() == null) {
+                Assert.fail("Specified the LoaderType as CUSTOM but did not specify loader"
+                    + " attribute. A loaderType of CUSTOM requires the loader " + "attribute specifying "
+                    + "the Custom Loader Class which implements Loader interface.");
+            } else {
+                dataLoader = LoaderRegistry.getInstance().getLoader(testData.loader());
+            }
+        } else {
+            // user has specified data files and the data fileType is also
+            // not custom.
+            dataLoader = LoaderFactory.getLoader(loaderType);
+        }
+    }
+
+    /**
+     * A row of a test method being run, along with its arguments
+     */
+    private static final class Row {
+
+        /**
+         * The row of the test method
+         */
+        final FrameworkMethod method;
+
+        /**
+         * The {@link Assignments} containing the arguments of the row
+         */
+        final Assignments assignments;
+
+        /**
+         * Construct a new Row
+         *
+         * @param method the row of the test method
+         * @param assignments the {@link Assignments} containing the arguments of the row
+         */
+        Row(FrameworkMethod method, Assignments assignments) {
+            this.method = method;
+            this.assignments = assignments;
+        }
+    }
+
+    /**
+     * Builds the statements running the rows of the test methods, using the befores, afters, timeouts and expected
+     * exceptions of the test class. The test method is invoked with the arguments of the row run by the current
+     * thread, so that a statement can be run again for each row.
+     */
+    private final class RowRunner extends BlockJUnit4ClassRunner {
+
+        /**
+         * Supplies the instance of the test class that the current thread runs the rows with
+         */
+        private final Callable<Object> testInstances;
+
+        /**
+         * Construct a new RowRunner
+         *
+         * @param klass the test class
+         * @param testInstances supplies the instance of the test class that the current thread runs the rows with
+         * @throws InitializationError if any error occurs
+         */
+        RowRunner(Class<?> klass, Callable<Object> testInstances) throws InitializationError {
+            super(klass);
+            this.testInstances = testInstances;
+        }
+
+        @Override
+        protected void collectInitializationErrors(List<Throwable> errors) {
+            // do nothing
+        }
+
+        @Override
+        public Statement methodBlock(FrameworkMethod method) {
+            return super.methodBlock(method);
+        }
+
+        @Override
+        protected Statement methodInvoker(FrameworkMethod method, final Object test) {
+            return new Statement() {
+                @Override
+                public void evaluate() throws Throwable {
+                    invokeRow(test);
+                }
+            };
+        }
+
+        @Override
+        public Object createTest() throws Exception {
+            return testInstances.call();
+        }
+    }
+
+}
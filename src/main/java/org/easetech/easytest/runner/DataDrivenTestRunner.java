@@ -3,32 +3,38 @@ package org.easetech.easytest.runner;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.easetech.easytest.annotation.DataLoader;
 import org.easetech.easytest.annotation.Intercept;
+import org.easetech.easytest.annotation.Parallel;
 import org.easetech.easytest.annotation.Param;
 import org.easetech.easytest.loader.DataConverter;
+import org.easetech.easytest.loader.DataSetCache;
 import org.easetech.easytest.loader.Loader;
 import org.easetech.easytest.loader.LoaderFactory;
-import org.easetech.easytest.loader.LoaderType;
+import org.easetech.easytest.loader.StreamingLoader;
 import org.easetech.easytest.util.DataContext;
-import org.easetech.easytest.util.RunAftersWithOutputData;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.theories.ParametersSuppliedBy;
 import org.junit.experimental.theories.PotentialAssignment;
-import org.junit.experimental.theories.PotentialAssignment.CouldNotGenerateValueException;
 import org.junit.experimental.theories.internal.Assignments;
 import org.junit.experimental.theories.internal.ParameterizedAssertionError;
 import org.junit.internal.AssumptionViolatedException;
 import org.junit.runner.Runner;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.Suite;
 import org.junit.runners.model.FrameworkMethod;
@@ -59,6 +65,12 @@ import org.springframework.aop.framework.ProxyFactory;
  * 
  * This gives user the clear picture of which test was run with which input test data.
  * 
+ * The rows of test data can be spread over several forks or machines, or only a sample of them run, using the system
+ * properties of {@link RowSelector}. The rows of a test method can also be run in parallel, using the {@link Parallel}
+ * annotation, and all the test methods of a class can be run concurrently, on a bounded pool of threads, using the
+ * system property <B>easytest.parallel.methods</B> whose value is the number of threads. Each thread of the pool then
+ * runs the test methods with an instance of the test class of its own.
+ * 
  * For details on the actual Runner implementation, see {@link EasyTestRunner}
  * 
  * @author Anuj Kumar
@@ -67,32 +79,16 @@ import org.springframework.aop.framework.ProxyFactory;
 public class DataDrivenTestRunner extends Suite {
 
     /**
-     * The list of files that are used by the {@link Loader}s {@link Loader#writeData(String, Map)} functionality to
-     * write the test data back to the file. This is also passed to the {@link RunAftersWithOutputData} method.
-     */
-    private String[] dataFiles;
-    /**
-     * The instance of {@link Loader} that is currently being used. This is also passed to the
-     * {@link RunAftersWithOutputData}'s constructor which is responsible for calling the right
-     * {@link Loader#writeData(String, Map)} based on the {@link Loader} instance.
-     * 
-     */
-    private Loader dataLoader = null;
-
-    /**
-     * An instance of {@link Map} that contains the data to be written to the File
-     */
-    private static Map<String, List<Map<String, Object>>> writableData = new HashMap<String, List<Map<String, Object>>>();
-
-    /**
-     * The default rowNum within the {@link #writableData}'s particular method data.
+     * Runs the rows of test data and captures their results, the same way as the {@link SpringTestRunner} does. It also
+     * holds the {@link Loader} and the files that are used by the {@link Loader#writeData(String, Map)} functionality
+     * to write the test data back to the file.
      */
-    private static int rowNum = 0;
+    private final DataDrivenSupport support = new DataDrivenSupport();
 
     /**
-     * The name of the method currently being executed. Used for populating the {@link #writableData} map.
+     * Selects the rows of test data that are run, as specified by the system properties of {@link RowSelector}
      */
-    private String mapMethodName = "";
+    private final RowSelector rowSelector = RowSelector.fromSystemProperties();
 
     /**
      * An instance of logger associated with the test framework.
@@ -149,6 +145,29 @@ public class DataDrivenTestRunner extends Suite {
          * This is extremely handy in cases where we want to reflectively set instance fields on a test class.
          */
         Object testInstance;
+
+        /**
+         * The rows of the test method that are currently run in parallel, if any.
+         */
+        ParallelRows parallelRows;
+
+        /**
+         * The scheduler running the test methods concurrently, or null if they are run one after the other.
+         */
+        ParallelScheduler methodScheduler;
+
+        /**
+         * The workers that are not running a test method or a row, each with an instance of the test class of its own.
+         * A worker is checked out for each test method run by the {@link #methodScheduler} and for each row run by the
+         * {@link #parallelRows}, and checked back in once it has run, so that the test methods and the rows running
+         * concurrently never share an instance, and there are never more instances than threads.
+         */
+        private final Deque<Worker> idleWorkers = new ConcurrentLinkedDeque<Worker>();
+
+        /**
+         * The worker checked out by each thread running a test method or a row concurrently, if any.
+         */
+        private final ThreadLocal<Worker> currentWorker = new ThreadLocal<Worker>();
         
         /**
          * 
@@ -159,6 +178,11 @@ public class DataDrivenTestRunner extends Suite {
          */
         public EasyTestRunner(Class<?> klass) throws InitializationError {
             super(klass);
+            support.prepareRows(klass, new Callable<Object>() {
+                public Object call() {
+                    return getTestInstance();
+                }
+            });
             try {
                 testInstance = getTestClass().getOnlyConstructor().newInstance();
                 instrumentClass(getTestClass().getJavaClass());
@@ -166,8 +190,76 @@ public class DataDrivenTestRunner extends Suite {
             } catch (Exception e) {
                 Assert.fail("Test failed while trying to instrument fileds in the class : " + getTestClass().getJavaClass());
             }
+            methodScheduler = ParallelScheduler.fromSystemProperties(klass);
+            if (methodScheduler != null) {
+                setScheduler(methodScheduler);
+            }
         }
-        
+
+        /**
+         * Returns the instance of the test class to run the test methods with. When the test methods are run
+         * concurrently by the {@link #methodScheduler}, or the rows of a test method by the {@link #parallelRows},
+         * it is the instance of the worker checked out by the current thread, created and instrumented the first time
+         * the worker needs it.
+         * 
+         * @return the instance of the test class
+         */
+        Object getTestInstance() {
+            Worker worker = currentWorker.get();
+            if (worker == null) {
+                return testInstance;
+            }
+            if (worker.instance == null) {
+                try {
+                    Object instance = getTestClass().getOnlyConstructor().newInstance();
+                    instrumentInstance(getTestClass().getJavaClass(), instance);
+                    worker.instance = instance;
+                } catch (Exception e) {
+                    Assert.fail("Test failed while trying to instrument fileds in the class : " + getTestClass().getJavaClass());
+                }
+            }
+            return worker.instance;
+        }
+
+        /**
+         * Returns the statement running a row of the given test method, with its befores, afters, timeout and expected
+         * exception. The statement is built once for each test method and instance of the test class, as described in
+         * {@link DataDrivenSupport#rowStatement(FrameworkMethod)}.
+         * 
+         * @param method the row of the test method
+         * @return the statement running the row
+         */
+        Statement rowStatement(FrameworkMethod method) {
+            Worker worker = currentWorker.get();
+            return worker == null ? support.rowStatement(method) : support.rowStatement(method, worker.statements);
+        }
+
+        /**
+         * Returns a task running the given test method on the current thread, with a worker checked out for the time
+         * it runs, so that it gets an instance of the test class that no other thread uses meanwhile.
+         * 
+         * @param method the test method
+         * @param notifier the notifier to report the result to
+         * @return the task
+         */
+        private Runnable onWorker(final FrameworkMethod method, final RunNotifier notifier) {
+            return new Runnable() {
+                public void run() {
+                    Worker worker = idleWorkers.pollFirst();
+                    if (worker == null) {
+                        worker = new Worker();
+                    }
+                    currentWorker.set(worker);
+                    try {
+                        EasyTestRunner.super.runChild(method, notifier);
+                    } finally {
+                        currentWorker.remove();
+                        idleWorkers.addFirst(worker);
+                    }
+                }
+            };
+        }
+
         /**
          * Instrument the class's field that are marked with {@link Intercept} annotation
          * @param testClass the class under test
@@ -177,19 +269,32 @@ public class DataDrivenTestRunner extends Suite {
          * @throws InstantiationException if an exception occurred
          */
         protected void instrumentClass(Class<?> testClass) throws IllegalArgumentException, IllegalAccessException, AopConfigException, InstantiationException{
+            instrumentInstance(testClass, testInstance);
+        }
+
+        /**
+         * Instrument the fields of the given instance of the class that are marked with {@link Intercept} annotation
+         * @param testClass the class under test
+         * @param instance the instance of the class to instrument
+         * @throws IllegalArgumentException if an exception occurred
+         * @throws IllegalAccessException if an exception occurred
+         * @throws AopConfigException if an exception occurred
+         * @throws InstantiationException if an exception occurred
+         */
+        private void instrumentInstance(Class<?> testClass, Object instance) throws IllegalArgumentException, IllegalAccessException, AopConfigException, InstantiationException{
             Field[] fields = testClass.getFields();
             for(Field field : fields){
                 Intercept interceptor = field.getAnnotation(Intercept.class);
                 if(interceptor != null){
                     Class<? extends MethodInterceptor> interceptorClass = interceptor.interceptor();
                     //This is the field we want to enhance
-                    Object fieldInstance = field.get(testInstance);
+                    Object fieldInstance = field.get(instance);
                     ProxyFactory factory = new ProxyFactory();
                     factory.setTarget(fieldInstance);
                     factory.addAdvice(interceptorClass.newInstance());
                     Object proxy = factory.getProxy();
                     try{
-                        field.set(testInstance,proxy);
+                        field.set(instance,proxy);
                     }catch(Exception e){
                         Assert.fail("Failed while trying to instrument the class for Intercept annotation with exception : " + e.getStackTrace());
                     }
@@ -208,6 +313,22 @@ public class DataDrivenTestRunner extends Suite {
             // validateDataPointFields(errors);
         }
 
+        /**
+         * Validate the instance methods. A runner is allowed to have no method to run when none of the rows of its test
+         * data are selected by the {@link RowSelector}, for eg. when they all belong to other shards.
+         * 
+         * @param errors list of any errors while validating the instance methods
+         */
+        @Override
+        @SuppressWarnings("deprecation")
+        protected void validateInstanceMethods(List<Throwable> errors) {
+            int errorCount = errors.size();
+            super.validateInstanceMethods(errors);
+            if (computeTestMethods().isEmpty()) {
+                DataDrivenSupport.allowNoRunnableMethods(errors, errorCount);
+            }
+        }
+
         /**
          * Override the name of the test. In case of EasyTest, it will be the name of the test method concatenated with
          * the input test data that the method will run with.
@@ -217,7 +338,7 @@ public class DataDrivenTestRunner extends Suite {
          */
         @Override
         protected String testName(final FrameworkMethod method) {
-            return String.format("%s", method.getName());
+            return method.getName();
         }
 
         /**
@@ -232,7 +353,7 @@ public class DataDrivenTestRunner extends Suite {
          */
         @Override
         protected List<FrameworkMethod> computeTestMethods() {
-            if (frameworkMethods != null && !frameworkMethods.isEmpty()) {
+            if (frameworkMethods != null) {
                 return frameworkMethods;
             }
             // superMethodName variable comes from the enclosing DataDrivenTest class.
@@ -249,6 +370,10 @@ public class DataDrivenTestRunner extends Suite {
                 for(FrameworkMethod method : super.computeTestMethods()) {
 
                     if (superMethodName.equals(DataConverter.getFullyQualifiedTestName(method.getName(), testClass))) {
+                        // Stream the data row by row, if the method level loader supports it.
+                        if (streamData(method, testClass, finalList)) {
+                            break;
+                        }
                         // Load the data,if any, at the method level
                         loadData(null, method, getTestClass().getJavaClass());
                         List<Map<String, Object>> methodData = DataContext.getData().get(superMethodName);
@@ -258,10 +383,15 @@ public class DataDrivenTestRunner extends Suite {
                                 + "data for the given method. Please check the Test Data file for the method data. "
                                 + "Possible cause could be a spelling mismatch.");
                         }
-                        for (Map<String, Object> testData : methodData) {
+                        for (int i = 0; i < methodData.size(); i++) {
+                            Map<String, Object> testData = methodData.get(i);
+                            if (!rowSelector.isSelected(method.getName(), testData)) {
+                                continue;
+                            }
                             // Create a new FrameworkMethod for each set of test data
                             EasyFrameworkMethod easyMethod = new EasyFrameworkMethod(method.getMethod());
                             easyMethod.setName(method.getName().concat(testData.toString()));
+                            easyMethod.setRowIndex(i);
                             finalList.add(easyMethod);
                         }
                         // Since the runner only ever handles a single method, we break out of the loop as soon as we
@@ -273,12 +403,92 @@ public class DataDrivenTestRunner extends Suite {
             }
             finalList.addAll(methodsWithNoData);
             if (finalList.isEmpty()) {
-                Assert.fail("No method exists for the Test Runner");
+                if (!rowSelector.isPartial()) {
+                    Assert.fail("No method exists for the Test Runner");
+                }
+                PARAM_LOG.info("None of the rows of test data of the class " + testClass.getName()
+                    + " are selected to run.");
             }
             frameworkMethods = finalList;
             return finalList;
         }
 
+        /**
+         * Run the given test method, with the row of test data it holds. The rows of a test method that is run in
+         * parallel, as specified by the {@link Parallel} annotation, are submitted to the {@link ParallelRows} of the
+         * test method, which report the result of each row to the notifier. All the rows of a test method are run
+         * before the next test method is run.<br>
+         * When the test methods are run concurrently by the {@link #methodScheduler}, this method is called on one of
+         * its threads, and all the rows are run concurrently, whatever their {@link Parallel} annotation.
+         * 
+         * @param method the test method
+         * @param notifier the notifier to report the result to
+         */
+        @Override
+        protected void runChild(final FrameworkMethod method, final RunNotifier notifier) {
+            if (methodScheduler != null) {
+                methodScheduler.run(DataConverter.getFullyQualifiedTestName(method.getName(), getTestClass()
+                    .getJavaClass()), onWorker(method, notifier));
+                return;
+            }
+            try {
+                if (parallelRows != null && !parallelRows.runs(method.getMethod())) {
+                    awaitParallelRows();
+                }
+                int threads = ParallelRows.threadsOf(method, getTestClass().getJavaClass());
+                if (threads <= 1 || !(method instanceof EasyFrameworkMethod)) {
+                    super.runChild(method, notifier);
+                    return;
+                }
+                if (parallelRows == null) {
+                    parallelRows = new ParallelRows(method.getMethod(), threads, ParallelRows.isVirtual(method,
+                        getTestClass().getJavaClass()));
+                }
+                parallelRows.submit(DataConverter.getFullyQualifiedTestName(method.getName(), getTestClass()
+                    .getJavaClass()), onWorker(method, notifier));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                notifier.fireTestFailure(new Failure(describeChild(method), e));
+            }
+        }
+
+        /**
+         * Returns a {@link Statement} that runs all the test methods and then waits for the rows that are run in
+         * parallel, if any.
+         * 
+         * @param notifier the notifier to report the results to
+         * @return the {@link Statement}
+         */
+        @Override
+        protected Statement childrenInvoker(RunNotifier notifier) {
+            final Statement children = super.childrenInvoker(notifier);
+            return new Statement() {
+                @Override
+                public void evaluate() throws Throwable {
+                    try {
+                        children.evaluate();
+                    } finally {
+                        awaitParallelRows();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Wait for the rows that are run in parallel, if any, to complete.
+         * 
+         * @throws InterruptedException if interrupted while waiting
+         */
+        private void awaitParallelRows() throws InterruptedException {
+            if (parallelRows != null) {
+                try {
+                    parallelRows.await();
+                } finally {
+                    parallelRows = null;
+                }
+            }
+        }
+
         /**
          * Validate that there could ever be only one constructor.
          * 
@@ -322,32 +532,25 @@ public class DataDrivenTestRunner extends Suite {
          */
         @Override
         protected Statement withAfterClasses(Statement statement) {
-            List<FrameworkMethod> afters = getTestClass().getAnnotatedMethods(AfterClass.class);
-            // THere would always be atleast on method associated with the Runner, else validation would fail.
-            FrameworkMethod method = frameworkMethods.get(0);
-            // Only if the return type of the Method is not VOID, we try to determine the right loader and data files.
-            if (method.getMethod().getReturnType() != Void.TYPE) {
-                DataLoader loaderAnnotation = method.getAnnotation(DataLoader.class);
-                if (loaderAnnotation != null) {
-                    determineLoader(loaderAnnotation);
+            return support.withOutputData(statement, getTestClass().getAnnotatedMethods(AfterClass.class),
+                frameworkMethods, getTestClass().getJavaClass());
+        }
 
-                } else {
-                    loaderAnnotation = getTestClass().getJavaClass().getAnnotation(DataLoader.class);
-                    if (loaderAnnotation != null) {
-                        determineLoader(loaderAnnotation);
-                    }
-                }
-                if (dataLoader == null) {
-                    Assert.fail("The framework currently does not support the specified Loader type. "
-                        + "You can provide the custom Loader by choosing LoaderType.CUSTOM in TestData "
-                        + "annotation and providing your custom loader using DataLoader annotation.");
-                }
-                dataFiles = loaderAnnotation.filePaths();
-            } else {
-                dataLoader = null;
-            }
+        /**
+         * An instance of the test class, along with the statements running the rows of the test methods with it. It is
+         * used by one thread at a time.
+         */
+        private final class Worker {
+
+            /**
+             * The instance of the test class, created the first time the worker needs it
+             */
+            Object instance;
 
-            return new RunAftersWithOutputData(statement, afters, null, dataLoader, dataFiles, writableData);
+            /**
+             * The statement running the rows of each test method with {@link #instance}
+             */
+            final Map<Method, Statement> statements = new HashMap<Method, Statement>();
         }
 
         /**
@@ -425,7 +628,22 @@ public class DataDrivenTestRunner extends Suite {
 
             @Override
             public void evaluate() throws Throwable {
-                runWithAssignment(Assignments.allUnassigned(fTestMethod.getMethod(), getTestClass()));
+                // Supply the streamed test data, if any, only for the duration of this execution.
+                String methodName = DataContext.getMethodName();
+                Map<String, Object> testData = null;
+                if (fTestMethod instanceof EasyFrameworkMethod) {
+                    testData = ((EasyFrameworkMethod) fTestMethod).getTestData();
+                }
+                if (testData != null) {
+                    DataContext.putConvertedData(methodName, testData);
+                }
+                try {
+                    runWithAssignment(support.unassignedOf(fTestMethod.getMethod()));
+                } finally {
+                    if (testData != null) {
+                        DataContext.removeConvertedData(methodName);
+                    }
+                }
                 LOG.debug("ParamAnchor evaluate");
                 if (successes == 0)
                     Assert.fail("Never found parameters that satisfied method assumptions.  Violated assumptions: "
@@ -449,8 +667,7 @@ public class DataDrivenTestRunner extends Suite {
                     boolean isFirstSetOfArguments = listOfAssignments.isEmpty();
                     for (int i = 0; i < potentialAssignments.size(); i++) {
                         if (isFirstSetOfArguments) {
-                            Assignments assignments = Assignments
-                                .allUnassigned(fTestMethod.getMethod(), getTestClass());
+                            Assignments assignments = support.unassignedOf(fTestMethod.getMethod());
                             listOfAssignments.add(assignments.assignNext(potentialAssignments.get(i)));
                         } else {
                             Assignments assignments = listOfAssignments.get(i);
@@ -467,7 +684,7 @@ public class DataDrivenTestRunner extends Suite {
                 if (listOfAssignments.isEmpty()) {
                     LOG.debug("The list of Assignments is null. It normally happens when the user has not supplied any parameters to the test.");
                     LOG.debug(" Creating an instance of Assignments object with all its value unassigned.");
-                    listOfAssignments.add(Assignments.allUnassigned(fTestMethod.getMethod(), getTestClass()));
+                    listOfAssignments.add(support.unassignedOf(fTestMethod.getMethod()));
                 }
                 for (Assignments assignments : listOfAssignments) {
                     runWithCompleteAssignment(assignments);
@@ -486,111 +703,15 @@ public class DataDrivenTestRunner extends Suite {
              */
             protected void runWithCompleteAssignment(final Assignments complete) throws InstantiationException,
                 IllegalAccessException, InvocationTargetException, NoSuchMethodException, Throwable {
-                new BlockJUnit4ClassRunner(getTestClass().getJavaClass()) {
-                    @Override
-                    protected void collectInitializationErrors(List<Throwable> errors) {
-                        // do nothing
-                    }
-
-                    @Override
-                    public Statement methodBlock(FrameworkMethod method) {
-                        final Statement statement = super.methodBlock(method);
-                        return new Statement() {
-                            @Override
-                            public void evaluate() throws Throwable {
-                                try {
-                                    statement.evaluate();
-                                    handleDataPointSuccess();
-                                } catch (AssumptionViolatedException e) {
-                                    handleAssumptionViolation(e);
-                                } catch (Throwable e) {
-                                    reportParameterizedError(e, complete.getArgumentStrings(true));
-                                }
-                            }
-
-                        };
-                    }
-
-                    @Override
-                    protected Statement methodInvoker(FrameworkMethod method, Object test) {
-                        return methodCompletesWithParameters(method, complete, test);
-                    }
-
-                    @Override
-                    public Object createTest() throws Exception {
-                        return testInstance;
-                    }
-                }.methodBlock(fTestMethod).evaluate();
-            }
-
-            /**
-             * This method is responsible for actually executing the test method as well as capturing the test data
-             * returned by the test method. The algorithm to capture the output data is as follows:
-             * <ol>
-             * After the method has been invoked explosively, the returned value is checked. If there is a return value:
-             * <li>We get the name of the method that is currently executing,
-             * <li>We find the exact place in the test input data for which this method was executed,
-             * <li>We put the returned result in the map of input test data. The entry in the map has the key :
-             * {@link Loader#ACTUAL_RESULT} and the value is the returned value by the test method.
-             * <li>If expected result{@link Loader#EXPECTED_RESULT} exist in user input data then we compare it with
-             * actual result and put the test status either passed/failed. The entry in the map has the key :
-             * {@link Loader#TEST_STATUS} and the value is the either PASSED or FAILED.
-             * 
-             * We finally write the test data to the file.
-             * 
-             * @param method an instance of {@link FrameworkMethod} that needs to be executed
-             * @param complete an instance of {@link Assignments} that contains the input test data values
-             * @param freshInstance a fresh instance of the class for which the method needs to be invoked.
-             * @return an instance of {@link Statement}
-             */
-            private Statement methodCompletesWithParameters(final FrameworkMethod method, final Assignments complete,
-                final Object freshInstance) {
-                return new Statement() {
-                    @Override
-                    public void evaluate() throws Throwable {
-                        try {
-                            final Object[] values = complete.getMethodArguments(true);
-                            //Log Statistics about the test method as well as the actual testSubject, if required.
-                            
-                            Object returnObj = method.invokeExplosively(freshInstance, values);
-                            if (returnObj != null) {
-                                LOG.debug("returnObj:" + returnObj);
-                                // checking and assigning the map method name.
-                                if (!mapMethodName.equals(method.getMethod().getName())) {
-                                    // if mapMethodName is not same as the current executing method name
-                                    // then assign that to mapMethodName to write to writableData
-                                    mapMethodName = method.getMethod().getName();
-                                    // initialize the row number.
-                                    rowNum = 0;
-                                }
-                                LOG.debug("mapMethodName:" + mapMethodName + " ,rowNum:" + rowNum);
-                                if (writableData.get(mapMethodName) != null) {
-                                    LOG.debug("writableData.get(mapMethodName)" + writableData.get(mapMethodName)
-                                        + " ,rowNum:" + rowNum);
-                                    Map<String, Object> writableRow = writableData.get(mapMethodName).get(rowNum);
-                                    writableRow.put(Loader.ACTUAL_RESULT, returnObj);
-
-                                    Object expectedResult = writableRow.get(Loader.EXPECTED_RESULT);
-                                    // if expected result exist in user input test data,
-                                    // then compare that with actual output result
-                                    // and write the status back to writable map data.
-                                    if (expectedResult != null) {
-                                        LOG.debug("Expected result exists");
-                                        if (expectedResult.toString().equals(returnObj.toString())) {
-                                            writableRow.put(Loader.TEST_STATUS, Loader.TEST_PASSED);
-                                        } else {
-                                            writableRow.put(Loader.TEST_STATUS, Loader.TEST_FAILED);
-                                        }
-                                    }
-                                    rowNum++;
-                                }
-
-                            }
-                        } catch (CouldNotGenerateValueException e) {
-                            // ignore
-                        }
-                    }
-                };
+                Statement statement = rowStatement(fTestMethod);
+                try {
+                    support.runRow(fTestMethod, complete, statement);
+                    handleDataPointSuccess();
+                } catch (AssumptionViolatedException e) {
+                    handleAssumptionViolation(e);
+                } catch (Throwable e) {
+                    reportParameterizedError(e, complete.getArgumentStrings(true));
+                }
             }
 
             protected void handleAssumptionViolation(AssumptionViolatedException e) {
@@ -735,7 +856,7 @@ public class DataDrivenTestRunner extends Suite {
      * Load the Data for the given class or method. This method will try to find {@link DataLoader} on either the class
      * level or the method level. In case the annotation is found, this method will load the data using the specified
      * loader class and then save it in the DataContext for further use by the system. We also create another copy of
-     * the input test data that we store in the {@link DataDrivenTestRunner#writableData} field. This is done in order to
+     * the input test data that we store in the {@link DataDrivenSupport#getWritableData()}. This is done in order to
      * facilitate the writing of the data that might be returned by the test method.
      * 
      * @param testClass the class object, if any.
@@ -758,79 +879,149 @@ public class DataDrivenTestRunner extends Suite {
             testData = method.getAnnotation(DataLoader.class);
         }
         if (testData != null) {
-            determineLoader(testData);
+            support.determineLoader(testData);
+            Loader dataLoader = support.getDataLoader();
+            String[] dataFiles = support.getDataFiles();
             if (dataLoader == null) {
                 Assert.fail("The framework currently does not support the specified Loader type. "
                     + "You can provide the custom Loader by choosing LoaderType.CUSTOM in TestData "
                     + "annotation and providing your custom loader using DataLoader annotation.");
             } else {
-                Map<String, List<Map<String, Object>>> data = dataLoader.loadData(dataFiles);
+                String cacheKey = DataSetCache.keyOf(dataLoader, dataFiles);
+                Map<String, List<Map<String, Object>>> data = DataSetCache.get(cacheKey);
+                if (data == null) {
+                    data = DataSetCache.put(cacheKey, DataConverter.compact(dataLoader.loadData(dataFiles)));
+                }
                 // We also maintain the copy of the actual data for our write functionality.
-                writableData.putAll(data);
+                support.getWritableData().putAll(writableCopy(data, currentTestClass));
                 DataContext.setData(DataConverter.appendClassName(data, currentTestClass));
-                DataContext.setConvertedData(DataConverter.convert(data, currentTestClass));
+                // Only the selected rows are converted, as the others are never run.
+                DataContext.setConvertedData(DataConverter.convert(rowSelector.select(data), currentTestClass));
 
             }
         }
     }
     
     /**
-     * Returns a {@link Statement}: We override this method as it was being called twice 
-     * for the same class. Looks like a bug in JUnit.
+     * Stream the Data for the given method, in case the method has its own {@link DataLoader} annotation and the
+     * {@link Loader} identified by it is a {@link StreamingLoader}. Each row of the test data is pulled from the loader
+     * and directly turned into an {@link EasyFrameworkMethod} that carries the row, so that the data of the method is
+     * never held more than once. The rows are supplied to the test method on demand, when the
+     * {@link EasyFrameworkMethod} gets executed.
+     * 
+     * @param method current executing method
+     * @param currentTestClass the currently executing test class.
+     * @param testMethods the list to which the created {@link EasyFrameworkMethod}s are added
+     * @return true if the data was streamed, false if the data needs to be loaded using
+     *         {@link #loadData(Class, FrameworkMethod, Class)}
      */
-    @Override
-    protected Statement withBeforeClasses(Statement statement) {
-        return statement;
+    protected boolean streamData(FrameworkMethod method, Class<?> currentTestClass, List<FrameworkMethod> testMethods) {
+        DataLoader testData = method.getAnnotation(DataLoader.class);
+        if (testData == null) {
+            return false;
+        }
+        support.determineLoader(testData);
+        Loader dataLoader = support.getDataLoader();
+        String[] dataFiles = support.getDataFiles();
+        if (!(dataLoader instanceof StreamingLoader)) {
+            return false;
+        }
+        List<Map<String, Object>> methodData = new ArrayList<Map<String, Object>>();
+        List<Map<String, Object>> selectedData = methodData;
+        if (rowSelector.isPartial()) {
+            selectedData = new ArrayList<Map<String, Object>>();
+        }
+        // The rows that are not selected are only kept if the output data of the method is written into them
+        boolean keepAllRows = method.getMethod().getReturnType() != Void.TYPE;
+        int rowCount = 0;
+        Iterator<Map<String, Object>> rows = null;
+        Map<String, List<Map<String, Object>>> cachedData = DataSetCache.get(DataSetCache.keyOf(dataLoader, dataFiles));
+        if (cachedData != null) {
+            // The same files were already loaded, for eg. at the class level
+            List<Map<String, Object>> cachedRows = cachedData.get(method.getName());
+            rows = cachedRows == null ? Collections.<Map<String, Object>> emptyList().iterator() : writableCopy(
+                cachedRows, method.getMethod()).iterator();
+        } else {
+            rows = ((StreamingLoader) dataLoader).streamData(dataFiles, method.getName());
+        }
+        while (rows.hasNext()) {
+            Map<String, Object> row = rows.next();
+            rowCount++;
+            if (!rowSelector.isSelected(method.getName(), row)) {
+                if (keepAllRows) {
+                    methodData.add(row);
+                }
+                continue;
+            }
+            EasyFrameworkMethod easyMethod = new EasyFrameworkMethod(method.getMethod());
+            easyMethod.setName(method.getName().concat(row.toString()));
+            easyMethod.setTestData(row);
+            easyMethod.setRowIndex(methodData.size());
+            methodData.add(row);
+            if (selectedData != methodData) {
+                selectedData.add(row);
+            }
+            testMethods.add(easyMethod);
+        }
+        if (rowCount == 0) {
+            Assert.fail("Method with name : " + method.getName()
+                + " expects some input test data. But there doesnt seem to be any test "
+                + "data for the given method. Please check the Test Data file for the method data. "
+                + "Possible cause could be a spelling mismatch.");
+        }
+        // We also maintain the reference to the actual data for our write functionality.
+        support.getWritableData().put(method.getName(), methodData);
+        DataContext.setData(Collections.singletonMap(
+            DataConverter.getFullyQualifiedTestName(method.getName(), currentTestClass), selectedData));
+        return true;
     }
 
     /**
-     * Method that determines the right Loader and the right Data Files for the "write output data" functionality
-     * supported by the EasyTest Framework.
+     * Make a modifiable copy of the lists of rows of the methods that return a value, as the rows that receive the
+     * output data of these methods are replaced by a copy holding it. The rows themselves are never modified and are
+     * thus shared, as are the lists of the other methods.
      * 
-     * @param testData an instance of {@link DataLoader} that helps in identifying the right {@link Loader} to write the
-     *            data back to the file.
+     * @param data the input test data, that may be shared with the {@link DataSetCache}
+     * @param currentTestClass the currently executing test class.
+     * @return the input test data in which the rows of the methods that return a value are modifiable
      */
-    private void determineLoader(DataLoader testData) {
-        dataFiles = testData.filePaths();
-        LoaderType loaderType = testData.loaderType();
-        // Loader
-        dataLoader = null;
-        if (LoaderType.CUSTOM.equals(loaderType)) {
-            PARAM_LOG.info("User specified to use custom Loader. Trying to get the custom loader.");
-            if (testData.loader() == null) {
-                Assert.fail("Specified the LoaderType as CUSTOM but did not specify loader"
-                    + " attribute. A loaderType of CUSTOM requires the loader " + "attribute specifying "
-                    + "the Custom Loader Class which implements Loader interface.");
-            } else {
-                try {
-                    Class<? extends Loader> loaderClass = testData.loader();
-                    dataLoader = loaderClass.newInstance();
-                } catch (Exception e) {
-                    throw new RuntimeException("Exception occured while trying to instantiate a class of type :"
-                        + testData.loader(), e);
-                }
-            }
-        } else if (dataFiles.length == 0) {
-            // No files specified, implies user wants to load data with
-            // custom loader
-            if (testData.loader() == null) {
-                Assert.fail("Specified the LoaderType as CUSTOM but did not specify loader"
-                    + " attribute. A loaderType of CUSTOM requires the loader " + "attribute specifying "
-                    + "the Custom Loader Class which implements Loader interface.");
-            } else {
-                try {
-                    Class<? extends Loader> loaderClass = testData.loader();
-                    dataLoader = loaderClass.newInstance();
-                } catch (Exception e) {
-                    throw new RuntimeException("Exception occured while trying to instantiate a class of type :"
-                        + testData.loader(), e);
+    private Map<String, List<Map<String, Object>>> writableCopy(Map<String, List<Map<String, Object>>> data,
+        Class<?> currentTestClass) {
+        Map<String, List<Map<String, Object>>> result = new HashMap<String, List<Map<String, Object>>>();
+        for (Map.Entry<String, List<Map<String, Object>>> methodData : data.entrySet()) {
+            List<Map<String, Object>> rows = methodData.getValue();
+            for (Method method : currentTestClass.getMethods()) {
+                if (method.getName().equals(methodData.getKey())) {
+                    rows = writableCopy(rows, method);
+                    break;
                 }
             }
-        } else {
-            // user has specified data files and the data fileType is also
-            // not custom.
-            dataLoader = LoaderFactory.getLoader(loaderType);
+            result.put(methodData.getKey(), rows);
+        }
+        return result;
+    }
+
+    /**
+     * Make a modifiable copy of the given list of rows if the given method returns a value.
+     * 
+     * @param rows the rows of test data of the method
+     * @param method the test method
+     * @return the rows, in a list of their own if the method returns a value
+     */
+    private List<Map<String, Object>> writableCopy(List<Map<String, Object>> rows, Method method) {
+        if (method.getReturnType() == Void.TYPE) {
+            return rows;
         }
+        return new ArrayList<Map<String, Object>>(rows);
+    }
+
+    /**
+     * Returns a {@link Statement}: We override this method as it was being called twice 
+     * for the same class. Looks like a bug in JUnit.
+     */
+    @Override
+    protected Statement withBeforeClasses(Statement statement) {
+        return statement;
     }
 
 }
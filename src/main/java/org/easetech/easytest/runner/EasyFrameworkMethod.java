@@ -1,6 +1,7 @@
 package org.easetech.easytest.runner;
 
 import java.lang.reflect.Method;
+import java.util.Map;
 
 import org.junit.runners.model.FrameworkMethod;
 /**
@@ -15,6 +16,16 @@ public class EasyFrameworkMethod extends FrameworkMethod {
      * The name of the method
      */
     private String methodName = "";
+
+    /**
+     * The single set of test data that this method will run with, if it was streamed by the framework.
+     */
+    private Map<String, Object> testData;
+
+    /**
+     * The position of the row of test data of this method within the data of the method, or -1 if unknown.
+     */
+    private int rowIndex = -1;
     
     /**
      * 
@@ -43,4 +54,37 @@ public class EasyFrameworkMethod extends FrameworkMethod {
         this.methodName = name;
     }
 
+    /**
+     * Returns the test data this method will run with
+     * @return the test data or null if the test data was not streamed by the framework
+     */
+    public Map<String, Object> getTestData() {
+        return testData;
+    }
+
+    /**
+     * Set the test data this method will run with
+     * @param testData the test data to set.
+     */
+    public void setTestData(Map<String, Object> testData) {
+        this.testData = testData;
+    }
+
+    /**
+     * Returns the position of the row of test data of this method within the data of the method. The output data of
+     * the method is written into the row at this position.
+     * @return the position of the row or -1 if unknown
+     */
+    public int getRowIndex() {
+        return rowIndex;
+    }
+
+    /**
+     * Set the position of the row of test data of this method within the data of the method
+     * @param rowIndex the position of the row to set.
+     */
+    public void setRowIndex(int rowIndex) {
+        this.rowIndex = rowIndex;
+    }
+
 }
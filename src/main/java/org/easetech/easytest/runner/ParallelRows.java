@@ -0,0 +1,201 @@
+
+package org.easetech.easytest.runner;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.easetech.easytest.annotation.Parallel;
+import org.easetech.easytest.util.ContextSnapshot;
+import org.junit.runners.model.FrameworkMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the rows of test data of a single test method in parallel, on a pool of threads of its own, or on a virtual
+ * thread per row on JDK 21 and later. The rows are submitted by the thread of the runner, in the order of the test
+ * data, and run with the {@link ContextSnapshot} of that thread. At most a few rows per thread wait to be run, or at
+ * most the given number of rows run at the same time on virtual threads, so that the rows are not all queued at once.
+ * <br>
+ * The virtual threads are created using reflection, so that the framework still runs on older JVMs, on which the
+ * rows run on platform threads instead.
+ *
+ */
+final class ParallelRows {
+
+    /**
+     * The system property that runs the rows of all the test methods in parallel, on the given number of threads
+     */
+    static final String THREADS_PROPERTY = "easytest.parallel.rows";
+
+    /**
+     * The system property that runs the rows of all the test methods on virtual threads
+     */
+    static final String VIRTUAL_PROPERTY = "easytest.parallel.virtual";
+
+    /**
+     * The default maximum number of rows running at the same time on virtual threads
+     */
+    static final int DEFAULT_VIRTUAL_ROWS = 1000;
+
+    /**
+     * The number of rows per thread that can wait to be run
+     */
+    private static final int ROWS_PER_THREAD = 4;
+
+    /**
+     * An instance of logger associated with the test framework.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelRows.class);
+
+    /**
+     * The test method whose rows are run
+     */
+    private final Method method;
+
+    /**
+     * The state of the thread of the runner, attached to the threads running the rows
+     */
+    private final ContextSnapshot context;
+
+    /**
+     * The threads running the rows
+     */
+    private final BoundedExecutor executor;
+
+    /**
+     * Construct a new ParallelRows and start its threads
+     *
+     * @param method the test method whose rows are run
+     * @param threads the number of threads, or the maximum number of rows running at the same time on virtual threads
+     * @param virtual whether each row runs on a virtual thread of its own
+     */
+    ParallelRows(Method method, int threads, boolean virtual) {
+        this.method = method;
+        this.context = ContextSnapshot.capture().withEditorsOf(method.getParameterTypes());
+        ExecutorService virtualExecutor = virtual ? newVirtualThreadExecutor(method.getName()) : null;
+        if (virtualExecutor != null) {
+            this.executor = new BoundedExecutor(method.getName(), virtualExecutor, threads);
+        } else {
+            if (virtual) {
+                LOG.warn("Virtual threads are not supported by this JVM. The rows of the test method {} run on {} "
+                    + "platform threads instead.", method.getName(), threads);
+            }
+            this.executor = new BoundedExecutor(method.getName(), threads, ROWS_PER_THREAD);
+        }
+    }
+
+    /**
+     * The number of threads that run the rows of the given test method, as specified by its {@link Parallel}
+     * annotation, or else the one of its class, or else the system properties {@value #THREADS_PROPERTY} and
+     * {@value #VIRTUAL_PROPERTY}.
+     *
+     * @param method the test method
+     * @param testClass the class of the test method
+     * @return the number of threads, or the maximum number of rows running at the same time on virtual threads, 1 if
+     *         the rows are run one after the other
+     */
+    static int threadsOf(FrameworkMethod method, Class<?> testClass) {
+        Parallel parallel = parallelOf(method, testClass);
+        int threads;
+        if (parallel != null) {
+            threads = parallel.threads();
+        } else {
+            Integer property = Integer.getInteger(THREADS_PROPERTY);
+            if (property == null && !Boolean.getBoolean(VIRTUAL_PROPERTY)) {
+                return 1;
+            }
+            threads = property == null ? 0 : property.intValue();
+        }
+        if (threads > 0) {
+            return threads;
+        }
+        return isVirtual(method, testClass) ? DEFAULT_VIRTUAL_ROWS : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Whether the rows of the given test method run on virtual threads, as specified by its {@link Parallel}
+     * annotation, or else the one of its class, or the system property {@value #VIRTUAL_PROPERTY}.
+     *
+     * @param method the test method
+     * @param testClass the class of the test method
+     * @return true if each row runs on a virtual thread of its own
+     */
+    static boolean isVirtual(FrameworkMethod method, Class<?> testClass) {
+        Parallel parallel = parallelOf(method, testClass);
+        return (parallel != null && parallel.virtual()) || Boolean.getBoolean(VIRTUAL_PROPERTY);
+    }
+
+    /**
+     * @param method the test method
+     * @param testClass the class of the test method
+     * @return the {@link Parallel} annotation of the test method, or else the one of its class, or null
+     */
+    private static Parallel parallelOf(FrameworkMethod method, Class<?> testClass) {
+        Parallel parallel = method.getAnnotation(Parallel.class);
+        return parallel == null ? testClass.getAnnotation(Parallel.class) : parallel;
+    }
+
+    /**
+     * Create an executor that runs each task on a new virtual thread, using
+     * <B>Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 1).factory())</B>.
+     *
+     * @param methodName the name of the test method, used to name the threads
+     * @return the executor, or null if virtual threads are not supported by this JVM
+     */
+    private static ExecutorService newVirtualThreadExecutor(String methodName) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder,
+                "easytest-" + methodName + "-", Long.valueOf(1));
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, factory);
+        } catch (Exception e) {
+            // Before JDK 21, the methods either do not exist or are a preview feature that is not enabled
+            LOG.debug("Virtual threads are not available", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param testMethod a test method
+     * @return true if the rows of the given test method are the ones run
+     */
+    boolean runs(Method testMethod) {
+        return method.equals(testMethod);
+    }
+
+    /**
+     * Submit a row to run, waiting if too many rows are already waiting to be run
+     *
+     * @param testMethodName the name of the test method along with the data that it will be run with
+     * @param row runs the row and reports its result
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void submit(final String testMethodName, final Runnable row) throws InterruptedException {
+        executor.execute(new Runnable() {
+            public void run() {
+                ContextSnapshot previous = context.attach(testMethodName);
+                try {
+                    row.run();
+                } catch (Throwable e) {
+                    LOG.error("Unexpected error while running the test method " + testMethodName, e);
+                } finally {
+                    previous.restore();
+                }
+            }
+        });
+    }
+
+    /**
+     * Wait for all the submitted rows to be run and stop the threads
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void await() throws InterruptedException {
+        executor.await();
+    }
+
+}
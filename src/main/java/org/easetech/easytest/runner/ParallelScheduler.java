@@ -0,0 +1,138 @@
+
+package org.easetech.easytest.runner;
+
+import org.easetech.easytest.util.ContextSnapshot;
+import org.junit.runners.model.RunnerScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link RunnerScheduler} that runs the test methods of a runner concurrently, on a bounded pool of threads, instead
+ * of one after the other. It is enabled by the system property {@value #THREADS_PROPERTY}, whose value is the number of
+ * threads, or 0 for the number of available processors.<br>
+ * The test methods are scheduled by the thread of the runner, once the {@code @BeforeClass} methods have run, and the
+ * {@link ContextSnapshot} of that thread is attached to the threads of the pool while they run a test method. At most
+ * a few test methods per thread wait to be run, so that the test methods are not all queued at once.
+ *
+ */
+final class ParallelScheduler implements RunnerScheduler {
+
+    /**
+     * The system property that runs the test methods of the runners concurrently, on the given number of threads
+     */
+    static final String THREADS_PROPERTY = "easytest.parallel.methods";
+
+    /**
+     * The number of test methods per thread that can wait to be run
+     */
+    private static final int METHODS_PER_THREAD = 4;
+
+    /**
+     * An instance of logger associated with the test framework.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelScheduler.class);
+
+    /**
+     * The name of the test class, used to name the threads
+     */
+    private final String className;
+
+    /**
+     * The number of threads
+     */
+    private final int threads;
+
+    /**
+     * The threads running the test methods, started when the first test method is scheduled
+     */
+    private BoundedExecutor executor;
+
+    /**
+     * The state of the thread of the runner, captured when the first test method is scheduled
+     */
+    private volatile ContextSnapshot context;
+
+    /**
+     * Construct a new ParallelScheduler
+     *
+     * @param testClass the test class whose test methods are run
+     * @param threads the number of threads
+     */
+    ParallelScheduler(Class<?> testClass, int threads) {
+        this.className = testClass.getSimpleName();
+        this.threads = threads;
+    }
+
+    /**
+     * @param testClass the test class whose test methods are run
+     * @return the scheduler configured by the system property {@value #THREADS_PROPERTY}, or null if the test methods
+     *         are run one after the other
+     */
+    static ParallelScheduler fromSystemProperties(Class<?> testClass) {
+        Integer threads = Integer.getInteger(THREADS_PROPERTY);
+        if (threads == null) {
+            return null;
+        }
+        return new ParallelScheduler(testClass, threads.intValue() <= 0 ? Runtime.getRuntime()
+            .availableProcessors() : threads.intValue());
+    }
+
+    /**
+     * Schedule a test method, waiting if too many test methods are already waiting to be run
+     *
+     * @param childStatement runs the test method and reports its result
+     */
+    public void schedule(final Runnable childStatement) {
+        if (executor == null) {
+            context = ContextSnapshot.capture();
+            executor = new BoundedExecutor(className, threads, METHODS_PER_THREAD);
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        childStatement.run();
+                    } catch (Throwable e) {
+                        LOG.error("Unexpected error while running a test method of " + className, e);
+                    }
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scheduling the test methods of " + className, e);
+        }
+    }
+
+    /**
+     * Wait for all the scheduled test methods to be run and stop the threads
+     */
+    public void finished() {
+        if (executor == null) {
+            return;
+        }
+        try {
+            executor.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor = null;
+        }
+    }
+
+    /**
+     * Run a test method on the current thread, which is one of the threads of this scheduler, with the state of the
+     * thread of the runner attached to it.
+     *
+     * @param testMethodName the name of the test method along with the data that it will be run with
+     * @param testMethod runs the test method and reports its result
+     */
+    void run(String testMethodName, Runnable testMethod) {
+        ContextSnapshot previous = context.attach(testMethodName);
+        try {
+            testMethod.run();
+        } finally {
+            previous.restore();
+        }
+    }
+
+}
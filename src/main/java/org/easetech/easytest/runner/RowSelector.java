@@ -0,0 +1,281 @@
+
+package org.easetech.easytest.runner;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.loader.Loader;
+import org.junit.Assert;
+
+/**
+ * Selects the rows of test data that are run by this JVM, so that the rows of a large data set can be spread over
+ * several forks or machines, or only a sample of them run.<br>
+ * The system property {@value #SHARD_PROPERTY}, of the form <B>index/count</B>, for eg. <B>3/16</B>, splits the rows
+ * of every test method into <B>count</B> shards and only runs the shard <B>index</B>, between 1 and <B>count</B>. The
+ * system property {@value #SAMPLE_PROPERTY} only runs the given percentage of the rows, for eg. <B>10</B> or
+ * <B>0.5</B>, and the system property {@value #SEED_PROPERTY} chooses which ones. Both can be combined, in which case
+ * the sample is taken within the shard.<br>
+ * A row is selected based on a hash of the name of its test method and of its values, excluding the output data
+ * written back by the framework. The selection is thus the same on every JVM and in every run, a row keeps its shard
+ * when other rows are added or removed, and the shards of a data set never overlap and together cover all its rows.
+ *
+ */
+public final class RowSelector {
+
+    /**
+     * The system property that specifies the shard of rows to run, as <B>index/count</B>
+     */
+    public static final String SHARD_PROPERTY = "easytest.shard";
+
+    /**
+     * The system property that specifies the percentage of rows to run
+     */
+    public static final String SAMPLE_PROPERTY = "easytest.sample";
+
+    /**
+     * The system property that specifies the seed of the sample, 0 by default
+     */
+    public static final String SEED_PROPERTY = "easytest.sample.seed";
+
+    /**
+     * Mixes the seed of the sample into the hash of a row, so that the sample does not follow the shards
+     */
+    private static final long SEED_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The selector that selects all the rows
+     */
+    private static final RowSelector ALL = new RowSelector(0, 1, 1.0, 0);
+
+    /**
+     * The zero based index of the shard to run
+     */
+    private final int shardIndex;
+
+    /**
+     * The number of shards
+     */
+    private final int shardCount;
+
+    /**
+     * The fraction of the rows to run, between 0 and 1
+     */
+    private final double sampleFraction;
+
+    /**
+     * The seed of the sample
+     */
+    private final long seed;
+
+    /**
+     * Construct a new RowSelector
+     *
+     * @param shardIndex the zero based index of the shard to run
+     * @param shardCount the number of shards
+     * @param sampleFraction the fraction of the rows to run
+     * @param seed the seed of the sample
+     */
+    RowSelector(int shardIndex, int shardCount, double sampleFraction, long seed) {
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        this.sampleFraction = sampleFraction;
+        this.seed = seed;
+    }
+
+    /**
+     * @return the selector configured by the system properties {@value #SHARD_PROPERTY}, {@value #SAMPLE_PROPERTY} and
+     *         {@value #SEED_PROPERTY}
+     */
+    public static RowSelector fromSystemProperties() {
+        String shard = System.getProperty(SHARD_PROPERTY);
+        String sample = System.getProperty(SAMPLE_PROPERTY);
+        if (isBlank(shard) && isBlank(sample)) {
+            return ALL;
+        }
+        int shardIndex = 0;
+        int shardCount = 1;
+        if (!isBlank(shard)) {
+            int separator = shard.indexOf('/');
+            try {
+                shardIndex = Integer.parseInt(shard.substring(0, separator).trim()) - 1;
+                shardCount = Integer.parseInt(shard.substring(separator + 1).trim());
+            } catch (RuntimeException e) {
+                shardCount = 0;
+            }
+            if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+                Assert.fail("The system property " + SHARD_PROPERTY + " should be of the form index/count, "
+                    + "with index between 1 and count, for eg. 3/16. Found : " + shard);
+            }
+        }
+        double sampleFraction = 1.0;
+        if (!isBlank(sample)) {
+            try {
+                sampleFraction = Double.parseDouble(sample.trim()) / 100;
+            } catch (NumberFormatException e) {
+                sampleFraction = -1;
+            }
+            if (!(sampleFraction >= 0 && sampleFraction <= 1)) {
+                Assert.fail("The system property " + SAMPLE_PROPERTY
+                    + " should be a percentage between 0 and 100, for eg. 10. Found : " + sample);
+            }
+        }
+        return new RowSelector(shardIndex, shardCount, sampleFraction, Long.getLong(SEED_PROPERTY, 0L));
+    }
+
+    /**
+     * @return true if only some of the rows are selected
+     */
+    public boolean isPartial() {
+        return shardCount > 1 || sampleFraction < 1.0;
+    }
+
+    /**
+     * Whether the given row of test data of the given method is run by this JVM
+     *
+     * @param methodName the name of the test method, without the name of its class
+     * @param row the row of test data
+     * @return true if the row is selected
+     */
+    public boolean isSelected(String methodName, Map<String, Object> row) {
+        if (!isPartial()) {
+            return true;
+        }
+        long hash = hash(methodName, row);
+        if (shardCount > 1 && (hash >>> 1) % shardCount != shardIndex) {
+            return false;
+        }
+        // The 53 high bits of an independent hash, as a double between 0 and 1
+        return sampleFraction >= 1.0 || (mix(hash ^ (seed * SEED_MULTIPLIER)) >>> 11) * 0x1.0p-53 < sampleFraction;
+    }
+
+    /**
+     * Select the rows of the given test data
+     *
+     * @param data the test data, by name of test method
+     * @return the given data if all its rows are selected, or else a copy of it holding the selected rows
+     */
+    public Map<String, List<Map<String, Object>>> select(Map<String, List<Map<String, Object>>> data) {
+        if (!isPartial()) {
+            return data;
+        }
+        Map<String, List<Map<String, Object>>> result = new HashMap<String, List<Map<String, Object>>>();
+        for (Map.Entry<String, List<Map<String, Object>>> methodData : data.entrySet()) {
+            List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+            for (Map<String, Object> row : methodData.getValue()) {
+                if (isSelected(methodData.getKey(), row)) {
+                    rows.add(row);
+                }
+            }
+            result.put(methodData.getKey(), rows);
+        }
+        return result;
+    }
+
+    /**
+     * The hash of a row, that does not depend on the order of its entries nor on the JVM. The values are hashed in a
+     * canonical form, as explained in {@link #hashOf(Object)}, as the hash code or the String representation of some
+     * objects may differ between JVMs.
+     *
+     * @param methodName the name of the test method
+     * @param row the row of test data
+     * @return the hash
+     */
+    static long hash(String methodName, Map<String, Object> row) {
+        int rowHash = 0;
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            String key = entry.getKey();
+            if (!Loader.ACTUAL_RESULT.equals(key) && !Loader.TEST_STATUS.equals(key)) {
+                rowHash += key.hashCode() ^ hashOf(entry.getValue());
+            }
+        }
+        return mix(((long) methodName.hashCode() << 32) ^ (rowHash & 0xFFFFFFFFL));
+    }
+
+    /**
+     * The hash of a value of a row, that does not depend on the JVM nor on its time zone. A date is hashed by its time
+     * in milliseconds, an array by its elements, and a String, a Number or any other value whose class defines its
+     * String representation by that representation. A value whose String representation is the one of
+     * {@link Object} contains its identity hash code and is thus only hashed by the name of its class.
+     *
+     * @param value the value
+     * @return the hash
+     */
+    private static int hashOf(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Timestamp) {
+            return Long.valueOf(((Timestamp) value).getTime()).hashCode() ^ ((Timestamp) value).getNanos();
+        } else if (value instanceof Date) {
+            return Long.valueOf(((Date) value).getTime()).hashCode();
+        } else if (value instanceof Calendar) {
+            return Long.valueOf(((Calendar) value).getTimeInMillis()).hashCode();
+        } else if (value instanceof Object[]) {
+            int result = 1;
+            for (Object element : (Object[]) value) {
+                result = 31 * result + hashOf(element);
+            }
+            return result;
+        } else if (value instanceof byte[]) {
+            return Arrays.hashCode((byte[]) value);
+        } else if (value instanceof char[]) {
+            return Arrays.hashCode((char[]) value);
+        } else if (value instanceof short[]) {
+            return Arrays.hashCode((short[]) value);
+        } else if (value instanceof int[]) {
+            return Arrays.hashCode((int[]) value);
+        } else if (value instanceof long[]) {
+            return Arrays.hashCode((long[]) value);
+        } else if (value instanceof float[]) {
+            return Arrays.hashCode((float[]) value);
+        } else if (value instanceof double[]) {
+            return Arrays.hashCode((double[]) value);
+        } else if (value instanceof boolean[]) {
+            return Arrays.hashCode((boolean[]) value);
+        } else if (value instanceof String || value instanceof Number || !hasDefaultToString(value.getClass())) {
+            return value.toString().hashCode();
+        }
+        return value.getClass().getName().hashCode();
+    }
+
+    /**
+     * @param type a class
+     * @return true if the String representation of the instances of the class is the one of {@link Object}
+     */
+    private static boolean hasDefaultToString(Class<?> type) {
+        try {
+            return type.getMethod("toString").getDeclaringClass() == Object.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Spread the bits of the given value, using the finalizer of MurmurHash3
+     *
+     * @param value the value
+     * @return the mixed value
+     */
+    private static long mix(long value) {
+        long result = value;
+        result ^= result >>> 33;
+        result *= 0xFF51AFD7ED558CCDL;
+        result ^= result >>> 33;
+        result *= 0xC4CEB9FE1A85EC53L;
+        result ^= result >>> 33;
+        return result;
+    }
+
+    /**
+     * @param value a value
+     * @return true if the value is null or blank
+     */
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().length() == 0;
+    }
+
+}
@@ -6,10 +6,10 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.easetech.easytest.annotation.DataLoader;
 import org.easetech.easytest.annotation.Intercept;
@@ -17,16 +17,13 @@ import org.easetech.easytest.annotation.Param;
 import org.easetech.easytest.loader.DataConverter;
 import org.easetech.easytest.loader.Loader;
 import org.easetech.easytest.loader.LoaderFactory;
-import org.easetech.easytest.loader.LoaderType;
 import org.easetech.easytest.util.DataContext;
-import org.easetech.easytest.util.RunAftersWithOutputData;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.theories.DataPoint;
 import org.junit.experimental.theories.ParametersSuppliedBy;
 import org.junit.experimental.theories.PotentialAssignment;
-import org.junit.experimental.theories.PotentialAssignment.CouldNotGenerateValueException;
 import org.junit.experimental.theories.internal.Assignments;
 import org.junit.internal.AssumptionViolatedException;
 import org.junit.runner.Runner;
@@ -70,32 +67,16 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 public class SpringTestRunner extends Suite {
 
     /**
-     * The list of files that are used by the {@link Loader}s {@link Loader#writeData(String, Map)} 
-     * functionality to write the test data back to the file. This is also passed to the {@link RunAftersWithOutputData} method.
+     * Runs the rows of test data and captures their results, the same way as the {@link DataDrivenTestRunner} does. It
+     * also holds the {@link Loader} and the files that are used by the {@link Loader#writeData(String, Map)}
+     * functionality to write the test data back to the file.
      */
-    private String[] dataFiles;
-    /**
-     * The instance of {@link Loader} that is currently being used. 
-     * This is also passed to the {@link RunAftersWithOutputData}'s constructor which is responsible 
-     * for calling the right {@link Loader#writeData(String, Map)} based on the {@link Loader} instance.
-     * 
-     */
-    private Loader dataLoader = null;
-    
-    /**
-     * An instance of {@link Map} that contains the data to be written to the File
-     */
-    private static Map<String, List<Map<String, Object>>> writableData = new HashMap<String, List<Map<String, Object>>>();
-    
-    /**
-     * The default rowNum within the {@link #writableData}'s particular method data.
-     */
-    private static int rowNum = 0;
-    
+    private final DataDrivenSupport support = new DataDrivenSupport();
+
     /**
-     * The name of the method currently being executed. Used for populating the {@link #writableData} map.
+     * Selects the rows of test data that are run, as specified by the system properties of {@link RowSelector}
      */
-    private String mapMethodName = "";
+    private final RowSelector rowSelector = RowSelector.fromSystemProperties();
 
     /**
      * An instance of logger associated with the test framework.
@@ -158,6 +139,11 @@ public class SpringTestRunner extends Suite {
          */
         public EasyTestRunner(Class<?> klass) throws InitializationError {
             super(klass);
+            support.prepareRows(klass, new Callable<Object>() {
+                public Object call() {
+                    return testInstance;
+                }
+            });
             try {
                 testInstance = getTestClass().getOnlyConstructor().newInstance();
                 getTestContextManager().prepareTestInstance(testInstance);
@@ -209,6 +195,22 @@ public class SpringTestRunner extends Suite {
             validateDataPointFields(errors);
         }
 
+        /**
+         * Validate the instance methods. A runner is allowed to have no method to run when none of the rows of its test
+         * data are selected by the {@link RowSelector}, for eg. when they all belong to other shards.
+         * 
+         * @param errors list of any errors while validating the instance methods
+         */
+        @Override
+        @SuppressWarnings("deprecation")
+        protected void validateInstanceMethods(List<Throwable> errors) {
+            int errorCount = errors.size();
+            super.validateInstanceMethods(errors);
+            if (computeTestMethods().isEmpty()) {
+                DataDrivenSupport.allowNoRunnableMethods(errors, errorCount);
+            }
+        }
+
         /**
          * Override the name of the test. In case of EasyTest, it will be the name of the test method concatenated with
          * the input test data that the method will run with.
@@ -218,7 +220,7 @@ public class SpringTestRunner extends Suite {
          */
         @Override
         protected String testName(final FrameworkMethod method) {
-            return String.format("%s", method.getName());
+            return method.getName();
         }
 
         /**
@@ -233,7 +235,7 @@ public class SpringTestRunner extends Suite {
          */
         @Override
         protected List<FrameworkMethod> computeTestMethods() {
-            if (frameworkMethods != null && !frameworkMethods.isEmpty()) {
+            if (frameworkMethods != null) {
                 return frameworkMethods;
             }
             // superMethodName variable comes from the enclosing DataDrivenTest class.
@@ -259,10 +261,15 @@ public class SpringTestRunner extends Suite {
                                 + "data for the given method. Please check the Test Data file for the method data. "
                                 + "Possible cause could be a spelling mismatch.");
                         }
-                        for (Map<String, Object> testData : methodData) {
+                        for (int i = 0; i < methodData.size(); i++) {
+                            Map<String, Object> testData = methodData.get(i);
+                            if (!rowSelector.isSelected(method.getName(), testData)) {
+                                continue;
+                            }
                             // Create a new FrameworkMethod for each set of test data
                             EasyFrameworkMethod easyMethod = new EasyFrameworkMethod(method.getMethod());
                             easyMethod.setName(method.getName().concat(testData.toString()));
+                            easyMethod.setRowIndex(i);
                             finalList.add(easyMethod);
                         }
                         // Since the runner only ever handles a single method, we break out of the loop as soon as we
@@ -274,7 +281,11 @@ public class SpringTestRunner extends Suite {
             }
             finalList.addAll(methodsWithNoData);
             if (finalList.isEmpty()) {
-                Assert.fail("No method exists for the Test Runner");
+                if (!rowSelector.isPartial()) {
+                    Assert.fail("No method exists for the Test Runner");
+                }
+                PARAM_LOG.info("None of the rows of test data of the class " + testClass.getName()
+                    + " are selected to run.");
             }
             frameworkMethods = finalList;
             return finalList;
@@ -343,32 +354,8 @@ public class SpringTestRunner extends Suite {
          */
         @Override
         protected Statement withAfterClasses(Statement statement) {
-            List<FrameworkMethod> afters = getTestClass().getAnnotatedMethods(AfterClass.class);
-            // THere would always be atleast on method associated with the Runner, else validation would fail.
-            FrameworkMethod method = frameworkMethods.get(0);
-            // Only if the return type of the Method is not VOID, we try to determine the right loader and data files.
-            if (method.getMethod().getReturnType() != Void.TYPE) {
-                DataLoader loaderAnnotation = method.getAnnotation(DataLoader.class);
-                if (loaderAnnotation != null) {
-                    determineLoader(loaderAnnotation);
-
-                } else {
-                    loaderAnnotation = getTestClass().getJavaClass().getAnnotation(DataLoader.class);
-                    if (loaderAnnotation != null) {
-                        determineLoader(loaderAnnotation);
-                    }
-                }
-                if (dataLoader == null) {
-                    Assert.fail("The framework currently does not support the specified Loader type. "
-                        + "You can provide the custom Loader by choosing LoaderType.CUSTOM in TestData "
-                        + "annotation and providing your custom loader using DataLoader annotation.");
-                }
-                dataFiles = loaderAnnotation.filePaths();
-            } else {
-                dataLoader = null;
-            }
-
-            return new RunAftersWithOutputData(statement, afters, null, dataLoader, dataFiles, writableData);
+            return support.withOutputData(statement, getTestClass().getAnnotatedMethods(AfterClass.class),
+                frameworkMethods, getTestClass().getJavaClass());
         }
 
         /**
@@ -446,7 +433,7 @@ public class SpringTestRunner extends Suite {
 
             @Override
             public void evaluate() throws Throwable {
-                runWithAssignment(Assignments.allUnassigned(fTestMethod.getMethod(), getTestClass()));
+                runWithAssignment(support.unassignedOf(fTestMethod.getMethod()));
                 LOG.debug("ParamAnchor evaluate");
                 if (successes == 0)
                     Assert.fail("Never found parameters that satisfied method assumptions.  Violated assumptions: "
@@ -470,8 +457,7 @@ public class SpringTestRunner extends Suite {
                     boolean isFirstSetOfArguments = listOfAssignments.isEmpty();
                     for (int i = 0; i < potentialAssignments.size(); i++) {
                         if (isFirstSetOfArguments) {
-                            Assignments assignments = Assignments
-                                .allUnassigned(fTestMethod.getMethod(), getTestClass());
+                            Assignments assignments = support.unassignedOf(fTestMethod.getMethod());
                             listOfAssignments.add(assignments.assignNext(potentialAssignments.get(i)));
                         } else {
                             Assignments assignments = listOfAssignments.get(i);
@@ -488,7 +474,7 @@ public class SpringTestRunner extends Suite {
                 if (listOfAssignments.isEmpty()) {
                     LOG.debug("The list of Assignments is null. It normally happens when the user has not supplied any parameters to the test.");
                     LOG.debug(" Creating an instance of Assignments object with all its value unassigned.");
-                    listOfAssignments.add(Assignments.allUnassigned(fTestMethod.getMethod(), getTestClass()));
+                    listOfAssignments.add(support.unassignedOf(fTestMethod.getMethod()));
                 }
                 for (Assignments assignments : listOfAssignments) {
                     runWithCompleteAssignment(assignments);
@@ -507,88 +493,13 @@ public class SpringTestRunner extends Suite {
              */
             protected void runWithCompleteAssignment(final Assignments complete) throws InstantiationException,
                 IllegalAccessException, InvocationTargetException, NoSuchMethodException, Throwable {
-                new BlockJUnit4ClassRunner(getTestClass().getJavaClass()) {
-                    @Override
-                    protected void collectInitializationErrors(List<Throwable> errors) {
-                        // do nothing
-                    }
-
-                    @Override
-                    public Statement methodBlock(FrameworkMethod method) {
-                        final Statement statement = super.methodBlock(method);
-                        return new Statement() {
-                            @Override
-                            public void evaluate() throws Throwable {
-                                try {
-                                    statement.evaluate();
-                                    handleDataPointSuccess();
-                                } catch (AssumptionViolatedException e) {
-                                    handleAssumptionViolation(e);
-                                } catch (Throwable e) {
-                                    throw e;
-                                    
-                                }
-                            }
-
-                        };
-                    }
-
-                    @Override
-                    protected Statement methodInvoker(FrameworkMethod method, Object test) {
-                        return methodCompletesWithParameters(method, complete, test);
-                    }
-
-                    @Override
-                    public Object createTest() throws Exception {
-                        return testInstance;
-                    }
-                }.methodBlock(fTestMethod).evaluate();
-            }
-
-            /**
-             * This method is responsible for actually executing the test method as well as capturing the test data
-             * returned by the test method. The algorithm to capture the output data is as follows:
-             * <ol>
-             * After the method has been invoked explosively, the returned value is checked. If there is a return value:
-             * <li>We get the name of the method that is currently executing,
-             * <li>We find teh exact place in the test input data for which this method was executed,
-             * <li>We put the returned result in the map of input test data. The entry in the map has the key :
-             * {@link Loader#ACTUAL_RESULT} and the value is the returned value by the test method.
-             * 
-             * We finally write the test data to the file.
-             * 
-             * @param method an instance of {@link FrameworkMethod} that needs to be executed
-             * @param complete an instance of {@link Assignments} that contains the input test data values
-             * @param freshInstance a fresh instance of the class for which the method needs to be invoked.
-             * @return an instance of {@link Statement}
-             */
-            private Statement methodCompletesWithParameters(final FrameworkMethod method, final Assignments complete,
-                final Object freshInstance) {
-                return new Statement() {
-                    @Override
-                    public void evaluate() throws Throwable {
-                        try {
-                            final Object[] values = complete.getMethodArguments(true);
-                            Object returnObj = method.invokeExplosively(freshInstance, values);
-                            if (returnObj != null) {
-                                LOG.debug("returnObj:" + returnObj);
-                                if (!mapMethodName.equals(method.getMethod().getName())) {
-                                    mapMethodName = method.getMethod().getName();
-                                    rowNum = 0;
-                                }
-                                LOG.debug("mapMethodName:" + mapMethodName + " ,rowNum:" + rowNum);
-                                if (writableData.get(mapMethodName) != null) {
-                                    LOG.debug("writableData.get(mapMethodName)" + writableData.get(mapMethodName)
-                                        + " ,rowNum:" + rowNum);
-                                    writableData.get(mapMethodName).get(rowNum++).put(Loader.ACTUAL_RESULT, returnObj);
-                                }
-
-                            }
-                        } catch (CouldNotGenerateValueException e) {
-                            // ignore
-                        }
-                    }
-                };
+                Statement statement = support.rowStatement(fTestMethod);
+                try {
+                    support.runRow(fTestMethod, complete, statement);
+                    handleDataPointSuccess();
+                } catch (AssumptionViolatedException e) {
+                    handleAssumptionViolation(e);
+                }
             }
 
             protected void handleAssumptionViolation(AssumptionViolatedException e) {
@@ -738,7 +649,7 @@ public class SpringTestRunner extends Suite {
      * Load the Data for the given class or method. This method will try to find {@link DataLoader} on either the class
      * level or the method level. In case the annotation is found, this method will load the data using the specified
      * loader class and then save it in the DataContext for further use by the system. We also create another copy of
-     * the input test data that we store in the {@link SpringTestRunner#writableData} field. This is done in order to
+     * the input test data that we store in the {@link DataDrivenSupport#getWritableData()}. This is done in order to
      * facilitate the writing of the data that might be returned by the test method.
      * 
      * @param testClass the class object, if any.
@@ -761,67 +672,21 @@ public class SpringTestRunner extends Suite {
             testData = method.getAnnotation(DataLoader.class);
         }
         if (testData != null) {
-            determineLoader(testData);
+            support.determineLoader(testData);
+            Loader dataLoader = support.getDataLoader();
             if (dataLoader == null) {
                 Assert.fail("The framework currently does not support the specified Loader type. "
                     + "You can provide the custom Loader by choosing LoaderType.CUSTOM in TestData "
                     + "annotation and providing your custom loader using DataLoader annotation.");
             } else {
-                Map<String, List<Map<String, Object>>> data = dataLoader.loadData(dataFiles);
+                Map<String, List<Map<String, Object>>> data = dataLoader.loadData(support.getDataFiles());
                 // We also maintain the copy of the actual data for our write functionality.
-                writableData.putAll(data);
+                support.getWritableData().putAll(data);
                 DataContext.setData(DataConverter.appendClassName(data, currentTestClass));
-                DataContext.setConvertedData(DataConverter.convert(data, currentTestClass));
-
-            }
-        }
-    }
+                // Only the selected rows are converted, as the others are never run.
+                DataContext.setConvertedData(DataConverter.convert(rowSelector.select(data), currentTestClass));
 
-    /**
-     * Method that determines the right Loader and the right Data Files for the "write output data" functionality
-     * supported by the EasyTest Framework.
-     * @param testData an instance of {@link DataLoader} that helps in identifying the right {@link Loader} to write the data back to the file.
-     */
-    private void determineLoader(DataLoader testData) {
-        dataFiles = testData.filePaths();
-        LoaderType loaderType = testData.loaderType();
-        // Loader
-        dataLoader = null;
-        if (LoaderType.CUSTOM.equals(loaderType)) {
-            PARAM_LOG.info("User specified to use custom Loader. Trying to get the custom loader.");
-            if (testData.loader() == null) {
-                Assert.fail("Specified the LoaderType as CUSTOM but did not specify loader"
-                    + " attribute. A loaderType of CUSTOM requires the loader " + "attribute specifying "
-                    + "the Custom Loader Class which implements Loader interface.");
-            } else {
-                try {
-                    Class<? extends Loader> loaderClass = testData.loader();
-                    dataLoader = loaderClass.newInstance();
-                } catch (Exception e) {
-                    throw new RuntimeException("Exception occured while trying to instantiate a class of type :"
-                        + testData.loader(), e);
-                }
-            }
-        } else if (dataFiles.length == 0) {
-            // No files specified, implies user wants to load data with
-            // custom loader
-            if (testData.loader() == null) {
-                Assert.fail("Specified the LoaderType as CUSTOM but did not specify loader"
-                    + " attribute. A loaderType of CUSTOM requires the loader " + "attribute specifying "
-                    + "the Custom Loader Class which implements Loader interface.");
-            } else {
-                try {
-                    Class<? extends Loader> loaderClass = testData.loader();
-                    dataLoader = loaderClass.newInstance();
-                } catch (Exception e) {
-                    throw new RuntimeException("Exception occured while trying to instantiate a class of type :"
-                        + testData.loader(), e);
-                }
             }
-        } else {
-            // user has specified data files and the data fileType is also
-            // not custom.
-            dataLoader = LoaderFactory.getLoader(loaderType);
         }
     }
 
@@ -0,0 +1,171 @@
+
+package org.easetech.easytest.util;
+
+import java.beans.PropertyEditor;
+import java.beans.PropertyEditorManager;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.easetech.easytest.converter.Converter;
+import org.easetech.easytest.converter.ConverterManager;
+
+/**
+ * A snapshot of the thread local state used by the framework while a test method runs, that is the state of the
+ * {@link DataContext} and the converters registered with the {@link ConverterManager}. The state is captured on the
+ * thread of the runner and attached to the threads that run the test methods on its behalf, so that the test methods
+ * see the same test data and converters on any thread.<br>
+ * The editors registered with the {@link PropertyEditorManager} are kept by thread group, and all the virtual threads
+ * belong to the same thread group. The snapshot can thus also hold the editors of some types, which are registered
+ * for the thread group of the threads it is attached to, if that group has no editor for them.
+ *
+ */
+@SuppressWarnings("rawtypes")
+public final class ContextSnapshot {
+
+    /**
+     * The test data
+     */
+    private final Map<String, List<Map<String, Object>>> data;
+
+    /**
+     * The converted test data, shared by all the threads the snapshot is attached to, and thus never modified
+     */
+    private final Map<String, List<Map<String, Object>>> convertedData;
+
+    /**
+     * The name of the test method
+     */
+    private final String methodName;
+
+    /**
+     * The registered converters
+     */
+    private final Set<Converter> converters;
+
+    /**
+     * The classes of the editors, by edited type
+     */
+    private final Map<Class<?>, Class<?>> editors;
+
+    /**
+     * Whether the editors were registered for the thread group of the threads the snapshot is attached to
+     */
+    private volatile boolean editorsRegistered;
+
+    /**
+     * Construct a new ContextSnapshot
+     *
+     * @param data the test data
+     * @param convertedData the converted test data
+     * @param methodName the name of the test method
+     * @param converters the registered converters
+     * @param editors the classes of the editors, by edited type
+     */
+    private ContextSnapshot(Map<String, List<Map<String, Object>>> data,
+        Map<String, List<Map<String, Object>>> convertedData, String methodName, Set<Converter> converters,
+        Map<Class<?>, Class<?>> editors) {
+        this.data = data;
+        this.convertedData = convertedData;
+        this.methodName = methodName;
+        this.converters = converters;
+        this.editors = editors;
+    }
+
+    /**
+     * @return the snapshot of the state of the current thread
+     */
+    public static ContextSnapshot capture() {
+        return new ContextSnapshot(DataContext.getData(), DataContext.getConvertedData(), DataContext.getMethodName(),
+            ConverterManager.converters.get(), Collections.<Class<?>, Class<?>> emptyMap());
+    }
+
+    /**
+     * Returns a snapshot that also holds the editors of the given types, as found by the {@link PropertyEditorManager}
+     * for the current thread.
+     *
+     * @param types the types, for eg. the types of the parameters of a test method
+     * @return the snapshot
+     */
+    public ContextSnapshot withEditorsOf(Class<?>... types) {
+        Map<Class<?>, Class<?>> typeEditors = new HashMap<Class<?>, Class<?>>(editors);
+        for (Class<?> type : types) {
+            PropertyEditor editor = PropertyEditorManager.findEditor(type);
+            if (editor != null) {
+                typeEditors.put(type, editor.getClass());
+            }
+        }
+        return new ContextSnapshot(data, convertedData, methodName, converters, typeEditors);
+    }
+
+    /**
+     * Attach the captured state to the current thread, for the execution of the given test method. The converted test
+     * data attached to the thread only holds the data of the given test method, in a map of its own, so that the
+     * executions running at the same time on other threads never modify the same map.
+     *
+     * @param testMethodName the name of the test method along with the data that it will be run with, as returned by
+     *            {@link DataContext#getMethodName()}
+     * @return the snapshot of the previous state of the current thread, to restore once the test method has run
+     */
+    public ContextSnapshot attach(String testMethodName) {
+        ContextSnapshot previous = capture();
+        if (!editorsRegistered) {
+            registerEditors();
+        }
+        Map<String, List<Map<String, Object>>> methodData = new HashMap<String, List<Map<String, Object>>>(4);
+        if (convertedData != null && convertedData.get(testMethodName) != null) {
+            methodData.put(testMethodName, convertedData.get(testMethodName));
+        }
+        set(data, methodData, methodName, converters);
+        return previous;
+    }
+
+    /**
+     * Restore the captured state on the current thread, as it was when the snapshot was captured
+     */
+    public void restore() {
+        set(data, convertedData, methodName, converters);
+    }
+
+    /**
+     * Register the editors that the thread group of the current thread does not find
+     */
+    private synchronized void registerEditors() {
+        for (Map.Entry<Class<?>, Class<?>> editor : editors.entrySet()) {
+            if (PropertyEditorManager.findEditor(editor.getKey()) == null) {
+                PropertyEditorManager.registerEditor(editor.getKey(), editor.getValue());
+            }
+        }
+        editorsRegistered = true;
+    }
+
+    /**
+     * Set the state of the current thread, removing the thread local variables whose value is null
+     *
+     * @param data the test data
+     * @param convertedData the converted test data
+     * @param methodName the name of the test method
+     * @param converters the registered converters
+     */
+    private static void set(Map<String, List<Map<String, Object>>> data,
+        Map<String, List<Map<String, Object>>> convertedData, String methodName, Set<Converter> converters) {
+        set(DataContext.dataContextThreadLocal, data);
+        set(DataContext.convertedDataThreadLocal, convertedData);
+        set(DataContext.nameContextThreadLocal, methodName);
+        set(ConverterManager.converters, converters);
+    }
+
+    /**
+     * @param threadLocal a thread local variable
+     * @param value the value to set, or null to remove the variable
+     */
+    private static <T> void set(ThreadLocal<T> threadLocal, T value) {
+        if (value == null) {
+            threadLocal.remove();
+        } else {
+            threadLocal.set(value);
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package org.easetech.easytest.util;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 
 import java.util.List;
@@ -65,7 +67,8 @@ public class DataContext {
     public static void setData(Map<String, List<Map<String , Object>>> data) {
         Map<String, List<Map<String , Object>>> testData = dataContextThreadLocal.get();
         if(testData == null || testData.isEmpty()){
-            dataContextThreadLocal.set(data);
+            // Copied, as the data of the next calls is put into it and the given map may not be modifiable
+            dataContextThreadLocal.set(new HashMap<String, List<Map<String , Object>>>(data));
         }else{  
             for(String key : data.keySet()){  
                 testData.put(key, data.get(key));
@@ -99,7 +102,7 @@ public class DataContext {
     public static void setConvertedData(Map<String, List<Map<String , Object>>> data) {
         Map<String, List<Map<String , Object>>> testData = convertedDataThreadLocal.get();
         if(testData == null || testData.isEmpty()){
-            convertedDataThreadLocal.set(data);
+            convertedDataThreadLocal.set(new HashMap<String, List<Map<String , Object>>>(data));
         }else{ 
             boolean removedOldKeys = false;
             for(String key : data.keySet()){
@@ -123,6 +126,34 @@ public class DataContext {
         
     }
 
+    /**
+     * Puts the converted data of a single test method execution, without touching the data of the other executions.
+     * This is used by the framework to supply the test data that is streamed on demand.
+     * 
+     * @param methodName the name of the test method along with the data that it will be run with
+     * @param data the single set of test data
+     */
+    public static void putConvertedData(String methodName, Map<String, Object> data) {
+        Map<String, List<Map<String , Object>>> testData = convertedDataThreadLocal.get();
+        if(testData == null){
+            testData = new HashMap<String, List<Map<String , Object>>>();
+            convertedDataThreadLocal.set(testData);
+        }
+        testData.put(methodName, Collections.singletonList(data));
+    }
+    
+    /**
+     * Removes the converted data of a single test method execution.
+     * 
+     * @param methodName the name of the test method along with the data that it was run with
+     */
+    public static void removeConvertedData(String methodName) {
+        Map<String, List<Map<String , Object>>> testData = convertedDataThreadLocal.get();
+        if(testData != null){
+            testData.remove(methodName);
+        }
+    }
+
     /**
      * Returns the data.
      * Look at {@link #setConvertedData(Map)} for details of the content in the returned map.
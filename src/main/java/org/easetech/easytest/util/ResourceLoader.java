@@ -1,17 +1,56 @@
 
 package org.easetech.easytest.util;
 
-import java.io.FileInputStream;
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A utility class to load the resource from classpath.
+ * A utility class to load the resource from classpath. The resources are usually files, but they can also be located
+ * within a jar or at any other URL supported by the class loader, in which case they can be read but not written.
+ * The location of a resource is resolved only once and the streams and channels returned are owned by the caller,
+ * that must close them.<br>
+ * The resources can also be compressed. A file whose name ends with .gz is decompressed as it is read. An entry of a
+ * zip archive is identified by the path of the archive followed by {@value #ARCHIVE_SEPARATOR} and the name of the
+ * entry, for eg. <code>data/fixtures.zip!/library/items.csv</code>, and is decompressed as it is read too. Nothing is
+ * ever unpacked to the disk, so only a resource that {@link #isFile() is a file} can be read through a
+ * {@link FileChannel}.
  * 
  * @author Anuj Kumar
  * 
@@ -33,6 +72,31 @@ public class ResourceLoader {
      */
     private ClassLoader classLoader;
 
+    /**
+     * Separates the path of a zip archive from the name of an entry within the archive
+     */
+    public static final String ARCHIVE_SEPARATOR = "!/";
+
+    /**
+     * The extension of the zip archives
+     */
+    private static final String ZIP_EXTENSION = ".zip";
+
+    /**
+     * The extension of the gzip files
+     */
+    private static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * The size of the buffer of the streams
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * The resolved locations of the resources, by class loader and by path
+     */
+    private static final Map<ClassLoader, ConcurrentMap<String, Location>> LOCATIONS = new WeakHashMap<ClassLoader, ConcurrentMap<String, Location>>();
+
     /**
      * 
      * Construct a new ResourceLoader
@@ -57,31 +121,394 @@ public class ResourceLoader {
     }
 
     /**
-     * Return an instance of Input stream for the provided {@link #filePath}
+     * Resolve the given list of file paths, expanding any glob pattern such as <code>data/**&#47;*.csv</code> into the
+     * files of the classpath that match it. The files matching a single pattern are sorted by their path, so that the
+     * order of the resolved files is deterministic. A zip archive, or a glob pattern of entries within a zip archive
+     * such as <code>data/fixtures.zip!/*.csv</code>, is expanded into its matching entries, in the order of the
+     * archive. Other paths are returned as they are.
+     * 
+     * @param filePaths the list of file paths, possibly containing glob patterns
+     * @return the list of resolved file paths
+     */
+    public static List<String> resolvePaths(String... filePaths) {
+        List<String> result = new ArrayList<String>(filePaths.length);
+        for (String filePath : filePaths) {
+            List<String> matches = Collections.singletonList(filePath);
+            if (filePath.indexOf(ARCHIVE_SEPARATOR) < 0 && isPattern(filePath)) {
+                matches = expand(filePath);
+                if (matches.isEmpty()) {
+                    LOG.error("No file matches the specified pattern : {}", filePath);
+                }
+            }
+            for (String match : matches) {
+                if (isArchive(match)) {
+                    result.addAll(expandArchive(match));
+                } else {
+                    result.add(match);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Resolve the file to which the test data is written back, that is the first file the first of the given file
+     * paths resolves to, as explained in {@link #resolvePaths(String...)}. A compressed file can not be written.
+     * 
+     * @param filePaths the list of file paths the test data was loaded from
+     * @return the path of the file to write the test data to, or null if there is none that can be written
+     */
+    public static String writablePath(String... filePaths) {
+        List<String> resolvedPaths = filePaths.length == 0 ? Collections.<String> emptyList()
+            : resolvePaths(filePaths[0]);
+        if (resolvedPaths.isEmpty()) {
+            return null;
+        }
+        String filePath = resolvedPaths.get(0);
+        if (new ResourceLoader(filePath).isCompressed()) {
+            LOG.error("The test data can not be written to the file {} as it is compressed", filePath);
+            return null;
+        }
+        return filePath;
+    }
+
+    /**
+     * Check whether the given file path denotes several entries of a zip archive, that is either the archive itself or
+     * a glob pattern of entries within the archive, such as <code>data/fixtures.zip!/**&#47;*.csv</code>
+     * 
+     * @param filePath the file path to check
+     * @return true if the path denotes several entries of a zip archive
+     */
+    private static boolean isArchive(String filePath) {
+        int entrySeparator = filePath.indexOf(ARCHIVE_SEPARATOR);
+        if (entrySeparator >= 0) {
+            return isPattern(filePath.substring(entrySeparator + ARCHIVE_SEPARATOR.length()));
+        }
+        return filePath.toLowerCase(Locale.ENGLISH).endsWith(ZIP_EXTENSION);
+    }
+
+    /**
+     * Expand the given zip archive, or glob pattern of entries within a zip archive, into the paths of its entries,
+     * in the order of the archive. The directories are left out.
+     * 
+     * @param filePath the path of the archive, optionally followed by a glob pattern of entries
+     * @return the paths of the matching entries, in the form <code>archive!/entry</code>
+     */
+    private static List<String> expandArchive(String filePath) {
+        int entrySeparator = filePath.indexOf(ARCHIVE_SEPARATOR);
+        String archivePath = entrySeparator < 0 ? filePath : filePath.substring(0, entrySeparator);
+        PathMatcher matcher = entrySeparator < 0 ? null : FileSystems.getDefault().getPathMatcher(
+            "glob:" + filePath.substring(entrySeparator + ARCHIVE_SEPARATOR.length()));
+        List<String> result = new ArrayList<String>();
+        try {
+            Location location = new ResourceLoader(archivePath).locate();
+            if (location.path != null) {
+                ZipFile zipFile = new ZipFile(location.path.toFile());
+                try {
+                    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                    while (entries.hasMoreElements()) {
+                        addEntry(result, archivePath, entries.nextElement(), matcher);
+                    }
+                } finally {
+                    zipFile.close();
+                }
+            } else {
+                ZipInputStream zip = new ZipInputStream(new BufferedInputStream(location.url.openStream(), BUFFER_SIZE));
+                try {
+                    for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                        addEntry(result, archivePath, entry, matcher);
+                    }
+                } finally {
+                    zip.close();
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("IO Exception occured while trying to list the entries of the archive : " + filePath, e);
+            // Let the loader report the file
+            return Collections.singletonList(filePath);
+        }
+        if (result.isEmpty()) {
+            LOG.error("No entry of the archive matches the specified path : {}", filePath);
+        }
+        return result;
+    }
+
+    /**
+     * Add the path of the given entry, if it is a file matching the given pattern
+     * 
+     * @param result the list of paths to add to
+     * @param archivePath the path of the archive
+     * @param entry the entry of the archive
+     * @param matcher the pattern of the entries, or null to add all the files
+     */
+    private static void addEntry(List<String> result, String archivePath, ZipEntry entry, PathMatcher matcher) {
+        if (!entry.isDirectory() && (matcher == null || matcher.matches(Paths.get(entry.getName())))) {
+            result.add(archivePath + ARCHIVE_SEPARATOR + entry.getName());
+        }
+    }
+
+    /**
+     * Check whether the given file path is a glob pattern
      * 
-     * @return an instance of Input stream for the provided {@link #filePath}
+     * @param filePath the file path to check
+     * @return true if the path contains any of the glob characters
+     */
+    private static boolean isPattern(String filePath) {
+        return filePath.indexOf('*') >= 0 || filePath.indexOf('?') >= 0 || filePath.indexOf('[') >= 0
+            || filePath.indexOf('{') >= 0;
+    }
+
+    /**
+     * Expand the given glob pattern by walking the classpath directories below the part of the pattern that does not
+     * contain any glob character.
+     * 
+     * @param pattern the glob pattern
+     * @return the sorted list of classpath relative paths matching the pattern
+     */
+    private static List<String> expand(final String pattern) {
+        int firstGlob = 0;
+        while (!isPattern(pattern.substring(0, firstGlob + 1))) {
+            firstGlob++;
+        }
+        final String baseDirectory = pattern.substring(0, pattern.lastIndexOf('/', firstGlob) + 1);
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        final TreeSet<String> matches = new TreeSet<String>();
+        try {
+            Enumeration<URL> roots = Thread.currentThread().getContextClassLoader().getResources(baseDirectory);
+            while (roots.hasMoreElements()) {
+                URL root = roots.nextElement();
+                if (!"file".equals(root.getProtocol())) {
+                    LOG.debug("Ignoring the non file classpath location {} while expanding {}", root, pattern);
+                    continue;
+                }
+                final Path rootPath = Paths.get(root.toURI());
+                Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        String relativePath = baseDirectory
+                            + rootPath.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                        if (matcher.matches(Paths.get(relativePath))) {
+                            matches.add(relativePath);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+        } catch (IOException e) {
+            LOG.error("IO Exception occured while trying to expand the pattern : " + pattern, e);
+        } catch (URISyntaxException e) {
+            LOG.error("Invalid classpath location while trying to expand the pattern : " + pattern, e);
+        }
+        return new ArrayList<String>(matches);
+    }
+
+    /**
+     * Return a buffered Input stream for the provided {@link #filePath}. A file is read through a channel of the file
+     * system, while a resource that is not a file, for eg. a resource within a jar, is read through its URL.
+     * 
+     * @return a buffered Input stream for the provided {@link #filePath}, that the caller must close
      * @throws IOException if an I/O exception occurs
      */
     public InputStream getInputStream() throws IOException {
-        InputStream is = null;
-        ClassLoader classLoader = this.classLoader;
-        if (this.classLoader == null) {
-            classLoader = Thread.currentThread().getContextClassLoader();
+        Location location = locate();
+        LOG.debug("getInputStream() File absolute path:" + location.url);
+        int entrySeparator = filePath.indexOf(ARCHIVE_SEPARATOR);
+        if (entrySeparator >= 0) {
+            return new BufferedInputStream(openEntry(location,
+                filePath.substring(entrySeparator + ARCHIVE_SEPARATOR.length())), BUFFER_SIZE);
+        }
+        InputStream in;
+        if (location.path == null) {
+            in = location.url.openStream();
+        } else {
+            try {
+                in = Files.newInputStream(location.path);
+            } catch (NoSuchFileException e) {
+                throw notFound(location);
+            }
         }
-        URL resource = classLoader.getResource(this.filePath);
-        String path = null;
-        if (resource != null) {
-            path = resource.getPath();
+        if (filePath.toLowerCase(Locale.ENGLISH).endsWith(GZIP_EXTENSION)) {
+            try {
+                in = new GZIPInputStream(in, BUFFER_SIZE);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+        return new BufferedInputStream(in, BUFFER_SIZE);
+    }
+
+    /**
+     * Open an entry of the zip archive at the given location. The entry of an archive that is a file is read directly,
+     * while the entries of any other archive are read in sequence up to the given entry.
+     * 
+     * @param location the location of the archive
+     * @param entryName the name of the entry
+     * @return the decompressed content of the entry, that closes the archive once closed
+     * @throws IOException if the entry does not exist or an I/O exception occurs
+     */
+    private InputStream openEntry(Location location, String entryName) throws IOException {
+        if (location.path != null) {
+            final ZipFile zipFile;
+            try {
+                zipFile = new ZipFile(location.path.toFile());
+            } catch (FileNotFoundException e) {
+                throw notFound(location);
+            }
+            try {
+                ZipEntry entry = zipFile.getEntry(entryName);
+                if (entry != null) {
+                    return new FilterInputStream(zipFile.getInputStream(entry)) {
+                        @Override
+                        public void close() throws IOException {
+                            try {
+                                super.close();
+                            } finally {
+                                zipFile.close();
+                            }
+                        }
+                    };
+                }
+            } catch (IOException e) {
+                zipFile.close();
+                throw e;
+            }
+            zipFile.close();
+        } else {
+            ZipInputStream zip = new ZipInputStream(new BufferedInputStream(location.url.openStream(), BUFFER_SIZE));
+            try {
+                for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                    if (entry.getName().equals(entryName)) {
+                        return zip;
+                    }
+                }
+            } catch (IOException e) {
+                zip.close();
+                throw e;
+            }
+            zip.close();
         }
+        throw new FileNotFoundException(filePath + " cannot be opened because the archive has no such entry");
+    }
 
-        LOG.debug("getInputStream() File absolute path:" + path);
+    /**
+     * Check whether the resource identified by {@link #filePath} is compressed, that is whether it is a gzip file or an
+     * entry of a zip archive. A compressed resource is decompressed as it is read and can not be written.
+     * 
+     * @return true if the resource is compressed
+     */
+    public boolean isCompressed() {
+        return filePath.indexOf(ARCHIVE_SEPARATOR) >= 0
+            || filePath.toLowerCase(Locale.ENGLISH).endsWith(GZIP_EXTENSION);
+    }
 
-        if (path == null) {
-            throw new FileNotFoundException(filePath + " cannot be opened because it does not exist");
+    /**
+     * Check whether the resource identified by {@link #filePath} is a plain file, that is neither compressed nor
+     * located within a jar or at any other URL. Only such a resource can be read through a {@link FileChannel}.
+     * 
+     * @return true if the resource is a plain file
+     * @throws FileNotFoundException if the resource does not exist
+     */
+    public boolean isFile() throws FileNotFoundException {
+        return !isCompressed() && locate().path != null;
+    }
+
+    /**
+     * Return a read only {@link FileChannel} for the provided {@link #filePath}, that can be memory mapped. A resource
+     * that is not a file, or that is compressed, has no channel and must be read through {@link #getInputStream()}
+     * instead.
+     * 
+     * @return a read only {@link FileChannel} for the provided {@link #filePath}, that the caller must close
+     * @throws IOException if an I/O exception occurs, or if the resource is not a file or is compressed
+     */
+    public FileChannel getFileChannel() throws IOException {
+        if (isCompressed()) {
+            throw new IOException(filePath + " is compressed and thus can not be read through a channel,"
+                + " read it as a stream instead");
+        }
+        Location location = locate();
+        LOG.debug("getFileChannel() File absolute path:" + location.url);
+        if (location.path == null) {
+            throw new IOException(filePath + " is not a file and thus can not be read through a channel,"
+                + " read it as a stream instead : " + location.url);
+        }
+        try {
+            return FileChannel.open(location.path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw notFound(location);
         }
-        is = new FileInputStream(path);
+    }
+
+    /**
+     * Return the time at which the file identified by {@link #filePath} was last modified
+     * 
+     * @return the time in milliseconds since the epoch, or 0 if the time is not known
+     * @throws IOException if an I/O exception occurs
+     */
+    public long lastModified() throws IOException {
+        Location location = locate();
+        if (location.path != null) {
+            try {
+                return Files.getLastModifiedTime(location.path).toMillis();
+            } catch (NoSuchFileException e) {
+                throw notFound(location);
+            }
+        }
+        URLConnection connection = openConnection(location);
+        try {
+            return connection.getLastModified();
+        } finally {
+            closeConnection(connection);
+        }
+    }
 
-        return is;
+    /**
+     * Return the length of the file identified by {@link #filePath}
+     * 
+     * @return the length in bytes of the file, or -1 if the length is not known
+     * @throws IOException if an I/O exception occurs
+     */
+    public long length() throws IOException {
+        Location location = locate();
+        if (location.path != null) {
+            try {
+                return Files.size(location.path);
+            } catch (NoSuchFileException e) {
+                throw notFound(location);
+            }
+        }
+        URLConnection connection = openConnection(location);
+        try {
+            return connection.getContentLengthLong();
+        } finally {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Open a connection to the resource at the given location, without reading it
+     * 
+     * @param location the location of the resource
+     * @return the connection
+     * @throws IOException if an I/O exception occurs
+     */
+    private static URLConnection openConnection(Location location) throws IOException {
+        URLConnection connection = location.url.openConnection();
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    /**
+     * Release the stream that a connection may have opened while reading the header fields
+     * 
+     * @param connection the connection to close
+     */
+    private static void closeConnection(URLConnection connection) {
+        try {
+            connection.getInputStream().close();
+        } catch (IOException e) {
+            // nothing was opened
+        }
     }
 
     /**
@@ -91,19 +518,137 @@ public class ResourceLoader {
      * @throws IOException if an I/O exception occurs
      */
     public FileOutputStream getFileOutputStream() throws IOException {
-        FileOutputStream fos = null;
+        File file = getFile();
+        LOG.debug("getFileOutputStream File absolute path:" + file);
+        return new FileOutputStream(file);
+    }
+
+    /**
+     * Return the file identified by {@link #filePath}
+     * 
+     * @return the file identified by {@link #filePath}
+     * @throws IOException if the file does not exist or if the resource is not a file, for eg. if it is within a jar
+     *             or if it is compressed
+     */
+    public File getFile() throws IOException {
+        if (isCompressed()) {
+            throw new IOException(filePath + " is compressed and thus can not be written");
+        }
+        Location location = locate();
+        if (location.path == null) {
+            throw new IOException(filePath + " is not a file and thus can not be written : " + location.url);
+        }
+        return location.path.toFile();
+    }
+
+    /**
+     * Locate the resource identified by {@link #filePath}, or the archive containing it. The location is resolved
+     * using the class loader once and then cached.
+     * 
+     * @return the location of the resource
+     * @throws FileNotFoundException if the resource does not exist
+     */
+    private Location locate() throws FileNotFoundException {
         ClassLoader classLoader = this.classLoader;
         if (this.classLoader == null) {
             classLoader = Thread.currentThread().getContextClassLoader();
         }
-        String path = classLoader.getResource(this.filePath).getPath();
-        LOG.debug("getFileOutputStream File absolute path:" + path);
-        if (path == null) {
-            throw new FileNotFoundException(filePath + " cannot be opened because it does not exist");
+        ConcurrentMap<String, Location> locations;
+        synchronized (LOCATIONS) {
+            locations = LOCATIONS.get(classLoader);
+            if (locations == null) {
+                locations = new ConcurrentHashMap<String, Location>();
+                LOCATIONS.put(classLoader, locations);
+            }
+        }
+        String resourcePath = resourcePath();
+        Location location = locations.get(resourcePath);
+        if (location == null) {
+            URL resource = classLoader.getResource(resourcePath);
+            if (resource == null) {
+                throw new FileNotFoundException(filePath + " cannot be opened because it does not exist");
+            }
+            location = new Location(locations, resource);
+            locations.put(resourcePath, location);
+        }
+        return location;
+    }
+
+    /**
+     * @return the path of the resource identified by {@link #filePath}, or of the archive containing it
+     */
+    private String resourcePath() {
+        int entrySeparator = filePath.indexOf(ARCHIVE_SEPARATOR);
+        return entrySeparator < 0 ? filePath : filePath.substring(0, entrySeparator);
+    }
+
+    /**
+     * Forget the location of a file that no longer exists
+     * 
+     * @param location the location of the file
+     * @return the exception to throw
+     */
+    private FileNotFoundException notFound(Location location) {
+        location.locations.remove(resourcePath(), location);
+        return new FileNotFoundException(filePath + " cannot be opened because it does not exist");
+    }
+
+    /**
+     * Replace the file identified by {@link #filePath} with the given file. The given file is moved atomically over
+     * the file when the file system supports it, so that a reader never sees a partially written file. The given file
+     * should thus be created in the same directory, for eg. using {@link File#createTempFile(String, String, File)}.
+     * 
+     * @param source the file that replaces the file identified by {@link #filePath}
+     * @throws IOException if the file does not exist or can not be replaced
+     */
+    public void replaceWith(File source) throws IOException {
+        File target = getFile();
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
+    }
+
+    /**
+     * The resolved location of a resource
+     */
+    private static final class Location {
 
-        fos = new FileOutputStream(path);
-        return fos;
+        /**
+         * The cache of the locations that holds this location
+         */
+        final ConcurrentMap<String, Location> locations;
+
+        /**
+         * The URL of the resource
+         */
+        final URL url;
+
+        /**
+         * The path of the resource if it is a file, else null
+         */
+        final Path path;
+
+        /**
+         * Construct a new Location
+         * 
+         * @param locations the cache of the locations that holds this location
+         * @param url the URL of the resource
+         */
+        Location(ConcurrentMap<String, Location> locations, URL url) {
+            this.locations = locations;
+            this.url = url;
+            Path resolvedPath = null;
+            if ("file".equals(url.getProtocol())) {
+                try {
+                    resolvedPath = Paths.get(url.toURI());
+                } catch (URISyntaxException e) {
+                    resolvedPath = Paths.get(url.getPath());
+                }
+            }
+            this.path = resolvedPath;
+        }
     }
 
 }
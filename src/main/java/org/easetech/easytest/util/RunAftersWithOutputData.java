@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import org.easetech.easytest.loader.Loader;
+import org.easetech.easytest.loader.ResultSink;
 import org.junit.AfterClass;
 import org.junit.internal.runners.statements.RunAfters;
 import org.junit.runners.model.FrameworkMethod;
@@ -16,6 +17,13 @@ import org.slf4j.LoggerFactory;
 /**
  * An extension of {@link RunAfters} method to write 
  * the test data to the file at the end of executing all the test methods in the test cases.
+ * The test data is written even if a test method or an {@link AfterClass} method failed, the failures being reported
+ * once it is written.
+ * When the results are merged into the file in the background by a {@link ResultSink}, the sink is closed instead, which
+ * writes the results that are left once all the test classes sharing the file have run. A failure to write the test
+ * data fails the test class either way.<br>
+ * The test data is written to the first file it was loaded from, as resolved by
+ * {@link ResourceLoader#writablePath(String...)}.
  * 
  */
 public class RunAftersWithOutputData extends Statement {
@@ -41,6 +49,11 @@ public class RunAftersWithOutputData extends Statement {
      */
     private Map<String, List<Map<String, Object>>> writableData;
 
+    /**
+     * The sink writing the results in the background, if any
+     */
+    private final ResultSink resultSink;
+
     /**
      * An instance of {@link Statement} 
      */
@@ -77,6 +90,29 @@ public class RunAftersWithOutputData extends Statement {
         this.loader = loader;
         this.filePath = filePath;
         this.writableData = writableData;
+        this.resultSink = null;
+    }
+
+    /**
+     * Construct a new RunAftersWithOutputData that closes the given {@link ResultSink} once all the test methods have
+     * been executed.
+     * 
+     * @param next the instance of {@link Statement} object
+     * @param afters the list of {@link FrameworkMethod} that needs to be run after all the methods in the test class
+     *            have been executed.
+     * @param target the target instance of the class. In this case it will always be null since methods with
+     *            {@link AfterClass} are always declared as static.
+     * @param resultSink the sink to which the results were submitted
+     */
+    public RunAftersWithOutputData(Statement next, List<FrameworkMethod> afters, Object target, ResultSink resultSink) {
+        super();
+        this.fNext = next;
+        this.fAfters = afters;
+        this.fTarget = target;
+        this.loader = null;
+        this.filePath = new String[0];
+        this.writableData = null;
+        this.resultSink = resultSink;
     }
 
     /**
@@ -98,14 +134,28 @@ public class RunAftersWithOutputData extends Statement {
                 } catch (Throwable e) {
                     errors.add(e);
                 }
+            // The results already captured are written even if the test class or an AfterClass method failed,
+            // whether they are written by the sink or here.
+            if (resultSink != null) {
+                try {
+                    resultSink.close();
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }
         }
-        MultipleFailureException.assertEmpty(errors);
         // Write any output test data to the file only if there is a write data associated with the test method.
-        if (loader != null && filePath.length > 0) {
-        	LOG.debug("Loader:"+loader+", filePath:"+filePath[0]);
+        String outputPath = loader != null ? ResourceLoader.writablePath(filePath) : null;
+        if (outputPath != null) {
+        	LOG.debug("Loader:"+loader+", filePath:"+outputPath);
         	LOG.debug("writableData:"+writableData);
-            loader.writeData(filePath[0], writableData);
+            try {
+                loader.writeData(outputPath, writableData);
+            } catch (Throwable e) {
+                errors.add(e);
+            }
         }
+        MultipleFailureException.assertEmpty(errors);
         LOG.info("evaluate finished");
     }
 
@@ -0,0 +1,134 @@
+
+package org.easetech.easytest.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.annotation.DataLoader;
+import org.easetech.easytest.annotation.Param;
+import org.easetech.easytest.loader.Loader;
+import org.easetech.easytest.loader.LoaderType;
+import org.easetech.easytest.runner.DataDrivenTestRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Measures the time spent by the framework to run a single row of test data, for a test method whose body does
+ * almost nothing. The time is measured from the start of the first row to the end of the last one, so that the
+ * loading of the test data is not included, and the best of a few runs is reported.<br>
+ * It is run as a plain java program, with the number of rows and of runs as optional arguments :
+ * <code>
+ *   java org.easetech.easytest.benchmark.RowOverheadBenchmark 100000 8
+ * </code>
+ *
+ */
+public class RowOverheadBenchmark {
+
+    /**
+     * The number of rows of test data of the test method
+     */
+    static int rows = 100000;
+
+    /**
+     * @param args the number of rows, and the number of runs
+     */
+    public static void main(String[] args) {
+        rows = args.length > 0 ? Integer.parseInt(args[0]) : rows;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long best = Long.MAX_VALUE;
+        for (int run = 1; run <= runs; run++) {
+            RowTimer timer = new RowTimer();
+            JUnitCore core = new JUnitCore();
+            core.addListener(timer);
+            Result result = core.run(RowTest.class);
+            if (!result.wasSuccessful() || result.getRunCount() != rows) {
+                throw new IllegalStateException("Ran " + result.getRunCount() + " rows with failures : "
+                    + result.getFailures());
+            }
+            long nanos = timer.last - timer.first;
+            best = Math.min(best, nanos);
+            System.out.println("Run " + run + " : " + rows + " rows in " + nanos / 1000000 + " ms, "
+                + nanos / rows + " ns per row");
+        }
+        System.out.println("Best : " + best / rows + " ns per row");
+    }
+
+    /**
+     * Records the time the first row started and the last row finished
+     */
+    static class RowTimer extends RunListener {
+
+        long first;
+
+        long last;
+
+        @Override
+        public void testStarted(Description description) {
+            if (first == 0) {
+                first = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void testFinished(Description description) {
+            last = System.nanoTime();
+        }
+    }
+
+    /**
+     * Generates the rows of test data of the {@link RowTest}
+     */
+    public static class RowLoader implements Loader {
+
+        public Map<String, List<Map<String, Object>>> loadData(String[] filePaths) {
+            List<Map<String, Object>> methodData = new ArrayList<Map<String, Object>>(rows);
+            for (int i = 0; i < rows; i++) {
+                Map<String, Object> row = new HashMap<String, Object>();
+                row.put("value", String.valueOf(i));
+                methodData.add(row);
+            }
+            Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+            data.put("checkRow", methodData);
+            return data;
+        }
+
+        public void writeData(String filePath, Map<String, List<Map<String, Object>>> actualData) {
+            // nothing to write
+        }
+    }
+
+    /**
+     * A test class with a before and an after method, whose test method does almost nothing
+     */
+    @RunWith(DataDrivenTestRunner.class)
+    @DataLoader(filePaths = { "rows" }, loaderType = LoaderType.CUSTOM, loader = RowLoader.class)
+    public static class RowTest {
+
+        private int count;
+
+        @Before
+        public void before() {
+            count++;
+        }
+
+        @Test
+        public void checkRow(@Param(name = "value")
+        String value) {
+            Assert.assertNotNull(value);
+        }
+
+        @After
+        public void after() {
+            count--;
+        }
+    }
+
+}
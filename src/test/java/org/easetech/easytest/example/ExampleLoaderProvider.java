@@ -0,0 +1,18 @@
+package org.easetech.easytest.example;
+
+import org.easetech.easytest.loader.LoaderProvider;
+import org.easetech.easytest.loader.LoaderRegistry;
+
+/**
+ * An example {@link LoaderProvider}, registering the {@link CustomCSVDataLoader} for the files with the extension
+ * ccsv. It is declared in META-INF/services/org.easetech.easytest.loader.LoaderProvider.
+ * 
+ */
+public class ExampleLoaderProvider implements LoaderProvider {
+
+    @Override
+    public void registerLoaders(LoaderRegistry registry) {
+        registry.register("CUSTOM_CSV", CustomCSVDataLoader.class, true, "ccsv");
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.easetech.easytest.example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.loader.CSVDataLoader;
+import org.easetech.easytest.loader.Loader;
+import org.easetech.easytest.util.ClassPathTemporaryFolder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Checks that writing the results to a CSV file only changes the records that receive a result, and leaves the other
+ * ones byte for byte unchanged.
+ */
+public class TestCSVDataWriting {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String CONTENT = "testGetItems,LibraryId, itemType ,searchText\r\n"
+        + ",4,\"journal, weekly\",  batman\r\n" + ",1,ebook,\"potter \"\"the boy\"\"\"\r\n" + "\r\n"
+        + "otherMethod,value\r\n" + ",  spaced  ";
+
+    private File dataFile;
+
+    /**
+     * The data files of the tests, created where the loaders resolve them on the class path
+     */
+    @Rule
+    public ClassPathTemporaryFolder temporaryFolder = new ClassPathTemporaryFolder();
+
+    @Before
+    public void setUp() throws IOException {
+        dataFile = temporaryFolder.newFile("results", ".csv");
+        write(CONTENT.getBytes(UTF_8));
+    }
+
+    @Test
+    public void testOnlyTheRecordsWithResultsAreChanged() throws IOException {
+        CSVDataLoader loader = new CSVDataLoader(false, UTF_8);
+        loader.writeData(dataFile.getName(), results("found", Loader.TEST_PASSED));
+        Assert.assertEquals("testGetItems,LibraryId, itemType ,searchText,ActualResult,TestStatus\r\n"
+            + ",4,\"journal, weekly\",  batman\r\n" + ",1,ebook,\"potter \"\"the boy\"\"\",found,PASSED\r\n" + "\r\n"
+            + "otherMethod,value\r\n" + ",  spaced  ", read());
+
+        // The result of the row is replaced when the test is run again
+        loader.writeData(dataFile.getName(), results("lost, again", Loader.TEST_FAILED));
+        Assert.assertEquals("testGetItems,LibraryId, itemType ,searchText,ActualResult,TestStatus\r\n"
+            + ",4,\"journal, weekly\",  batman\r\n"
+            + ",1,ebook,\"potter \"\"the boy\"\"\",\"lost, again\",FAILED\r\n" + "\r\n" + "otherMethod,value\r\n"
+            + ",  spaced  ", read());
+
+        List<Map<String, Object>> rows = loader.loadData(new String[] { dataFile.getName() }).get("testGetItems");
+        Assert.assertEquals("journal, weekly", rows.get(0).get("itemType"));
+        Assert.assertEquals("lost, again", rows.get(1).get(Loader.ACTUAL_RESULT));
+    }
+
+    @Test
+    public void testResultsAreOnlyWrittenIntoTheLastBlockOfAMethod() throws IOException {
+        write(("testGetItems,itemType\n,old\n,older\n" + "otherMethod,value\n,other\n"
+            + "testGetItems,itemType\n,book\n,ebook\n").getBytes(UTF_8));
+        CSVDataLoader loader = new CSVDataLoader(false, UTF_8);
+        Assert.assertEquals("book", loader.loadData(new String[] { dataFile.getName() }).get("testGetItems").get(0)
+            .get("itemType"));
+
+        loader.writeData(dataFile.getName(), results("found", Loader.TEST_PASSED));
+        Assert.assertEquals("testGetItems,itemType\n,old\n,older\n" + "otherMethod,value\n,other\n"
+            + "testGetItems,itemType,ActualResult,TestStatus\n,book\n,ebook,found,PASSED\n", read());
+    }
+
+    @Test
+    public void testFileThatCanNotBeDecodedIsLeftUnchanged() throws IOException {
+        byte[] content = "testGetItems,itemType\n,book\n,\u00e9book\n".getBytes(Charset.forName("ISO-8859-1"));
+        write(content);
+        new CSVDataLoader(false, UTF_8).writeData(dataFile.getName(), results("found", null));
+        Assert.assertArrayEquals(content, Files.readAllBytes(dataFile.toPath()));
+    }
+
+    private static Map<String, List<Map<String, Object>>> results(String actualResult, String testStatus) {
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        rows.add(new HashMap<String, Object>());
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put(Loader.ACTUAL_RESULT, actualResult);
+        if (testStatus != null) {
+            row.put(Loader.TEST_STATUS, testStatus);
+        }
+        rows.add(row);
+        Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+        data.put("testGetItems", rows);
+        return data;
+    }
+
+    private void write(byte[] content) throws IOException {
+        OutputStream out = new FileOutputStream(dataFile);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(dataFile.toPath()), UTF_8);
+    }
+
+}
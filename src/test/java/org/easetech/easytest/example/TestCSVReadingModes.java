@@ -0,0 +1,128 @@
+package org.easetech.easytest.example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.loader.CSVDataLoader;
+import org.easetech.easytest.loader.Loader;
+import org.easetech.easytest.util.ClassPathTemporaryFolder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Checks that the memory mapped mode of the {@link CSVDataLoader} reads the same test data as the default mode,
+ * including quoted values, empty lines and values that are not ASCII, and that a file read in that mode can be written
+ * back.
+ */
+public class TestCSVReadingModes {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    private static final String CONTENT = "getItems,LibraryId,itemType,searchText\r\n"
+        + ",1,book,  padded  \r\n"
+        + "\r\n"
+        + ",2,\"comma, inside\",\"said \"\"hello\"\"\"\n"
+        + ",3,\"two\nlines\",caf\u00e9\n"
+        + "getOtherItems,LibraryId\n"
+        + ",4\n";
+
+    private File dataFile;
+
+    /**
+     * The data files of the tests, created where the loaders resolve them on the class path
+     */
+    @Rule
+    public ClassPathTemporaryFolder temporaryFolder = new ClassPathTemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        dataFile = temporaryFolder.newFile("modes", ".csv");
+    }
+
+    @Test
+    public void testBothModesReadTheSameData() throws Exception {
+        for (Charset charset : new Charset[] { UTF8, LATIN1 }) {
+            write(CONTENT.getBytes(charset));
+            Map<String, List<Map<String, Object>>> data = load(false, charset);
+            Assert.assertEquals(data, load(true, charset));
+
+            List<Map<String, Object>> items = data.get("getItems");
+            Assert.assertEquals(3, items.size());
+            Assert.assertEquals("padded", items.get(0).get("searchText"));
+            Assert.assertEquals("comma, inside", items.get(1).get("itemType"));
+            Assert.assertEquals("said \"hello\"", items.get(1).get("searchText"));
+            Assert.assertEquals("two\nlines", items.get(2).get("itemType"));
+            Assert.assertEquals("caf\u00e9", items.get(2).get("searchText"));
+            Assert.assertEquals("4", data.get("getOtherItems").get(0).get("LibraryId"));
+        }
+    }
+
+    @Test
+    public void testBothModesSkipTheByteOrderMarkOfUTF8() throws Exception {
+        byte[] content = CONTENT.getBytes(UTF8);
+        byte[] withBom = new byte[content.length + 3];
+        withBom[0] = (byte) 0xEF;
+        withBom[1] = (byte) 0xBB;
+        withBom[2] = (byte) 0xBF;
+        System.arraycopy(content, 0, withBom, 3, content.length);
+        write(withBom);
+        Map<String, List<Map<String, Object>>> data = load(true, UTF8);
+        Assert.assertEquals(3, data.get("getItems").size());
+        Assert.assertEquals(data, load(false, UTF8));
+
+        // In another charset the bytes of the mark are characters of the file
+        data = load(true, LATIN1);
+        Assert.assertNull(data.get("getItems"));
+        Assert.assertEquals(3, data.get("\u00ef\u00bb\u00bfgetItems").size());
+        Assert.assertEquals(data, load(false, LATIN1));
+    }
+
+    @Test
+    public void testMappedModeStreamsASingleMethod() throws Exception {
+        write(CONTENT.getBytes(UTF8));
+        CSVDataLoader loader = new CSVDataLoader(true, UTF8);
+        Iterator<Map<String, Object>> rows = loader.streamData(new String[] { dataFile.getName() }, "getOtherItems");
+        List<Map<String, Object>> streamed = new ArrayList<Map<String, Object>>();
+        while (rows.hasNext()) {
+            streamed.add(rows.next());
+        }
+        Assert.assertEquals(load(false, UTF8).get("getOtherItems"), streamed);
+    }
+
+    @Test
+    public void testMappedFileCanBeWrittenBack() throws Exception {
+        write(CONTENT.getBytes(UTF8));
+        CSVDataLoader loader = new CSVDataLoader(true, UTF8);
+        Map<String, List<Map<String, Object>>> data = loader.loadData(new String[] { dataFile.getName() });
+        data.get("getItems").get(1).put(Loader.ACTUAL_RESULT, "found");
+        loader.writeData(dataFile.getName(), data);
+
+        List<Map<String, Object>> items = load(true, UTF8).get("getItems");
+        Assert.assertEquals("found", items.get(1).get(Loader.ACTUAL_RESULT));
+        Assert.assertEquals("said \"hello\"", items.get(1).get("searchText"));
+        Assert.assertNull(items.get(0).get(Loader.ACTUAL_RESULT));
+    }
+
+    private Map<String, List<Map<String, Object>>> load(boolean memoryMapped, Charset charset) {
+        return new CSVDataLoader(memoryMapped, charset).loadData(new String[] { dataFile.getName() });
+    }
+
+    private void write(byte[] content) throws Exception {
+        OutputStream out = new FileOutputStream(dataFile);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+}
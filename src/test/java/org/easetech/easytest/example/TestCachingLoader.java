@@ -0,0 +1,174 @@
+package org.easetech.easytest.example;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.loader.CSVDataLoader;
+import org.easetech.easytest.loader.CachingLoader;
+import org.easetech.easytest.loader.JDBCDataLoader;
+import org.easetech.easytest.loader.Loader;
+import org.easetech.easytest.loader.LoaderFactory;
+import org.easetech.easytest.loader.StreamingLoader;
+import org.easetech.easytest.util.ClassPathTemporaryFolder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link CachingLoader} is only used when enabled, that loaders configured differently get cache
+ * files of their own and that the data of a method is streamed from the cache file, which streaming a method fills
+ * when it is missing.
+ */
+public class TestCachingLoader {
+
+    private static final String[] FILES = { "getItemsData.csv" };
+
+    private File cacheDirectory;
+
+    /**
+     * The data files of the tests, created where the loaders resolve them on the class path
+     */
+    @Rule
+    public ClassPathTemporaryFolder temporaryFolder = new ClassPathTemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDirectory = Files.createTempDirectory("easytest-cache").toFile();
+        System.setProperty(CachingLoader.CACHE_DIRECTORY_PROPERTY, cacheDirectory.getPath());
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(CachingLoader.CACHE_PROPERTY);
+        System.clearProperty(CachingLoader.CACHE_DIRECTORY_PROPERTY);
+        for (File file : cacheDirectory.listFiles()) {
+            file.delete();
+        }
+        cacheDirectory.delete();
+    }
+
+    @Test
+    public void testCacheIsDisabledByDefault() {
+        Loader loader = new CSVDataLoader(false, Charset.forName("UTF-8"));
+        Assert.assertSame(loader, CachingLoader.wrap(loader, "CSV"));
+    }
+
+    @Test
+    public void testCustomDatabaseLoaderIsNotCached() {
+        System.setProperty(CachingLoader.CACHE_PROPERTY, "true");
+        Assert.assertTrue(LoaderFactory.getLoader(CustomJDBCDataLoader.class) instanceof CustomJDBCDataLoader);
+        Assert.assertTrue(LoaderFactory.getLoader(CountingLoader.class) instanceof CachingLoader);
+    }
+
+    @Test
+    public void testCacheKeyHoldsTheConfiguration() {
+        System.setProperty(CachingLoader.CACHE_PROPERTY, "true");
+        Loader utf8 = CachingLoader.wrap(new CSVDataLoader(false, Charset.forName("UTF-8")), "CSV");
+        Loader latin1 = CachingLoader.wrap(new CSVDataLoader(false, Charset.forName("ISO-8859-1")), "CSV");
+        Map<String, List<Map<String, Object>>> data = utf8.loadData(FILES);
+        Assert.assertEquals(1, cacheDirectory.listFiles().length);
+        latin1.loadData(FILES);
+        Assert.assertEquals(2, cacheDirectory.listFiles().length);
+
+        // A hit on the cache file gives the same data
+        Assert.assertEquals(data, utf8.loadData(FILES));
+        Assert.assertEquals(2, cacheDirectory.listFiles().length);
+    }
+
+    @Test
+    public void testMethodDataIsStreamedFromTheCache() {
+        System.setProperty(CachingLoader.CACHE_PROPERTY, "true");
+        Loader loader = CachingLoader.wrap(new CSVDataLoader(false, Charset.forName("UTF-8")), "CSV");
+        Assert.assertTrue(loader instanceof StreamingLoader);
+        List<Map<String, Object>> expected = loader.loadData(FILES).get("testGetItems");
+
+        Iterator<Map<String, Object>> rows = ((StreamingLoader) loader).streamData(FILES, "testGetItems");
+        List<Map<String, Object>> streamed = new ArrayList<Map<String, Object>>();
+        while (rows.hasNext()) {
+            streamed.add(rows.next());
+        }
+        Assert.assertEquals(expected, streamed);
+        Assert.assertFalse(((StreamingLoader) loader).streamData(FILES, "noSuchMethod").hasNext());
+    }
+
+    @Test
+    public void testStreamingFillsTheCache() {
+        System.setProperty(CachingLoader.CACHE_PROPERTY, "true");
+        CountingLoader files = new CountingLoader();
+        StreamingLoader loader = (StreamingLoader) CachingLoader.wrap(files, "CSV");
+        List<Map<String, Object>> expected = files.delegate.loadData(FILES).get("testGetItems");
+
+        Assert.assertEquals(expected, toList(loader.streamData(FILES, "testGetItems")));
+        Assert.assertEquals(1, cacheDirectory.listFiles().length);
+        Assert.assertEquals(1, files.loads);
+
+        // The next methods, and the next JVMs, stream their data from the cache file
+        Loader otherJvm = CachingLoader.wrap(files, "CSV");
+        Assert.assertEquals(files.delegate.loadData(FILES).get("testGetItemsWithoutFileType"),
+            toList(((StreamingLoader) otherJvm).streamData(FILES, "testGetItemsWithoutFileType")));
+        Assert.assertEquals(1, files.loads);
+        Assert.assertEquals(0, files.streams);
+    }
+
+    @Test
+    public void testChangedFileGetsANewCacheFile() throws Exception {
+        System.setProperty(CachingLoader.CACHE_PROPERTY, "true");
+        File dataFile = temporaryFolder.newFile("cached", ".csv");
+        String[] filePaths = { dataFile.getName() };
+        Files.write(dataFile.toPath(), "getItems,searchText\n,first\n".getBytes("UTF-8"));
+        StreamingLoader loader = (StreamingLoader) CachingLoader.wrap(
+            new CSVDataLoader(false, Charset.forName("UTF-8")), "CSV");
+        Assert.assertEquals("first", loader.streamData(filePaths, "getItems").next().get("searchText"));
+
+        Files.write(dataFile.toPath(), "getItems,searchText\n,changed\n".getBytes("UTF-8"));
+        Assert.assertEquals("changed", loader.streamData(filePaths, "getItems").next().get("searchText"));
+        Assert.assertEquals(2, cacheDirectory.listFiles().length);
+    }
+
+    private static List<Map<String, Object>> toList(Iterator<Map<String, Object>> rows) {
+        List<Map<String, Object>> list = new ArrayList<Map<String, Object>>();
+        while (rows.hasNext()) {
+            list.add(rows.next());
+        }
+        return list;
+    }
+
+    /**
+     * A custom loader of a database, whose content can change at any time
+     */
+    public static class CustomJDBCDataLoader extends JDBCDataLoader {
+    }
+
+    /**
+     * Counts how many times the files are parsed
+     */
+    public static class CountingLoader implements StreamingLoader {
+
+        final CSVDataLoader delegate = new CSVDataLoader(false, Charset.forName("UTF-8"));
+
+        int loads;
+
+        int streams;
+
+        public Map<String, List<Map<String, Object>>> loadData(String[] filePaths) {
+            loads++;
+            return delegate.loadData(filePaths);
+        }
+
+        public Iterator<Map<String, Object>> streamData(String[] filePaths, String methodName) {
+            streams++;
+            return delegate.streamData(filePaths, methodName);
+        }
+
+        public void writeData(String filePath, Map<String, List<Map<String, Object>>> actualData) {
+            delegate.writeData(filePath, actualData);
+        }
+    }
+
+}
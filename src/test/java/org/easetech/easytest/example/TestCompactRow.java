@@ -0,0 +1,64 @@
+package org.easetech.easytest.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.loader.CompactRow;
+import org.easetech.easytest.loader.Loader;
+import org.easetech.easytest.loader.RowSchema;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that a {@link CompactRow} behaves like the {@link HashMap} that the rows of test data used to be loaded into,
+ * in particular that its String representation, after which the tests are named, is the same.
+ */
+public class TestCompactRow {
+
+    @Test
+    public void testToStringIsTheOneOfAHashMap() {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            keys.add("column" + i);
+        }
+        keys.add("LibraryId");
+        keys.add("itemType");
+        keys.add("searchText");
+        CompactRow row = new CompactRow(new RowSchema(keys));
+        Map<String, Object> map = new HashMap<String, Object>();
+        for (String key : keys) {
+            row.put(key, key + "Value");
+            map.put(key, key + "Value");
+        }
+        Assert.assertEquals(map.toString(), row.toString());
+        Assert.assertEquals(map, row);
+        Assert.assertEquals(map.hashCode(), row.hashCode());
+
+        row.put(Loader.ACTUAL_RESULT, "result");
+        map.put(Loader.ACTUAL_RESULT, "result");
+        Assert.assertEquals(map.toString(), row.toString());
+    }
+
+    @Test
+    public void testFrozenRowIsCopied() {
+        List<String> keys = new ArrayList<String>();
+        keys.add("itemType");
+        CompactRow row = new CompactRow(new RowSchema(keys));
+        row.put("itemType", "book");
+        row.freeze();
+        try {
+            row.put("itemType", "ebook");
+            Assert.fail("A frozen row should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        CompactRow copy = row.copy();
+        copy.put("itemType", "ebook");
+        copy.remove("missing");
+        Assert.assertEquals("book", row.get("itemType"));
+        Assert.assertEquals("ebook", copy.get("itemType"));
+        Assert.assertEquals(1, copy.size());
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.easetech.easytest.example;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.loader.ExcelDataLoader;
+import org.easetech.easytest.loader.Loader;
+import org.easetech.easytest.util.ResourceLoader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the same workbook saved as .xls and as .xlsx gives the same rows, both when it is loaded and once the
+ * actual results are written back to it.
+ */
+public class TestExcelFormats {
+
+    private static final String XLS = "org/easetech/data/testExcelData.xls";
+
+    private static final String XLSX = "org/easetech/data/testExcelData.xlsx";
+
+    private final List<File> copies = new ArrayList<File>();
+
+    @After
+    public void tearDown() {
+        for (File copy : copies) {
+            copy.delete();
+        }
+    }
+
+    @Test
+    public void testBothFormatsLoadTheSameRows() {
+        for (boolean streaming : new boolean[] { false, true }) {
+            Map<String, List<Map<String, Object>>> xls = load(streaming, XLS);
+            Assert.assertEquals(3, xls.size());
+            Assert.assertEquals(2, xls.get("getExcelTestDataWithDouble").size());
+            Assert.assertEquals(xls, load(streaming, XLSX));
+        }
+    }
+
+    @Test
+    public void testBothFormatsWriteBackTheSameRows() throws Exception {
+        String xls = copy(XLS);
+        String xlsx = copy(XLSX);
+        for (String filePath : new String[] { xls, xlsx }) {
+            ExcelDataLoader loader = new ExcelDataLoader(false, false, false);
+            loader.writeData(filePath, withResults(loader.loadData(new String[] { filePath })));
+        }
+
+        Map<String, List<Map<String, Object>>> written = load(false, xls);
+        Map<String, Object> row = written.get("getExcelTestDataWithDouble").get(1);
+        Assert.assertEquals("getExcelTestDataWithDouble-1", row.get(Loader.ACTUAL_RESULT));
+        Assert.assertEquals(Loader.TEST_PASSED, row.get(Loader.TEST_STATUS));
+        Assert.assertEquals(load(false, XLS).get("getExcelTestData").get(0).get("itemId"),
+            written.get("getExcelTestData").get(0).get("itemId"));
+        Assert.assertEquals(written, load(false, xlsx));
+        Assert.assertEquals(written, load(true, xlsx));
+    }
+
+    private static Map<String, List<Map<String, Object>>> load(boolean streaming, String filePath) {
+        return new ExcelDataLoader(streaming, false, false).loadData(new String[] { filePath });
+    }
+
+    private static Map<String, List<Map<String, Object>>> withResults(Map<String, List<Map<String, Object>>> data) {
+        for (Map.Entry<String, List<Map<String, Object>>> method : data.entrySet()) {
+            List<Map<String, Object>> rows = method.getValue();
+            for (int rowNum = 0; rowNum < rows.size(); rowNum++) {
+                Map<String, Object> row = new LinkedHashMap<String, Object>(rows.get(rowNum));
+                row.put(Loader.ACTUAL_RESULT, method.getKey() + "-" + rowNum);
+                row.put(Loader.TEST_STATUS, Loader.TEST_PASSED);
+                rows.set(rowNum, row);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Copy a fixture next to it, so that it is left as it is when the results are written back
+     */
+    private String copy(String filePath) throws Exception {
+        File fixture = new ResourceLoader(filePath).getFile();
+        String name = fixture.getName();
+        File copy = File.createTempFile("copy", name.substring(name.lastIndexOf('.')), fixture.getParentFile());
+        Files.copy(fixture.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        copies.add(copy);
+        return filePath.substring(0, filePath.lastIndexOf('/') + 1) + copy.getName();
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.easetech.easytest.example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.easetech.easytest.loader.ExcelDataLoader;
+import org.easetech.easytest.util.ClassPathTemporaryFolder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Checks that only the first sheet of a workbook is read by default, and that all the sheets are read when asked to,
+ * the sheets of an .xlsx workbook being parsed concurrently.
+ */
+public class TestExcelSheets {
+
+    private static final int SHEETS = 6;
+
+    private File xlsFile;
+
+    private File xlsxFile;
+
+    /**
+     * The data files of the tests, created where the loaders resolve them on the class path
+     */
+    @Rule
+    public ClassPathTemporaryFolder temporaryFolder = new ClassPathTemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        xlsFile = temporaryFolder.newFile("sheets", ".xls");
+        write(new HSSFWorkbook(), xlsFile);
+        xlsxFile = temporaryFolder.newFile("sheets", ".xlsx");
+        write(new XSSFWorkbook(), xlsxFile);
+    }
+
+    @Test
+    public void testOnlyTheFirstSheetIsReadByDefault() {
+        for (File file : new File[] { xlsFile, xlsxFile }) {
+            for (boolean streaming : new boolean[] { false, true }) {
+                Map<String, List<Map<String, Object>>> data = new ExcelDataLoader(streaming, false, false)
+                    .loadData(new String[] { file.getName() });
+                Assert.assertEquals(2, data.size());
+                Assert.assertEquals("sheet0", data.get("sheetMethod0").get(0).get("value"));
+                Assert.assertEquals("sheet0", data.get("sharedMethod").get(0).get("value"));
+            }
+        }
+    }
+
+    @Test
+    public void testAllSheetsAreReadWhenAsked() {
+        for (File file : new File[] { xlsFile, xlsxFile }) {
+            for (boolean streaming : new boolean[] { false, true }) {
+                Map<String, List<Map<String, Object>>> data = new ExcelDataLoader(streaming, false, true)
+                    .loadData(new String[] { file.getName() });
+                Assert.assertEquals(SHEETS + 1, data.size());
+                for (int sheet = 0; sheet < SHEETS; sheet++) {
+                    List<Map<String, Object>> rows = data.get("sheetMethod" + sheet);
+                    Assert.assertEquals(2, rows.size());
+                    Assert.assertEquals("sheet" + sheet, rows.get(0).get("value"));
+                }
+                // The data of the last sheet defining a method is used, whatever the sheet parsed last
+                Assert.assertEquals("sheet" + (SHEETS - 1), data.get("sharedMethod").get(0).get("value"));
+            }
+        }
+    }
+
+    private static void write(Workbook workbook, File file) throws Exception {
+        for (int sheet = 0; sheet < SHEETS; sheet++) {
+            Sheet worksheet = workbook.createSheet("sheet" + sheet);
+            addMethodBlock(worksheet, 0, "sheetMethod" + sheet, "sheet" + sheet);
+            addMethodBlock(worksheet, 3, "sharedMethod", "sheet" + sheet);
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            workbook.write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void addMethodBlock(Sheet sheet, int firstRow, String methodName, String value) {
+        Row header = sheet.createRow(firstRow);
+        header.createCell(0).setCellValue(methodName);
+        header.createCell(1).setCellValue("value");
+        sheet.createRow(firstRow + 1).createCell(1).setCellValue(value);
+        if (firstRow == 0) {
+            sheet.createRow(firstRow + 2).createCell(1).setCellValue("other");
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package org.easetech.easytest.example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.easetech.easytest.loader.ExcelDataLoader;
+import org.easetech.easytest.util.ClassPathTemporaryFolder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Checks that the event reader used by the streaming mode of the {@link ExcelDataLoader}, and for the .xlsx files,
+ * converts the cells the same way as the workbook read in memory, and that a method streams the rows of its last block
+ * whichever way the workbook is read.
+ */
+public class TestExcelStreaming {
+
+    private File xlsFile;
+
+    private File xlsxFile;
+
+    /**
+     * The data files of the tests, created where the loaders resolve them on the class path
+     */
+    @Rule
+    public ClassPathTemporaryFolder temporaryFolder = new ClassPathTemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        xlsFile = temporaryFolder.newFile("streaming", ".xls");
+        write(new HSSFWorkbook(), xlsFile);
+        xlsxFile = temporaryFolder.newFile("streaming", ".xlsx");
+        write(new XSSFWorkbook(), xlsxFile);
+    }
+
+    @Test
+    public void testStreamingReadsTheSameCellsAsTheWorkbook() {
+        Map<String, List<Map<String, Object>>> expected = load(false, xlsFile);
+        List<Map<String, Object>> cells = expected.get("getCells");
+        Assert.assertEquals(2, cells.size());
+        Assert.assertEquals("42", cells.get(0).get("number"));
+        Assert.assertEquals(Double.valueOf(84), cells.get(0).get("formula"));
+        Assert.assertEquals("text", cells.get(0).get("text"));
+        Assert.assertEquals(Double.valueOf(2.5), cells.get(1).get("number"));
+        Assert.assertEquals(2, expected.get("getOtherCells").size());
+
+        Assert.assertEquals(expected, load(true, xlsFile));
+        Assert.assertEquals(expected, load(false, xlsxFile));
+        Assert.assertEquals(expected, load(true, xlsxFile));
+    }
+
+    @Test
+    public void testStreamingKeepsOnlyTheRowsOfTheMethod() {
+        for (File file : new File[] { xlsFile, xlsxFile }) {
+            Iterator<Map<String, Object>> rows = new ExcelDataLoader(true).streamData(new String[] { file.getName() },
+                "getOtherCells");
+            List<Map<String, Object>> streamed = new ArrayList<Map<String, Object>>();
+            while (rows.hasNext()) {
+                streamed.add(rows.next());
+            }
+            Assert.assertEquals(load(false, xlsFile).get("getOtherCells"), streamed);
+        }
+    }
+
+    @Test
+    public void testTheLastBlockOfAMethodIsStreamed() {
+        List<Map<String, Object>> loaded = load(false, xlsFile).get("getRepeated");
+        Assert.assertEquals(1, loaded.size());
+        Assert.assertEquals("last block", loaded.get(0).get("value"));
+        for (boolean streaming : new boolean[] { false, true }) {
+            for (File file : new File[] { xlsFile, xlsxFile }) {
+                Iterator<Map<String, Object>> rows = new ExcelDataLoader(streaming).streamData(
+                    new String[] { file.getName() }, "getRepeated");
+                List<Map<String, Object>> streamed = new ArrayList<Map<String, Object>>();
+                while (rows.hasNext()) {
+                    streamed.add(rows.next());
+                }
+                Assert.assertEquals(loaded, streamed);
+            }
+        }
+    }
+
+    private static Map<String, List<Map<String, Object>>> load(boolean streaming, File file) {
+        return new ExcelDataLoader(streaming, true).loadData(new String[] { file.getName() });
+    }
+
+    private static void write(Workbook workbook, File file) throws Exception {
+        Sheet sheet = workbook.createSheet("tests");
+        CellStyle dateStyle = workbook.createCellStyle();
+        dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+
+        header(sheet.createRow(0), "getCells", "number", "formula", "text", "flag", "date");
+        Row row = sheet.createRow(1);
+        row.createCell(1).setCellValue(42);
+        row.createCell(2).setCellFormula("B2*2");
+        row.createCell(3).setCellValue("text");
+        row.createCell(4).setCellValue(true);
+        Cell date = row.createCell(5);
+        date.setCellValue(new GregorianCalendar(2012, Calendar.MARCH, 4).getTime());
+        date.setCellStyle(dateStyle);
+        row = sheet.createRow(2);
+        row.createCell(1).setCellValue(2.5);
+        row.createCell(3).setCellValue("");
+
+        header(sheet.createRow(4), "getOtherCells", "value");
+        sheet.createRow(5).createCell(1).setCellValue("first");
+        sheet.createRow(6).createCell(1).setCellValue("second");
+
+        header(sheet.createRow(8), "getRepeated", "value");
+        sheet.createRow(9).createCell(1).setCellValue("first block");
+        header(sheet.createRow(10), "getRepeated", "value");
+        sheet.createRow(11).createCell(1).setCellValue("last block");
+
+        workbook.getCreationHelper().createFormulaEvaluator().evaluateFormulaCell(sheet.getRow(1).getCell(2));
+        OutputStream out = new FileOutputStream(file);
+        try {
+            workbook.write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void header(Row row, String methodName, String... keys) {
+        row.createCell(0).setCellValue(methodName);
+        for (int i = 0; i < keys.length; i++) {
+            row.createCell(i + 1).setCellValue(keys[i]);
+        }
+    }
+
+}
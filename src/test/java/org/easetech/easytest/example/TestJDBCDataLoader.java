@@ -0,0 +1,36 @@
+package org.easetech.easytest.example;
+
+import org.easetech.easytest.annotation.DataLoader;
+import org.easetech.easytest.annotation.Param;
+import org.easetech.easytest.loader.LoaderType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(org.easetech.easytest.runner.DataDrivenTestRunner.class)
+@DataLoader(filePaths = { "library-db.properties" }, loaderType = LoaderType.JDBC)
+public class TestJDBCDataLoader {
+
+    @Test
+    public void getItemsDataFromDatabase(@Param(name = "libraryId")
+    String libraryId, @Param(name = "itemId")
+    String itemId, @Param(name = "itemType")
+    String itemType, @Param(name = "expectedItems")
+    String expectedItems) {
+        System.out.print("Executing getItemsDataFromDatabase :");
+        System.out.println("LibraryId :" + libraryId + " itemId : " + itemId + " itemType :" + itemType
+            + " expectedItems :" + expectedItems);
+        Assert.assertNotNull(libraryId);
+        Assert.assertNotNull(expectedItems);
+    }
+
+    @Test
+    public void getItemsOfTypeFromDatabase(@Param(name = "libraryId")
+    String libraryId, @Param(name = "itemId")
+    ItemId itemId) {
+        System.out.print("Executing getItemsOfTypeFromDatabase :");
+        System.out.println("LibraryId :" + libraryId + " itemId : " + itemId);
+        Assert.assertNotNull(itemId);
+    }
+
+}
@@ -0,0 +1,32 @@
+package org.easetech.easytest.example;
+
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.loader.JDBCDataLoader;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link JDBCDataLoader} fails, instead of returning partial data, when a query can not be run.
+ */
+public class TestJDBCDataLoaderErrors {
+
+    @Test
+    public void testValidQueriesAreLoaded() {
+        Map<String, List<Map<String, Object>>> data = new JDBCDataLoader()
+            .loadData(new String[] { "library-db.properties" });
+        Assert.assertEquals(2, data.size());
+        Assert.assertFalse(data.get("getItemsDataFromDatabase").isEmpty());
+    }
+
+    @Test
+    public void testInvalidQueryIsPropagated() {
+        try {
+            new JDBCDataLoader().loadData(new String[] { "library-db-invalid.properties" });
+            Assert.fail("The data of a query that can not be run was loaded");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("getItemsDataFromDatabase"));
+        }
+    }
+
+}
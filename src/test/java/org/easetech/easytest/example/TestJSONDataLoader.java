@@ -0,0 +1,41 @@
+package org.easetech.easytest.example;
+
+import org.easetech.easytest.annotation.DataLoader;
+import org.easetech.easytest.annotation.Param;
+import org.easetech.easytest.loader.LoaderType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(org.easetech.easytest.runner.DataDrivenTestRunner.class)
+@DataLoader(filePaths = { "input-data.json" }, loaderType = LoaderType.JSON)
+public class TestJSONDataLoader {
+
+    @Test
+    public Item getItemsDataFromJSONLoader(@Param(name = "libraryId")
+    String libraryId, @Param(name = "itemId")
+    String itemId, @Param(name = "itemType")
+    String itemType, @Param(name = "expectedItems")
+    String expectedItems) {
+        System.out.print("Executing getItemsDataFromJSONLoader :");
+        System.out.println("LibraryId :" + libraryId + " itemId : " + itemId + " itemType :" + itemType
+            + " expectedItems :" + expectedItems);
+        Item item = new Item();
+        item.setDescription("Description Modified");
+        item.setItemId(itemId);
+        item.setItemType(itemType);
+        return item;
+    }
+
+    @Test
+    @DataLoader(filePaths = { "input-data.jsonl" }, loaderType = LoaderType.JSON)
+    public void getItemsDataFromJSONLinesLoader(@Param(name = "libraryId")
+    String libraryId, @Param(name = "itemId")
+    ItemId itemId, @Param(name = "itemType")
+    String itemType, @Param(name = "expectedItems")
+    String expectedItems) {
+        System.out.print("Executing getItemsDataFromJSONLinesLoader :");
+        System.out.println("LibraryId :" + libraryId + " itemId : " + itemId + " itemType :" + itemType
+            + " expectedItems :" + expectedItems);
+    }
+
+}
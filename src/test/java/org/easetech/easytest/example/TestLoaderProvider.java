@@ -0,0 +1,22 @@
+package org.easetech.easytest.example;
+
+import org.easetech.easytest.annotation.DataLoader;
+import org.easetech.easytest.annotation.Param;
+import org.easetech.easytest.loader.LoaderType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(org.easetech.easytest.runner.DataDrivenTestRunner.class)
+@DataLoader(filePaths = { "getItemsDataCustom.ccsv" }, loaderType = LoaderType.CUSTOM)
+public class TestLoaderProvider {
+
+    @Test
+    public void getItemsWithRegisteredLoader(@Param(name = "LibraryId")
+    String libraryId, @Param(name = "itemType")
+    String itemType, @Param(name = "searchText")
+    String searchText) {
+        System.out.print("Executing getItemsWithRegisteredLoader :");
+        System.out.println("LibraryId :" + libraryId + " itemType :" + itemType + " searchText :" + searchText);
+    }
+
+}
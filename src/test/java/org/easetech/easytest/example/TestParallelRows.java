@@ -0,0 +1,70 @@
+package org.easetech.easytest.example;
+
+import java.beans.PropertyEditorManager;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.easetech.easytest.annotation.DataLoader;
+import org.easetech.easytest.annotation.Param;
+import org.easetech.easytest.annotation.Parallel;
+import org.easetech.easytest.converter.ConverterManager;
+import org.easetech.easytest.example.editors.LibraryIdEditor;
+import org.easetech.easytest.loader.LoaderType;
+import org.easetech.easytest.runner.DataDrivenTestRunner;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * An example of running the rows of test data of the test methods in parallel, using the {@link Parallel} annotation.
+ * The editors and converters registered by the thread of the runner are available to the rows on any thread, and the
+ * rows running at the same time never share an instance of the test class.
+ */
+@RunWith(DataDrivenTestRunner.class)
+@DataLoader(filePaths = { "getItemsData.csv" }, loaderType = LoaderType.CSV)
+@Parallel(threads = 4)
+public class TestParallelRows {
+
+    /**
+     * Whether a row is running with this instance of the test class
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @BeforeClass
+    public static void setUp() {
+        PropertyEditorManager.registerEditor(LibraryId.class, LibraryIdEditor.class);
+        ConverterManager.registerConverter(ItemConverter.class);
+    }
+
+    @Test
+    public void testGetItems(@Param(name = "LibraryId")
+    LibraryId libraryId, @Param(name = "itemType")
+    String itemType, @Param(name = "searchText")
+    String searchText) {
+        System.out.println("Executing testGetItems on " + Thread.currentThread().getName() + " : LibraryId :"
+            + libraryId + " itemType :" + itemType + " searchText :" + searchText);
+        Assert.assertNotNull(itemType);
+    }
+
+    @Test
+    @Parallel(threads = 2)
+    public void testConverter(@Param()
+    Item item) {
+        System.out.println("Executing testConverter on " + Thread.currentThread().getName() + " : "
+            + item.getDescription() + item.getItemId() + item.getItemType());
+        Assert.assertNotNull(item);
+    }
+
+    @Test
+    @DataLoader(filePaths = { "parallelRowsData.csv" }, loaderType = LoaderType.CSV)
+    public void testInstanceIsNotShared(@Param(name = "row")
+    String row) throws InterruptedException {
+        Assert.assertTrue("Row " + row + " shares its instance with another row", running.compareAndSet(false, true));
+        try {
+            // Give the other rows the time to start on the other threads
+            Thread.sleep(20);
+        } finally {
+            running.set(false);
+        }
+    }
+
+}
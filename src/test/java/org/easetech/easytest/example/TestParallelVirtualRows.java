@@ -0,0 +1,81 @@
+package org.easetech.easytest.example;
+
+import java.beans.PropertyEditorManager;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.easetech.easytest.annotation.DataLoader;
+import org.easetech.easytest.annotation.Param;
+import org.easetech.easytest.annotation.Parallel;
+import org.easetech.easytest.converter.ConverterManager;
+import org.easetech.easytest.example.editors.LibraryIdEditor;
+import org.easetech.easytest.loader.LoaderType;
+import org.easetech.easytest.runner.DataDrivenTestRunner;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * An example of running each row of test data on a virtual thread of its own, using the {@link Parallel} annotation.
+ * Before JDK 21 the rows run on platform threads instead. Either way the editors and converters registered by the
+ * thread of the runner are found by the rows, and the rows share at most as many instances of the test class as they
+ * have threads.
+ */
+@RunWith(DataDrivenTestRunner.class)
+@DataLoader(filePaths = { "getItemsData.csv" }, loaderType = LoaderType.CSV)
+@Parallel(threads = 2, virtual = true)
+public class TestParallelVirtualRows {
+
+    /**
+     * The thread of the runner
+     */
+    private static Thread runner;
+
+    /**
+     * The number of instances of the test class created so far
+     */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    public TestParallelVirtualRows() {
+        INSTANCES.incrementAndGet();
+    }
+
+    @BeforeClass
+    public static void setUp() {
+        runner = Thread.currentThread();
+        PropertyEditorManager.registerEditor(LibraryId.class, LibraryIdEditor.class);
+        ConverterManager.registerConverter(ItemConverter.class);
+    }
+
+    @AfterClass
+    public static void checkInstances() {
+        // The instance of the runner, and one per thread running the rows
+        Assert.assertTrue("Created " + INSTANCES.get() + " instances of the test class", INSTANCES.get() <= 3);
+    }
+
+    @Test
+    public void testGetItems(@Param(name = "LibraryId")
+    LibraryId libraryId, @Param(name = "itemType")
+    String itemType) {
+        Assert.assertNotSame(runner, Thread.currentThread());
+        Assert.assertNotNull(libraryId);
+        Assert.assertNotNull(itemType);
+    }
+
+    @Test
+    public void testConverter(@Param()
+    Item item) {
+        Assert.assertNotSame(runner, Thread.currentThread());
+        Assert.assertNotNull(item.getItemId());
+    }
+
+    @Test
+    @DataLoader(filePaths = { "parallelRowsData.csv" }, loaderType = LoaderType.CSV)
+    public void testInstancesAreBounded(@Param(name = "row")
+    String row) throws InterruptedException {
+        Assert.assertNotSame(runner, Thread.currentThread());
+        // Give the other rows the time to start
+        Thread.sleep(10);
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.easetech.easytest.example;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.loader.Loader;
+import org.easetech.easytest.loader.XMLDataLoader;
+import org.easetech.easytest.util.ClassPathTemporaryFolder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link XMLDataLoader} writes the actual results into the matching test records, replacing the
+ * results of a previous run, and copies the rest of the file as it is.
+ */
+public class TestXMLDataWriting {
+
+    private static final String METHOD = "getItems";
+
+    private static final String CONTENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<easytest:InputTestData xmlns:easytest=\"urn:org:easetech:easytest:1.0\">\n"
+        + "  <TestMethod name=\"getItems\">\n"
+        + "    <TestRecord id=\"1\">\n"
+        + "      <InputData>\n"
+        + "        <Entry key=\"itemId\" value=\"2600\"/>\n"
+        + "      </InputData>\n"
+        + "    </TestRecord>\n"
+        + "    <TestRecord id=\"2\">\n"
+        + "      <InputData>\n"
+        + "        <Entry value=\"3600\" key=\"itemId\"/>\n"
+        + "      </InputData>\n"
+        + "    </TestRecord>\n"
+        + "    <TestRecord id=\"3\">\n"
+        + "      <InputData>\n"
+        + "        <Entry key=\"itemId\" value=\"4000\"/>\n"
+        + "      </InputData>\n"
+        + "    </TestRecord>\n"
+        + "  </TestMethod>\n"
+        + "</easytest:InputTestData>\n";
+
+    private File dataFile;
+
+    /**
+     * The data files of the tests, created where the loaders resolve them on the class path
+     */
+    @Rule
+    public ClassPathTemporaryFolder temporaryFolder = new ClassPathTemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        dataFile = temporaryFolder.newFile("writing", ".xml");
+        Files.write(dataFile.toPath(), CONTENT.getBytes("UTF-8"));
+    }
+
+    @Test
+    public void testResultIsInsertedIntoTheRecordOfTheRow() throws Exception {
+        XMLDataLoader loader = new XMLDataLoader();
+        Map<String, List<Map<String, Object>>> original = loader.loadData(new String[] { dataFile.getName() });
+        Map<String, List<Map<String, Object>>> data = loader.loadData(new String[] { dataFile.getName() });
+        putResult(data, 1, "3 & <more>");
+        loader.writeData(dataFile.getName(), data);
+
+        String expected = CONTENT.replace("        <Entry value=\"3600\" key=\"itemId\"/>\n      </InputData>\n",
+            "        <Entry value=\"3600\" key=\"itemId\"/>\n      </InputData>\n      <OutputData>\n"
+                + "        <Entry key=\"ActualResult\" value=\"3 &amp; &lt;more&gt;\"/>\n      </OutputData>\n");
+        Assert.assertEquals(expected, read());
+        // The output data is not test data
+        Assert.assertEquals(original, new XMLDataLoader().loadData(new String[] { dataFile.getName() }));
+    }
+
+    @Test
+    public void testResultOfAPreviousRunIsReplaced() throws Exception {
+        XMLDataLoader loader = new XMLDataLoader();
+        Map<String, List<Map<String, Object>>> data = loader.loadData(new String[] { dataFile.getName() });
+        putResult(data, 0, "first run");
+        loader.writeData(dataFile.getName(), data);
+        putResult(data, 0, "second run");
+        loader.writeData(dataFile.getName(), data);
+
+        String content = read();
+        Assert.assertEquals(1, content.split("<OutputData>", -1).length - 1);
+        Assert.assertTrue(content.contains("value=\"second run\""));
+        Assert.assertFalse(content.contains("first run"));
+    }
+
+    @Test
+    public void testRecordPositionSelectsTheRecord() throws Exception {
+        XMLDataLoader loader = new XMLDataLoader();
+        Map<String, List<Map<String, Object>>> data = loader.loadData(new String[] { dataFile.getName() });
+        putResult(data, 0, "by id");
+        data.get(METHOD).get(0).put("recordPosition", "3");
+        loader.writeData(dataFile.getName(), data);
+
+        String content = read();
+        int outputData = content.indexOf("<OutputData>");
+        Assert.assertTrue(outputData > content.indexOf("<TestRecord id=\"3\">"));
+        Assert.assertTrue(content.indexOf("value=\"by id\"") > outputData);
+    }
+
+    private static void putResult(Map<String, List<Map<String, Object>>> data, int rowNum, String result) {
+        Map<String, Object> row = new LinkedHashMap<String, Object>(data.get(METHOD).get(rowNum));
+        row.put(Loader.ACTUAL_RESULT, result);
+        data.get(METHOD).set(rowNum, row);
+    }
+
+    private String read() throws Exception {
+        return new String(Files.readAllBytes(dataFile.toPath()), "UTF-8");
+    }
+
+}
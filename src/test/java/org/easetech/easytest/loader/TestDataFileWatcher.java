@@ -0,0 +1,83 @@
+package org.easetech.easytest.loader;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link DataFileWatcher} keeps watching the files of a directory that was deleted and created again.
+ */
+public class TestDataFileWatcher {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("easytest-watch").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testDirectoryIsWatchedAgainOnceRecreated() throws Exception {
+        DataFileWatcher watcher = DataFileWatcher.getInstance();
+        Assume.assumeNotNull(watcher);
+        File dataFile = new File(directory, "data.csv");
+        write(dataFile, "testGetItems,itemType\n,book\n");
+        Path path = dataFile.toPath().toAbsolutePath();
+        long generation = watcher.generation(path);
+        Assert.assertEquals(0, generation);
+
+        dataFile.delete();
+        directory.delete();
+        // The file is either seen as changed or as not watched, while its directory does not exist
+        Assert.assertTrue("The deletion of the file was not seen",
+            awaitNewGeneration(watcher, path, generation) != generation);
+
+        // Once the directory is no longer watched, the next call registers it again
+        Assert.assertTrue(directory.mkdir());
+        write(dataFile, "testGetItems,itemType\n,journal\n");
+        long recreated = watcher.generation(path);
+        Assert.assertTrue("A generation of the file was reused", recreated > generation);
+
+        write(dataFile, "testGetItems,itemType\n,ebook\n");
+        Assert.assertTrue("The file is no longer watched", awaitNewGeneration(watcher, path, recreated) > recreated);
+    }
+
+    private static long awaitNewGeneration(DataFileWatcher watcher, Path path, long generation)
+        throws InterruptedException {
+        long current = watcher.generation(path);
+        for (int i = 0; i < 100 && current == generation; i++) {
+            Thread.sleep(100);
+            current = watcher.generation(path);
+        }
+        return current;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+}
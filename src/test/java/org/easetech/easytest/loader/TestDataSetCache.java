@@ -0,0 +1,165 @@
+package org.easetech.easytest.loader;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the data sets of the {@link DataSetCache} are identified by the configuration of their loader as well
+ * as by their files, that the cache stays within its heap budget by evicting the least recently used data sets, and
+ * that the cached data sets can not be modified.
+ */
+public class TestDataSetCache {
+
+    private static final String[] FILES = { "getItemsData.csv" };
+
+    private long heapBudget;
+
+    @Before
+    public void setUp() {
+        DataSetCache.clear();
+        heapBudget = DataSetCache.heapBudget();
+    }
+
+    @After
+    public void tearDown() {
+        DataSetCache.setHeapBudget(heapBudget);
+        DataSetCache.clear();
+    }
+
+    @Test
+    public void testKeyHoldsTheConfigurationOfTheLoader() {
+        String utf8 = DataSetCache.keyOf(new CSVDataLoader(false, Charset.forName("UTF-8")), FILES);
+        String otherUtf8 = DataSetCache.keyOf(new CSVDataLoader(false, Charset.forName("UTF-8")), FILES);
+        String latin1 = DataSetCache.keyOf(new CSVDataLoader(false, Charset.forName("ISO-8859-1")), FILES);
+        Assert.assertNotNull(utf8);
+        Assert.assertEquals(utf8, otherUtf8);
+        Assert.assertFalse(utf8.equals(latin1));
+    }
+
+    @Test
+    public void testNoKeyWithoutHeapBudget() {
+        DataSetCache.setHeapBudget(0);
+        Assert.assertNull(DataSetCache.keyOf(new CSVDataLoader(), FILES));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDataSetIsEvicted() {
+        long size = DataSetCache.estimateSize(DataSetCache.put("a", data("a")));
+        DataSetCache.clear();
+        DataSetCache.setHeapBudget(3 * size);
+        DataSetCache.put("a", data("a"));
+        DataSetCache.put("b", data("b"));
+        DataSetCache.put("c", data("c"));
+        Assert.assertNotNull(DataSetCache.get("a"));
+        DataSetCache.put("d", data("d"));
+        Assert.assertNull("b was the least recently used", DataSetCache.get("b"));
+        Assert.assertNotNull(DataSetCache.get("a"));
+        Assert.assertNotNull(DataSetCache.get("c"));
+        Assert.assertNotNull(DataSetCache.get("d"));
+        Assert.assertEquals(3 * size, DataSetCache.usedHeap());
+
+        DataSetCache.setHeapBudget(size);
+        Assert.assertNull(DataSetCache.get("a"));
+        Assert.assertNull(DataSetCache.get("c"));
+        Assert.assertNotNull(DataSetCache.get("d"));
+        Assert.assertEquals(size, DataSetCache.usedHeap());
+    }
+
+    @Test
+    public void testDataSetExceedingTheBudgetIsNotCached() {
+        DataSetCache.setHeapBudget(1);
+        Map<String, List<Map<String, Object>>> data = DataSetCache.put("a", data("a"));
+        Assert.assertEquals("a", data.get("getItems").get(0).get("value"));
+        Assert.assertNull(DataSetCache.get("a"));
+        Assert.assertEquals(0, DataSetCache.usedHeap());
+    }
+
+    @Test
+    public void testUsedHeapIsAccounted() {
+        DataSetCache.setHeapBudget(1024 * 1024);
+        long a = DataSetCache.estimateSize(DataSetCache.put("a", data("a")));
+        Assert.assertEquals(a, DataSetCache.usedHeap());
+        long b = DataSetCache.estimateSize(DataSetCache.put("b", data("bb")));
+        Assert.assertTrue(b > a);
+        Assert.assertEquals(a + b, DataSetCache.usedHeap());
+
+        // Replacing a data set does not count it twice
+        long longerA = DataSetCache.estimateSize(DataSetCache.put("a", data("aaaa")));
+        Assert.assertEquals(longerA + b, DataSetCache.usedHeap());
+
+        DataSetCache.clear();
+        Assert.assertEquals(0, DataSetCache.usedHeap());
+    }
+
+    @Test
+    public void testReclaimedDataSetIsRemoved() {
+        DataSetCache.setHeapBudget(1024 * 1024);
+        long a = DataSetCache.estimateSize(DataSetCache.put("a", data("a")));
+        long b = DataSetCache.estimateSize(DataSetCache.put("b", data("b")));
+        DataSetCache.reclaim("a");
+        Assert.assertEquals("Reclaimed data sets are accounted until they are found", a + b,
+            DataSetCache.usedHeap());
+        Assert.assertNull(DataSetCache.get("a"));
+        Assert.assertEquals(b, DataSetCache.usedHeap());
+        Assert.assertNotNull(DataSetCache.get("b"));
+
+        // The data set can be cached again
+        DataSetCache.put("a", data("a"));
+        Assert.assertNotNull(DataSetCache.get("a"));
+        Assert.assertEquals(a + b, DataSetCache.usedHeap());
+    }
+
+    @Test
+    public void testCachedDataSetCanNotBeModified() {
+        DataSetCache.setHeapBudget(1024 * 1024);
+        Map<String, List<Map<String, Object>>> data = DataSetCache.put("a", data("a"));
+        assertUnmodifiable(data);
+        assertUnmodifiable(DataSetCache.get("a"));
+    }
+
+    private static void assertUnmodifiable(Map<String, List<Map<String, Object>>> data) {
+        Map<String, Object> row = data.get("getItems").get(0);
+        try {
+            row.put("value", "changed");
+            Assert.fail("A cached row can not be modified");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals("a", row.get("value"));
+        }
+        try {
+            row.remove("value");
+            Assert.fail("A cached row can not be modified");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals("a", row.get("value"));
+        }
+        try {
+            data.get("getItems").add(new HashMap<String, Object>());
+            Assert.fail("The rows of a cached data set can not be modified");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals(1, data.get("getItems").size());
+        }
+        try {
+            data.remove("getItems");
+            Assert.fail("A cached data set can not be modified");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertTrue(data.containsKey("getItems"));
+        }
+    }
+
+    private static Map<String, List<Map<String, Object>>> data(String value) {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("value", value);
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        rows.add(row);
+        Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+        data.put("getItems", rows);
+        return data;
+    }
+
+}
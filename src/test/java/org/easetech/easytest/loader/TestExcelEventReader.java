@@ -0,0 +1,115 @@
+package org.easetech.easytest.loader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Checks that the sheets of an .xlsx workbook are parsed concurrently, each by its own handler, and that the handlers
+ * of the sheets are returned in the order of the sheets whatever the format.
+ */
+public class TestExcelEventReader {
+
+    @Test
+    public void testSheetsOfAnXlsxWorkbookAreParsedConcurrently() throws Exception {
+        Assume.assumeTrue(MultiFileLoader.PARALLELISM > 1);
+        final CountDownLatch started = new CountDownLatch(2);
+        List<RecordingHandler> handlers = ExcelEventReader.readSheets(workbook(new XSSFWorkbook(), 2),
+            new ExcelEventReader.SheetHandlerFactory<RecordingHandler>() {
+                @Override
+                public RecordingHandler newHandler(int sheetIndex, String sheetName) {
+                    return new RecordingHandler(started);
+                }
+            });
+        Assert.assertEquals(2, handlers.size());
+        for (RecordingHandler handler : handlers) {
+            Assert.assertTrue("The sheets were parsed one after the other", handler.concurrent);
+        }
+        Assert.assertFalse(handlers.get(0).thread == handlers.get(1).thread);
+    }
+
+    @Test
+    public void testHandlersAreReturnedInTheOrderOfTheSheets() throws Exception {
+        for (Workbook workbook : new Workbook[] { new HSSFWorkbook(), new XSSFWorkbook() }) {
+            List<RecordingHandler> handlers = ExcelEventReader.readSheets(workbook(workbook, 5),
+                new ExcelEventReader.SheetHandlerFactory<RecordingHandler>() {
+                    @Override
+                    public RecordingHandler newHandler(int sheetIndex, String sheetName) {
+                        // Skip the second sheet
+                        return sheetIndex == 1 ? null : new RecordingHandler(null);
+                    }
+                });
+            List<String> values = new ArrayList<String>();
+            for (RecordingHandler handler : handlers) {
+                values.add(handler.sheetName + "=" + handler.values);
+            }
+            Assert.assertEquals("[sheet0=[value0], sheet2=[value2], sheet3=[value3], sheet4=[value4]]",
+                values.toString());
+        }
+    }
+
+    private static ByteArrayInputStream workbook(Workbook workbook, int sheets) throws Exception {
+        for (int sheetIndex = 0; sheetIndex < sheets; sheetIndex++) {
+            Sheet sheet = workbook.createSheet("sheet" + sheetIndex);
+            sheet.createRow(0).createCell(0).setCellValue("value" + sheetIndex);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    /**
+     * Records the rows of a sheet, and the thread that parsed it
+     */
+    private static class RecordingHandler implements ExcelEventReader.RowHandler {
+
+        private final CountDownLatch started;
+
+        final List<Object> values = Collections.synchronizedList(new ArrayList<Object>());
+
+        String sheetName;
+
+        Thread thread;
+
+        boolean concurrent;
+
+        RecordingHandler(CountDownLatch started) {
+            this.started = started;
+        }
+
+        public boolean startSheet(int sheetIndex, String sheetName) {
+            this.sheetName = sheetName;
+            this.thread = Thread.currentThread();
+            if (started != null) {
+                // Wait until the other sheet is being parsed too
+                started.countDown();
+                try {
+                    concurrent = started.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return true;
+        }
+
+        public void row(int rowIndex, List<Object> cells) {
+            values.add(cells.get(0));
+        }
+
+        public void endSheet() {
+            // nothing to do
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.easetech.easytest.loader;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.easetech.easytest.util.ResourceLoader;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link FormulaEngine} evaluates the formulas of a workbook whose cached results are stale, unless it
+ * is asked to use the cached results, that it only evaluates each formula cell once, and that the
+ * {@link ExcelDataLoader} does the same in each of its modes.
+ */
+public class TestFormulaEngine {
+
+    /**
+     * The results of the formulas of this workbook were cached as -1 and "stale", whatever the values they refer to
+     */
+    private static final String STALE = "org/easetech/data/testFormulaData.xls";
+
+    @Test
+    public void testFormulasAreEvaluated() throws Exception {
+        FormulaEngine engine = new FormulaEngine(workbook(), false);
+        Row row = engine.getWorkbook().getSheetAt(0).getRow(2);
+        Assert.assertEquals(40.0, engine.evaluate(row.getCell(3)));
+        Assert.assertEquals("big", engine.evaluate(row.getCell(4)));
+    }
+
+    @Test
+    public void testEachFormulaIsEvaluatedOnce() throws Exception {
+        HSSFWorkbook workbook = workbook();
+        final FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+        final AtomicInteger evaluations = new AtomicInteger();
+        FormulaEvaluator counting = (FormulaEvaluator) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { FormulaEvaluator.class }, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("evaluate".equals(method.getName())) {
+                        evaluations.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(evaluator, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            });
+        FormulaEngine engine = new FormulaEngine(workbook, false, counting);
+        Row row = workbook.getSheetAt(0).getRow(2);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(40.0, engine.evaluate(row.getCell(3)));
+            Assert.assertEquals("big", engine.evaluate(row.getCell(4)));
+        }
+        Assert.assertEquals(2, evaluations.get());
+    }
+
+    @Test
+    public void testCachedResultsAreUsed() throws Exception {
+        FormulaEngine engine = new FormulaEngine(workbook(), true);
+        Row row = engine.getWorkbook().getSheetAt(0).getRow(2);
+        Assert.assertEquals(-1.0, engine.evaluate(row.getCell(3)));
+        Assert.assertEquals("stale", engine.evaluate(row.getCell(4)));
+    }
+
+    @Test
+    public void testLoaderEvaluatesTheFormulas() {
+        List<Map<String, Object>> rows = load(new ExcelDataLoader(false, false, false));
+        Assert.assertEquals(2, rows.size());
+        Assert.assertEquals("6.0", String.valueOf(rows.get(0).get("total")));
+        Assert.assertEquals("small", rows.get(0).get("label"));
+        Assert.assertEquals("40.0", String.valueOf(rows.get(1).get("total")));
+        Assert.assertEquals("big", rows.get(1).get("label"));
+    }
+
+    @Test
+    public void testLoaderUsesTheCachedResults() {
+        // The event API of POI never evaluates the formulas
+        for (boolean streaming : new boolean[] { false, true }) {
+            List<Map<String, Object>> rows = load(new ExcelDataLoader(streaming, true, false));
+            Assert.assertEquals(2, rows.size());
+            for (Map<String, Object> row : rows) {
+                Assert.assertEquals("-1.0", String.valueOf(row.get("total")));
+                Assert.assertEquals("stale", row.get("label"));
+            }
+        }
+    }
+
+    private static HSSFWorkbook workbook() throws Exception {
+        InputStream in = new ResourceLoader(STALE).getInputStream();
+        try {
+            return new HSSFWorkbook(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static List<Map<String, Object>> load(ExcelDataLoader loader) {
+        return loader.loadData(new String[] { STALE }).get("getFormulaData");
+    }
+
+}
@@ -0,0 +1,222 @@
+package org.easetech.easytest.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.util.ResourceLoader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link JSONDataLoader} loads and streams the rows of JSON documents and JSON Lines files, takes the
+ * rows of a method from the last file holding it, skips the malformed files, and writes the results back into the
+ * rows while keeping the rest of the file as it was written.
+ */
+public class TestJSONDataLoaderFiles {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The directory of the test resources, in which the files of the tests are written so that they can be found on
+     * the class path
+     */
+    private File directory;
+
+    private final List<File> files = new ArrayList<File>();
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new ResourceLoader("input-data.json").getFile().getParentFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testValuesAreKeptAsText() throws IOException {
+        String path = write("jsonValues.json", "{\"getValues\": [{\"text\": \"a\\\"b\\u00e9\\n\", \"negative\": -12,"
+            + " \"exponent\": -2.5E+3, \"flag\": true, \"nothing\": null,"
+            + " \"nested\": {\"list\": [1, {\"b\": \"c\"}], \"empty\": {}}}]}");
+        List<Map<String, Object>> rows = new JSONDataLoader().loadData(new String[] { path }).get("getValues");
+        Assert.assertEquals(1, rows.size());
+        Map<String, Object> row = rows.get(0);
+        Assert.assertEquals("a\"b\u00e9\n", row.get("text"));
+        Assert.assertEquals("-12", row.get("negative"));
+        Assert.assertEquals("-2.5E+3", row.get("exponent"));
+        Assert.assertEquals("true", row.get("flag"));
+        Assert.assertTrue(row.containsKey("nothing"));
+        Assert.assertNull(row.get("nothing"));
+        Map<String, Object> nested = new LinkedHashMap<String, Object>();
+        nested.put("list", Arrays.<Object> asList("1", singletonMap("b", "c")));
+        nested.put("empty", new LinkedHashMap<String, Object>());
+        Assert.assertEquals(nested, row.get("nested"));
+    }
+
+    @Test
+    public void testDocumentsAndJsonLinesAreMixed() throws IOException {
+        String path = write("jsonMixed.json", "{\n  \"getItems\": [\n    {\"id\": \"1\"},\n    {\"id\": \"2\"}\n  ],\n"
+            + "  \"getPictures\": {\"id\": \"p1\"}\n}\n{\"getItems\": {\"id\": \"3\"}}\n"
+            + "{\"getPictures\": {\"id\": \"p2\"}, \"getItems\": [{\"id\": \"4\"}]}\n");
+        Map<String, List<Map<String, Object>>> data = new JSONDataLoader().loadData(new String[] { path });
+        Assert.assertEquals(Arrays.asList("1", "2", "3", "4"), ids(data.get("getItems").iterator()));
+        Assert.assertEquals(Arrays.asList("p1", "p2"), ids(data.get("getPictures").iterator()));
+
+        Assert.assertEquals(Arrays.asList("1", "2", "3", "4"), ids(new JSONDataLoader().streamData(
+            new String[] { path }, "getItems")));
+        Assert.assertFalse(new JSONDataLoader().streamData(new String[] { path }, "getNothing").hasNext());
+    }
+
+    @Test
+    public void testLastFileHoldingTheMethodWins() throws IOException {
+        String first = write("jsonFirst.json", "{\"getItems\": [{\"id\": \"1\"}], \"getOther\": {\"id\": \"x\"}}");
+        String last = write("jsonLast.json", "{\"getItems\": []}");
+        String[] paths = new String[] { first, last };
+        Map<String, List<Map<String, Object>>> data = new JSONDataLoader().loadData(paths);
+        Assert.assertTrue(data.get("getItems").isEmpty());
+        Assert.assertEquals(Arrays.asList("x"), ids(data.get("getOther").iterator()));
+
+        Assert.assertFalse(new JSONDataLoader().streamData(paths, "getItems").hasNext());
+        Assert.assertEquals(Arrays.asList("x"), ids(new JSONDataLoader().streamData(paths, "getOther")));
+    }
+
+    @Test
+    public void testJsonLinesAreLoaded() throws IOException {
+        String path = write("jsonLines.jsonl", "{\"getItems\": {\"id\": \"1\", \"type\": \"book\"}}\n"
+            + "{\"getItems\": {\"id\": \"2\", \"type\": \"dvd\"}}\r\n" + "{\"getOther\": {\"id\": \"x\"}}\n"
+            + "{\"getItems\": {\"id\": \"3\"}}");
+        Map<String, List<Map<String, Object>>> data = new JSONDataLoader().loadData(new String[] { path });
+        Assert.assertEquals(Arrays.asList("1", "2", "3"), ids(data.get("getItems").iterator()));
+        Assert.assertEquals("dvd", data.get("getItems").get(1).get("type"));
+        Assert.assertFalse(data.get("getItems").get(2).containsKey("type"));
+        Assert.assertEquals(Arrays.asList("x"), ids(data.get("getOther").iterator()));
+    }
+
+    @Test
+    public void testMalformedFileIsSkipped() throws IOException {
+        String valid = write("jsonValid.json", "{\"getItems\": [{\"id\": \"1\"}], \"getValid\": {\"id\": \"v\"}}");
+        String malformed = write("jsonMalformed.json", "{\"getItems\": [{\"id\": \"2\"} {\"id\": \"3\"}]}");
+        Map<String, List<Map<String, Object>>> data = new JSONDataLoader().loadData(new String[] { valid, malformed });
+        Assert.assertEquals(Arrays.asList("1"), ids(data.get("getItems").iterator()));
+        Assert.assertEquals(Arrays.asList("v"), ids(data.get("getValid").iterator()));
+
+        // The results are not written into a malformed file
+        String text = read(malformed);
+        new JSONDataLoader().writeData(malformed, results("getItems", "r1", "r2"));
+        Assert.assertEquals(text, read(malformed));
+    }
+
+    @Test
+    public void testResultsAreWrittenIntoTheFormattedText() throws IOException {
+        String path = write("jsonResults.json", "{\n"
+            + "\t\"getItems\" : [\n"
+            + "\t\t{\n"
+            + "\t\t\t\"id\" : \"1\",\n"
+            + "\t\t\t\"ActualResult\" : \"old\",\n"
+            + "\t\t\t\"name\" : \"a \\u00e9\"\n"
+            + "\t\t},\n"
+            + "\t\t{ \"id\":\"2\",  \"nested\": { \"ActualResult\": [1, 2] } }\n"
+            + "\t],\n"
+            + "\t\"getOther\" : [ { \"id\" : \"x\" } ]\n"
+            + "}\n"
+            + "{\"getItems\": {\"id\": \"3\"}}\n");
+        new JSONDataLoader().writeData(path, results("getItems", "r1", "r2", null));
+        String written = "{\n"
+            + "\t\"getItems\" : [\n"
+            + "\t\t{\n"
+            + "\t\t\t\"id\" : \"1\",\n"
+            + "\t\t\t\"ActualResult\" : \"r1\",\n"
+            + "\t\t\t\"name\" : \"a \\u00e9\",\n"
+            + "\t\t\t\"TestStatus\": \"PASSED\"\n"
+            + "\t\t},\n"
+            + "\t\t{ \"id\":\"2\",  \"nested\": { \"ActualResult\": [1, 2] }, \"ActualResult\": \"r2\","
+            + " \"TestStatus\": \"PASSED\" }\n"
+            + "\t],\n"
+            + "\t\"getOther\" : [ { \"id\" : \"x\" } ]\n"
+            + "}\n"
+            + "{\"getItems\": {\"id\": \"3\"}}\n";
+        Assert.assertEquals(written, read(path));
+
+        // The results of a second run replace the ones of the first run
+        new JSONDataLoader().writeData(path, results("getItems", "new \"1\"", "new 2", "new 3"));
+        Assert.assertEquals(written.replace("\"r1\"", "\"new \\\"1\\\"\"").replace("\"r2\"", "\"new 2\"")
+            .replace("{\"id\": \"3\"}", "{\"id\": \"3\", \"ActualResult\": \"new 3\", \"TestStatus\": \"PASSED\"}"),
+            read(path));
+        List<Map<String, Object>> rows = new JSONDataLoader().loadData(new String[] { path }).get("getItems");
+        Assert.assertEquals("new \"1\"", rows.get(0).get(Loader.ACTUAL_RESULT));
+        Assert.assertEquals("new 2", rows.get(1).get(Loader.ACTUAL_RESULT));
+        Assert.assertEquals("new 3", rows.get(2).get(Loader.ACTUAL_RESULT));
+        Assert.assertEquals(singletonMap(Loader.ACTUAL_RESULT, Arrays.asList("1", "2")), rows.get(1).get("nested"));
+    }
+
+    @Test
+    public void testFileWithoutResultsIsNotWritten() throws IOException {
+        String path = write("jsonNoResults.json", "{\"getItems\": [ {\"id\": \"1\"} ]}");
+        File file = new File(directory, "jsonNoResults.json");
+        Assert.assertTrue(file.setLastModified(1000000000000L));
+        new JSONDataLoader().writeData(path, results("getItems", (String) null));
+        Map<String, List<Map<String, Object>>> noResults = new HashMap<String, List<Map<String, Object>>>();
+        noResults.put("getItems", new ArrayList<Map<String, Object>>(Arrays.asList(singletonMap("id", "1"))));
+        new JSONDataLoader().writeData(path, noResults);
+        Assert.assertEquals(1000000000000L, file.lastModified());
+    }
+
+    /**
+     * @param methodName the name of the method
+     * @param actualResults the actual result of each row, or null for a row without result
+     * @return the output data of the method, each result with a passed status
+     */
+    private static Map<String, List<Map<String, Object>>> results(String methodName, String... actualResults) {
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        for (String actualResult : actualResults) {
+            Map<String, Object> row = new HashMap<String, Object>();
+            if (actualResult != null) {
+                row.put(Loader.ACTUAL_RESULT, actualResult);
+                row.put(Loader.TEST_STATUS, Loader.TEST_PASSED);
+            }
+            rows.add(row);
+        }
+        Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+        data.put(methodName, rows);
+        return data;
+    }
+
+    private static List<String> ids(Iterator<Map<String, Object>> rows) {
+        List<String> ids = new ArrayList<String>();
+        while (rows.hasNext()) {
+            ids.add((String) rows.next().get("id"));
+        }
+        return ids;
+    }
+
+    private static Map<String, Object> singletonMap(String key, Object value) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put(key, value);
+        return map;
+    }
+
+    private String write(String name, String text) throws IOException {
+        File file = new File(directory, name);
+        Files.write(file.toPath(), text.getBytes(UTF_8));
+        files.add(file);
+        return name;
+    }
+
+    private String read(String name) throws IOException {
+        return new String(Files.readAllBytes(new File(directory, name).toPath()), UTF_8);
+    }
+
+}
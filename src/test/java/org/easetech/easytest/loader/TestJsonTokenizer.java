@@ -0,0 +1,192 @@
+package org.easetech.easytest.loader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link JsonTokenizer} decodes the strings and keeps the numbers as they are written, walks nested
+ * values and sequences of documents, reports malformed text with its line, and echoes the text it reads unchanged
+ * whatever its size.
+ */
+public class TestJsonTokenizer {
+
+    @Test
+    public void testEscapesAreDecoded() throws IOException {
+        JsonTokenizer tokenizer = tokenizer("[\"q\\\"b\\\\s\\/\", \"\\b\\f\\n\\r\\t\", \"\\u00e9\\u20AC\\u0041\"]");
+        Assert.assertEquals(JsonTokenizer.START_ARRAY, tokenizer.next());
+        Assert.assertEquals(JsonTokenizer.STRING, tokenizer.next());
+        Assert.assertEquals("q\"b\\s/", tokenizer.getText());
+        Assert.assertEquals(JsonTokenizer.STRING, tokenizer.next());
+        Assert.assertEquals("\b\f\n\r\t", tokenizer.getText());
+        Assert.assertEquals(JsonTokenizer.STRING, tokenizer.next());
+        Assert.assertEquals("\u00e9\u20acA", tokenizer.getText());
+        Assert.assertEquals(JsonTokenizer.END_ARRAY, tokenizer.next());
+        Assert.assertEquals(JsonTokenizer.END_DOCUMENT, tokenizer.next());
+    }
+
+    @Test
+    public void testNamesAreDecoded() throws IOException {
+        JsonTokenizer tokenizer = tokenizer("{\"na\\u006de\" : 1}");
+        Assert.assertEquals(JsonTokenizer.START_OBJECT, tokenizer.next());
+        Assert.assertEquals(JsonTokenizer.NAME, tokenizer.next());
+        Assert.assertEquals("name", tokenizer.getText());
+    }
+
+    @Test
+    public void testNumbersAreKeptAsWritten() throws IOException {
+        List<String> numbers = Arrays.asList("0", "-12", "3.25", "-0.5", "6.02e23", "1E-7", "-2.5E+3");
+        JsonTokenizer tokenizer = tokenizer(numbers.toString());
+        Assert.assertEquals(JsonTokenizer.START_ARRAY, tokenizer.next());
+        for (String number : numbers) {
+            Assert.assertEquals(JsonTokenizer.NUMBER, tokenizer.next());
+            Assert.assertEquals(number, tokenizer.getText());
+        }
+        Assert.assertEquals(JsonTokenizer.END_ARRAY, tokenizer.next());
+    }
+
+    @Test
+    public void testNestedValuesAreWalked() throws IOException {
+        String text = "{\"a\": {\"b\": [1, {\"c\": null}, []], \"d\": true}, \"e\": false}";
+        Assert.assertEquals(Arrays.asList("{", "a:", "{", "b:", "[", "1", "{", "c:", "null", "}", "[", "]", "]", "d:",
+            "true", "}", "e:", "false", "}"), tokens(text));
+    }
+
+    @Test
+    public void testValueIsSkippedWithItsContent() throws IOException {
+        JsonTokenizer tokenizer = tokenizer("{\"skipped\": {\"a\": [1, [2, {\"b\": 3}]]}, \"kept\": \"yes\"}");
+        Assert.assertEquals(JsonTokenizer.START_OBJECT, tokenizer.next());
+        Assert.assertEquals(JsonTokenizer.NAME, tokenizer.next());
+        tokenizer.skipValue(tokenizer.next());
+        Assert.assertEquals(JsonTokenizer.NAME, tokenizer.next());
+        Assert.assertEquals("kept", tokenizer.getText());
+        Assert.assertEquals(JsonTokenizer.STRING, tokenizer.next());
+        Assert.assertEquals("yes", tokenizer.getText());
+        Assert.assertEquals(JsonTokenizer.END_OBJECT, tokenizer.next());
+    }
+
+    @Test
+    public void testDocumentsAreRead() throws IOException {
+        // A JSON document followed by JSON Lines, as found in the same file
+        String text = "{\n  \"a\": [1]\n}\n{\"b\": 2}\r\n{\"c\": 3}\n\n";
+        Assert.assertEquals(Arrays.asList("{", "a:", "[", "1", "]", "}", "{", "b:", "2", "}", "{", "c:", "3", "}"),
+            tokens(text));
+    }
+
+    @Test
+    public void testMalformedTextIsReported() throws IOException {
+        assertMalformed("{\"a\": 1\n \"b\": 2}", "Expected ','", 2);
+        assertMalformed("{\"a\": 1,\n\n", "Unexpected end of the text", 3);
+        assertMalformed("[1, 2}", "Unexpected '}'", 1);
+        assertMalformed("{a: 1}", "Expected the name of a member", 1);
+        assertMalformed("{\"a\" 1}", "Expected ':'", 1);
+        assertMalformed("[\"unterminated\n\"]", "Unterminated string", 1);
+        assertMalformed("[\"\\x\"]", "Invalid escape sequence", 1);
+        assertMalformed("[\"\\u12g4\"]", "Invalid unicode escape sequence", 1);
+        assertMalformed("[tru]", "Unexpected value tru", 1);
+        assertMalformed("[1,]", "Unexpected ']'", 1);
+    }
+
+    @Test
+    public void testTooDeeplyNestedValuesAreReported() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            text.append('[');
+        }
+        assertMalformed(text.toString(), "nested more than", 1);
+    }
+
+    @Test
+    public void testTextIsEchoedUnchanged() throws IOException {
+        // Larger than the buffer, with a string larger than the buffer itself
+        StringBuilder text = new StringBuilder("{\"rows\" : [\n");
+        for (int i = 0; i < 2000; i++) {
+            text.append("\t{ \"id\": ").append(i).append(", \"name\" : \"row\\u0020").append(i).append("\" },\n");
+        }
+        text.append("\t{\"long\": \"");
+        for (int i = 0; i < 20000; i++) {
+            text.append((char) ('a' + i % 26));
+        }
+        text.append("\"}\n]}\n");
+        StringWriter echo = new StringWriter();
+        JsonTokenizer tokenizer = new JsonTokenizer(new StringReader(text.toString()), echo);
+        while (tokenizer.next() != JsonTokenizer.END_DOCUMENT) {
+            tokenizer.echoTo(tokenizer.tokenEnd());
+        }
+        tokenizer.echoTo(tokenizer.tokenEnd());
+        Assert.assertEquals(text.toString(), echo.toString());
+    }
+
+    @Test
+    public void testSkippedTextIsNotEchoed() throws IOException {
+        StringWriter echo = new StringWriter();
+        JsonTokenizer tokenizer = new JsonTokenizer(new StringReader("{\"a\": \"old\", \"b\": 1}"), echo);
+        tokenizer.next();
+        tokenizer.next();
+        tokenizer.echoTo(tokenizer.tokenEnd());
+        tokenizer.next();
+        tokenizer.echoTo(tokenizer.tokenStart());
+        echo.write("\"new\"");
+        tokenizer.skipTo(tokenizer.tokenEnd());
+        while (tokenizer.next() != JsonTokenizer.END_DOCUMENT) {
+            tokenizer.echoTo(tokenizer.tokenEnd());
+        }
+        Assert.assertEquals("{\"a\": \"new\", \"b\": 1}", echo.toString());
+    }
+
+    private static void assertMalformed(String text, String message, int line) throws IOException {
+        try {
+            tokens(text);
+            Assert.fail("The text is malformed : " + text);
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(message));
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("at line " + line + " "));
+        }
+    }
+
+    /**
+     * @param text the JSON text
+     * @return the tokens of the text, the names followed by a colon and the other tokens as they are written
+     * @throws IOException if the text is malformed
+     */
+    private static List<String> tokens(String text) throws IOException {
+        List<String> tokens = new ArrayList<String>();
+        JsonTokenizer tokenizer = tokenizer(text);
+        int token;
+        while ((token = tokenizer.next()) != JsonTokenizer.END_DOCUMENT) {
+            switch (token) {
+                case JsonTokenizer.START_OBJECT:
+                    tokens.add("{");
+                    break;
+                case JsonTokenizer.END_OBJECT:
+                    tokens.add("}");
+                    break;
+                case JsonTokenizer.START_ARRAY:
+                    tokens.add("[");
+                    break;
+                case JsonTokenizer.END_ARRAY:
+                    tokens.add("]");
+                    break;
+                case JsonTokenizer.NAME:
+                    tokens.add(tokenizer.getText() + ":");
+                    break;
+                case JsonTokenizer.NULL:
+                    tokens.add("null");
+                    break;
+                default:
+                    tokens.add(tokenizer.getText());
+            }
+        }
+        return tokens;
+    }
+
+    private static JsonTokenizer tokenizer(String text) {
+        return new JsonTokenizer(new StringReader(text));
+    }
+
+}
@@ -0,0 +1,252 @@
+package org.easetech.easytest.loader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link ResultSink} merges the results into the data file while the tests run, coalescing the
+ * rewrites, that it writes what is left when the last runner closes it, and that the results journaled by a run that
+ * crashed are written along with the ones of the next run.
+ */
+public class TestResultSink {
+
+    private static final String FILE_PATH = "results.csv";
+
+    private File journalDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        journalDirectory = Files.createTempDirectory("easytest-journal").toFile();
+        System.setProperty(ResultSink.JOURNAL_DIRECTORY_PROPERTY, journalDirectory.getPath());
+        // The data file is only written when the sink is closed, unless a test says otherwise
+        System.setProperty(ResultSink.MERGE_INTERVAL_PROPERTY, "-1");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(ResultSink.JOURNAL_DIRECTORY_PROPERTY);
+        System.clearProperty(ResultSink.MERGE_INTERVAL_PROPERTY);
+        for (File file : journalDirectory.listFiles()) {
+            file.delete();
+        }
+        journalDirectory.delete();
+    }
+
+    @Test
+    public void testDataIsWrittenOnceAllRunnersClosedTheSink() {
+        RecordingLoader loader = new RecordingLoader();
+        Map<String, List<Map<String, Object>>> firstData = data("getItems", 3);
+        Map<String, List<Map<String, Object>>> secondData = data("getItems", 3);
+        ResultSink first = ResultSink.open(loader, FILE_PATH, firstData);
+        ResultSink second = ResultSink.open(loader, FILE_PATH, secondData);
+        Assert.assertSame(first, second);
+
+        putResult(firstData, "getItems", 0, "first");
+        first.submit("getItems", 0, firstData.get("getItems").get(0));
+        first.close();
+        Assert.assertEquals(0, loader.written.size());
+
+        putResult(secondData, "getItems", 2, "second");
+        second.submit("getItems", 2, secondData.get("getItems").get(2));
+        second.close();
+
+        Assert.assertEquals(1, loader.written.size());
+        List<Map<String, Object>> rows = loader.written.get(0).get("getItems");
+        Assert.assertEquals(3, rows.size());
+        Assert.assertEquals("first", rows.get(0).get(Loader.ACTUAL_RESULT));
+        Assert.assertNull(rows.get(1).get(Loader.ACTUAL_RESULT));
+        Assert.assertEquals("row1", rows.get(1).get("input"));
+        // The rows without a result are shared with the runners instead of being copied
+        Assert.assertSame(firstData.get("getItems").get(1), loader.actualData.get("getItems").get(1));
+        Assert.assertEquals("second", rows.get(2).get(Loader.ACTUAL_RESULT));
+        Assert.assertFalse(ResultSink.journalFile(FILE_PATH).exists());
+    }
+
+    @Test
+    public void testResultsAreMergedWhileTheTestsRun() throws Exception {
+        System.setProperty(ResultSink.MERGE_INTERVAL_PROPERTY, "0");
+        RecordingLoader loader = new RecordingLoader();
+        Map<String, List<Map<String, Object>>> data = data("getItems", 2);
+        ResultSink sink = ResultSink.open(loader, FILE_PATH, data);
+        putResult(data, "getItems", 0, "merged");
+        sink.submit("getItems", 0, data.get("getItems").get(0));
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (loader.written.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, loader.written.size());
+        List<Map<String, Object>> rows = loader.written.get(0).get("getItems");
+        Assert.assertEquals(2, rows.size());
+        Assert.assertEquals("merged", rows.get(0).get(Loader.ACTUAL_RESULT));
+        Assert.assertEquals("row1", rows.get(1).get("input"));
+
+        // Nothing is left to write
+        sink.close();
+        Assert.assertEquals(1, loader.written.size());
+        Assert.assertFalse(ResultSink.journalFile(FILE_PATH).exists());
+    }
+
+    @Test
+    public void testRewritesAreCoalesced() throws Exception {
+        System.setProperty(ResultSink.MERGE_INTERVAL_PROPERTY, "0");
+        RecordingLoader loader = new RecordingLoader();
+        loader.entered = new CountDownLatch(1);
+        loader.release = new CountDownLatch(1);
+        Map<String, List<Map<String, Object>>> data = data("getItems", 10);
+        ResultSink sink = ResultSink.open(loader, FILE_PATH, data);
+        putResult(data, "getItems", 0, "result0");
+        sink.submit("getItems", 0, data.get("getItems").get(0));
+        Assert.assertTrue(loader.entered.await(10, TimeUnit.SECONDS));
+
+        // Submitted while the data file is written
+        for (int rowNum = 1; rowNum < 10; rowNum++) {
+            putResult(data, "getItems", rowNum, "result" + rowNum);
+            sink.submit("getItems", rowNum, data.get("getItems").get(rowNum));
+        }
+        loader.release.countDown();
+        sink.close();
+
+        Assert.assertEquals(2, loader.written.size());
+        Assert.assertEquals(2, sink.getWrites());
+        List<Map<String, Object>> rows = loader.written.get(1).get("getItems");
+        for (int rowNum = 0; rowNum < 10; rowNum++) {
+            Assert.assertEquals("result" + rowNum, rows.get(rowNum).get(Loader.ACTUAL_RESULT));
+        }
+    }
+
+    @Test
+    public void testJournalIsReplayedAfterACrash() throws Exception {
+        // A run that crashed after journaling a result, while writing the next one
+        ResultJournal journal = new ResultJournal(ResultSink.journalFile(FILE_PATH));
+        Map<String, Object> crashedRow = new LinkedHashMap<String, Object>();
+        crashedRow.put("input", "row0");
+        crashedRow.put(Loader.ACTUAL_RESULT, "crashed");
+        crashedRow.put(Loader.TEST_STATUS, Loader.TEST_PASSED);
+        journal.append("getItems", 0, crashedRow);
+        journal.close(false);
+        FileOutputStream partialRecord = new FileOutputStream(journal.getFile(), true);
+        try {
+            partialRecord.write(new byte[] { 0, 0, 1 });
+        } finally {
+            partialRecord.close();
+        }
+
+        RecordingLoader loader = new RecordingLoader();
+        Map<String, List<Map<String, Object>>> data = data("getItems", 2);
+        ResultSink sink = ResultSink.open(loader, FILE_PATH, data);
+        putResult(data, "getItems", 1, "rerun");
+        sink.submit("getItems", 1, data.get("getItems").get(1));
+        sink.close();
+
+        List<Map<String, Object>> rows = loader.written.get(0).get("getItems");
+        Assert.assertEquals("crashed", rows.get(0).get(Loader.ACTUAL_RESULT));
+        Assert.assertEquals(Loader.TEST_PASSED, rows.get(0).get(Loader.TEST_STATUS));
+        Assert.assertEquals("rerun", rows.get(1).get(Loader.ACTUAL_RESULT));
+        Assert.assertFalse(journal.getFile().exists());
+    }
+
+    @Test
+    public void testJournalIsKeptWhenTheDataCanNotBeWritten() throws Exception {
+        RecordingLoader failingLoader = new RecordingLoader();
+        failingLoader.fail = true;
+        Map<String, List<Map<String, Object>>> data = data("getItems", 1);
+        ResultSink sink = ResultSink.open(failingLoader, FILE_PATH, data);
+        putResult(data, "getItems", 0, "kept");
+        sink.submit("getItems", 0, data.get("getItems").get(0));
+        try {
+            sink.close();
+            Assert.fail("The failure to write the data file is expected to be rethrown");
+        } catch (AssertionError e) {
+            Assert.assertEquals("The file " + FILE_PATH + " can not be written", e.getMessage());
+        }
+        Assert.assertTrue(ResultSink.journalFile(FILE_PATH).exists());
+
+        // The next run did not run the row again
+        RecordingLoader loader = new RecordingLoader();
+        ResultSink.open(loader, FILE_PATH, data("getItems", 1)).close();
+        Assert.assertEquals("kept", loader.written.get(0).get("getItems").get(0).get(Loader.ACTUAL_RESULT));
+        Assert.assertFalse(ResultSink.journalFile(FILE_PATH).exists());
+    }
+
+    private static Map<String, List<Map<String, Object>>> data(String methodName, int rows) {
+        List<Map<String, Object>> methodData = new ArrayList<Map<String, Object>>();
+        for (int rowNum = 0; rowNum < rows; rowNum++) {
+            Map<String, Object> row = new HashMap<String, Object>();
+            row.put("input", "row" + rowNum);
+            methodData.add(row);
+        }
+        Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+        data.put(methodName, methodData);
+        return data;
+    }
+
+    /**
+     * Put a result into a copy of a row, which replaces the row, as the runners do
+     */
+    private static void putResult(Map<String, List<Map<String, Object>>> data, String methodName, int rowNum,
+        String result) {
+        Map<String, Object> row = new HashMap<String, Object>(data.get(methodName).get(rowNum));
+        row.put(Loader.ACTUAL_RESULT, result);
+        data.get(methodName).set(rowNum, row);
+    }
+
+    /**
+     * Records a copy of the data it is asked to write, and the data itself the last time, optionally waiting to be
+     * released the first time
+     */
+    private static class RecordingLoader implements Loader {
+
+        final List<Map<String, List<Map<String, Object>>>> written = new CopyOnWriteArrayList<Map<String, List<Map<String, Object>>>>();
+
+        volatile Map<String, List<Map<String, Object>>> actualData;
+
+        boolean fail;
+
+        CountDownLatch entered;
+
+        CountDownLatch release;
+
+        public Map<String, List<Map<String, Object>>> loadData(String[] filePaths) {
+            return new HashMap<String, List<Map<String, Object>>>();
+        }
+
+        public void writeData(String filePath, Map<String, List<Map<String, Object>>> actualData) {
+            if (fail) {
+                Assert.fail("The file " + filePath + " can not be written");
+            }
+            if (entered != null && written.isEmpty()) {
+                entered.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Map<String, List<Map<String, Object>>> copy = new HashMap<String, List<Map<String, Object>>>();
+            for (Map.Entry<String, List<Map<String, Object>>> method : actualData.entrySet()) {
+                List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+                for (Map<String, Object> row : method.getValue()) {
+                    rows.add(new HashMap<String, Object>(row));
+                }
+                copy.put(method.getKey(), rows);
+            }
+            written.add(copy);
+            this.actualData = actualData;
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.easetech.easytest.runner;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.easetech.easytest.annotation.DataLoader;
+import org.easetech.easytest.annotation.Param;
+import org.easetech.easytest.converter.ConverterManager;
+import org.easetech.easytest.example.Item;
+import org.easetech.easytest.example.ItemConverter;
+import org.easetech.easytest.loader.DataConverter;
+import org.easetech.easytest.util.DataContext;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+/**
+ * Checks that the system property {@value ParallelScheduler#THREADS_PROPERTY} runs the test methods of a class
+ * concurrently, each thread with an instance of the test class of its own, and with the test data and the converters
+ * of the thread of the runner.
+ */
+public class TestParallelScheduler {
+
+    @Test
+    public void testMethodsRunConcurrentlyWithAnInstancePerThread() {
+        System.setProperty(ParallelScheduler.THREADS_PROPERTY, "2");
+        Result result;
+        try {
+            result = JUnitCore.runClasses(ParallelMethods.class);
+        } finally {
+            System.clearProperty(ParallelScheduler.THREADS_PROPERTY);
+        }
+        Assert.assertTrue(result.getFailures().toString(), result.wasSuccessful());
+        Assert.assertEquals(6, result.getRunCount());
+        Assert.assertTrue("No two test methods ran at the same time", ParallelMethods.concurrent.get());
+        Set<Thread> threads = new HashSet<Thread>(ParallelMethods.owners.values());
+        Assert.assertEquals(2, threads.size());
+        Assert.assertFalse(threads.contains(Thread.currentThread()));
+        // Each thread of the scheduler got one instance of its own
+        Assert.assertEquals(threads.size(), ParallelMethods.owners.size());
+    }
+
+    @RunWith(DataDrivenTestRunner.class)
+    @DataLoader(filePaths = { "getItemsData.csv" })
+    public static class ParallelMethods {
+
+        /**
+         * The thread that runs the test methods with each instance of the test class
+         */
+        static final ConcurrentMap<Object, Thread> owners = new ConcurrentHashMap<Object, Thread>();
+
+        /**
+         * Released once two test methods are running at the same time
+         */
+        static final CountDownLatch running = new CountDownLatch(2);
+
+        static final AtomicBoolean concurrent = new AtomicBoolean();
+
+        @BeforeClass
+        public static void setUp() {
+            ConverterManager.registerConverter(ItemConverter.class);
+        }
+
+        @Test
+        public void testGetItems(@Param(name = "itemType") String itemType) throws InterruptedException {
+            checkThread("testGetItems");
+            Assert.assertNotNull(itemType);
+        }
+
+        @Test
+        public void testGetItemsWithoutFileType(@Param(name = "searchText") String searchText)
+            throws InterruptedException {
+            checkThread("testGetItemsWithoutFileType");
+            Assert.assertNotNull(searchText);
+        }
+
+        @Test
+        public void testConverter(@Param() Item item) throws InterruptedException {
+            checkThread("testConverter");
+            Assert.assertNotNull(item.getItemId());
+        }
+
+        private void checkThread(String methodName) throws InterruptedException {
+            Thread owner = owners.putIfAbsent(this, Thread.currentThread());
+            Assert.assertTrue("The instance is shared with " + owner, owner == null || owner == Thread.currentThread());
+            // The test data and the name of the test method of the thread of the runner
+            String testName = DataConverter.getFullyQualifiedTestName(methodName, ParallelMethods.class);
+            Assert.assertTrue(DataContext.getData().containsKey(testName));
+            Assert.assertTrue(DataContext.getMethodName(), DataContext.getMethodName().startsWith(testName));
+            running.countDown();
+            if (running.await(10, TimeUnit.SECONDS)) {
+                concurrent.set(true);
+            }
+        }
+    }
+
+}
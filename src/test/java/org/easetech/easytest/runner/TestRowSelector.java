@@ -0,0 +1,200 @@
+package org.easetech.easytest.runner;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import org.easetech.easytest.loader.Loader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the shards of the {@link RowSelector} never overlap and together cover all the rows, that a sample keeps
+ * about the requested fraction of the rows and depends on its seed, and that the hash by which a row is selected only
+ * depends on the values of the row, and not on the time zone nor on the identity of the values.
+ */
+public class TestRowSelector {
+
+    private TimeZone defaultTimeZone;
+
+    @Before
+    public void setUp() {
+        defaultTimeZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+        System.clearProperty(RowSelector.SHARD_PROPERTY);
+        System.clearProperty(RowSelector.SAMPLE_PROPERTY);
+        System.clearProperty(RowSelector.SEED_PROPERTY);
+    }
+
+    @Test
+    public void testShardsAreDisjointAndCoverAllRows() {
+        List<Map<String, Object>> rows = rows(1000);
+        int shardCount = 5;
+        Set<Integer> selected = new HashSet<Integer>();
+        for (int shard = 1; shard <= shardCount; shard++) {
+            System.setProperty(RowSelector.SHARD_PROPERTY, shard + "/" + shardCount);
+            RowSelector selector = RowSelector.fromSystemProperties();
+            Assert.assertTrue(selector.isPartial());
+            int shardSize = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                if (selector.isSelected("testShards", rows.get(i))) {
+                    Assert.assertTrue("The row " + i + " belongs to two shards", selected.add(i));
+                    shardSize++;
+                }
+            }
+            // 200 rows are expected in each shard
+            Assert.assertTrue("Unbalanced shard of " + shardSize + " rows", shardSize > 150 && shardSize < 250);
+        }
+        Assert.assertEquals(rows.size(), selected.size());
+    }
+
+    @Test
+    public void testSelectKeepsTheSelectedRowsInOrder() {
+        Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+        data.put("testSelect", rows(100));
+        data.put("testOther", rows(100));
+        RowSelector selector = new RowSelector(1, 3, 1.0, 0);
+        Map<String, List<Map<String, Object>>> selected = selector.select(data);
+        Assert.assertEquals(data.keySet(), selected.keySet());
+        for (Map.Entry<String, List<Map<String, Object>>> methodData : data.entrySet()) {
+            List<Map<String, Object>> expected = new ArrayList<Map<String, Object>>();
+            for (Map<String, Object> row : methodData.getValue()) {
+                if (selector.isSelected(methodData.getKey(), row)) {
+                    expected.add(row);
+                }
+            }
+            Assert.assertEquals(expected, selected.get(methodData.getKey()));
+        }
+        // The rows of each method are spread over the shards independently
+        Assert.assertFalse(selected.get("testSelect").equals(selected.get("testOther")));
+    }
+
+    @Test
+    public void testAllRowsAreSelectedByDefault() {
+        RowSelector selector = RowSelector.fromSystemProperties();
+        Assert.assertFalse(selector.isPartial());
+        Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+        data.put("testAll", rows(10));
+        Assert.assertSame(data, selector.select(data));
+    }
+
+    @Test
+    public void testSampleKeepsTheRequestedFraction() {
+        List<Map<String, Object>> rows = rows(10000);
+        System.setProperty(RowSelector.SAMPLE_PROPERTY, "10");
+        Set<Integer> sample = sample(RowSelector.fromSystemProperties(), rows);
+        // 1000 rows are expected, with a standard deviation of 30
+        Assert.assertTrue("Sample of " + sample.size() + " rows", sample.size() > 880 && sample.size() < 1120);
+        Assert.assertEquals(sample, sample(RowSelector.fromSystemProperties(), rows));
+
+        System.setProperty(RowSelector.SEED_PROPERTY, "42");
+        Set<Integer> otherSample = sample(RowSelector.fromSystemProperties(), rows);
+        Assert.assertTrue("Sample of " + otherSample.size() + " rows", otherSample.size() > 880
+            && otherSample.size() < 1120);
+        Assert.assertFalse(sample.equals(otherSample));
+        otherSample.retainAll(sample);
+        // Two independent samples share about 100 rows
+        Assert.assertTrue(otherSample.size() + " rows in both samples", otherSample.size() < 200);
+    }
+
+    @Test
+    public void testSampleIsTakenWithinTheShard() {
+        List<Map<String, Object>> rows = rows(10000);
+        Set<Integer> shard = sample(new RowSelector(0, 2, 1.0, 0), rows);
+        Set<Integer> sample = sample(new RowSelector(0, 2, 0.5, 0), rows);
+        Assert.assertTrue(shard.containsAll(sample));
+        // 2500 rows are expected, with a standard deviation of 35
+        Assert.assertTrue("Sample of " + sample.size() + " rows", sample.size() > 2350 && sample.size() < 2650);
+    }
+
+    @Test
+    public void testInvalidPropertiesAreReported() {
+        for (String shard : new String[] { "0/3", "4/3", "3", "a/b", "1/0" }) {
+            System.setProperty(RowSelector.SHARD_PROPERTY, shard);
+            try {
+                RowSelector.fromSystemProperties();
+                Assert.fail("The shard " + shard + " is invalid");
+            } catch (AssertionError e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains(shard));
+            }
+        }
+        System.clearProperty(RowSelector.SHARD_PROPERTY);
+        for (String sample : new String[] { "-1", "101", "ten" }) {
+            System.setProperty(RowSelector.SAMPLE_PROPERTY, sample);
+            try {
+                RowSelector.fromSystemProperties();
+                Assert.fail("The sample " + sample + " is invalid");
+            } catch (AssertionError e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains(sample));
+            }
+        }
+    }
+
+    @Test
+    public void testDatesAreHashedWhateverTheTimeZone() {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("date", new Date(1234567890123L));
+        row.put("timestamp", new Timestamp(1234567890123L));
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        long hash = RowSelector.hash("testDates", row);
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+        Assert.assertEquals(hash, RowSelector.hash("testDates", row));
+    }
+
+    @Test
+    public void testArraysAreHashedByTheirElements() {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("bytes", new byte[] { 1, 2, 3 });
+        row.put("names", new String[] { "a", "b" });
+        Map<String, Object> sameRow = new HashMap<String, Object>();
+        sameRow.put("bytes", new byte[] { 1, 2, 3 });
+        sameRow.put("names", new String[] { "a", "b" });
+        Assert.assertEquals(RowSelector.hash("testArrays", row), RowSelector.hash("testArrays", sameRow));
+
+        sameRow.put("bytes", new byte[] { 1, 2, 4 });
+        Assert.assertFalse(RowSelector.hash("testArrays", row) == RowSelector.hash("testArrays", sameRow));
+    }
+
+    @Test
+    public void testOutputDataIsNotHashed() {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("value", 42);
+        long hash = RowSelector.hash("testOutput", row);
+        row.put(Loader.ACTUAL_RESULT, new Object());
+        row.put(Loader.TEST_STATUS, Loader.TEST_PASSED);
+        Assert.assertEquals(hash, RowSelector.hash("testOutput", row));
+    }
+
+    private static Set<Integer> sample(RowSelector selector, List<Map<String, Object>> rows) {
+        Set<Integer> result = new HashSet<Integer>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (selector.isSelected("testSample", rows.get(i))) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
+    private static List<Map<String, Object>> rows(int count) {
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new HashMap<String, Object>();
+            row.put("id", String.valueOf(i));
+            row.put("name", "row" + i);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.easetech.easytest.runner;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.annotation.DataLoader;
+import org.easetech.easytest.annotation.Param;
+import org.easetech.easytest.loader.CSVDataLoader;
+import org.easetech.easytest.loader.Loader;
+import org.easetech.easytest.util.ResourceLoader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+/**
+ * Checks that the output data of the rows run by a shard is written into the right rows of the data file, although
+ * the rows of the other shards are skipped, whether the data is loaded for the whole class or streamed for a method.
+ */
+public class TestShardedResults {
+
+    private static final String FILE_PATH = "shardedResultsData.csv";
+
+    private File file;
+
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new ResourceLoader(FILE_PATH).getFile();
+        content = Files.readAllBytes(file.toPath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(RowSelector.SHARD_PROPERTY);
+        Files.write(file.toPath(), content);
+    }
+
+    @Test
+    public void testResultsAreWrittenIntoTheRowsOfTheShard() {
+        run("1/2");
+        RowSelector firstShard = new RowSelector(0, 2, 1.0, 0);
+        for (String methodName : new String[] { "getClassLevelResult", "getStreamedResult" }) {
+            List<Map<String, Object>> rows = load().get(methodName);
+            Assert.assertEquals(20, rows.size());
+            int selected = 0;
+            for (Map<String, Object> row : rows) {
+                Object actualResult = row.get(Loader.ACTUAL_RESULT);
+                if (firstShard.isSelected(methodName, row)) {
+                    Assert.assertEquals(row.get("id"), actualResult);
+                    selected++;
+                } else {
+                    Assert.assertTrue(row + " is not in the shard", actualResult == null
+                        || "".equals(actualResult));
+                }
+            }
+            Assert.assertTrue(selected + " rows in the shard", selected > 0 && selected < rows.size());
+        }
+
+        run("2/2");
+        for (String methodName : new String[] { "getClassLevelResult", "getStreamedResult" }) {
+            for (Map<String, Object> row : load().get(methodName)) {
+                Assert.assertEquals(row.get("id"), row.get(Loader.ACTUAL_RESULT));
+            }
+        }
+    }
+
+    private static void run(String shard) {
+        System.setProperty(RowSelector.SHARD_PROPERTY, shard);
+        Result result = JUnitCore.runClasses(ClassLevelData.class, StreamedData.class);
+        Assert.assertTrue(result.getFailures().toString(), result.wasSuccessful());
+        Assert.assertTrue(result.getRunCount() > 0 && result.getRunCount() < 40);
+    }
+
+    private static Map<String, List<Map<String, Object>>> load() {
+        return new CSVDataLoader().loadData(new String[] { FILE_PATH });
+    }
+
+    @RunWith(DataDrivenTestRunner.class)
+    @DataLoader(filePaths = { FILE_PATH })
+    public static class ClassLevelData {
+
+        @Test
+        public String getClassLevelResult(@Param(name = "id") String id) {
+            return id;
+        }
+    }
+
+    @RunWith(DataDrivenTestRunner.class)
+    public static class StreamedData {
+
+        @Test
+        @DataLoader(filePaths = { FILE_PATH })
+        public String getStreamedResult(@Param(name = "id") String id) {
+            return id;
+        }
+    }
+
+}
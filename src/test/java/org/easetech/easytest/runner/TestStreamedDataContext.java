@@ -0,0 +1,58 @@
+package org.easetech.easytest.runner;
+
+import org.easetech.easytest.annotation.DataLoader;
+import org.easetech.easytest.annotation.Param;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+/**
+ * Checks that the data of the streamed methods is put into the {@link org.easetech.easytest.util.DataContext} of the
+ * thread in a way that lets the next methods, and the next test classes run on the same thread, put theirs.
+ */
+public class TestStreamedDataContext {
+
+    @Test
+    public void testStreamedMethodsAndNextClassShareTheThread() throws Exception {
+        final Result[] result = new Result[1];
+        // A new thread, so that the data context starts empty
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                result[0] = JUnitCore.runClasses(StreamedMethods.class, ClassLevelData.class);
+            }
+        });
+        thread.start();
+        thread.join();
+        Assert.assertTrue(result[0].getFailures().toString(), result[0].wasSuccessful());
+        Assert.assertEquals(6, result[0].getRunCount());
+    }
+
+    @RunWith(DataDrivenTestRunner.class)
+    public static class StreamedMethods {
+
+        @Test
+        @DataLoader(filePaths = { "getItemsData.csv" })
+        public void testGetItems(@Param(name = "LibraryId") String libraryId) {
+            Assert.assertNotNull(libraryId);
+        }
+
+        @Test
+        @DataLoader(filePaths = { "getItemsData.csv" })
+        public void testGetItemsWithoutFileType(@Param(name = "itemType") String itemType) {
+            Assert.assertNotNull(itemType);
+        }
+    }
+
+    @RunWith(DataDrivenTestRunner.class)
+    @DataLoader(filePaths = { "getItemsData.csv" })
+    public static class ClassLevelData {
+
+        @Test
+        public void testGetItemsWithCustomLoader(@Param(name = "searchText") String searchText) {
+            Assert.assertNotNull(searchText);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.easetech.easytest.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.rules.ExternalResource;
+
+/**
+ * A rule that creates temporary files at the root of the test class path, where the loaders can find them by their
+ * name, and deletes them once the test is over. Unlike a {@link org.junit.rules.TemporaryFolder}, the files are not
+ * put in a folder of their own, as a folder outside of the class path could not be loaded from.
+ */
+public class ClassPathTemporaryFolder extends ExternalResource {
+
+    /**
+     * A resource known to be at the root of the test class path
+     */
+    private static final String ROOT_RESOURCE = "getItemsData.csv";
+
+    /**
+     * The root of the test class path
+     */
+    private File root;
+
+    /**
+     * The files created so far
+     */
+    private final List<File> files = new ArrayList<File>();
+
+    @Override
+    protected void before() throws IOException {
+        root = new ResourceLoader(ROOT_RESOURCE).getFile().getParentFile();
+    }
+
+    @Override
+    protected void after() {
+        for (File file : files) {
+            file.delete();
+        }
+        files.clear();
+    }
+
+    /**
+     * @return the root of the test class path, in which the files are created
+     */
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Create a new empty file at the root of the test class path, that is deleted once the test is over
+     *
+     * @param prefix the prefix of the name of the file
+     * @param suffix the suffix of the name of the file, for eg. its extension
+     * @return the file, whose name is also the path to load it from
+     * @throws IOException if the file can not be created
+     */
+    public File newFile(String prefix, String suffix) throws IOException {
+        File file = File.createTempFile(prefix, suffix, root);
+        files.add(file);
+        return file;
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.easetech.easytest.util;
+
+import java.beans.PropertyEditor;
+import java.beans.PropertyEditorManager;
+import java.beans.PropertyEditorSupport;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that a {@link ContextSnapshot} registers its editors for the thread group of the thread it is attached to, as
+ * the {@link PropertyEditorManager} keeps the editors by thread group and virtual threads have a thread group of their
+ * own.
+ */
+public class TestContextSnapshot {
+
+    @After
+    public void tearDown() {
+        PropertyEditorManager.registerEditor(Code.class, null);
+    }
+
+    @Test
+    public void testEditorsAreRegisteredForTheThreadGroupOfTheThread() throws InterruptedException {
+        PropertyEditorManager.registerEditor(Code.class, CodeTextEditor.class);
+        final ContextSnapshot context = ContextSnapshot.capture().withEditorsOf(Code.class, String.class);
+        final PropertyEditor[] editors = new PropertyEditor[2];
+        Thread thread = new Thread(new ThreadGroup("rows"), new Runnable() {
+            public void run() {
+                editors[0] = PropertyEditorManager.findEditor(Code.class);
+                ContextSnapshot previous = context.attach("testCode");
+                try {
+                    editors[1] = PropertyEditorManager.findEditor(Code.class);
+                } finally {
+                    previous.restore();
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        Assert.assertNull("The editors are expected to be kept by thread group", editors[0]);
+        Assert.assertTrue(String.valueOf(editors[1]), editors[1] instanceof CodeTextEditor);
+    }
+
+    /**
+     * A type whose editor is only found once registered, as the name of its editor does not follow the naming
+     * convention of the {@link PropertyEditorManager}
+     */
+    public static class Code {
+
+        final String value;
+
+        public Code(String value) {
+            this.value = value;
+        }
+    }
+
+    public static class CodeTextEditor extends PropertyEditorSupport {
+
+        @Override
+        public void setAsText(String text) {
+            setValue(new Code(text));
+        }
+    }
+
+}
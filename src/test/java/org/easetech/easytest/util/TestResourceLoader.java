@@ -0,0 +1,302 @@
+package org.easetech.easytest.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.easetech.easytest.loader.CSVDataLoader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link ResourceLoader} expands the glob patterns and the zip archives, decompresses the gzip files
+ * and the zip entries as they are read, and only lets the test data be written back to a plain file. Also checks that
+ * the files are located on the classpath even when their path has spaces or they are within a jar.
+ */
+public class TestResourceLoader {
+
+    private static final String DIRECTORY = "resourceLoaderTest";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new File(new ResourceLoader("getItemsData.csv").getFile().getParentFile(), DIRECTORY);
+        Assert.assertTrue(directory.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Test
+    public void testGlobMatchesSeveralFilesInOrder() throws Exception {
+        write("b.csv", csv("second"));
+        write("a.csv", csv("first"));
+        write("c.txt", csv("ignored"));
+
+        List<String> paths = ResourceLoader.resolvePaths(DIRECTORY + "/*.csv");
+        Assert.assertEquals(Arrays.asList(DIRECTORY + "/a.csv", DIRECTORY + "/b.csv"), paths);
+        Assert.assertEquals(DIRECTORY + "/a.csv", ResourceLoader.writablePath(DIRECTORY + "/*.csv"));
+        Assert.assertTrue(ResourceLoader.resolvePaths(DIRECTORY + "/*.xml").isEmpty());
+        Assert.assertNull(ResourceLoader.writablePath(DIRECTORY + "/*.xml"));
+    }
+
+    @Test
+    public void testGzipFileIsDecompressed() throws Exception {
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(new File(directory, "items.csv.gz")));
+        try {
+            out.write(csv("gzipped").getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+        String filePath = DIRECTORY + "/items.csv.gz";
+
+        Assert.assertEquals(csv("gzipped"), read(filePath));
+        Assert.assertEquals("gzipped", load(filePath).get("getItems").get(0).get("searchText"));
+        Assert.assertTrue(new ResourceLoader(filePath).isCompressed());
+        Assert.assertNull(ResourceLoader.writablePath(filePath));
+        try {
+            new ResourceLoader(filePath).getFile();
+            Assert.fail("A gzip file can be written");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testZipEntriesAreExpandedAndDecompressed() throws Exception {
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(new File(directory, "fixtures.zip")));
+        try {
+            out.putNextEntry(new ZipEntry("library/"));
+            out.putNextEntry(new ZipEntry("library/items.csv"));
+            out.write(csv("zipped").getBytes(UTF8));
+            out.putNextEntry(new ZipEntry("library/readme.txt"));
+            out.write("not test data".getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+        String archivePath = DIRECTORY + "/fixtures.zip";
+        String entryPath = archivePath + ResourceLoader.ARCHIVE_SEPARATOR + "library/items.csv";
+
+        Assert.assertEquals(Arrays.asList(entryPath, archivePath + "!/library/readme.txt"),
+            ResourceLoader.resolvePaths(archivePath));
+        Assert.assertEquals(Arrays.asList(entryPath), ResourceLoader.resolvePaths(archivePath + "!/**/*.csv"));
+        Assert.assertEquals(csv("zipped"), read(entryPath));
+        Assert.assertEquals("zipped", load(entryPath).get("getItems").get(0).get("searchText"));
+        Assert.assertTrue(new ResourceLoader(entryPath).isCompressed());
+        Assert.assertNull(ResourceLoader.writablePath(archivePath + "!/**/*.csv"));
+        try {
+            new ResourceLoader(archivePath + "!/library/missing.csv").getInputStream().close();
+            Assert.fail("A missing entry can be read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCompressedFilesAreLoadedInEveryMode() throws Exception {
+        OutputStream gzip = new GZIPOutputStream(new FileOutputStream(new File(directory, "items.csv.gz")));
+        try {
+            gzip.write(csv("gzipped").getBytes(UTF8));
+        } finally {
+            gzip.close();
+        }
+        zip("fixtures.zip", "items.csv", csv("zipped"));
+        File archive = new File(directory, "fixtures.zip");
+        String entryPath = DIRECTORY + "/fixtures.zip!/items.csv";
+
+        // A glob matching an archive expands it into its entries
+        Assert.assertEquals(Arrays.asList(entryPath), ResourceLoader.resolvePaths(DIRECTORY + "/*.zip"));
+        Map<String, List<Map<String, Object>>> mapped = new CSVDataLoader(true, UTF8).loadData(new String[] {
+            DIRECTORY + "/items.csv.gz" });
+        Assert.assertEquals(load(DIRECTORY + "/items.csv.gz"), mapped);
+        Assert.assertEquals(load(entryPath), new CSVDataLoader(true, UTF8).loadData(new String[] { entryPath }));
+
+        // An entry reports the values of its archive, so that a change of the archive is noticed
+        ResourceLoader entry = new ResourceLoader(entryPath);
+        Assert.assertEquals(archive.length(), entry.length());
+        Assert.assertEquals(archive.lastModified(), entry.lastModified());
+    }
+
+    @Test
+    public void testArchiveInAJarIsScanned() throws Exception {
+        File archive = zip("fixtures.zip", "library/items.csv", csv("nested"));
+        File jar = new File(directory, "archives.jar");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry("jarData/fixtures.zip"));
+            out.write(Files.readAllBytes(archive.toPath()));
+        } finally {
+            out.close();
+        }
+        URLClassLoader classLoader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            String entryPath = "jarData/fixtures.zip!/library/items.csv";
+            Assert.assertEquals(Arrays.asList(entryPath), ResourceLoader.resolvePaths("jarData/fixtures.zip"));
+            Assert.assertEquals(csv("nested"), read(entryPath));
+            Assert.assertNull(ResourceLoader.writablePath("jarData/fixtures.zip"));
+        } finally {
+            thread.setContextClassLoader(previous);
+            classLoader.close();
+        }
+    }
+
+    @Test
+    public void testFileIsReplacedOnWriteBack() throws Exception {
+        write("items.csv", csv("original"));
+        String filePath = DIRECTORY + "/items.csv";
+        Assert.assertEquals("original", load(filePath).get("getItems").get(0).get("searchText"));
+
+        ResourceLoader resource = new ResourceLoader(ResourceLoader.writablePath(filePath));
+        File tempFile = File.createTempFile("items", ".tmp", directory);
+        write(tempFile.getName(), csv("replaced"));
+        resource.replaceWith(tempFile);
+
+        Assert.assertFalse(tempFile.exists());
+        Assert.assertEquals(csv("replaced"), read(filePath));
+        Assert.assertEquals(csv("replaced").length(), resource.length());
+    }
+
+    @Test
+    public void testPathWithSpacesIsReadAsAFile() throws Exception {
+        File subDirectory = new File(directory, "with space");
+        Assert.assertTrue(subDirectory.mkdir());
+        write("with space/items.csv", csv("spaced"));
+        String filePath = DIRECTORY + "/with space/items.csv";
+
+        ResourceLoader resource = new ResourceLoader(filePath);
+        Assert.assertEquals(new File(subDirectory, "items.csv"), resource.getFile());
+        Assert.assertEquals(csv("spaced").length(), resource.length());
+        Assert.assertEquals(csv("spaced"), read(filePath));
+        Assert.assertEquals("spaced", load(filePath).get("getItems").get(0).get("searchText"));
+    }
+
+    @Test
+    public void testResourceInAJarIsReadThroughItsUrl() throws Exception {
+        File jar = new File(directory, "fixtures.jar");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry("jarData/items.csv"));
+            out.write(csv("jarred").getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+        URLClassLoader classLoader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+        try {
+            ResourceLoader resource = new ResourceLoader("jarData/items.csv", classLoader);
+            InputStream in = resource.getInputStream();
+            try {
+                Assert.assertEquals('g', in.read());
+            } finally {
+                in.close();
+            }
+            Assert.assertFalse(resource.isFile());
+            try {
+                resource.getFileChannel().close();
+                Assert.fail("A resource within a jar can be read through a channel");
+            } catch (IOException e) {
+                // expected
+            }
+            try {
+                resource.getFile();
+                Assert.fail("A resource within a jar can be written");
+            } catch (IOException e) {
+                // expected
+            }
+        } finally {
+            classLoader.close();
+        }
+    }
+
+    @Test
+    public void testDeletedFileIsLocatedAgain() throws Exception {
+        write("items.csv", csv("original"));
+        String filePath = DIRECTORY + "/items.csv";
+        Assert.assertEquals(csv("original"), read(filePath));
+
+        Assert.assertTrue(new File(directory, "items.csv").delete());
+        try {
+            read(filePath);
+            Assert.fail("A deleted file can be read");
+        } catch (FileNotFoundException e) {
+            // expected
+        }
+        write("items.csv", csv("recreated"));
+        Assert.assertEquals(csv("recreated"), read(filePath));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static String csv(String searchText) {
+        return "getItems,LibraryId,itemType,searchText\n,1,book," + searchText + "\n";
+    }
+
+    private File zip(String name, String entryName, String content) throws IOException {
+        File archive = new File(directory, name);
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive));
+        try {
+            out.putNextEntry(new ZipEntry(entryName));
+            out.write(content.getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+        return archive;
+    }
+
+    private void write(String name, String content) throws IOException {
+        OutputStream out = new FileOutputStream(new File(directory, name));
+        try {
+            out.write(content.getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String read(String filePath) throws IOException {
+        InputStream in = new ResourceLoader(filePath).getInputStream();
+        try {
+            StringBuilder content = new StringBuilder();
+            byte[] buffer = new byte[1024];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                content.append(new String(buffer, 0, read, UTF8));
+            }
+            return content.toString();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Map<String, List<Map<String, Object>>> load(String filePath) {
+        return new CSVDataLoader(false, UTF8).loadData(new String[] { filePath });
+    }
+
+}
@@ -0,0 +1,141 @@
+package org.easetech.easytest.util;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.easetech.easytest.loader.Loader;
+import org.easetech.easytest.loader.ResultSink;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+/**
+ * Checks that the test data is written when an AfterClass method fails, whether it is written by the
+ * {@link RunAftersWithOutputData} itself or by a {@link ResultSink}, and that the failure is still reported, as is a
+ * failure to write the test data.
+ */
+public class TestRunAftersWithOutputData {
+
+    private static final String FILE_PATH = "afterClassResults.csv";
+
+    private File journalDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        journalDirectory = Files.createTempDirectory("easytest-journal").toFile();
+        System.setProperty(ResultSink.JOURNAL_DIRECTORY_PROPERTY, journalDirectory.getPath());
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(ResultSink.JOURNAL_DIRECTORY_PROPERTY);
+        for (File file : journalDirectory.listFiles()) {
+            file.delete();
+        }
+        journalDirectory.delete();
+    }
+
+    @Test
+    public void testDataIsWrittenWhenAnAfterClassMethodFails() throws Throwable {
+        RecordingLoader loader = new RecordingLoader();
+        Statement statement = new RunAftersWithOutputData(noTests(), failingAfters(), null, loader,
+            new String[] { FILE_PATH }, data());
+        assertAfterClassFailure(statement);
+        Assert.assertEquals(1, loader.written.size());
+    }
+
+    @Test
+    public void testSinkWritesTheDataWhenAnAfterClassMethodFails() throws Throwable {
+        RecordingLoader loader = new RecordingLoader();
+        Map<String, List<Map<String, Object>>> data = data();
+        ResultSink sink = ResultSink.open(loader, FILE_PATH, data);
+        sink.submit("getItems", 0, data.get("getItems").get(0));
+        Statement statement = new RunAftersWithOutputData(noTests(), failingAfters(), null, sink);
+        assertAfterClassFailure(statement);
+        Assert.assertEquals(1, loader.written.size());
+    }
+
+    @Test
+    public void testFailureOfTheSinkIsReported() throws Throwable {
+        RecordingLoader loader = new RecordingLoader();
+        loader.fail = true;
+        Map<String, List<Map<String, Object>>> data = data();
+        ResultSink sink = ResultSink.open(loader, FILE_PATH, data);
+        sink.submit("getItems", 0, data.get("getItems").get(0));
+        Statement statement = new RunAftersWithOutputData(noTests(), Collections.<FrameworkMethod> emptyList(), null,
+            sink);
+        try {
+            statement.evaluate();
+            Assert.fail("The failure to write the test data is expected to be reported");
+        } catch (AssertionError e) {
+            Assert.assertEquals("The file " + FILE_PATH + " can not be written", e.getMessage());
+        }
+    }
+
+    public static void failingAfterClass() {
+        throw new IllegalStateException("AfterClass failed");
+    }
+
+    private static void assertAfterClassFailure(Statement statement) throws Throwable {
+        try {
+            statement.evaluate();
+            Assert.fail("The failure of the AfterClass method is expected to be reported");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("AfterClass failed", e.getMessage());
+        }
+    }
+
+    private static Statement noTests() {
+        return new Statement() {
+            @Override
+            public void evaluate() {
+                // no test method
+            }
+        };
+    }
+
+    private static List<FrameworkMethod> failingAfters() throws NoSuchMethodException {
+        return Collections.singletonList(new FrameworkMethod(TestRunAftersWithOutputData.class
+            .getMethod("failingAfterClass")));
+    }
+
+    private static Map<String, List<Map<String, Object>>> data() {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("input", "row0");
+        row.put(Loader.ACTUAL_RESULT, "result");
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        rows.add(row);
+        Map<String, List<Map<String, Object>>> data = new HashMap<String, List<Map<String, Object>>>();
+        data.put("getItems", rows);
+        return data;
+    }
+
+    /**
+     * Records the data it is asked to write, or fails to write it
+     */
+    private static class RecordingLoader implements Loader {
+
+        final List<Map<String, List<Map<String, Object>>>> written = new ArrayList<Map<String, List<Map<String, Object>>>>();
+
+        boolean fail;
+
+        public Map<String, List<Map<String, Object>>> loadData(String[] filePaths) {
+            return new HashMap<String, List<Map<String, Object>>>();
+        }
+
+        public void writeData(String filePath, Map<String, List<Map<String, Object>>> actualData) {
+            if (fail) {
+                Assert.fail("The file " + filePath + " can not be written");
+            }
+            written.add(actualData);
+        }
+    }
+
+}
@@ -0,0 +1,7 @@
+DROP TABLE IF EXISTS ITEMS;
+CREATE TABLE ITEMS (LIBRARY_ID VARCHAR(10), ITEM_ID INT, ITEM_TYPE VARCHAR(20), EXPECTED_ITEMS VARCHAR(40));
+INSERT INTO ITEMS VALUES ('L1', 1, 'book', 'item1,item2');
+INSERT INTO ITEMS VALUES ('L1', 2, 'journal', 'item3');
+INSERT INTO ITEMS VALUES ('L2', 3, 'book', 'item4,item5');
+INSERT INTO ITEMS VALUES ('L2', 4, 'dvd', 'item6');
+INSERT INTO ITEMS VALUES ('L3', 5, 'book', 'item7');